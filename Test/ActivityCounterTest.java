@@ -0,0 +1,78 @@
+import Users.ActivityCounter;
+import org.junit.Test;
+
+import java.io.*;
+
+import static org.junit.Assert.*;
+
+public class ActivityCounterTest {
+    private static final long TODAY = 20000;
+
+    @Test
+    public void countsEveryDayInTheWindow() {
+        ActivityCounter counter = new ActivityCounter();
+        for (long day = TODAY - ActivityCounter.DAYS + 1; day <= TODAY; day++) {
+            counter.record(day, TODAY);
+        }
+        assertEquals(ActivityCounter.DAYS, counter.count(TODAY - ActivityCounter.DAYS + 1, TODAY));
+        assertEquals(7, counter.count(TODAY - 6, TODAY));
+        assertEquals(1, counter.count(TODAY, TODAY));
+    }
+
+    @Test
+    public void futureDaysDoNotHidePastDays() {
+        ActivityCounter counter = new ActivityCounter();
+        counter.record(TODAY, TODAY);
+        // a meeting DAYS days after today used to share a bucket with today
+        counter.record(TODAY + ActivityCounter.DAYS, TODAY);
+        counter.record(TODAY - 1, TODAY);
+        assertEquals(2, counter.count(TODAY - 6, TODAY));
+        assertEquals(1, counter.count(TODAY + ActivityCounter.DAYS, TODAY + ActivityCounter.DAYS));
+    }
+
+    @Test
+    public void futureDaysAreCountedOnceTheyAreInTheWeek() {
+        ActivityCounter counter = new ActivityCounter();
+        counter.record(TODAY + 30, TODAY);
+        counter.record(TODAY + 30, TODAY + 30);
+        assertEquals(2, counter.count(TODAY + 24, TODAY + 30));
+    }
+
+    @Test
+    public void daysBeforeTheWindowAreDropped() {
+        ActivityCounter counter = new ActivityCounter();
+        counter.record(TODAY - ActivityCounter.DAYS, TODAY);
+        assertEquals(0, counter.count(TODAY - ActivityCounter.DAYS, TODAY));
+        counter.record(TODAY - ActivityCounter.DAYS + 1, TODAY);
+        counter.record(TODAY + 1, TODAY + 1);
+        assertEquals(1, counter.count(TODAY - ActivityCounter.DAYS, TODAY + 1));
+    }
+
+    @Test
+    public void binaryFormatRoundTrip() throws IOException {
+        ActivityCounter counter = new ActivityCounter();
+        counter.record(TODAY - 3, TODAY);
+        counter.record(TODAY - 3, TODAY);
+        counter.record(TODAY + 40, TODAY);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        counter.writeTo(new DataOutputStream(bytes));
+        ActivityCounter read = new ActivityCounter(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(2, read.count(TODAY - 3, TODAY - 3));
+        assertEquals(1, read.count(TODAY + 40, TODAY + 40));
+    }
+
+    @Test
+    public void serializationRoundTrip() throws IOException, ClassNotFoundException {
+        ActivityCounter counter = new ActivityCounter();
+        counter.record(TODAY, TODAY);
+        counter.record(TODAY - 5, TODAY);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(counter);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            ActivityCounter read = (ActivityCounter) in.readObject();
+            assertEquals(2, read.count(TODAY - 6, TODAY));
+        }
+    }
+}
@@ -0,0 +1,98 @@
+import Actions.ActionManager;
+import Admins.AdminManager;
+import Initialization.CheckpointService;
+import Initialization.CityShardStore;
+import Initialization.DataSaver;
+import Initialization.Journal;
+import Transactions.TransactionStore;
+import Users.AccountStatusRegistry;
+import Users.DemoUserManager;
+import Users.TradingUserManager;
+import Users.UsernameRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class CheckpointServiceTest {
+    private File directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("checkpoints").toFile();
+    }
+
+    @After
+    public void deleteDirectory() {
+        delete(directory);
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    @Test
+    public void concurrentCheckpointsAreWrittenInOrder() throws Exception {
+        UsernameRegistry usernames = new UsernameRegistry();
+        AccountStatusRegistry accountStatuses = new AccountStatusRegistry(new ArrayList<>(), new ArrayList<>(),
+                new ArrayList<>());
+        CityShardStore shards = new CityShardStore(new File(directory, "shards").getPath());
+        List<Integer> written = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch firstEncoded = new CountDownLatch(1);
+        CountDownLatch secondEncoded = new CountDownLatch(1);
+        DataSaver dataSaver = new DataSaver(new AdminManager(new ArrayList<>(), accountStatuses, usernames),
+                new TradingUserManager(shards, accountStatuses, usernames),
+                new DemoUserManager(new ArrayList<>(), usernames),
+                new TransactionStore(new File(directory, "transactions").getPath()), shards, usernames,
+                new ActionManager(new LinkedHashMap<>()), new HashMap<>(),
+                new Journal(new File(directory, "journal.ser").getPath())) {
+            private int numEncoded = 0;
+
+            @Override
+            public Runnable prepareSave() {
+                int snapshot;
+                synchronized (this) {
+                    snapshot = ++numEncoded;
+                }
+                if (snapshot == 1) {
+                    // the first checkpoint is held up after encoding, giving the second the chance to overtake it
+                    firstEncoded.countDown();
+                    try {
+                        secondEncoded.await(500, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                } else {
+                    secondEncoded.countDown();
+                }
+                return () -> written.add(snapshot);
+            }
+        };
+        CheckpointService checkpoints = new CheckpointService(dataSaver, 0, Runnable::run);
+
+        Thread first = new Thread(checkpoints::checkpoint);
+        first.start();
+        assertTrue(firstEncoded.await(10, TimeUnit.SECONDS));
+        Thread second = new Thread(checkpoints::checkpoint);
+        second.start();
+        first.join(10000);
+        second.join(10000);
+        checkpoints.shutdown();
+
+        assertEquals(Arrays.asList(1, 2), written);
+    }
+}
@@ -0,0 +1,74 @@
+import Initialization.CityShardStore;
+import Users.TradingUser;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class CityShardStoreTest {
+    private File directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("shards").toFile();
+    }
+
+    @After
+    public void deleteDirectory() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    private static TradingUser createUser(String username, String city, UUID... wishlist) {
+        TradingUser tradingUser = new TradingUser(username, "password");
+        tradingUser.setCity(city);
+        tradingUser.getWishlist().addAll(Arrays.asList(wishlist));
+        return tradingUser;
+    }
+
+    @Test
+    public void wishersAreIndexedByCity() {
+        UUID item = UUID.randomUUID();
+        CityShardStore store = new CityShardStore(directory.getPath());
+        TradingUser alice = createUser("alice", "Toronto", item);
+        TradingUser bob = createUser("bob", "Ottawa", item);
+        store.putUser(alice);
+        store.putUser(bob);
+        assertEquals(Collections.singleton(alice.getUserId()), store.getWishers(item, "toronto"));
+        assertEquals(Collections.singleton(bob.getUserId()), store.getWishers(item, "Ottawa"));
+
+        // bob moves to Toronto and then takes the item off his wishlist
+        bob.setCity("Toronto");
+        store.putUser(bob);
+        assertEquals(new HashSet<>(Arrays.asList(alice.getUserId(), bob.getUserId())), store.getWishers(item, "Toronto"));
+        assertTrue(store.getWishers(item, "Ottawa").isEmpty());
+        bob.getWishlist().remove(item);
+        store.putUser(bob);
+        assertEquals(Collections.singleton(alice.getUserId()), store.getWishers(item, "Toronto"));
+    }
+
+    @Test
+    public void wishersAreIndexedWhenTheShardIsRead() {
+        UUID item = UUID.randomUUID();
+        CityShardStore store = new CityShardStore(directory.getPath());
+        TradingUser alice = createUser("alice", "Toronto", item);
+        store.putUser(alice);
+        store.putUser(createUser("bob", "Toronto"));
+        assertTrue(store.flush());
+
+        CityShardStore reopened = new CityShardStore(directory.getPath());
+        assertEquals(Collections.singleton(alice.getUserId()), reopened.getWishers(item, "Toronto"));
+        assertTrue(reopened.getWishers(UUID.randomUUID(), "Toronto").isEmpty());
+    }
+}
@@ -0,0 +1,199 @@
+import Actions.Action;
+import Actions.AddOrDeleteAction;
+import Initialization.Journal;
+import Initialization.JournalOperations;
+import Initialization.JournalRecord;
+import Items.Item;
+import Users.TradingUser;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class JournalTest {
+    private File directory;
+    private String path;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("journal").toFile();
+        path = new File(directory, "journal.ser").getPath();
+    }
+
+    @After
+    public void deleteDirectory() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void replaysRecordsInOrder(){
+        TradingUser bob = new TradingUser("bob", "1234");
+        Item item = new Item("book");
+        ArrayList<Action> actions = new ArrayList<>();
+        actions.add(new AddOrDeleteAction(bob.getUserId()));
+        Journal journal = new Journal(path);
+        journal.put("users", bob.getUserId(), bob);
+        journal.put("items", item.getId(), item);
+        journal.put("flagged", bob.getUserId(), bob.getUserId());
+        journal.put("actions", bob.getUserId(), actions);
+        journal.remove("items", item.getId());
+        journal.close();
+
+        List<JournalRecord> records = new Journal(path).readRecords();
+        assertEquals(5, records.size());
+        assertEquals("bob", ((TradingUser) records.get(0).getValue()).getUsername());
+        assertEquals(item.getId(), ((Item) records.get(1).getValue()).getId());
+        assertEquals(bob.getUserId(), records.get(2).getValue());
+        assertEquals(1, ((List<?>) records.get(3).getValue()).size());
+        assertFalse(records.get(4).isPut());
+        assertEquals(item.getId(), records.get(4).getKey());
+        assertNull(records.get(4).getValue());
+    }
+
+    @Test
+    public void dropsRecordThatWasOnlyPartlyWritten() throws IOException {
+        Journal journal = new Journal(path);
+        UUID first = UUID.randomUUID();
+        journal.put("flagged", first, first);
+        journal.put("flagged", UUID.randomUUID(), UUID.randomUUID());
+        journal.close();
+        long length = new File(path).length();
+        try (RandomAccessFile file = new RandomAccessFile(path, "rw")) {
+            file.setLength(length - 5); // the program crashed in the middle of the second record
+        }
+
+        journal = new Journal(path);
+        List<JournalRecord> records = journal.readRecords();
+        assertEquals(1, records.size());
+        assertEquals(first, records.get(0).getKey());
+        assertEquals(1, journal.size());
+
+        // records appended after the crash follow the last complete record
+        UUID second = UUID.randomUUID();
+        journal.put("flagged", second, second);
+        journal.close();
+        records = new Journal(path).readRecords();
+        assertEquals(2, records.size());
+        assertEquals(second, records.get(1).getKey());
+    }
+
+    @Test
+    public void readsRecordsSerializedBeforeBinaryFormat() throws IOException {
+        UUID legacy = UUID.randomUUID();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(new JournalRecord("flagged", JournalOperations.PUT, legacy, legacy));
+        }
+        try (DataOutputStream output = new DataOutputStream(new FileOutputStream(path))) {
+            output.writeInt(bytes.size());
+            bytes.writeTo(output);
+        }
+        Journal journal = new Journal(path);
+        UUID current = UUID.randomUUID();
+        journal.put("flagged", current, current);
+        journal.close();
+
+        List<JournalRecord> records = new Journal(path).readRecords();
+        assertEquals(2, records.size());
+        assertEquals(legacy, records.get(0).getValue());
+        assertEquals(current, records.get(1).getValue());
+    }
+
+    @Test
+    public void readsRotatedRecordsUntilTheyAreDeleted() {
+        Journal journal = new Journal(path, 2);
+        UUID before = UUID.randomUUID();
+        journal.put("flagged", before, before);
+        journal.put("flagged", UUID.randomUUID(), UUID.randomUUID());
+        assertTrue(journal.snapshotDue());
+        journal.rotate();
+        assertEquals(0, journal.size());
+        UUID after = UUID.randomUUID();
+        journal.put("flagged", after, after);
+
+        List<JournalRecord> records = journal.readRecords();
+        assertEquals(3, records.size());
+        assertEquals(before, records.get(0).getKey());
+        assertEquals(after, records.get(2).getKey());
+
+        journal.deleteRotated();
+        records = journal.readRecords();
+        assertEquals(1, records.size());
+        assertEquals(after, records.get(0).getKey());
+    }
+
+    @Test
+    public void keepsEveryRecordAppendedByConcurrentThreads() throws InterruptedException {
+        Journal journal = new Journal(path, Integer.MAX_VALUE);
+        int numThreads = 8;
+        int recordsPerThread = 500;
+        Thread[] threads = new Thread[numThreads];
+        for (int t = 0; t < numThreads; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < recordsPerThread; i++) {
+                    UUID id = UUID.randomUUID();
+                    journal.put("flagged", id, id);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(numThreads * recordsPerThread, journal.size());
+        journal.close();
+        List<JournalRecord> records = new Journal(path).readRecords();
+        assertEquals(numThreads * recordsPerThread, records.size());
+        for (JournalRecord record : records) {
+            assertEquals(record.getKey(), record.getValue());
+        }
+    }
+
+    @Test
+    public void reportsAFailedWriteAndReopensTheFile() {
+        // a directory in place of the journal file cannot be opened for writing
+        File blocked = new File(path);
+        assertTrue(blocked.mkdir());
+        Journal journal = new Journal(path);
+        UUID lost = UUID.randomUUID();
+        try {
+            journal.put("flagged", lost, lost);
+            fail("a record that was not written was reported as written");
+        } catch (UncheckedIOException e) {
+            assertEquals(0, journal.size());
+        }
+
+        assertTrue(blocked.delete());
+        UUID kept = UUID.randomUUID();
+        journal.put("flagged", kept, kept);
+        journal.close();
+        List<JournalRecord> records = new Journal(path).readRecords();
+        assertEquals(1, records.size());
+        assertEquals(kept, records.get(0).getKey());
+    }
+
+    @Test
+    public void clearEmptiesTheJournalWhenNothingIsWaiting() {
+        Journal journal = new Journal(path);
+        UUID id = UUID.randomUUID();
+        journal.put("flagged", id, id);
+        journal.rotate();
+        journal.put("flagged", id, id);
+        assertTrue(journal.clear());
+        assertEquals(0, journal.size());
+        assertTrue(new Journal(path).readRecords().isEmpty());
+    }
+}
@@ -0,0 +1,115 @@
+import Users.OrderedIdList;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class OrderedIdListTest {
+    private final UUID a = UUID.randomUUID();
+    private final UUID b = UUID.randomUUID();
+    private final UUID c = UUID.randomUUID();
+
+    @Test
+    public void keepsOrderWithoutDuplicates() {
+        OrderedIdList ids = new OrderedIdList(Arrays.asList(a, b, a, c));
+        assertEquals(Arrays.asList(a, b, c), ids);
+        assertFalse(ids.add(b));
+        assertEquals(3, ids.size());
+        assertTrue(ids.remove(b));
+        assertFalse(ids.contains(b));
+        assertEquals(Arrays.asList(a, c), ids);
+        assertTrue(ids.add(b));
+        assertEquals(b, ids.get(2));
+    }
+
+    @Test
+    public void supportsIndexedChanges() {
+        OrderedIdList ids = new OrderedIdList(Arrays.asList(a, c));
+        ids.add(1, b);
+        assertEquals(Arrays.asList(a, b, c), ids);
+        UUID d = UUID.randomUUID();
+        assertEquals(b, ids.set(1, d));
+        assertFalse(ids.contains(b));
+        assertEquals(1, ids.indexOf(d));
+        assertEquals(a, ids.remove(0));
+        assertEquals(Arrays.asList(d, c), ids);
+        Collections.reverse(ids);
+        assertEquals(Arrays.asList(c, d), ids);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void doesNotInsertDuplicate() {
+        new OrderedIdList(Arrays.asList(a, b)).add(0, b);
+    }
+
+    @Test
+    public void sortsInPlace() {
+        OrderedIdList ids = new OrderedIdList(Arrays.asList(c, a, b));
+        ids.sort(Comparator.naturalOrder());
+        List<UUID> sorted = new ArrayList<>(Arrays.asList(a, b, c));
+        sorted.sort(Comparator.naturalOrder());
+        assertEquals(sorted, ids);
+        assertEquals(3, ids.size());
+        assertTrue(ids.remove(a));
+        assertFalse(ids.contains(a));
+    }
+
+    @Test
+    public void removesWhileIterating() {
+        OrderedIdList ids = new OrderedIdList(Arrays.asList(a, b, c));
+        ids.removeIf(id -> id.equals(b));
+        assertEquals(Arrays.asList(a, c), ids);
+        assertFalse(ids.contains(b));
+    }
+
+    @Test
+    public void serializationRoundTrip() throws IOException, ClassNotFoundException {
+        OrderedIdList ids = new OrderedIdList(Arrays.asList(a, b, c));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(ids);
+        }
+        OrderedIdList read = (OrderedIdList) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))
+                .readObject();
+        assertEquals(ids, read);
+        assertTrue(read.contains(c));
+    }
+
+    @Test(timeout = 10000)
+    public void removesFromLargeListsInConstantTime() {
+        List<UUID> added = new ArrayList<>();
+        for (int i = 0; i < 200000; i++) {
+            added.add(UUID.randomUUID());
+        }
+        OrderedIdList ids = new OrderedIdList(added);
+        List<UUID> removed = new ArrayList<>(added.subList(0, 150000));
+        Collections.shuffle(removed, new Random(1));
+        for (UUID id : removed) {
+            assertTrue(ids.remove(id));
+            assertFalse(ids.contains(id));
+        }
+        assertEquals(added.subList(150000, 200000), ids);
+        assertEquals(0, ids.indexOf(added.get(150000)));
+        assertEquals(49999, ids.indexOf(added.get(199999)));
+    }
+
+    @Test
+    public void iteratesAroundRemovedIds() {
+        UUID d = UUID.randomUUID();
+        OrderedIdList ids = new OrderedIdList(Arrays.asList(a, b, c, d));
+        assertTrue(ids.remove(b));
+        Iterator<UUID> iterator = ids.iterator();
+        assertEquals(a, iterator.next());
+        assertEquals(c, iterator.next());
+        iterator.remove();
+        assertEquals(d, iterator.next());
+        assertFalse(iterator.hasNext());
+        assertEquals(Arrays.asList(a, d), ids);
+        assertEquals(1, ids.indexOf(d));
+        assertEquals(d, ids.get(1));
+        assertTrue(ids.add(b));
+        assertEquals(Arrays.asList(a, d, b), ids);
+    }
+}
@@ -0,0 +1,56 @@
+import Users.PartnerCounter;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class PartnerCounterTest {
+    private static PartnerCounter roundTrip(PartnerCounter counter) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        counter.writeTo(new DataOutputStream(bytes));
+        return new PartnerCounter(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+    @Test
+    public void partnersWithTheSameCountKeepTheirOrder() {
+        PartnerCounter counter = new PartnerCounter();
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        counter.add(first, 2);
+        counter.add(second, 2);
+        assertEquals(Arrays.asList(first, second), counter.getTop());
+        counter.add(second, 1);
+        assertEquals(Arrays.asList(second, first), counter.getTop());
+    }
+
+    @Test
+    public void binaryFormatRoundTripKeepsTiesInOrder() throws IOException {
+        // ids are written from a HashMap, so many pairs are tried for one to come out in the other order
+        for (int i = 0; i < 100; i++) {
+            PartnerCounter counter = new PartnerCounter();
+            UUID first = UUID.randomUUID();
+            UUID second = UUID.randomUUID();
+            counter.add(first, 3);
+            counter.add(second, 3);
+            PartnerCounter read = roundTrip(counter);
+            assertEquals(counter.getTop(), read.getTop());
+            assertEquals(3, read.getCount(second));
+        }
+    }
+
+    @Test
+    public void binaryFormatRoundTripKeepsTheTop() throws IOException {
+        PartnerCounter counter = new PartnerCounter();
+        List<UUID> partners = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            partners.add(UUID.randomUUID());
+            // every partner has the same count, so the first TOP stay on top
+            counter.add(partners.get(i), 1);
+        }
+        PartnerCounter read = roundTrip(counter);
+        assertEquals(partners.subList(0, PartnerCounter.TOP), read.getTop());
+        assertEquals(counter.getCounts(), read.getCounts());
+    }
+}
@@ -0,0 +1,149 @@
+import Initialization.DataMigrator;
+import Initialization.Serializer;
+import Transactions.Meeting;
+import Transactions.Transaction;
+import Transactions.TransactionPerm;
+import Transactions.TransactionStatuses;
+import Users.TradingUser;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.zip.Deflater;
+
+import static org.junit.Assert.*;
+
+public class SerializerTest {
+    private File directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("serializer").toFile();
+    }
+
+    @After
+    public void deleteDirectory() {
+        delete(directory);
+    }
+
+    private void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private String path(String name) {
+        return new File(directory, name).getPath();
+    }
+
+    private List<TradingUser> createUsers(int numUsers) {
+        List<TradingUser> tradingUsers = new ArrayList<>();
+        for (int i = 0; i < numUsers; i++) {
+            TradingUser tradingUser = new TradingUser("user" + i, "password" + i);
+            tradingUser.setCity("Toronto");
+            tradingUser.getInventory().add(UUID.randomUUID());
+            tradingUser.getWishlist().add(UUID.randomUUID());
+            tradingUsers.add(tradingUser);
+        }
+        return tradingUsers;
+    }
+
+    private void assertSameUsers(List<TradingUser> expected, List<TradingUser> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getUserId(), actual.get(i).getUserId());
+            assertEquals(expected.get(i).getUsername(), actual.get(i).getUsername());
+            assertEquals(expected.get(i).getCity(), actual.get(i).getCity());
+            assertEquals(expected.get(i).getInventory(), actual.get(i).getInventory());
+            assertEquals(expected.get(i).getWishlist(), actual.get(i).getWishlist());
+        }
+    }
+
+    @Test
+    public void usersRoundTrip() {
+        List<TradingUser> tradingUsers = createUsers(10);
+        Serializer serializer = new Serializer();
+        assertTrue(serializer.writeUsersToFile(path("users.ser"), tradingUsers));
+        assertTrue(serializer.isCurrentVersion(path("users.ser")));
+        assertFalse(new File(path("users.ser.tmp")).exists());
+        assertSameUsers(tradingUsers, serializer.readUsersFromFile(path("users.ser")));
+    }
+
+    @Test
+    public void compressedUsersRoundTrip() {
+        // enough users to fill several compressed blocks
+        List<TradingUser> tradingUsers = createUsers(5000);
+        Serializer serializer = new Serializer();
+        serializer.setCompressionLevel(Deflater.BEST_SPEED);
+        assertTrue(serializer.writeUsersToFile(path("users.ser"), tradingUsers));
+        assertTrue(serializer.isCurrentVersion(path("users.ser")));
+        assertSameUsers(tradingUsers, new Serializer().readUsersFromFile(path("users.ser")));
+    }
+
+    @Test
+    public void transactionsRoundTrip() {
+        TreeMap<UUID, List<UUID>> userToItems = new TreeMap<>();
+        UUID user1 = UUID.randomUUID();
+        UUID user2 = UUID.randomUUID();
+        userToItems.put(user1, Arrays.asList(UUID.randomUUID(), null));
+        userToItems.put(user2, Arrays.asList(null, UUID.randomUUID()));
+        Transaction transaction = new TransactionPerm(userToItems, new Meeting("Library", new Date(), new Date()));
+        transaction.setUserStatus(user1, TransactionStatuses.CONFIRMED);
+        Map<UUID, Transaction> transactions = new HashMap<>();
+        transactions.put(transaction.getId(), transaction);
+
+        Serializer serializer = new Serializer();
+        assertTrue(serializer.writeTransactionsToFile(path("transactions.ser"), transactions));
+        Transaction read = serializer.readTransactionMapFromFile(path("transactions.ser")).get(transaction.getId());
+        assertTrue(read.isPerm());
+        assertEquals(TransactionStatuses.CONFIRMED, read.getUserStatus(user1));
+        assertEquals(TransactionStatuses.PENDING, read.getUserStatus(user2));
+        assertEquals(transaction.getItem1(), read.getItem1());
+        assertEquals("Library", read.getTransactionMeetings().get(0).getLocation());
+        assertEquals(1, serializer.readTransactionCountFromFile(path("transactions.ser")));
+    }
+
+    @Test
+    public void deferredSerializerWritesOnlyWhenPendingFilesAreWritten() {
+        Serializer serializer = Serializer.deferred();
+        List<UUID> accounts = new ArrayList<>(Collections.singletonList(UUID.randomUUID()));
+        assertTrue(serializer.writeAccountsToFile(path("flaggedAccounts.ser"), accounts));
+        accounts.add(UUID.randomUUID()); // changes after the call are not saved
+        assertFalse(new File(path("flaggedAccounts.ser")).exists());
+        assertTrue(serializer.writePendingFiles().isEmpty());
+        assertEquals(1, new Serializer().readAccountsFromFile(path("flaggedAccounts.ser")).size());
+    }
+
+    @Test
+    public void readsAccountsSavedAsUsersWithObjectOutputStream() throws IOException {
+        List<TradingUser> tradingUsers = createUsers(3);
+        try (ObjectOutputStream output = new ObjectOutputStream(new FileOutputStream(path("frozenAccounts.ser")))) {
+            output.writeObject(new ArrayList<>(tradingUsers));
+        }
+        List<UUID> ids = new Serializer().readAccountsFromFile(path("frozenAccounts.ser"));
+        assertEquals(Arrays.asList(tradingUsers.get(0).getUserId(), tradingUsers.get(1).getUserId(),
+                tradingUsers.get(2).getUserId()), ids);
+    }
+
+    @Test
+    public void migratesUsersSavedWithObjectOutputStream() throws IOException {
+        List<TradingUser> tradingUsers = createUsers(100);
+        try (ObjectOutputStream output = new ObjectOutputStream(new FileOutputStream(path("users.ser")))) {
+            output.writeObject(new ArrayList<>(tradingUsers));
+        }
+        assertTrue(new DataMigrator(directory, Serializer.UNCOMPRESSED).migrate());
+        Serializer serializer = new Serializer();
+        assertTrue(serializer.isCurrentVersion(path("users.ser")));
+        assertSameUsers(tradingUsers, serializer.readUsersFromFile(path("users.ser")));
+    }
+}
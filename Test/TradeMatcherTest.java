@@ -0,0 +1,59 @@
+import Transactions.TradeMatcher;
+import Transactions.TradeProposal;
+import Users.TradingUser;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class TradeMatcherTest {
+    /* creates users who each own one item */
+    private static List<TradingUser> createUsers(int numUsers) {
+        List<TradingUser> tradingUsers = new ArrayList<>();
+        for (int i = 0; i < numUsers; i++) {
+            TradingUser tradingUser = new TradingUser("user" + i, "password");
+            tradingUser.getInventory().add(UUID.randomUUID());
+            tradingUsers.add(tradingUser);
+        }
+        return tradingUsers;
+    }
+
+    private static void want(TradingUser wisher, TradingUser owner) {
+        wisher.getWishlist().add(owner.getInventory().get(0));
+    }
+
+    @Test
+    public void findsSwapsAndCycles() {
+        List<TradingUser> tradingUsers = createUsers(5);
+        want(tradingUsers.get(0), tradingUsers.get(1));
+        want(tradingUsers.get(1), tradingUsers.get(0));
+        want(tradingUsers.get(2), tradingUsers.get(3));
+        want(tradingUsers.get(3), tradingUsers.get(4));
+        want(tradingUsers.get(4), tradingUsers.get(2));
+
+        List<TradeProposal> proposals = new TradeMatcher().match(Collections.singletonMap("Toronto", tradingUsers));
+        assertEquals(2, proposals.size());
+        assertTrue(proposals.get(0).isSwap());
+        assertEquals(3, proposals.get(1).getUsers().size());
+    }
+
+    @Test(timeout = 10000)
+    public void denseCityWithoutCyclesIsNotExploredToTheEnd() {
+        // every user wants the item of every user after them, so no trade closes and every path is worth exploring
+        List<TradingUser> tradingUsers = createUsers(600);
+        for (int i = 0; i < tradingUsers.size(); i++) {
+            for (int j = i + 1; j < tradingUsers.size(); j++) {
+                want(tradingUsers.get(i), tradingUsers.get(j));
+            }
+        }
+        // a swap between the last two users still makes one trade possible
+        want(tradingUsers.get(599), tradingUsers.get(598));
+
+        long start = System.nanoTime();
+        List<TradeProposal> proposals = new TradeMatcher().match(Collections.singletonMap("Toronto", tradingUsers));
+        assertTrue(System.nanoTime() - start < 10_000_000_000L);
+        assertEquals(1, proposals.size());
+        assertTrue(proposals.get(0).isSwap());
+    }
+}
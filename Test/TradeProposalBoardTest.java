@@ -0,0 +1,109 @@
+import Actions.ActionManager;
+import Admins.AdminManager;
+import Admins.AdminMenuController;
+import Initialization.CityShardStore;
+import Items.Item;
+import Items.ItemManager;
+import Transactions.CurrentTransactionManager;
+import Transactions.PastTransactionManager;
+import Transactions.TradeProposal;
+import Transactions.TradeProposalBoard;
+import Transactions.Transaction;
+import Users.AccountStatusRegistry;
+import Users.TradingUser;
+import Users.TradingUserManager;
+import Users.UserLocks;
+import Users.UserMenuController;
+import Users.UsernameRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class TradeProposalBoardTest {
+    private static final String CITY = "Toronto";
+    private File directory;
+    private TradingUserManager tum;
+    private AdminMenuController amc;
+    private final TradeProposalBoard board = new TradeProposalBoard();
+    private final List<UserMenuController> controllers = new ArrayList<>();
+
+    @Before
+    public void createManagers() throws Exception {
+        directory = Files.createTempDirectory("shards").toFile();
+        CityShardStore store = new CityShardStore(directory.getPath());
+        UsernameRegistry usernames = new UsernameRegistry();
+        AccountStatusRegistry accountStatuses = new AccountStatusRegistry(new ArrayList<>(), new ArrayList<>(),
+                new ArrayList<>());
+        tum = new TradingUserManager(store, accountStatuses, usernames, new UserLocks(4));
+        AdminManager am = new AdminManager(new ArrayList<>(), accountStatuses, usernames);
+        ActionManager acm = new ActionManager(new LinkedHashMap<>());
+        CurrentTransactionManager tm = new CurrentTransactionManager(new HashMap<>(), acm);
+        PastTransactionManager ptm = new PastTransactionManager(new HashMap<>());
+        ItemManager im = new ItemManager(store);
+        amc = new AdminMenuController(am, tum, new HashMap<>(), im, acm, ptm, null, board);
+
+        // two users who each want the other's item
+        Item[] items = {new Item("bike"), new Item("lamp")};
+        for (int i = 0; i < 2; i++) {
+            tum.addTradingUser("user" + i, "password", CITY);
+            im.addItem(items[i]);
+            tum.addItem(tum.getTradingUser("user" + i).getUserId(), items[i], "inventory");
+        }
+        for (int i = 0; i < 2; i++) {
+            tum.addItem(tum.getTradingUser("user" + i).getUserId(), items[1 - i], "wishlist");
+            UserMenuController umc = new UserMenuController(tum, am, tm, ptm, im, acm, new HashMap<>(), null, board);
+            umc.setCurrentTradingUser("user" + i);
+            controllers.add(umc);
+        }
+    }
+
+    @After
+    public void deleteDirectory() {
+        delete(directory);
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    @Test
+    public void proposalsAreServedFromTheLatestBatch() {
+        assertTrue(controllers.get(0).getTradeProposals().isEmpty());
+        assertEquals(1, amc.matchAllTrades().size());
+        TradeProposal proposal = controllers.get(0).getTradeProposals().get(0);
+        assertSame(proposal, controllers.get(1).getTradeProposals().get(0));
+
+        // a proposal is no longer served once one of its users no longer wants their item
+        TradingUser user1 = controllers.get(1).getCurrentTradingUser();
+        controllers.get(1).removeFromWishlist(proposal.getItems().get(proposal.getUsers().indexOf(user1.getUserId())));
+        assertTrue(controllers.get(0).getTradeProposals().isEmpty());
+    }
+
+    @Test
+    public void proposalIsAcceptedOnce() throws Exception {
+        amc.matchAllTrades();
+        TradeProposal proposal = controllers.get(0).getTradeProposals().get(0);
+        List<Transaction> transactions = controllers.get(0).acceptTradeProposal(proposal, "Library", new Date(),
+                new Date());
+        assertEquals(1, transactions.size());
+        for (UserMenuController umc : controllers) {
+            assertEquals(Collections.singletonList(transactions.get(0).getId()),
+                    umc.getCurrentTradingUser().getCurrentTransactions());
+        }
+        assertTrue(controllers.get(1).getTradeProposals().isEmpty());
+        assertTrue(controllers.get(1).acceptTradeProposal(proposal, "Library", new Date(), new Date()).isEmpty());
+    }
+}
@@ -0,0 +1,126 @@
+import Initialization.Serializer;
+import Transactions.Meeting;
+import Transactions.Transaction;
+import Transactions.TransactionIndex;
+import Transactions.TransactionPerm;
+import Transactions.TransactionStatuses;
+import Transactions.TransactionStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class TransactionIndexTest {
+    private File directory;
+    private final UUID user1 = UUID.randomUUID();
+    private final UUID user2 = UUID.randomUUID();
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("transactions").toFile();
+    }
+
+    @After
+    public void deleteDirectory() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    private Transaction createTransaction(TransactionStatuses status) {
+        TreeMap<UUID, List<UUID>> userToItems = new TreeMap<>();
+        userToItems.put(user1, Arrays.asList(UUID.randomUUID(), null));
+        userToItems.put(user2, Arrays.asList(null, UUID.randomUUID()));
+        Transaction transaction = new TransactionPerm(userToItems, new Meeting("Library", new Date(), new Date()));
+        transaction.setStatus(status);
+        return transaction;
+    }
+
+    private List<Transaction> saveTransactions(int numTransactions) {
+        TransactionStore store = new TransactionStore(directory.getPath(), 0);
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < numTransactions; i++) {
+            Transaction transaction = createTransaction(i % 2 == 0 ? TransactionStatuses.PENDING
+                    : TransactionStatuses.COMPLETED);
+            store.put(transaction.getId(), transaction);
+            transactions.add(transaction);
+        }
+        assertTrue(store.flush());
+        return transactions;
+    }
+
+    @Test
+    public void summariesAreSavedAheadOfTransactions() {
+        List<Transaction> transactions = saveTransactions(10);
+        Serializer serializer = new Serializer();
+        File[] segments = directory.listFiles();
+        assertNotNull(segments);
+        int numSummaries = 0;
+        for (File segment : segments) {
+            numSummaries += serializer.readTransactionSummariesFromFile(segment.getPath()).size();
+        }
+        assertEquals(transactions.size(), numSummaries);
+    }
+
+    @Test
+    public void indexIsBuiltWithoutReadingTransactions() throws IOException {
+        saveTransactions(10);
+        // cut off the end of the last transaction in every segment, which only the summaries ahead of them survive
+        File[] segments = directory.listFiles();
+        assertNotNull(segments);
+        for (File segment : segments) {
+            try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+                file.setLength(file.length() - 1);
+            }
+        }
+
+        TransactionIndex index = new TransactionIndex(new TransactionStore(directory.getPath(), 0));
+        assertEquals(5, index.count(TransactionStatuses.PENDING));
+        assertEquals(5, index.count(TransactionStatuses.COMPLETED));
+        assertEquals(5, index.count(user1, TransactionStatuses.PENDING));
+        assertEquals(5, index.getIds(user2, TransactionStatuses.COMPLETED).size());
+    }
+
+    @Test
+    public void indexIncludesChangesSinceTheLastFlush() {
+        List<Transaction> transactions = saveTransactions(4);
+        TransactionStore store = new TransactionStore(directory.getPath(), 0);
+        Transaction confirmed = store.get(transactions.get(0).getId());
+        confirmed.setStatus(TransactionStatuses.CONFIRMED);
+        store.put(confirmed.getId(), confirmed);
+        store.remove(transactions.get(1).getId());
+        Transaction added = createTransaction(TransactionStatuses.PENDING);
+        store.put(added.getId(), added);
+
+        TransactionIndex index = new TransactionIndex(store);
+        assertEquals(Collections.singleton(confirmed.getId()), index.getIds(user1, TransactionStatuses.CONFIRMED));
+        assertEquals(new HashSet<>(Arrays.asList(transactions.get(2).getId(), added.getId())),
+                index.getIds(user2, TransactionStatuses.PENDING));
+        assertEquals(1, index.count(TransactionStatuses.COMPLETED));
+    }
+
+    @Test
+    public void indexMatchesAfterSegmentsAreMigratedFromTheTransactions() {
+        Map<UUID, Transaction> transactions = new HashMap<>();
+        for (Transaction transaction : saveTransactions(6)) {
+            transactions.put(transaction.getId(), transaction);
+        }
+        TransactionIndex fromSummaries = new TransactionIndex(new TransactionStore(directory.getPath(), 0));
+        TransactionIndex fromTransactions = new TransactionIndex(transactions);
+        for (TransactionStatuses status : TransactionStatuses.values()) {
+            assertEquals(fromTransactions.count(status), fromSummaries.count(status));
+            assertEquals(fromTransactions.getIds(user1, status), fromSummaries.getIds(user1, status));
+        }
+    }
+}
@@ -0,0 +1,171 @@
+import Initialization.Serializer;
+import Transactions.Meeting;
+import Transactions.Transaction;
+import Transactions.TransactionPerm;
+import Transactions.TransactionSegmentIndex;
+import Transactions.TransactionStatuses;
+import Transactions.TransactionStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.zip.Deflater;
+
+import static org.junit.Assert.*;
+
+public class TransactionStoreTest {
+    private File directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("transactions").toFile();
+    }
+
+    @After
+    public void deleteDirectory() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    private static Transaction createTransaction() {
+        TreeMap<UUID, List<UUID>> userToItems = new TreeMap<>();
+        userToItems.put(UUID.randomUUID(), Arrays.asList(UUID.randomUUID(), null));
+        userToItems.put(UUID.randomUUID(), Arrays.asList(null, UUID.randomUUID()));
+        Transaction transaction = new TransactionPerm(userToItems, new Meeting("Library", new Date(), new Date()));
+        transaction.setStatus(TransactionStatuses.PENDING);
+        return transaction;
+    }
+
+    /* a transaction with a random id, as older versions created, whose first hex digit is firstDigit */
+    private static Transaction createOldTransaction(int firstDigit) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        createTransaction().writeTo(new DataOutputStream(bytes));
+        byte[] encoded = bytes.toByteArray();
+        UUID id = UUID.randomUUID();
+        long most = (id.getMostSignificantBits() & (-1L >>> 4)) | ((long) firstDigit << 60);
+        // the id follows the byte that gives the type of the transaction
+        ByteBuffer.wrap(encoded, 1, 16).putLong(most).putLong(id.getLeastSignificantBits());
+        return Transaction.readFrom(new DataInputStream(new ByteArrayInputStream(encoded)), 7);
+    }
+
+    private Map<UUID, Transaction> saveTransactions(int numTransactions, int compressionLevel) {
+        TransactionStore store = new TransactionStore(directory.getPath(), 0);
+        store.setCompressionLevel(compressionLevel);
+        Map<UUID, Transaction> transactions = new HashMap<>();
+        for (int i = 0; i < numTransactions; i++) {
+            Transaction transaction = createTransaction();
+            store.add(transaction);
+            transactions.put(transaction.getId(), transaction);
+        }
+        assertTrue(store.flush());
+        return transactions;
+    }
+
+    @Test
+    public void readsOneTransactionWithoutTheRestOfItsSegment() throws IOException {
+        Map<UUID, Transaction> transactions = saveTransactions(20, Serializer.UNCOMPRESSED);
+        File[] segments = directory.listFiles();
+        assertNotNull(segments);
+        assertEquals(1, segments.length);
+        // cut off the end of the last transaction in the segment, which only reading transactions alone survives
+        TransactionSegmentIndex index = new Serializer().readTransactionIndexFromFile(segments[0].getPath());
+        int last = 0;
+        for (int i = 0; i < index.size(); i++) {
+            if (index.getOffset(i) > index.getOffset(last)) {
+                last = i;
+            }
+        }
+        try (RandomAccessFile file = new RandomAccessFile(segments[0], "rw")) {
+            file.setLength(file.length() - 1);
+        }
+
+        TransactionStore store = new TransactionStore(directory.getPath(), 100);
+        int numRead = 0;
+        for (Transaction transaction : transactions.values()) {
+            Transaction read = store.get(transaction.getId());
+            if (index.find(transaction.getId()) == last) {
+                assertNull(read);
+            } else {
+                assertEquals(transaction.getId(), read.getId());
+                assertEquals(transaction.getUser1(), read.getUser1());
+                numRead++;
+            }
+        }
+        assertEquals(transactions.size() - 1, numRead);
+    }
+
+    @Test
+    public void readsOneTransactionFromACompressedSegment() {
+        Map<UUID, Transaction> transactions = saveTransactions(20, Deflater.BEST_SPEED);
+        TransactionStore store = new TransactionStore(directory.getPath(), 100);
+        for (Transaction transaction : transactions.values()) {
+            assertEquals(transaction.getUser2(), store.get(transaction.getId()).getUser2());
+        }
+        assertNull(store.get(UUID.randomUUID()));
+    }
+
+    @Test
+    public void readsTheIndexAgainWhenTheSegmentIsRewritten() {
+        Map<UUID, Transaction> transactions = saveTransactions(5, Serializer.UNCOMPRESSED);
+        File[] segments = directory.listFiles();
+        assertNotNull(segments);
+        TransactionStore store = new TransactionStore(directory.getPath(), 0);
+        UUID id = transactions.keySet().iterator().next();
+        assertNotNull(store.get(id));
+
+        // every transaction moves in the file, so the index read above no longer fits it
+        List<UUID> ids = new ArrayList<>(transactions.keySet());
+        Collections.reverse(ids);
+        Map<UUID, Transaction> rewritten = new LinkedHashMap<>();
+        for (UUID reversed : ids) {
+            rewritten.put(reversed, transactions.get(reversed));
+        }
+        assertTrue(new Serializer().writeTransactionsToFile(segments[0].getPath(), rewritten));
+        for (Transaction transaction : rewritten.values()) {
+            assertEquals(transaction.getUser1(), store.get(transaction.getId()).getUser1());
+        }
+    }
+
+    @Test
+    public void oldSegmentsAreSplitWhenOpened() throws IOException {
+        Map<UUID, Transaction> transactions = new HashMap<>();
+        for (int i = 0; i < 50; i++) {
+            Transaction transaction = createOldTransaction(0xa);
+            transactions.put(transaction.getId(), transaction);
+        }
+        File oldSegment = new File(directory, "id-a.ser");
+        assertTrue(new Serializer().writeTransactionsToFile(oldSegment.getPath(), transactions));
+
+        TransactionStore store = new TransactionStore(directory.getPath(), 0);
+        assertFalse(oldSegment.exists());
+        File[] segments = directory.listFiles();
+        assertNotNull(segments);
+        assertTrue(segments.length > 1);
+        for (File segment : segments) {
+            assertTrue(segment.getName().matches("id-a[0-9a-f]\\.ser"));
+        }
+        assertEquals(transactions.size(), store.size());
+        for (Transaction transaction : transactions.values()) {
+            assertEquals(transaction.getUser1(), store.get(transaction.getId()).getUser1());
+        }
+    }
+
+    @Test
+    public void addedTransactionsAreHandedOutAsTheSameInstance() {
+        TransactionStore store = new TransactionStore(directory.getPath(), 0);
+        Transaction transaction = createTransaction();
+        store.add(transaction);
+        assertTrue(store.flush());
+        assertEquals(1, store.size());
+        assertSame(transaction, store.get(transaction.getId()));
+    }
+}
@@ -0,0 +1,169 @@
+import Transactions.CurrentTransactionManager;
+import Transactions.Meeting;
+import Transactions.Transaction;
+import Transactions.TransactionPerm;
+import Transactions.TransactionStatuses;
+import Transactions.TransactionStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class TransactionUpdateTest {
+    private static final int THREADS = 8;
+    private File directory;
+    private final UUID user1 = UUID.randomUUID();
+    private final UUID user2 = UUID.randomUUID();
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("transactions").toFile();
+    }
+
+    @After
+    public void deleteDirectory() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    private Transaction createTransaction() {
+        TreeMap<UUID, List<UUID>> userToItems = new TreeMap<>();
+        userToItems.put(user1, Arrays.asList(UUID.randomUUID(), null));
+        userToItems.put(user2, Arrays.asList(null, UUID.randomUUID()));
+        return new TransactionPerm(userToItems, new Meeting("Library", new Date(), new Date()));
+    }
+
+    /* runs task on THREADS threads at once and returns how many times it returned true */
+    private int runAtOnce(Callable<Boolean> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return task.call();
+            }));
+        }
+        start.countDown();
+        int succeeded = 0;
+        for (Future<Boolean> result : results) {
+            if (result.get()) succeeded++;
+        }
+        executor.shutdown();
+        return succeeded;
+    }
+
+    @Test
+    public void concurrentUpdatesAreNotLost() throws Exception {
+        Transaction transaction = createTransaction();
+        long version = transaction.getVersion();
+        int updatesPerThread = 1000;
+        AtomicInteger locationNum = new AtomicInteger();
+        runAtOnce(() -> {
+            for (int i = 0; i < updatesPerThread; i++) {
+                String location = "Location " + locationNum.incrementAndGet();
+                transaction.update(draft -> {
+                    draft.editMeeting(0).setLocation(location);
+                    return true;
+                });
+            }
+            return true;
+        });
+        assertEquals(version + THREADS * updatesPerThread, transaction.getVersion());
+    }
+
+    @Test
+    public void editLimitHoldsUnderContention() throws Exception {
+        Map<UUID, Transaction> transactions = new TransactionStore(directory.getPath(), 0);
+        CurrentTransactionManager tm = new CurrentTransactionManager(transactions, null);
+        Transaction transaction = createTransaction();
+        tm.addTransaction(transaction);
+        int maxNumEdits = transaction.getTransactionMeetings().get(0).getMaxNumEdits();
+        int userNum = tm.findUserNum(transaction, user1);
+
+        int edited = runAtOnce(() -> tm.editMeeting(0, transaction.getId(), user1, "Cafe"));
+        assertEquals(maxNumEdits, edited);
+        assertEquals(maxNumEdits, transaction.getTransactionMeetings().get(0).getNumEditsUser(userNum));
+        assertFalse(tm.editMeeting(0, transaction.getId(), user1, new Date(), new Date()));
+    }
+
+    @Test
+    public void everyEditReplacesADifferentMeeting() throws Exception {
+        CurrentTransactionManager tm = new CurrentTransactionManager(new HashMap<>(), null);
+        Transaction transaction = createTransaction();
+        tm.addTransaction(transaction);
+        AtomicInteger locationNum = new AtomicInteger();
+        List<String> replaced = Collections.synchronizedList(new ArrayList<>());
+        runAtOnce(() -> {
+            UUID user = locationNum.get() % 2 == 0 ? user1 : user2;
+            Meeting previous = tm.replaceMeeting(0, transaction.getId(), user, "Location " + locationNum.incrementAndGet(),
+                    new Date(), new Date());
+            if (previous != null) {
+                replaced.add(previous.getLocation());
+            }
+            return previous != null;
+        });
+        // the meetings replaced form one chain from the first meeting, with none replaced twice
+        assertTrue(replaced.contains("Library"));
+        assertEquals(replaced.size(), new HashSet<>(replaced).size());
+        assertFalse(replaced.contains(transaction.getTransactionMeetings().get(0).getLocation()));
+    }
+
+    @Test
+    public void timeAndDateAreOneEdit() throws Exception {
+        CurrentTransactionManager tm = new CurrentTransactionManager(new HashMap<>(), null);
+        Transaction transaction = createTransaction();
+        tm.addTransaction(transaction);
+        Date time = new Date(0);
+        Date date = new Date(1000);
+        assertTrue(tm.editMeeting(0, transaction.getId(), user2, time, date));
+        Meeting meeting = transaction.getTransactionMeetings().get(0);
+        assertEquals(time, meeting.getTime());
+        assertEquals(date, meeting.getDate());
+        assertEquals(1, meeting.getNumEditsUser(tm.findUserNum(transaction, user2)));
+    }
+
+    @Test
+    public void storeHandsOutOneInstancePerTransaction() {
+        TransactionStore store = new TransactionStore(directory.getPath(), 0);
+        Transaction transaction = createTransaction();
+        store.put(transaction.getId(), transaction);
+        assertTrue(store.flush());
+
+        // the cache holds nothing, so the segment is read again on every get
+        Transaction first = store.get(transaction.getId());
+        Transaction second = store.get(transaction.getId());
+        assertSame(transaction, first);
+        assertSame(first, second);
+
+        TransactionStore reopened = new TransactionStore(directory.getPath(), 0);
+        Transaction read = reopened.get(transaction.getId());
+        read.setStatus(TransactionStatuses.CONFIRMED);
+        assertSame(read, reopened.get(transaction.getId()));
+        assertEquals(TransactionStatuses.CONFIRMED, reopened.get(transaction.getId()).getStatus());
+    }
+
+    @Test
+    public void meetingsAreHandedOutAsCopies() {
+        Transaction transaction = createTransaction();
+        long version = transaction.getVersion();
+        transaction.getTransactionMeetings().get(0).setLocation("Cafe");
+        transaction.getTransactionMeetings().get(0).userEdits(1);
+        assertEquals("Library", transaction.getTransactionMeetings().get(0).getLocation());
+        assertEquals(0, transaction.getTransactionMeetings().get(0).getNumEditsUser(1));
+        assertEquals(version, transaction.getVersion());
+    }
+}
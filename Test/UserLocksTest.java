@@ -0,0 +1,193 @@
+import Actions.ActionManager;
+import Admins.AdminManager;
+import Initialization.CityShardStore;
+import Items.Item;
+import Items.ItemManager;
+import Transactions.CurrentTransactionManager;
+import Transactions.PastTransactionManager;
+import Transactions.TradeProposalBoard;
+import Transactions.Transaction;
+import Transactions.TransactionActions;
+import Transactions.TransactionBuilder;
+import Transactions.TransactionStatuses;
+import Transactions.TransactionStore;
+import Users.AccountStatusRegistry;
+import Users.TradingUser;
+import Users.TradingUserManager;
+import Users.UserLocks;
+import Users.UserMenuController;
+import Users.UsernameRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+
+public class UserLocksTest {
+    private static final String CITY = "Toronto";
+    private static final int THREADS = 8;
+    private static final int PAIRS_PER_THREAD = 20;
+    private static final int TRADES_PER_THREAD = 400;
+    private File directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("shards").toFile();
+    }
+
+    @After
+    public void deleteDirectory() {
+        delete(directory);
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    @Test
+    public void disjointTradesKeepEveryItem() throws Exception {
+        CityShardStore store = new CityShardStore(new File(directory, "shards").getPath());
+        AccountStatusRegistry accountStatuses = new AccountStatusRegistry(new ArrayList<>(), new ArrayList<>(),
+                new ArrayList<>());
+        UsernameRegistry usernames = new UsernameRegistry();
+        TradingUserManager tum = new TradingUserManager(store, accountStatuses, usernames, new UserLocks(4));
+        ActionManager acm = new ActionManager(new LinkedHashMap<>());
+        CurrentTransactionManager tm = new CurrentTransactionManager(
+                new TransactionStore(new File(directory, "transactions").getPath(), 0), acm);
+        PastTransactionManager ptm = new PastTransactionManager(new HashMap<>());
+        AdminManager am = new AdminManager(new ArrayList<>(), accountStatuses, usernames);
+        Supplier<UserMenuController> controllers = () -> new UserMenuController(tum, am, tm, ptm,
+                new ItemManager(store), acm, new HashMap<>(), null, new TradeProposalBoard());
+
+        UserMenuController[][] pairs = new UserMenuController[THREADS * PAIRS_PER_THREAD][];
+        for (int i = 0; i < pairs.length; i++) {
+            pairs[i] = createPair(store, tum, controllers, i);
+        }
+        UUID[][] startingItems = new UUID[pairs.length][];
+        for (int i = 0; i < pairs.length; i++) {
+            startingItems[i] = new UUID[]{inventoryOf(pairs[i][0]).get(0), inventoryOf(pairs[i][1]).get(0)};
+        }
+        tum.addTradingUser("viewer", "password", CITY);
+        TradingUser viewer = tum.getTradingUser("viewer");
+        assertEquals(2 * pairs.length, tum.getAvailableItems(viewer).size());
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int first = t * PAIRS_PER_THREAD;
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int n = 0; n < TRADES_PER_THREAD; n++) {
+                    swap(pairs[first + (n / 2) % PAIRS_PER_THREAD]);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        // every pair traded an even number of times, so each item is back with the user who started with it
+        for (int i = 0; i < pairs.length; i++) {
+            assertEquals(Collections.singletonList(startingItems[i][0]), inventoryOf(pairs[i][0]));
+            assertEquals(Collections.singletonList(startingItems[i][1]), inventoryOf(pairs[i][1]));
+            assertTrue(pairs[i][0].getCurrentTradingUser().getCurrentTransactions().isEmpty());
+        }
+        assertEquals(2 * pairs.length, tum.getAvailableItems(viewer).size());
+    }
+
+    @Test
+    public void callAllWaitsForChanges() throws Exception {
+        UserLocks locks = new UserLocks(8);
+        UUID userId = UUID.randomUUID();
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean changing = new AtomicBoolean();
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        Future<?> change = pool.submit(() -> locks.run(userId, () -> {
+            changing.set(true);
+            holding.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            changing.set(false);
+        }));
+        holding.await();
+
+        Thread snapshot = new Thread(() -> locks.callAll(() -> {
+            assertFalse(changing.get());
+            return null;
+        }));
+        snapshot.start();
+        snapshot.join(200);
+        assertTrue(snapshot.isAlive());
+        release.countDown();
+        snapshot.join(10000);
+        assertFalse(snapshot.isAlive());
+        change.get();
+        pool.shutdown();
+
+        // every lock was released, so a user can be changed again
+        assertEquals("done", locks.call(UUID.randomUUID(), UUID.randomUUID(), () -> "done"));
+    }
+
+    /* creates two users who each own an item, and returns a controller logged in as each of them */
+    private static UserMenuController[] createPair(CityShardStore store, TradingUserManager tum,
+                                                   Supplier<UserMenuController> controllers, int i) throws Exception {
+        UserMenuController[] pair = new UserMenuController[2];
+        for (int j = 0; j < 2; j++) {
+            String username = (j == 0 ? "a" : "b") + i;
+            tum.addTradingUser(username, "password", CITY);
+            Item item = new Item("item " + username);
+            store.putItem(item);
+            tum.addItem(tum.getTradingUser(username).getUserId(), item, "inventory");
+            pair[j] = controllers.get();
+            pair[j].setCurrentTradingUser(username);
+        }
+        return pair;
+    }
+
+    private static List<UUID> inventoryOf(UserMenuController umc) {
+        return umc.getCurrentTradingUser().getInventory();
+    }
+
+    /* the first user of a pair proposes to swap items, and both confirm the meeting and the meetup, which completes it */
+    private static void swap(UserMenuController[] pair) throws Exception {
+        UUID item0 = inventoryOf(pair[0]).get(0);
+        UUID item1 = inventoryOf(pair[1]).get(0);
+        TransactionBuilder builder = pair[0].getTransBuilder();
+        builder.declareIntent(pair[1].getCurrentTradingUser().getUserId(), item1);
+        builder.AddItemOffered(item0);
+        builder.buildFirstMeeting(CITY, new Date(), new Date());
+        Transaction transaction = builder.getTransaction();
+        pair[0].transactionUpdate(transaction);
+        for (TransactionActions action : new TransactionActions[]{TransactionActions.CONFIRMMEETINGDETAILS,
+                TransactionActions.CONFIRMMEETUP}) {
+            for (UserMenuController umc : pair) {
+                umc.updateUsers(transaction.getId(), action);
+            }
+        }
+        assertEquals(TransactionStatuses.COMPLETED, transaction.getStatus());
+        assertEquals(Collections.singletonList(item1), inventoryOf(pair[0]));
+        assertEquals(Collections.singletonList(item0), inventoryOf(pair[1]));
+    }
+}
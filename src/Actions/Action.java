@@ -1,7 +1,11 @@
 package Actions;
 
+import Initialization.BinaryFormat;
 import Users.TradingUser;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.UUID;
 
@@ -9,6 +13,10 @@ import java.util.UUID;
  * Represents an undoable action, storing the TradingUser who did the action and the activity/object involved.
  */
 public abstract class Action implements Serializable {
+    private static final long serialVersionUID = -2750442879855898085L;
+    // written in front of an action so that the right subclass is read back
+    private static final byte ADD_OR_DELETE = 0;
+    private static final byte EDIT = 1;
     private UUID id;
     private UUID userId;
 
@@ -17,6 +25,45 @@ public abstract class Action implements Serializable {
         this.userId = userId;
     }
 
+    /**
+     * Reads the fields of an action that was written by writeTo.
+     * @param in where the action is read from
+     * @param version the version of the BinaryFormat the action was written with
+     * @throws IOException if the action could not be read
+     */
+    protected Action(DataInput in, int version) throws IOException {
+        this.id = BinaryFormat.readUUID(in);
+        this.userId = BinaryFormat.readUUID(in);
+    }
+
+    /**
+     * Reads an action that was written by writeTo, as the same subclass it was written as.
+     * @param in where the action is read from
+     * @param version the version of the BinaryFormat the action was written with
+     * @return the action
+     * @throws IOException if the action could not be read
+     */
+    public static Action readFrom(DataInput in, int version) throws IOException {
+        byte type = in.readByte();
+        if (type == ADD_OR_DELETE) {
+            return new AddOrDeleteAction(in, version);
+        } else if (type == EDIT) {
+            return new EditAction(in, version);
+        }
+        throw new IOException("Unknown action type " + type);
+    }
+
+    /**
+     * Writes this action in the BinaryFormat.
+     * @param out where the action is written
+     * @throws IOException if the action could not be written
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeByte(isEditAction() ? EDIT : ADD_OR_DELETE);
+        BinaryFormat.writeUUID(out, id);
+        BinaryFormat.writeUUID(out, userId);
+    }
+
     public abstract boolean isEditAction();
 
     public abstract boolean isAddorDeleteAction();
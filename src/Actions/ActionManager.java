@@ -1,64 +1,166 @@
 package Actions;
 
+import Initialization.Filepaths;
+import Initialization.Journal;
 import Transactions.Transaction;
 import Users.TradingUser;
 
-import java.util.ArrayList;
-import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.UUID;
+import java.util.*;
 
 /**
  * Manages and stores all undoable actions in the system.
+ *
+ * <p>The actions are indexed by their id, by the user who made them, in the order they were made, and, for EditActions,
+ * by the id of the transaction they edited, so an action is found or removed without reading the actions of any other
+ * user.</p>
+ *
+ * <p>The TradingServer's sessions add and remove actions at the same time, so the indexes are only read and changed
+ * while holding this manager's lock, and what is returned from them is a copy.</p>
  */
 public class ActionManager {
-    private final LinkedHashMap<UUID, List<Action>> allActions;
+    private final Map<UUID, Action> actionsById = new HashMap<>();
+    private final LinkedHashMap<UUID, LinkedHashMap<UUID, Action>> actionsByUser = new LinkedHashMap<>();
+    private final Map<UUID, Set<UUID>> editActionsByTransaction = new HashMap<>();
+    private final Filepaths fp = new Filepaths();
+    private Journal journal;
+    private long version = 0;
 
+    /**
+     * Creates an ActionManager from the actions that were loaded.
+     * @param allActions the list of actions made by each user, by the user's id
+     */
     public ActionManager(LinkedHashMap<UUID, List<Action>> allActions) {
-        this.allActions = allActions;
+        for (List<Action> actions : allActions.values()) {
+            for (Action action : actions) {
+                index(action);
+            }
+        }
     }
 
     /**
-     * Getter for the LinkedHashMap of all actions (keys) mapped to the Action's UUID (values).
-     * @return LinkedHashMap of all actions and their UUIDs.
+     * Sets the journal that changes to Actions are appended to.
+     * @param journal the journal of the trading system
      */
-    public LinkedHashMap<UUID, List<Action>> getAllActions() {
-        return allActions;
+    public void setJournal(Journal journal) {
+        this.journal = journal;
     }
 
     /**
-     * Appends an Action to the list of the specified User's actions.
-     * @param newAction new Action object
-     * @param userId the specified TradingUser
+     * Getter for the modification version of this manager, which goes up every time an Action is added or removed.
+     * @return the modification version as a long
      */
-    public void addAction(UUID userId, Action newAction) {
-        if (!allActions.containsKey(userId)) {
-            List<Action> listActions = new ArrayList<>();
-            listActions.add(newAction);
-            allActions.put(userId, listActions);
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /* appends the current list of actions made by the user with userId to the journal */
+    private void recordActions(UUID userId) {
+        version++;
+        if (journal == null) {
+            return;
+        }
+        if (actionsByUser.containsKey(userId)) {
+            journal.put(fp.ACTIONS, userId, new ArrayList<>(actionsByUser.get(userId).values()));
+        } else {
+            journal.remove(fp.ACTIONS, userId);
         }
-        else {
-            allActions.get(userId).add(newAction);
+    }
+
+    private void index(Action action) {
+        actionsById.put(action.getId(), action);
+        actionsByUser.computeIfAbsent(action.getUser(), k -> new LinkedHashMap<>()).put(action.getId(), action);
+        UUID transactionId = transactionOf(action);
+        if (transactionId != null) {
+            editActionsByTransaction.computeIfAbsent(transactionId, k -> new HashSet<>()).add(action.getId());
         }
     }
 
+    /* removes an action from every index, returning false if it was not in them */
+    private boolean unindex(UUID actionId) {
+        Action action = actionsById.remove(actionId);
+        if (action == null) {
+            return false;
+        }
+        LinkedHashMap<UUID, Action> userActions = actionsByUser.get(action.getUser());
+        userActions.remove(actionId);
+        if (userActions.isEmpty()) {
+            actionsByUser.remove(action.getUser());
+        }
+        UUID transactionId = transactionOf(action);
+        if (transactionId != null) {
+            Set<UUID> editActions = editActionsByTransaction.get(transactionId);
+            editActions.remove(actionId);
+            if (editActions.isEmpty()) {
+                editActionsByTransaction.remove(transactionId);
+            }
+        }
+        return true;
+    }
+
+    /* returns the id of the transaction an EditAction edited, or null for any other action */
+    private static UUID transactionOf(Action action) {
+        if (action.isEditAction() && ((EditAction) action).getTransaction() != null) {
+            return ((EditAction) action).getTransaction().getId();
+        }
+        return null;
+    }
+
     /**
-     * Removes selectedAction from allActions.
-     * @param selectedAction
+     * Returns a new LinkedHashMap of the list of actions made by each user (values) mapped to the user's UUID (keys),
+     * in the form they are saved in.
+     * @return LinkedHashMap of all actions by the UUIDs of their users.
      */
-    public void removeAction(Action selectedAction) {
-        for (UUID id : allActions.keySet()) {
-            allActions.get(id).removeIf(action -> action.getId().equals(selectedAction.getId()));
+    public synchronized LinkedHashMap<UUID, List<Action>> getAllActions() {
+        LinkedHashMap<UUID, List<Action>> allActions = new LinkedHashMap<>();
+        for (Map.Entry<UUID, LinkedHashMap<UUID, Action>> entry : actionsByUser.entrySet()) {
+            allActions.put(entry.getKey(), new ArrayList<>(entry.getValue().values()));
         }
+        return allActions;
+    }
 
+    /**
+     * Returns the users who have made actions, in the order they made their first one.
+     * @return an unmodifiable copy of the Set of the UUIDs of the users.
+     */
+    public synchronized Set<UUID> getUsersWithActions() {
+        return Collections.unmodifiableSet(new LinkedHashSet<>(actionsByUser.keySet()));
+    }
+
+    /**
+     * Finds an action by its id.
+     * @param actionId the UUID of the action
+     * @return the action, or null if there is no action with that id
+     */
+    public synchronized Action getAction(UUID actionId) {
+        return actionsById.get(actionId);
+    }
+
+    /**
+     * Appends an Action to the list of actions of the User who made it.
+     * @param newAction new Action object
+     */
+    public synchronized void addAction(Action newAction) {
+        index(newAction);
+        recordActions(newAction.getUser());
+    }
+
+    /**
+     * Removes selectedAction from allActions. If the user who made selectedAction has no other actions, they are
+     * removed from allActions as well.
+     * @param selectedAction
+     */
+    public synchronized void removeAction(Action selectedAction) {
+        if (unindex(selectedAction.getId())) {
+            recordActions(selectedAction.getUser());
+        }
     }
 
     /**
      * Filter list of all actions by a specific user.
      */
-    public List<Action> getActionsByUser(TradingUser user) {
-        if (allActions.containsKey(user.getUserId())) {
-            return allActions.get(user.getUserId());
+    public synchronized List<Action> getActionsByUser(TradingUser user) {
+        if (actionsByUser.containsKey(user.getUserId())) {
+            return new ArrayList<>(actionsByUser.get(user.getUserId()).values());
         }
         return new ArrayList<>(); // if this TradingUser hasn't made any actions yet
     }
@@ -83,12 +185,20 @@ public class ActionManager {
      * @param user
      * @param transaction
      */
-    public void clearPreviousEditActions(TradingUser user, Transaction transaction) {
-        for (EditAction action : getEditActionsByUser(user)) {
-            if (action.getTransaction().getId().equals(transaction.getId())) {
-                allActions.get(user.getUserId()).remove(action);
+    public synchronized void clearPreviousEditActions(TradingUser user, Transaction transaction) {
+        Set<UUID> editActions = editActionsByTransaction.get(transaction.getId());
+        if (editActions == null) {
+            return;
+        }
+        boolean removed = false;
+        for (UUID actionId : new ArrayList<>(editActions)) {
+            if (actionsById.get(actionId).getUser().equals(user.getUserId())) {
+                removed |= unindex(actionId);
             }
         }
+        if (removed) {
+            recordActions(user.getUserId());
+        }
     }
 
 }
@@ -2,6 +2,9 @@ package Actions;
 
 import Items.Item;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.UUID;
 
@@ -9,6 +12,7 @@ import java.util.UUID;
  * Represents an "adding" or "deleting" action, including adding or deleting an Item from a TradingUser's inventory or wishlist.
  */
 public class AddOrDeleteAction extends Action implements Serializable {
+    private static final long serialVersionUID = 3841624520010829032L;
     private Item added = null;
     private Item removed = null;
     private boolean wishlist = false;
@@ -18,6 +22,30 @@ public class AddOrDeleteAction extends Action implements Serializable {
         super(userId);
     }
 
+    AddOrDeleteAction(DataInput in, int version) throws IOException {
+        super(in, version);
+        added = in.readBoolean() ? new Item(in, version) : null;
+        removed = in.readBoolean() ? new Item(in, version) : null;
+        wishlist = in.readBoolean();
+        inventory = in.readBoolean();
+    }
+
+    @Override
+    public void writeTo(DataOutput out) throws IOException {
+        super.writeTo(out);
+        writeItem(out, added);
+        writeItem(out, removed);
+        out.writeBoolean(wishlist);
+        out.writeBoolean(inventory);
+    }
+
+    private void writeItem(DataOutput out, Item item) throws IOException {
+        out.writeBoolean(item != null);
+        if (item != null) {
+            item.writeTo(out);
+        }
+    }
+
     @Override
     public boolean isEditAction() {
         return false;
@@ -4,6 +4,9 @@ import Transactions.Meeting;
 import Transactions.Transaction;
 import Users.TradingUser;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.UUID;
 
@@ -12,6 +15,7 @@ import java.util.UUID;
  * Represents an "edit" action, which includes editing a Meeting's details.
  */
 public class EditAction extends Action implements Serializable {
+    private static final long serialVersionUID = -7427259691449552384L;
     private Transaction transaction;
     private int whichMeeting;
     private Meeting previousMeeting;
@@ -26,6 +30,33 @@ public class EditAction extends Action implements Serializable {
         this.previousMeeting = previousMeeting;
     }
 
+    EditAction(DataInput in, int version) throws IOException {
+        super(in, version);
+        transaction = in.readBoolean() ? Transaction.readFrom(in, version) : null;
+        whichMeeting = in.readInt();
+        previousMeeting = in.readBoolean() ? new Meeting(in, version) : null;
+        newMeeting = in.readBoolean() ? new Meeting(in, version) : null;
+    }
+
+    @Override
+    public void writeTo(DataOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeBoolean(transaction != null);
+        if (transaction != null) {
+            transaction.writeTo(out);
+        }
+        out.writeInt(whichMeeting);
+        writeMeeting(out, previousMeeting);
+        writeMeeting(out, newMeeting);
+    }
+
+    private void writeMeeting(DataOutput out, Meeting meeting) throws IOException {
+        out.writeBoolean(meeting != null);
+        if (meeting != null) {
+            meeting.writeTo(out);
+        }
+    }
+
     public Transaction getTransaction() {
         return transaction;
     }
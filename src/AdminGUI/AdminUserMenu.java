@@ -2,8 +2,6 @@ package AdminGUI;
 
 import Admins.AdminMenuController;
 
-import Initialization.Filepaths;
-import Initialization.Serializer;
 import Popups.PopUpWindow;
 import Popups.ChangePasswordWindow;
 import Presenters.AdminMenuPresenter;
@@ -21,7 +19,6 @@ import java.awt.event.KeyEvent;
 public class AdminUserMenu {
     private final AdminMenuController amc;
     private final TradingUserManager tum;
-    private final Filepaths fp = new Filepaths();
     private final JButton button1 = new JButton();
     private final JButton button2 = new JButton();
     private final JButton button3 = new JButton();
@@ -167,15 +164,7 @@ public class AdminUserMenu {
     }
 
     private void writeData() {
-        Serializer serializer = new Serializer();
-        serializer.writeUsersToFile(fp.USERS, amc.getTUM().getAllTradingUsers());
-        serializer.writeAdminsToFile(fp.ADMINS, amc.getAm().getAllAdmins());
-        serializer.writeItemsToFile(fp.REQUESTEDITEMS, amc.getAllPendingItems());
-        serializer.writeAccountsToFile(fp.FLAGGEDACCOUNTS, amc.getTUM().getFlaggedAccounts());
-        serializer.writeAccountsToFile(fp.FROZENACCOUNTS, amc.getTUM().getFrozenAccounts());
-        serializer.writeItemsMapToFile(fp.ITEMS, amc.getIm().getAllItems());
-        serializer.writeActionsToFile(fp.ACTIONS, amc.getAcm().getAllActions());
-        serializer.writeTransactionsToFile(fp.TRANSACTIONS, amc.getPTM().getAllTransactions());
+        amc.getCheckpointService().checkpoint();
     }
 
 }
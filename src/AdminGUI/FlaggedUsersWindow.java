@@ -4,6 +4,8 @@ import Admins.AdminMenuController;
 import Exceptions.InvalidTradingUserException;
 import Presenters.AdminMenuPresenter;
 import TradingUserGUI.TradingUserProfileWindow;
+import Users.AccountStates;
+import Users.AccountStatusRegistry;
 import Users.TradingUser;
 import Users.TradingUserManager;
 
@@ -11,7 +13,9 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.util.Collections;
 import java.util.List;
 
 public class FlaggedUsersWindow {
@@ -51,6 +55,27 @@ public class FlaggedUsersWindow {
 
         users.setModel(userNames);
 
+        // keeps the list up to date while the window is open
+        AccountStatusRegistry.Listener listener = (userId, state, entered) -> {
+            if (state == AccountStates.FLAGGED) {
+                String username = tum.getUsernameListByID(Collections.singletonList(userId)).get(0);
+                SwingUtilities.invokeLater(() -> {
+                    if (entered && userNames.getIndexOf(username) < 0) {
+                        userNames.addElement(username);
+                    } else if (!entered) {
+                        userNames.removeElement(username);
+                    }
+                });
+            }
+        };
+        tum.getAccountStatuses().addListener(listener);
+        frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                tum.getAccountStatuses().removeListener(listener);
+            }
+        });
+
 
         freezeButton.addActionListener(new ActionListener() {
             @Override
@@ -71,10 +96,7 @@ public class FlaggedUsersWindow {
             @Override
             public void actionPerformed(ActionEvent e) {
                 if (!(currUser == null)) {
-                    List<String> flaggedUsernames = tum.convertFlaggedUsersToUsernames();
-                    if (flaggedUsernames.contains(currUser)) {
-                        tum.removeFlaggedUsername(currUser);
-                    }
+                    tum.removeFlaggedUsername(currUser);
                 }
                 frame.dispatchEvent(new WindowEvent(frame, WindowEvent.WINDOW_CLOSING));
             }});
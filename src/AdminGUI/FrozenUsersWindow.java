@@ -4,6 +4,8 @@ import Admins.AdminMenuController;
 import Exceptions.InvalidTradingUserException;
 import Presenters.AdminMenuPresenter;
 import TradingUserGUI.TradingUserProfileWindow;
+import Users.AccountStates;
+import Users.AccountStatusRegistry;
 import Users.TradingUser;
 import Users.TradingUserManager;
 
@@ -11,6 +13,9 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.Collections;
 import java.util.List;
 
 public class FrozenUsersWindow {
@@ -49,6 +54,27 @@ public class FrozenUsersWindow {
         }
         users.setModel(userNames);
 
+        // keeps the list up to date while the window is open
+        AccountStatusRegistry.Listener listener = (userId, state, entered) -> {
+            if (state == AccountStates.FROZEN) {
+                String username = tum.getUsernameListByID(Collections.singletonList(userId)).get(0);
+                SwingUtilities.invokeLater(() -> {
+                    if (entered && userNames.getIndexOf(username) < 0) {
+                        userNames.addElement(username);
+                    } else if (!entered) {
+                        userNames.removeElement(username);
+                    }
+                });
+            }
+        };
+        tum.getAccountStatuses().addListener(listener);
+        frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                tum.getAccountStatuses().removeListener(listener);
+            }
+        });
+
 
         users.addActionListener(new ActionListener() {
             @Override
@@ -62,12 +88,8 @@ public class FrozenUsersWindow {
             @Override
             public void actionPerformed(ActionEvent e) {
                 if (!(currUsername == null)) {
-                    List<String> frozenUsernames = tum.convertFrozenUsersToUsernames();
-                    if (frozenUsernames.contains(currUsername)) {
-                        tum.removeFrozenUsername(currUsername);
-                    }
-
-            }
+                    tum.removeFrozenUsername(currUsername);
+                }
         }});
 
         userProfile.addActionListener(new ActionListener() {
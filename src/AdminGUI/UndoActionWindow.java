@@ -44,13 +44,10 @@ public class UndoActionWindow {
 
         DefaultListModel<String> users = new DefaultListModel<>(); // list of all users who have made undoable actions
         ArrayList<UUID> listUsers = new ArrayList<>();
-        for (UUID userId : am.getAllActions().keySet()) {
-            // TradingUser user = amc.getTUM().getTradingUserById(userId);
-            while (!listUsers.contains(userId)) {
-                String username = amc.getTUM().getTradingUserById(userId).getUsername();
-                users.addElement(username); // usernames should just
-                listUsers.add(userId);
-            }
+        for (UUID userId : am.getUsersWithActions()) {
+            String username = amc.getTUM().getTradingUserById(userId).getUsername();
+            users.addElement(username);
+            listUsers.add(userId);
         }
 
         JList<String> allUsers = new JList<>(users);
@@ -81,12 +78,13 @@ public class UndoActionWindow {
         DefaultListModel<String> actions = new DefaultListModel<>(); // list of all actions by the selected user
         ArrayList<Action> listActions = new ArrayList<>();
         TradingUser selectedUser = amc.getTUM().getTradingUserById(selectedUserId);
-        if (am.getActionsByUser(selectedUser) == null) {
+        List<Action> userActions = am.getActionsByUser(selectedUser);
+        if (userActions.isEmpty()) {
             PopUpWindow pw = new PopUpWindow(amp.noUndoableAction);
             pw.display();
         }
         else {
-            for (Action action : am.getActionsByUser(selectedUser)) {
+            for (Action action : userActions) {
                 actions.addElement(action.toString());
                 listActions.add(action);
             }
@@ -1,10 +1,18 @@
 package Admins;
 
 import Exceptions.InvalidAdminException;
+import Initialization.Filepaths;
+import Initialization.Journal;
+import Users.AccountStates;
+import Users.AccountStatusRegistry;
 import Users.TradingUser;
+import Users.UserRoles;
+import Users.UsernameRegistry;
 
-import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 
 /**
@@ -14,27 +22,56 @@ import java.util.List;
  */
 public class AdminManager {
     private List<AdminUser> allAdmins;
+    private final Map<UUID, AdminUser> idToAdmin = new HashMap<>();
+    private final UsernameRegistry usernames;
 
     /**
-     * A list of Users that have had their account flagged to be frozen automatically by the system.
+     * The registry of the Users that have had their account flagged to be frozen automatically by the system, frozen,
+     * or requested their account be unfrozen after approval by an Admin.
      */
-    private List<TradingUser> flaggedAccounts;
+    private final AccountStatusRegistry accountStatuses;
 
-    /**
-     * A list of Users that have requested their account be unfrozen after approval by an Admin.
-     */
-    private List<TradingUser> frozenAccounts;
+    private final Filepaths fp = new Filepaths();
+    private Journal journal;
+    private long version = 0;
 
     /**
      * Creates an AdminManager.
      * @param admins list of all AdminUsers in the system
-     * @param flaggedAccounts list of all Users that have had their account flagged to be frozen automatically by the system.
-     * @param frozenAccounts list of all Users tha have had their account frozen after approval by an Admin
+     * @param accountStatuses the registry of the flagged and frozen accounts, shared with the TradingUserManager
+     * @param usernames the registry of the usernames of all users, shared with the other user managers
      */
-    public AdminManager(List<AdminUser> admins, List<TradingUser> flaggedAccounts, List<TradingUser> frozenAccounts) {
+    public AdminManager(List<AdminUser> admins, AccountStatusRegistry accountStatuses, UsernameRegistry usernames) {
         allAdmins = admins;
-        this.flaggedAccounts = flaggedAccounts;
-        this.frozenAccounts = frozenAccounts;
+        this.accountStatuses = accountStatuses;
+        this.usernames = usernames;
+        for (AdminUser admin : admins) {
+            idToAdmin.put(admin.getUserId(), admin);
+        }
+    }
+
+    /**
+     * Sets the journal that changes to AdminUsers are appended to.
+     * @param journal the journal of the trading system
+     */
+    public void setJournal(Journal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Getter for the modification version of this manager, which goes up every time an AdminUser is changed.
+     * @return the modification version as a long
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /* appends the current state of admin to the journal */
+    private void recordAdmin(AdminUser admin) {
+        version++;
+        if (journal != null) {
+            journal.put(fp.ADMINS, admin.getUserId(), admin);
+        }
     }
 
     /**
@@ -47,8 +84,10 @@ public class AdminManager {
         AdminUser newAdmin = new AdminUser(username, password);
         // if no one else shares the same username, we add to the lists of all users and admins and
         // we return the admin
-        if (checkAvailableUsername(username)) {
+        if (usernames.register(username, UserRoles.ADMIN, newAdmin.getUserId())) {
             allAdmins.add(newAdmin);
+            idToAdmin.put(newAdmin.getUserId(), newAdmin);
+            recordAdmin(newAdmin);
             return newAdmin;
         } else { throw new InvalidAdminException(); }
     }
@@ -60,8 +99,10 @@ public class AdminManager {
      * @throws InvalidAdminException the inputted username does not match any existing Admins.AdminUser account in the system.
      */
     public AdminUser getAdmin(String username) throws InvalidAdminException {
-        for (AdminUser admin : allAdmins) if (admin.getUsername().equals(username)) return admin;
-        throw new InvalidAdminException();
+        UUID id = usernames.getId(username, UserRoles.ADMIN);
+        AdminUser admin = id == null ? null : idToAdmin.get(id);
+        if (admin == null) throw new InvalidAdminException();
+        return admin;
     }
 
     /**
@@ -79,39 +120,58 @@ public class AdminManager {
      * @return boolean whether the inputs match an existing AdminUser account or not.
      */
     public boolean validAdmin(String username, String password) {
-        for (AdminUser admin : allAdmins)
-            if (admin.getUsername().equals(username) && admin.getPassword().equals(password)) return true;
-        return false;
+        UUID id = usernames.getId(username, UserRoles.ADMIN);
+        AdminUser admin = id == null ? null : idToAdmin.get(id);
+        return admin != null && admin.getPassword().equals(password);
     }
 
     /**
-     * Getter for this AdminMenu's list of all Users who are frozen.
-     * @return a list of all users who's accounts are frozen.
+     * Getter for this AdminMenu's list of the ids of all Users who are frozen.
+     * @return a list of the ids of all users who's accounts are frozen.
      */
-    public List<TradingUser> getFrozenAccounts() { return frozenAccounts; }
+    public List<UUID> getFrozenAccounts() { return accountStatuses.getIds(AccountStates.FROZEN); }
 
     /**
-     * Getter for this AdminMenu's list of all flagged Users that have been flagged to be frozen by the system.
-     * @return a list of all users that have been flagged to be frozen.
+     * Adds a frozen TradingUser to the Users that have requested their account be unfrozen, unless they already have.
+     * @param tradingUser the frozen TradingUser
      */
-    public List<TradingUser> getFlaggedAccounts() { return flaggedAccounts; }
+    public void requestUnfreeze(TradingUser tradingUser) {
+        accountStatuses.add(tradingUser.getUserId(), AccountStates.UNFREEZE_REQUESTED);
+    }
 
     /**
-     * Checks whether the input username is valid.
+     * Getter for the ids of all Users that have requested their account be unfrozen.
+     * @return a list of the ids, in the order they requested
+     */
+    public List<UUID> getUnfreezeRequests() { return accountStatuses.getIds(AccountStates.UNFREEZE_REQUESTED); }
+
+    /**
+     * Getter for this AdminMenu's list of the ids of all flagged Users that have been flagged to be frozen by the system.
+     * @return a list of the ids of all users that have been flagged to be frozen.
+     */
+    public List<UUID> getFlaggedAccounts() { return accountStatuses.getIds(AccountStates.FLAGGED); }
+
+    /**
+     * Checks whether the input username is not used by any user, whatever their role.
      *
      * @param username online identifier of a Users.TradingUser
      * @return True or False as boolean
      */
     public boolean checkAvailableUsername(String username) {
-        for (AdminUser user : allAdmins) {
-            if (user.getUsername().equals(username)) {
-                return false;
-            }
-        }
-        return true;
+        return usernames.isAvailable(username);
     }
 
     public void changePassword(AdminUser admin, String password) {
         admin.setPassword(password);
+        recordAdmin(admin);
+    }
+
+    /**
+     * Makes admin the first admin, which is the only admin that can create other admins.
+     * @param admin the AdminUser that was created first
+     */
+    public void setFirstAdmin(AdminUser admin) {
+        admin.setFirstAdmin(true);
+        recordAdmin(admin);
     }
 }
\ No newline at end of file
@@ -7,10 +7,14 @@ import Exceptions.InvalidAdminException;
 import Exceptions.InvalidItemException;
 import Exceptions.InvalidTradingUserException;
 import Exceptions.InvalidTransactionException;
+import Initialization.CheckpointService;
 import Items.Item;
 import Items.ItemManager;
 import Transactions.Meeting;
 import Transactions.PastTransactionManager;
+import Transactions.TradeMatcher;
+import Transactions.TradeProposal;
+import Transactions.TradeProposalBoard;
 import Transactions.Transaction;
 import Users.TradingUser;
 import Users.TradingUserManager;
@@ -28,27 +32,35 @@ public class AdminMenuController {
     private AdminUser currentAdmin = null; // admin that's logged in
     private final AdminManager am;
     private final TradingUserManager um;
-    protected final Map<Item, TradingUser> allPendingItems;
+    protected final Map<Item, UUID> allPendingItems;
     private final ItemManager im;
     private final ActionManager acm;
     private final PastTransactionManager ptm;
+    private final CheckpointService checkpointService;
+    private final TradeProposalBoard proposalBoard;
 
     /**
      * Constructs an instance an AdminMenuController.
      * @param adminManager manager of all AdminUsers
      * @param tradingUserManager manager of all TradingUsers
-     * @param pendingItems list of all pending items that have been requested by users to be approved
+     * @param pendingItems map of all pending items that have been requested by users to be approved, to the id of the
+     *                     user who requested them
      * @param items manager of all Items
+     * @param checkpointService saves the managers' data in the background
+     * @param proposalBoard the trades found by the latest batch, which TradingUsers are served from
      */
     public AdminMenuController(AdminManager adminManager, TradingUserManager tradingUserManager,
-                               Map<Item, TradingUser> pendingItems, ItemManager items, ActionManager actionManager,
-                               PastTransactionManager pastTransactionManager) {
+                               Map<Item, UUID> pendingItems, ItemManager items, ActionManager actionManager,
+                               PastTransactionManager pastTransactionManager, CheckpointService checkpointService,
+                               TradeProposalBoard proposalBoard) {
         allPendingItems = pendingItems;
         um = tradingUserManager;
         am = adminManager;
         im = items;
         acm = actionManager;
         ptm = pastTransactionManager;
+        this.checkpointService = checkpointService;
+        this.proposalBoard = proposalBoard;
     }
 
     /**
@@ -56,19 +68,31 @@ public class AdminMenuController {
      * @param item the Item that has been approved.
      */
     public void approvePendingItem(Item item) {
-        try {
-            String username = allPendingItems.get(item).getUsername();
-            TradingUser user = um.getTradingUser(username);
-            im.addItem(item); // add to allItems master list of all existing items
-            um.addItem(user.getUserId(), item, "inventory"); // add item to the TradingUser's inventory
-            allPendingItems.remove(item);
-            AddOrDeleteAction action = new AddOrDeleteAction(user.getUserId());
-            action.setIsInventory();
-            action.setAdded(item);
-            acm.addAction(user.getUserId(), action);
-        } catch (InvalidTradingUserException e) {
-            //
+        UUID userId = allPendingItems.get(item);
+        if (userId == null || um.getTradingUserById(userId) == null) {
+            return;
         }
+        im.addItem(item); // add to allItems master list of all existing items
+        um.addItem(userId, item, "inventory"); // add item to the TradingUser's inventory
+        allPendingItems.remove(item);
+        AddOrDeleteAction action = new AddOrDeleteAction(userId);
+        action.setIsInventory();
+        action.setAdded(item);
+        acm.addAction(action);
+    }
+
+    /**
+     * Finds the trades in every city in which every TradingUser receives an item on their wishlist, and puts them on
+     * the board that TradingUsers are served their proposals from. This reads every TradingUser, and keeps them from
+     * being changed until it is done, so it is run as a nightly batch by the TradeMatchingService.
+     * @return the TradeProposals of every city, shorter cycles first, with each TradingUser in at most one
+     */
+    public List<TradeProposal> matchAllTrades() {
+        // a TradingUser who changes while the cities are matched could be proposed an item they no longer have
+        List<TradeProposal> proposals = um.callWhileUnchanged(
+                () -> new TradeMatcher().match(um.getTradableUsersByCity()));
+        proposalBoard.publish(proposals);
+        return proposals;
     }
 
     /**
@@ -103,7 +127,7 @@ public class AdminMenuController {
             AddOrDeleteAction action = new AddOrDeleteAction(tradingUserId);
             action.setIsWishlist();
             action.setAdded(item);
-            acm.addAction(tradingUserId, action);
+            acm.addAction(action);
             um.addItem(tradingUserId, item, "wishlist");
             im.addItem(item);
             isSuccessful = true;
@@ -111,7 +135,7 @@ public class AdminMenuController {
             AddOrDeleteAction action = new AddOrDeleteAction(tradingUserId);
             action.setIsInventory();
             action.setAdded(item);
-            acm.addAction(tradingUserId, action);
+            acm.addAction(action);
             um.addItem(tradingUserId, item, "inventory");
             im.addItem(item);
             isSuccessful = true;
@@ -173,9 +197,9 @@ public class AdminMenuController {
 
     /**
      * Returns a map of all pending items that TradingUser's have requested to be added to their inventory.
-     * @return Map of each pending item and the TradingUser that requested it.
+     * @return Map of each pending item and the id of the TradingUser that requested it.
      */
-    public Map<Item, TradingUser> getAllPendingItems() {
+    public Map<Item, UUID> getAllPendingItems() {
         return allPendingItems;
     }
 
@@ -188,7 +212,7 @@ public class AdminMenuController {
     public TradingUser getItemOwner(Item searchItem) throws InvalidItemException {
         for (Item item : allPendingItems.keySet()){
             if (item.getId().equals(searchItem.getId())){
-                return allPendingItems.get(item);
+                return um.getTradingUserById(allPendingItems.get(item));
             }
         }
        throw new InvalidItemException("item not found in allPendingItems");
@@ -218,6 +242,14 @@ public class AdminMenuController {
         return acm;
     }
 
+    /**
+     * Getter for the CheckpointService.
+     * @return CheckpointService
+     */
+    public CheckpointService getCheckpointService() {
+        return checkpointService;
+    }
+
     /**
      * Removes an item from the list of all pending items if the admin has decided to reject it.
      * @param item item that was rejected
@@ -235,25 +267,17 @@ public class AdminMenuController {
         if (action.wasAdded()) {
             if (action.isInventory()) {
                 um.removeItem(action.getUser(), action.getItem(), "inventory");
-                acm.getAllActions().get(action.getUser()).remove(action);
-                removeUserFromAllActions(action.getUser());
                 acm.removeAction(action);
             } else if (action.isWishlist()) {
                 um.removeItem(action.getUser(), action.getItem(), "wishlist");
-                acm.getAllActions().get(action.getUser()).remove(action);
-                removeUserFromAllActions(action.getUser());
                 acm.removeAction(action);
             }
         } else if (action.wasRemoved()) {
             if (action.isInventory()) {
                 um.addItem(action.getUser(), action.getItem(), "inventory");
-                acm.getAllActions().get(action.getUser()).remove(action);
-                removeUserFromAllActions(action.getUser());
                 acm.removeAction(action);
             } else if (action.isWishlist()) {
                 um.addItem(action.getUser(), action.getItem(), "wishlist");
-                acm.getAllActions().get(action.getUser()).remove(action);
-                removeUserFromAllActions(action.getUser());
                 acm.removeAction(action);
             }
         }
@@ -265,23 +289,11 @@ public class AdminMenuController {
      */
     public void undoEditAction(EditAction action) {
         try {
-            Transaction t = ptm.getTransactionFromId(action.getTransaction().getId());
-            List<Meeting> meetings = t.getTransactionMeetings();
-            meetings.set(action.getWhichMeeting(), action.getPreviousMeeting());
-            t.setMeetings(meetings);
+            ptm.setMeeting(action.getTransaction().getId(), action.getWhichMeeting(), action.getPreviousMeeting());
             acm.removeAction(action);
         } catch (InvalidTransactionException e) {
             System.out.println("An exception was caught :(");
         }
     }
 
-    /**
-     * removes user from list of all actions if that user has no undoable actions
-     */
-    private void removeUserFromAllActions(UUID userId) {
-        if (acm.getAllActions().get(userId).isEmpty()) {
-            acm.getAllActions().remove(userId);
-        }
-    }
-
 }
\ No newline at end of file
@@ -1,6 +1,10 @@
 package Admins;
 
 import Users.User;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
 
 /**
@@ -8,6 +12,7 @@ import java.io.Serializable;
  * Represents an administrative user in the trading system.
  */
 public class AdminUser extends User implements Serializable {
+    private static final long serialVersionUID = 3591919514175582458L;
     private boolean firstAdmin = false; // only the FIRST AdminUser will have firstAdmin = true, no one else
 
     /**
@@ -17,6 +22,28 @@ public class AdminUser extends User implements Serializable {
         super(username, password);
     }
 
+    /**
+     * Reads an AdminUser that was written by writeTo.
+     * @param in where the AdminUser is read from
+     * @param version the version of the BinaryFormat the AdminUser was written with
+     * @throws IOException if the AdminUser could not be read
+     */
+    public AdminUser(DataInput in, int version) throws IOException {
+        super(in, version);
+        firstAdmin = in.readBoolean();
+    }
+
+    /**
+     * Writes this AdminUser in the BinaryFormat.
+     * @param out where the AdminUser is written
+     * @throws IOException if the AdminUser could not be written
+     */
+    @Override
+    public void writeTo(DataOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeBoolean(firstAdmin);
+    }
+
     /**
      * Getter for if this Admins.AdminUser is the initial administrative user
      * @return boolean whether Admins.AdminUser is initial user
@@ -1,9 +1,7 @@
 package DemoUserGUI;
 
-import Initialization.Filepaths;
 import Initialization.LoginController;
 import Popups.PopUpWindow;
-import Initialization.Serializer;
 import Presenters.UserMenuPresenter;
 import TradingUserGUI.AvailableItemsWindow;
 import Users.DemoMenuController;
@@ -21,7 +19,6 @@ public class DemoUserMenu {
     private final UserMenuController umc;
     private final UserMenuPresenter ump = new UserMenuPresenter();
     private final LoginController lc;
-    private final Filepaths fp = new Filepaths();
     private final JButton button1 = new JButton();
     private final JButton button2 = new JButton();
     private final JButton button3 = new JButton();
@@ -149,7 +146,6 @@ public class DemoUserMenu {
     }
 
     private void writeData() {
-        Serializer serializer = new Serializer();
-        serializer.writeDemoUsersToFile(fp.DEMOUSERS, dmc.getDum().getAllDemoUsers());
+        umc.getCheckpointService().checkpoint();
     }
 }
@@ -0,0 +1,233 @@
+package Initialization;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * <h1>Initialization.BinaryFormat</h1>
+ * The building blocks of the binary format that the Serializer writes.
+ *
+ * <p>Every file starts with MAGIC followed by the VERSION it was written with. The classes that are saved write their
+ * own fields in a fixed order using the methods below, and read them back in the same order, checking the version
+ * where a field was added later. A UUID is stored as two longs, a String as its length followed by its UTF-8 bytes,
+ * and a Date as its time in milliseconds.</p>
+ */
+public final class BinaryFormat {
+    /**
+     * The first four bytes of every file written in this format ("TRDS").
+     */
+    public static final int MAGIC = 0x54524453;
+
+    /**
+     * The first four bytes of a file written in this format whose contents, after the version, are compressed in
+     * blocks by BlockDeflaterOutputStream ("TRDZ").
+     */
+    public static final int COMPRESSED_MAGIC = 0x5452445A;
+
+    /**
+     * The version of the format that is currently written.
+     * <ul>
+     *     <li>1: the first version.</li>
+     *     <li>2: flagged and frozen accounts, and the owners of requested items, are saved as user ids.</li>
+     *     <li>3: the directory of the CityShardStore saves the wishlist of every TradingUser.</li>
+     *     <li>4: the TransactionHistory of a TradingUser saves its ActivityCounter.</li>
+     *     <li>5: the TransactionHistory of a TradingUser saves its trading partners by id.</li>
+     *     <li>6: a file of transactions saves the TransactionSummary of each transaction ahead of the
+     *     transactions.</li>
+     *     <li>7: a file of transactions saves the id and length of each transaction ahead of the transactions, and a
+     *     stamp that changes every time it is written, so that one transaction can be read without the others.</li>
+     *     <li>8: the directory of the CityShardStore no longer saves wishlists, which each shard indexes from the
+     *     TradingUsers saved in it.</li>
+     * </ul>
+     */
+    public static final short VERSION = 8;
+
+    private BinaryFormat() {}
+
+    /**
+     * Writes a UUID that is never null.
+     * @param out where the UUID is written
+     * @param id the UUID being written
+     * @throws IOException if the UUID could not be written
+     */
+    public static void writeUUID(DataOutput out, UUID id) throws IOException {
+        out.writeLong(id.getMostSignificantBits());
+        out.writeLong(id.getLeastSignificantBits());
+    }
+
+    /**
+     * Reads a UUID written by writeUUID.
+     * @param in where the UUID is read from
+     * @return the UUID
+     * @throws IOException if the UUID could not be read
+     */
+    public static UUID readUUID(DataInput in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    /**
+     * Writes a UUID that may be null.
+     * @param out where the UUID is written
+     * @param id the UUID being written, or null
+     * @throws IOException if the UUID could not be written
+     */
+    public static void writeNullableUUID(DataOutput out, UUID id) throws IOException {
+        out.writeBoolean(id != null);
+        if (id != null) {
+            writeUUID(out, id);
+        }
+    }
+
+    /**
+     * Reads a UUID written by writeNullableUUID.
+     * @param in where the UUID is read from
+     * @return the UUID, or null
+     * @throws IOException if the UUID could not be read
+     */
+    public static UUID readNullableUUID(DataInput in) throws IOException {
+        return in.readBoolean() ? readUUID(in) : null;
+    }
+
+    /**
+     * Writes a List of UUID in which every element is not null.
+     * @param out where the list is written
+     * @param ids the List of UUID being written
+     * @throws IOException if the list could not be written
+     */
+    public static void writeUUIDList(DataOutput out, List<UUID> ids) throws IOException {
+        out.writeInt(ids.size());
+        for (UUID id : ids) {
+            writeUUID(out, id);
+        }
+    }
+
+    /**
+     * Reads the elements of a List of UUID written by writeUUIDList into ids.
+     * @param in where the list is read from
+     * @param ids the List the elements are added to
+     * @throws IOException if the list could not be read
+     */
+    public static void readUUIDList(DataInput in, List<UUID> ids) throws IOException {
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            ids.add(readUUID(in));
+        }
+    }
+
+    /**
+     * Writes a List of UUID which may contain null.
+     * @param out where the list is written
+     * @param ids the List of UUID being written
+     * @throws IOException if the list could not be written
+     */
+    public static void writeNullableUUIDList(DataOutput out, List<UUID> ids) throws IOException {
+        out.writeInt(ids.size());
+        for (UUID id : ids) {
+            writeNullableUUID(out, id);
+        }
+    }
+
+    /**
+     * Reads a List of UUID written by writeNullableUUIDList.
+     * @param in where the list is read from
+     * @return a new List of UUID
+     * @throws IOException if the list could not be read
+     */
+    public static List<UUID> readNullableUUIDList(DataInput in) throws IOException {
+        int size = in.readInt();
+        List<UUID> ids = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            ids.add(readNullableUUID(in));
+        }
+        return ids;
+    }
+
+    /**
+     * Writes a String that may be null.
+     * @param out where the String is written
+     * @param s the String being written, or null
+     * @throws IOException if the String could not be written
+     */
+    public static void writeString(DataOutput out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Reads a String written by writeString.
+     * @param in where the String is read from
+     * @return the String, or null
+     * @throws IOException if the String could not be read
+     */
+    public static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a Date that may be null.
+     * @param out where the Date is written
+     * @param date the Date being written, or null
+     * @throws IOException if the Date could not be written
+     */
+    public static void writeDate(DataOutput out, Date date) throws IOException {
+        out.writeBoolean(date != null);
+        if (date != null) {
+            out.writeLong(date.getTime());
+        }
+    }
+
+    /**
+     * Reads a Date written by writeDate.
+     * @param in where the Date is read from
+     * @return the Date, or null
+     * @throws IOException if the Date could not be read
+     */
+    public static Date readDate(DataInput in) throws IOException {
+        return in.readBoolean() ? new Date(in.readLong()) : null;
+    }
+
+    /**
+     * Writes an enum constant that may be null.
+     * @param out where the constant is written
+     * @param e the constant being written, or null
+     * @throws IOException if the constant could not be written
+     */
+    public static void writeEnum(DataOutput out, Enum<?> e) throws IOException {
+        out.writeByte(e == null ? -1 : e.ordinal());
+    }
+
+    /**
+     * Reads an enum constant written by writeEnum.
+     * @param in where the constant is read from
+     * @param values every constant of the enum, as returned by its values() method
+     * @return the constant, or null
+     * @throws IOException if the constant could not be read
+     */
+    public static <E extends Enum<E>> E readEnum(DataInput in, E[] values) throws IOException {
+        int ordinal = in.readByte();
+        if (ordinal < 0) {
+            return null;
+        }
+        if (ordinal >= values.length) {
+            throw new IOException("Unknown constant " + ordinal);
+        }
+        return values[ordinal];
+    }
+}
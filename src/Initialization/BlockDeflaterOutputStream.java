@@ -0,0 +1,121 @@
+package Initialization;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * <h1>Initialization.BlockDeflaterOutputStream</h1>
+ * Compresses everything written to it in independent blocks.
+ *
+ * <p>The data is cut into blocks of blockSize bytes, and each block is compressed on its own with a Deflater, so that
+ * the blocks can be decompressed in any order, and in parallel, by BlockInflaterInputStream. Each block is written as
+ * its uncompressed length, its compressed length, and the compressed bytes. The last block is followed by a length of
+ * 0, which is written by finish.</p>
+ */
+public class BlockDeflaterOutputStream extends FilterOutputStream {
+    /**
+     * The default number of uncompressed bytes in each block.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 1 << 18;
+
+    private final Deflater deflater;
+    private final byte[] block;
+    private byte[] compressed;
+    private int count = 0;
+    private boolean finished = false;
+
+    /**
+     * Constructs a BlockDeflaterOutputStream that writes blocks of the default size to out.
+     * @param out where the compressed blocks are written
+     * @param level the compression level, from Deflater.BEST_SPEED to Deflater.BEST_COMPRESSION
+     */
+    public BlockDeflaterOutputStream(OutputStream out, int level) {
+        this(out, level, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Constructs a BlockDeflaterOutputStream that writes blocks of blockSize bytes to out.
+     * @param out where the compressed blocks are written
+     * @param level the compression level, from Deflater.BEST_SPEED to Deflater.BEST_COMPRESSION
+     * @param blockSize the number of uncompressed bytes in each block
+     */
+    public BlockDeflaterOutputStream(OutputStream out, int level, int blockSize) {
+        super(out);
+        deflater = new Deflater(level);
+        block = new byte[blockSize];
+        compressed = new byte[blockSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        block[count++] = (byte) b;
+        if (count == block.length) {
+            writeBlock();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int n = Math.min(len, block.length - count);
+            System.arraycopy(b, off, block, count, n);
+            count += n;
+            off += n;
+            len -= n;
+            if (count == block.length) {
+                writeBlock();
+            }
+        }
+    }
+
+    /**
+     * Compresses and writes the last block and the end marker, without closing the stream underneath. Nothing can be
+     * written afterwards.
+     * @throws IOException if the blocks could not be written
+     */
+    public void finish() throws IOException {
+        if (!finished) {
+            writeBlock();
+            writeInt(0);
+            finished = true;
+            deflater.end();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        finish();
+        super.close();
+    }
+
+    private void writeBlock() throws IOException {
+        if (count == 0) {
+            return;
+        }
+        deflater.reset();
+        deflater.setInput(block, 0, count);
+        deflater.finish();
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == compressed.length) {
+                // data that does not compress can come out slightly larger than it went in
+                compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            length += deflater.deflate(compressed, length, compressed.length - length);
+        }
+        writeInt(count);
+        writeInt(length);
+        out.write(compressed, 0, length);
+        count = 0;
+    }
+
+    private void writeInt(int v) throws IOException {
+        out.write(v >>> 24);
+        out.write(v >>> 16);
+        out.write(v >>> 8);
+        out.write(v);
+    }
+}
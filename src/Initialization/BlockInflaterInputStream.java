@@ -0,0 +1,133 @@
+package Initialization;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * <h1>Initialization.BlockInflaterInputStream</h1>
+ * Reads the blocks written by BlockDeflaterOutputStream, decompressing several of them in parallel.
+ *
+ * <p>Up to readAhead blocks past the one being read are decompressed on the executor while the current block is being
+ * read, so reading is not held up by decompression and only readAhead blocks are ever held in memory.</p>
+ */
+public class BlockInflaterInputStream extends InputStream {
+    private final DataInputStream in;
+    private final Executor executor;
+    private final int readAhead;
+    private final ArrayDeque<CompletableFuture<byte[]>> pending = new ArrayDeque<>();
+    private boolean lastBlockRead = false;
+    private byte[] block = new byte[0];
+    private int position = 0;
+
+    /**
+     * Constructs a BlockInflaterInputStream that reads compressed blocks from in.
+     * @param in where the compressed blocks are read from
+     * @param executor the threads that decompress the blocks
+     * @param readAhead the number of blocks that are decompressed ahead of the one being read
+     */
+    public BlockInflaterInputStream(InputStream in, Executor executor, int readAhead) {
+        this.in = new DataInputStream(in);
+        this.executor = executor;
+        this.readAhead = Math.max(1, readAhead);
+    }
+
+    @Override
+    public int read() throws IOException {
+        while (position == block.length) {
+            if (!nextBlock()) {
+                return -1;
+            }
+        }
+        return block[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (position == block.length) {
+            if (!nextBlock()) {
+                return -1;
+            }
+        }
+        int n = Math.min(len, block.length - position);
+        System.arraycopy(block, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return block.length - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Moves on to the next decompressed block.
+     * @return false iff there are no more blocks
+     */
+    private boolean nextBlock() throws IOException {
+        readAhead();
+        CompletableFuture<byte[]> next = pending.poll();
+        if (next == null) {
+            return false;
+        }
+        try {
+            block = next.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        }
+        position = 0;
+        readAhead();
+        return true;
+    }
+
+    /**
+     * Reads compressed blocks and starts decompressing them until readAhead blocks are pending.
+     */
+    private void readAhead() throws IOException {
+        while (!lastBlockRead && pending.size() < readAhead) {
+            int length = in.readInt();
+            if (length == 0) {
+                lastBlockRead = true;
+                return;
+            }
+            byte[] compressed = new byte[in.readInt()];
+            in.readFully(compressed);
+            pending.add(CompletableFuture.supplyAsync(() -> inflate(compressed, length), executor));
+        }
+    }
+
+    private static byte[] inflate(byte[] compressed, int length) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] block = new byte[length];
+            int n = 0;
+            while (n < length) {
+                int inflated = inflater.inflate(block, n, length - n);
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new CompletionException(new IOException("a compressed block is shorter than its length"));
+                }
+                n += inflated;
+            }
+            return block;
+        } catch (DataFormatException e) {
+            throw new CompletionException(new IOException(e));
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package Initialization;
+
+import java.awt.EventQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h1>Initialization.CheckpointService</h1>
+ * Saves the managers' data in the background, on a fixed interval and whenever a user logs out, so that the GUI never
+ * waits for the disk.
+ *
+ * <p>A checkpoint is taken in two steps. First the DataSaver encodes every change on the thread the managers are changed
+ * on, which is the Swing event dispatch thread for the GUI, so the encoded data is consistent. The TradingServer's
+ * managers guard themselves, so its checkpoints are encoded on whichever thread takes them. The encoded files are then
+ * written on a single background thread, one checkpoint at a time. A shutdown hook waits for the last checkpoint to be
+ * written before the program exits.</p>
+ */
+public class CheckpointService {
+    /**
+     * The default number of seconds between checkpoints.
+     */
+    public static final int DEFAULT_INTERVAL_SECONDS = 60;
+    private static final int SHUTDOWN_TIMEOUT_SECONDS = 60;
+
+    private final DataSaver dataSaver;
+    private final int intervalSeconds;
+    private final Executor managerThread;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> daemon(r, "checkpoint-writer"));
+    private final ScheduledExecutorService timer =
+            Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "checkpoint-timer"));
+
+    /**
+     * Constructs a CheckpointService that saves with the given DataSaver.
+     * @param dataSaver the DataSaver that encodes the changes to save
+     * @param intervalSeconds the number of seconds between checkpoints, or 0 to only take them when a user logs out
+     */
+    public CheckpointService(DataSaver dataSaver, int intervalSeconds) {
+        this(dataSaver, intervalSeconds, EventQueue::invokeLater);
+    }
+
+    /**
+     * Constructs a CheckpointService whose timed checkpoints are encoded by managerThread.
+     * @param dataSaver the DataSaver that encodes the changes to save
+     * @param intervalSeconds the number of seconds between checkpoints, or 0 to only take them when a user logs out
+     * @param managerThread runs a task where no one else can change the managers meanwhile
+     */
+    public CheckpointService(DataSaver dataSaver, int intervalSeconds, Executor managerThread) {
+        this.dataSaver = dataSaver;
+        this.intervalSeconds = intervalSeconds;
+        this.managerThread = managerThread;
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Starts taking a checkpoint every interval, and registers the shutdown hook that waits for the last checkpoint.
+     */
+    public void start() {
+        if (intervalSeconds > 0) {
+            // the changes are encoded on the manager thread, so that no one can change them meanwhile
+            timer.scheduleWithFixedDelay(() -> managerThread.execute(this::checkpoint), intervalSeconds,
+                    intervalSeconds, TimeUnit.SECONDS);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "checkpoint-shutdown"));
+    }
+
+    /**
+     * Takes a checkpoint of every change made since the last one. The changes are encoded right away, so this must be
+     * called on the thread that changes the managers, but they are written in the background. The TradingServer takes
+     * checkpoints on several threads at once, so the encoded checkpoints are handed to the writer in the order they
+     * were encoded, and an older one is never written over a newer one.
+     */
+    public synchronized void checkpoint() {
+        Runnable write = dataSaver.prepareSave();
+        try {
+            writer.execute(write);
+        } catch (RejectedExecutionException e) {
+            // the program is exiting, so there is no background thread left to write on
+            write.run();
+        }
+    }
+
+    /**
+     * Stops taking checkpoints and waits for the checkpoints that have been taken to be written.
+     */
+    public void shutdown() {
+        timer.shutdownNow();
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                System.out.println("The last checkpoint could not be written in time.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,716 @@
+package Initialization;
+
+import Items.Item;
+import Users.TradingUser;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * <h1>Initialization.CityShardStore</h1>
+ * Keeps the TradingUsers and Items on disk in one shard per city, and only reads the shards that are needed.
+ *
+ * <p>Each shard holds the TradingUsers of one city, compared without case as TradingUserManager does, and the Items
+ * in their inventories. An Item stays in the shard of the last TradingUser whose inventory it was put in, and Items that
+ * have never been in an inventory are kept in a shard of their own. A shard is read the first time one of its users or
+ * items is needed, and is then kept in memory, so a TradingUser's session only reads the shard of its own city and
+ * those of the users and items it looks at.</p>
+ *
+ * <p>A small directory, which is always in memory, maps the id of every TradingUser and Item to its shard, and every
+ * TradingUser's id to its username, so that users and items can be found by id in any city without reading the other
+ * shards. The directory decides which shard each user and item is in: a user or item found in a shard it has since
+ * moved out of is ignored.</p>
+ *
+ * <p>Each shard in memory also indexes the wishlists of its users the other way round: the ids of the TradingUsers of
+ * the city that wishlist each item. The index is built when the shard is read, from the wishlists saved with its users,
+ * and updated whenever one of them is put, so "who in this city wants this item?" is answered without looking at every
+ * user, and the index only takes memory for the cities that have been read.</p>
+ *
+ * <p>A TradingUser or Item that is changed must be put again, so that its shard is written on the next flush;
+ * TradingUserManager and ItemManager do this whenever they record a change.</p>
+ *
+ * <p>The store is not locked as a whole. The directory and the users and items of each shard are kept in concurrent
+ * maps, so users are read and put in parallel, in the same city or in different ones; a shard is only locked while it
+ * is first read from its file. The same TradingUser must not be put by two threads at once, which TradingUserManager ensures by holding
+ * the user's UserLocks. Each Item is moved between shards, or put, while its entry in the directory is locked, and a
+ * user or item is put in its new shard before it is removed from the old one, so that a lookup at the same time finds
+ * it in one of them. The shards must not be changed while startFlush encodes them, which DataSaver ensures by holding
+ * every UserLocks lock meanwhile.</p>
+ */
+public class CityShardStore {
+    static final String DIRECTORY_FILE = "directory.ser";
+    private static final String EXTENSION = ".ser";
+    private static final String CITY_PREFIX = "city-";
+    // the shard of items that have not been in anyone's inventory
+    private static final String UNOWNED_ITEMS = "unowned";
+
+    private final File directory;
+    private final Serializer serializer = new Serializer();
+    private final Map<UUID, UserEntry> userDirectory = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<UUID, String> itemDirectory = new ConcurrentHashMap<>();
+    private final Map<String, Shard> shards = new ConcurrentHashMap<>();
+    private final Set<String> changedShards = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean directoryChanged = new AtomicBoolean();
+    private volatile int compressionLevel = Serializer.UNCOMPRESSED;
+    private volatile Consumer<Item> itemListener;
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * Opens the store kept in the directory specified by path, creating the directory if it does not exist. Only the
+     * directory of users and items is read here.
+     * @param path the filepath of the directory the shards are kept in
+     */
+    public CityShardStore(String path) {
+        directory = new File(path);
+        directory.mkdirs();
+        if (!readDirectory()) {
+            rebuildDirectory();
+        }
+    }
+
+    /**
+     * Returns the ids of the TradingUsers of a city that have an item in their wishlist, reading only the shard of that
+     * city.
+     * @param itemId the id of an item
+     * @param city the name of the city, in any case
+     * @return an unmodifiable Set of the ids of the TradingUsers who want the item, which may be empty
+     */
+    public Set<UUID> getWishers(UUID itemId, String city) {
+        return loadShard(shardOf(city)).getWishers(itemId);
+    }
+
+    /**
+     * Sets whether the shards written from now on are compressed, and how much.
+     * @param compressionLevel a Deflater compression level, or Serializer.UNCOMPRESSED
+     */
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+        serializer.setCompressionLevel(compressionLevel);
+    }
+
+    /**
+     * Returns the name of a city in the form it is grouped by, so that names that only differ in case are the same city.
+     * This does not depend on the default locale, so a city is in the same shard on every computer.
+     * @param city the name of a city, in any case
+     * @return the normalized name of the city
+     */
+    public static String normalizeCity(String city) {
+        return city == null ? "" : city.toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns the name of the shard that the TradingUsers of a city belong to.
+     * @param city the name of a city, in any case
+     * @return the shard's name
+     */
+    static String shardOf(String city) {
+        try {
+            return CITY_PREFIX + URLEncoder.encode(normalizeCity(city), "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e); // every JVM supports UTF-8
+        }
+    }
+
+    /**
+     * Getter for the modification version of this store, which goes up every time a TradingUser or Item is put.
+     * @return the modification version as a long
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Returns the TradingUser with this id, reading its shard if it has not been read yet.
+     * @param id the id of a TradingUser
+     * @return the TradingUser, or null if there is no TradingUser with this id
+     */
+    public TradingUser getUser(UUID id) {
+        while (true) {
+            UserEntry entry = userDirectory.get(id);
+            if (entry == null) {
+                return null;
+            }
+            TradingUser tradingUser = loadShard(entry.shard).getUser(id);
+            // a user that moved out of the shard meanwhile is found in the shard it moved to
+            if (tradingUser != null || userDirectory.get(id) == entry) {
+                return tradingUser;
+            }
+        }
+    }
+
+    /**
+     * Returns the username of the TradingUser with this id, without reading any shard.
+     * @param id the id of a TradingUser
+     * @return the TradingUser's username, or null if there is no TradingUser with this id
+     */
+    public String getUsername(UUID id) {
+        UserEntry entry = userDirectory.get(id);
+        return entry == null ? null : entry.username;
+    }
+
+    /**
+     * Returns the usernames of every TradingUser, without reading any shard.
+     * @return a List of usernames
+     */
+    public List<String> getUsernames() {
+        List<String> usernames = new ArrayList<>(userDirectory.size());
+        for (UserEntry entry : userDirectory.values()) {
+            usernames.add(entry.username);
+        }
+        return usernames;
+    }
+
+    /**
+     * Returns the username and id of every TradingUser, without reading any shard.
+     * @return a Map of the username to the id of every TradingUser
+     */
+    public Map<String, UUID> getUserIdsByUsername() {
+        Map<String, UUID> userIds = new HashMap<>(userDirectory.size() * 4 / 3 + 1);
+        for (Map.Entry<UUID, UserEntry> entry : userDirectory.entrySet()) {
+            userIds.put(entry.getValue().username, entry.getKey());
+        }
+        return userIds;
+    }
+
+    /**
+     * Returns the number of TradingUsers, without reading any shard.
+     * @return the number of TradingUsers
+     */
+    public int numUsers() {
+        return userDirectory.size();
+    }
+
+    /**
+     * Returns every TradingUser in a city, reading only the shard of that city.
+     * @param city the name of the city, in any case
+     * @return a List of the TradingUsers in the city
+     */
+    public List<TradingUser> getUsersInCity(String city) {
+        return loadShard(shardOf(city)).getUsers();
+    }
+
+    /**
+     * Returns every TradingUser. This reads every shard, so it should be avoided.
+     * @return a List of every TradingUser
+     */
+    public List<TradingUser> getAllUsers() {
+        List<TradingUser> tradingUsers = new ArrayList<>(userDirectory.size());
+        for (String shard : shardNames()) {
+            tradingUsers.addAll(loadShard(shard).getUsers());
+        }
+        return tradingUsers;
+    }
+
+    /**
+     * Adds or replaces a TradingUser. If the TradingUser has moved to another city, it is moved to that city's shard,
+     * and so is every Item in its inventory that is in another shard. The same TradingUser must not be put by two
+     * threads at once.
+     * @param tradingUser the TradingUser that was added or changed
+     */
+    public void putUser(TradingUser tradingUser) {
+        UUID id = tradingUser.getUserId();
+        String shard = shardOf(tradingUser.getCity());
+        UserEntry entry = userDirectory.get(id);
+        shard(shard).putUser(id, tradingUser, tradingUser.getWishlist());
+        changedShards.add(shard);
+        if (entry == null || !entry.shard.equals(shard) || !entry.username.equals(tradingUser.getUsername())) {
+            userDirectory.put(id, new UserEntry(tradingUser.getUsername(), shard));
+            directoryChanged.set(true);
+            if (entry != null && !entry.shard.equals(shard)) {
+                removeUserFromShard(entry.shard, id);
+            }
+        }
+        for (UUID itemId : tradingUser.getInventory()) {
+            String itemShard = itemDirectory.get(itemId);
+            if (itemShard != null && !itemShard.equals(shard)) {
+                moveItem(itemId, shard);
+            }
+        }
+        version.incrementAndGet();
+    }
+
+    /**
+     * Returns the Item with this id, reading its shard if it has not been read yet.
+     * @param id the id of an Item
+     * @return the Item, or null if there is no Item with this id
+     */
+    public Item getItem(UUID id) {
+        while (true) {
+            String shard = itemDirectory.get(id);
+            if (shard == null) {
+                return null;
+            }
+            Item item = loadShard(shard).getItem(id);
+            // an item that moved out of the shard meanwhile is found in the shard it moved to
+            if (item != null || shard.equals(itemDirectory.get(id))) {
+                return item;
+            }
+        }
+    }
+
+    /**
+     * Returns whether there is an Item with this id, without reading any shard.
+     * @param id the id of an Item
+     * @return true iff there is an Item with this id
+     */
+    public boolean containsItem(UUID id) {
+        return itemDirectory.containsKey(id);
+    }
+
+    /**
+     * Returns whether the Item with this id is in the shard of a city, that is whether the last TradingUser whose
+     * inventory it was put in lives there, without reading any shard.
+     * @param id the id of an Item
+     * @param city the name of the city, in any case
+     * @return true iff the Item is kept with the TradingUsers of the city
+     */
+    public boolean isInCity(UUID id, String city) {
+        return shardOf(city).equals(itemDirectory.get(id));
+    }
+
+    /**
+     * Sets the listener that is given every Item that is put or read from a shard from now on, and gives it every Item
+     * that is already in memory, so that it sees each Item that is in memory at least once.
+     * @param itemListener the listener, which is called while the shard of the Item is locked
+     */
+    public void setItemListener(Consumer<Item> itemListener) {
+        this.itemListener = itemListener;
+        for (Shard shard : shards.values()) {
+            for (Item item : shard.getItems()) {
+                itemListener.accept(item);
+            }
+        }
+    }
+
+    /**
+     * Returns every Item. This reads every shard, so it should be avoided.
+     * @return a Map of the id of every Item to the Item
+     */
+    public Map<UUID, Item> getAllItems() {
+        Map<UUID, Item> items = new HashMap<>(itemDirectory.size());
+        for (String shard : shardNames()) {
+            for (Item item : loadShard(shard).getItems()) {
+                items.put(item.getId(), item);
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Adds or replaces an Item. A new Item is kept with the Items that have not been in an inventory until it is put in
+     * one.
+     * @param item the Item that was added or changed
+     */
+    public void putItem(Item item) {
+        boolean added = !itemDirectory.containsKey(item.getId());
+        // the directory entry of the item is locked so that the item is not moved to another shard meanwhile
+        itemDirectory.compute(item.getId(), (id, shard) -> {
+            String name = shard == null ? UNOWNED_ITEMS : shard;
+            shard(name).putItem(id, item);
+            changedShards.add(name);
+            return name;
+        });
+        if (added) {
+            directoryChanged.set(true);
+        }
+        Consumer<Item> listener = itemListener;
+        if (listener != null) {
+            listener.accept(item);
+        }
+        version.incrementAndGet();
+    }
+
+    /**
+     * Writes every shard that has users or items which were put since the last flush, and the directory.
+     * @return true iff every file was written
+     */
+    public boolean flush() {
+        return startFlush().write();
+    }
+
+    /**
+     * Encodes every shard that has users or items which were put since the last flush as it is now, and returns the
+     * Flush that writes them. Only one flush is started at a time, and no user or item may be put meanwhile, so that the
+     * shards and the directory are encoded as they were at one moment.
+     * @return the Flush, which can be written on any thread
+     */
+    public synchronized Flush startFlush() {
+        Serializer snapshot = Serializer.deferred();
+        snapshot.setCompressionLevel(compressionLevel);
+        Map<String, String> shardsByPath = new HashMap<>();
+        Set<String> emptyShards = new HashSet<>();
+        for (String name : new ArrayList<>(changedShards)) {
+            changedShards.remove(name);
+            Shard shard = loadShard(name);
+            List<TradingUser> tradingUsers = shard.getUsers();
+            List<Item> items = shard.getItems();
+            if (tradingUsers.isEmpty() && items.isEmpty()) {
+                emptyShards.add(name);
+            } else {
+                String path = shardFile(name).getPath();
+                snapshot.writeShardToFile(path, tradingUsers, items);
+                shardsByPath.put(path, name);
+            }
+        }
+        boolean writesDirectory = directoryChanged.getAndSet(false);
+        if (writesDirectory) {
+            snapshot.write(directoryFile().getPath(), this::writeDirectoryTo);
+        }
+        return new Flush(snapshot, shardsByPath, emptyShards, writesDirectory);
+    }
+
+    /**
+     * Called once a Flush has been written, keeping the shards that could not be written for the next flush.
+     */
+    private void finishFlush(Collection<String> failedShards, boolean directoryFailed) {
+        changedShards.addAll(failedShards);
+        if (directoryFailed) {
+            directoryChanged.set(true);
+        }
+    }
+
+    /**
+     * Writes the directory right away, in the current version of the BinaryFormat.
+     * @return true iff the directory was written
+     */
+    synchronized boolean writeDirectory() {
+        return serializer.writeFile(directoryFile().getPath(), this::writeDirectoryTo);
+    }
+
+    /* moves the item with itemId to another shard, reading the shard it is in if needed; the item is put in the new
+     * shard while its directory entry is locked, and only removed from the old one once the entry points to the new one */
+    private void moveItem(UUID itemId, String to) {
+        String[] from = new String[1];
+        itemDirectory.computeIfPresent(itemId, (id, shard) -> {
+            if (shard.equals(to)) {
+                return shard;
+            }
+            Item item = loadShard(shard).getItem(id);
+            if (item != null) {
+                shard(to).putItem(id, item);
+                changedShards.add(to);
+            }
+            from[0] = shard;
+            return to;
+        });
+        if (from[0] == null) {
+            return;
+        }
+        directoryChanged.set(true);
+        itemDirectory.computeIfPresent(itemId, (id, shard) -> {
+            if (!shard.equals(from[0])) {
+                loadShard(from[0]).removeItem(id);
+                changedShards.add(from[0]);
+            }
+            return shard;
+        });
+    }
+
+    /* removes a user from a shard it has moved out of; a shard that has not been read leaves the user out when read */
+    private void removeUserFromShard(String name, UUID id) {
+        Shard shard = shards.get(name);
+        if (shard != null) {
+            shard.removeUser(id);
+        }
+        changedShards.add(name);
+    }
+
+    /* returns the shard with this name, which has not necessarily been read yet */
+    private Shard shard(String name) {
+        return shards.computeIfAbsent(name, k -> new Shard());
+    }
+
+    /**
+     * Returns the shard with this name, reading it first if it has not been read yet. Users and items that were put
+     * before the shard was read are newer than those in the file, and users and items that the directory places in
+     * another shard have moved out of this one, so neither is read from the file. The shard is locked while it is
+     * read, so only the threads that need this shard wait for it, and only until it has been read.
+     */
+    private Shard loadShard(String name) {
+        Shard shard = shard(name);
+        if (shard.loaded) {
+            return shard;
+        }
+        synchronized (shard) {
+            if (shard.loaded) {
+                return shard;
+            }
+            File file = shardFile(name);
+            if (!file.exists()) {
+                shard.loaded = true;
+                return shard;
+            }
+            Map<UUID, TradingUser> tradingUsers = new LinkedHashMap<>();
+            Map<UUID, Item> items = new LinkedHashMap<>();
+            if (serializer.readShardFromFile(file.getPath(), tradingUsers, items)) {
+                for (Map.Entry<UUID, TradingUser> entry : tradingUsers.entrySet()) {
+                    UserEntry userEntry = userDirectory.get(entry.getKey());
+                    if (userEntry != null && userEntry.shard.equals(name)
+                            && shard.users.putIfAbsent(entry.getKey(), entry.getValue()) == null) {
+                        shard.indexWishlist(entry.getKey(), entry.getValue().getWishlist());
+                    }
+                }
+                Consumer<Item> listener = itemListener;
+                for (Map.Entry<UUID, Item> entry : items.entrySet()) {
+                    if (name.equals(itemDirectory.get(entry.getKey()))
+                            && shard.items.putIfAbsent(entry.getKey(), entry.getValue()) == null && listener != null) {
+                        listener.accept(entry.getValue());
+                    }
+                }
+            }
+            shard.loaded = true;
+            return shard;
+        }
+    }
+
+    /* returns the names of every shard, whether or not it has been written yet */
+    private Set<String> shardNames() {
+        Set<String> names = new HashSet<>(shards.keySet());
+        for (File file : shardFiles()) {
+            names.add(file.getName().substring(0, file.getName().length() - EXTENSION.length()));
+        }
+        return names;
+    }
+
+    private boolean readDirectory() {
+        File file = directoryFile();
+        if (!file.exists()) {
+            return false;
+        }
+        Boolean read = serializer.read(file.getPath(), this::readDirectoryFrom);
+        return read != null;
+    }
+
+    /**
+     * Rebuilds the directory from the shards, in case it was lost. Each shard is read once and then let go of.
+     */
+    private void rebuildDirectory() {
+        for (File file : shardFiles()) {
+            String name = file.getName().substring(0, file.getName().length() - EXTENSION.length());
+            Map<UUID, TradingUser> tradingUsers = new HashMap<>();
+            Map<UUID, Item> items = new HashMap<>();
+            if (serializer.readShardFromFile(file.getPath(), tradingUsers, items)) {
+                for (TradingUser tradingUser : tradingUsers.values()) {
+                    userDirectory.put(tradingUser.getUserId(), new UserEntry(tradingUser.getUsername(), name));
+                }
+                for (UUID itemId : items.keySet()) {
+                    itemDirectory.put(itemId, name);
+                }
+                directoryChanged.set(true);
+            }
+        }
+    }
+
+    /**
+     * Writes the directory: the name of every shard, then each user's id, username and shard, then each item's id and
+     * shard, where shards are written as their index in the list of names.
+     */
+    private void writeDirectoryTo(DataOutput out) throws IOException {
+        Map<String, Integer> indices = new LinkedHashMap<>();
+        for (UserEntry entry : userDirectory.values()) {
+            indices.putIfAbsent(entry.shard, indices.size());
+        }
+        for (String shard : itemDirectory.values()) {
+            indices.putIfAbsent(shard, indices.size());
+        }
+        out.writeInt(indices.size());
+        for (String shard : indices.keySet()) {
+            BinaryFormat.writeString(out, shard);
+        }
+        out.writeInt(userDirectory.size());
+        for (Map.Entry<UUID, UserEntry> entry : userDirectory.entrySet()) {
+            BinaryFormat.writeUUID(out, entry.getKey());
+            BinaryFormat.writeString(out, entry.getValue().username);
+            out.writeInt(indices.get(entry.getValue().shard));
+        }
+        out.writeInt(itemDirectory.size());
+        for (Map.Entry<UUID, String> entry : itemDirectory.entrySet()) {
+            BinaryFormat.writeUUID(out, entry.getKey());
+            out.writeInt(indices.get(entry.getValue()));
+        }
+    }
+
+    /* reads the directory; the wishlists that versions 3 to 7 kept in it are skipped, since each shard indexes them */
+    private Boolean readDirectoryFrom(DataInput in, int version) throws IOException {
+        String[] names = new String[in.readInt()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = BinaryFormat.readString(in);
+        }
+        int numUsers = in.readInt();
+        for (int i = 0; i < numUsers; i++) {
+            UUID id = BinaryFormat.readUUID(in);
+            String username = BinaryFormat.readString(in);
+            userDirectory.put(id, new UserEntry(username, names[in.readInt()]));
+        }
+        int numItems = in.readInt();
+        for (int i = 0; i < numItems; i++) {
+            UUID id = BinaryFormat.readUUID(in);
+            itemDirectory.put(id, names[in.readInt()]);
+        }
+        if (version >= 3 && version < 8) {
+            int numWishlists = in.readInt();
+            for (int i = 0; i < numWishlists; i++) {
+                BinaryFormat.readUUID(in);
+                BinaryFormat.readUUIDList(in, new ArrayList<>());
+            }
+        }
+        return true;
+    }
+
+    private File directoryFile() {
+        return new File(directory, DIRECTORY_FILE);
+    }
+
+    private File shardFile(String name) {
+        return new File(directory, name + EXTENSION);
+    }
+
+    private File[] shardFiles() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(EXTENSION) && !name.equals(DIRECTORY_FILE));
+        return files == null ? new File[0] : files;
+    }
+
+    /**
+     * The shard and username of a TradingUser in the directory.
+     */
+    private static class UserEntry {
+        private final String username;
+        private final String shard;
+
+        private UserEntry(String username, String shard) {
+            this.username = username;
+            this.shard = shard;
+        }
+    }
+
+    /**
+     * The users and items of one shard that are in memory, which are only read or changed while the shard is locked.
+     * The wishlists of the users are indexed while the shard is locked too, since users of the same city who want the
+     * same item are put at the same time.
+     */
+    private static class Shard {
+        private final Map<UUID, TradingUser> users = new ConcurrentHashMap<>();
+        private final Map<UUID, Item> items = new ConcurrentHashMap<>();
+        // the wishlist of each user as it was last indexed, and the users who want each item
+        private final Map<UUID, Set<UUID>> wishlists = new HashMap<>();
+        private final Map<UUID, Set<UUID>> wishers = new HashMap<>();
+        private volatile boolean loaded = false;
+
+        private TradingUser getUser(UUID id) {
+            return users.get(id);
+        }
+
+        private List<TradingUser> getUsers() {
+            return new ArrayList<>(users.values());
+        }
+
+        private void putUser(UUID id, TradingUser tradingUser, Collection<UUID> wishlist) {
+            users.put(id, tradingUser);
+            indexWishlist(id, wishlist);
+        }
+
+        private void removeUser(UUID id) {
+            users.remove(id);
+            indexWishlist(id, Collections.emptyList());
+        }
+
+        private synchronized Set<UUID> getWishers(UUID itemId) {
+            Set<UUID> userIds = wishers.get(itemId);
+            return userIds == null ? Collections.emptySet() : Collections.unmodifiableSet(new LinkedHashSet<>(userIds));
+        }
+
+        /* updates the wishlist of the user with id, and the wishers of the items added to or removed from it */
+        private synchronized void indexWishlist(UUID id, Collection<UUID> wishlist) {
+            Set<UUID> indexed = wishlists.getOrDefault(id, Collections.emptySet());
+            for (UUID itemId : indexed) {
+                if (!wishlist.contains(itemId)) {
+                    wishers.computeIfPresent(itemId, (k, userIds) -> {
+                        userIds.remove(id);
+                        return userIds.isEmpty() ? null : userIds;
+                    });
+                }
+            }
+            for (UUID itemId : wishlist) {
+                if (!indexed.contains(itemId)) {
+                    wishers.computeIfAbsent(itemId, k -> new LinkedHashSet<>()).add(id);
+                }
+            }
+            if (wishlist.isEmpty()) {
+                wishlists.remove(id);
+            } else {
+                wishlists.put(id, new HashSet<>(wishlist));
+            }
+        }
+
+        private Item getItem(UUID id) {
+            return items.get(id);
+        }
+
+        private List<Item> getItems() {
+            return new ArrayList<>(items.values());
+        }
+
+        private void putItem(UUID id, Item item) {
+            items.put(id, item);
+        }
+
+        private void removeItem(UUID id) {
+            items.remove(id);
+        }
+    }
+
+    /**
+     * <h1>CityShardStore.Flush</h1>
+     * The shards and directory encoded when the flush was started, which are written by write.
+     */
+    public class Flush {
+        private final Serializer snapshot;
+        private final Map<String, String> shardsByPath;
+        private final Set<String> emptyShards;
+        private final boolean writesDirectory;
+
+        private Flush(Serializer snapshot, Map<String, String> shardsByPath, Set<String> emptyShards,
+                      boolean writesDirectory) {
+            this.snapshot = snapshot;
+            this.shardsByPath = shardsByPath;
+            this.emptyShards = emptyShards;
+            this.writesDirectory = writesDirectory;
+        }
+
+        /**
+         * Writes every shard encoded in this flush, deletes the shards that no longer have any users or items, and
+         * writes the directory if it changed. Flushes of the same store must be written one at a time, in the order
+         * they were started.
+         * @return true iff every file was written
+         */
+        public boolean write() {
+            List<String> failed = snapshot.writePendingFiles();
+            List<String> failedShards = new ArrayList<>();
+            boolean directoryFailed = false;
+            for (String path : failed) {
+                if (shardsByPath.containsKey(path)) {
+                    failedShards.add(shardsByPath.get(path));
+                } else {
+                    directoryFailed = writesDirectory;
+                }
+            }
+            for (String name : emptyShards) {
+                File file = shardFile(name);
+                if (file.exists() && !file.delete()) {
+                    failedShards.add(name);
+                }
+            }
+            finishFlush(failedShards, directoryFailed);
+            return failedShards.isEmpty() && !directoryFailed;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package Initialization;
+
+import Items.Item;
+import Users.TradingUser;
+
+import java.io.File;
+import java.util.*;
+import java.util.zip.Deflater;
+
+/**
+ * <h1>Initialization.CompressionBenchmark</h1>
+ * Compares the size and the save/load throughput of users.ser and items.ser at each compression level, to help pick
+ * the level given to -DsnapshotCompression.
+ *
+ * <p>Usage: CompressionBenchmark [number of users] [directory]. By default 1,000,000 TradingUsers are generated as in
+ * SerializerBenchmark, along with three Items for each of them. Throughput is measured in uncompressed megabytes per
+ * second, so the levels can be compared directly; "disk MB/s" is the rate at which the compressed file is written or
+ * read. Run with a large enough heap (for example -Xmx4g) for the default number of users.</p>
+ */
+public class CompressionBenchmark {
+    private static final int[] LEVELS = {Serializer.UNCOMPRESSED, Deflater.BEST_SPEED, 3, Deflater.DEFAULT_COMPRESSION,
+            Deflater.BEST_COMPRESSION};
+
+    public static void main(String[] args) {
+        int numUsers = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        File directory = new File(args.length > 1 ? args[1] : System.getProperty("java.io.tmpdir"));
+        File usersFile = new File(directory, "benchmark-users.ser");
+        File itemsFile = new File(directory, "benchmark-items.ser");
+
+        List<TradingUser> tradingUsers = SerializerBenchmark.generateUsers(numUsers);
+        Map<UUID, Item> items = new HashMap<>();
+        for (int i = 0; i < numUsers * 3; i++) {
+            Item item = new Item("item" + i);
+            items.put(item.getId(), item);
+        }
+        System.out.println("Generated " + numUsers + " TradingUsers and " + items.size() + " Items");
+
+        long uncompressedBytes = 0;
+        System.out.printf("%-12s %14s %7s %9s %9s %10s %9s %9s %10s%n", "level", "bytes", "ratio", "save ms",
+                "save MB/s", "disk MB/s", "load ms", "load MB/s", "disk MB/s");
+        for (int level : LEVELS) {
+            Serializer serializer = new Serializer();
+            serializer.setCompressionLevel(level);
+            long start = System.nanoTime();
+            serializer.writeUsersToFile(usersFile.getPath(), tradingUsers);
+            serializer.writeItemsMapToFile(itemsFile.getPath(), items);
+            long saveNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            List<TradingUser> loadedUsers = serializer.readUsersFromFile(usersFile.getPath());
+            Map<UUID, Item> loadedItems = serializer.readItemMapFromFile(itemsFile.getPath());
+            long loadNanos = System.nanoTime() - start;
+            if (loadedUsers == null || loadedUsers.size() != numUsers || loadedItems == null
+                    || loadedItems.size() != items.size()) {
+                System.out.println("The files written at level " + level + " could not be read back.");
+            }
+
+            long bytes = usersFile.length() + itemsFile.length();
+            if (level == Serializer.UNCOMPRESSED) {
+                uncompressedBytes = bytes;
+            }
+            System.out.printf("%-12s %14d %6.1f%% %9d %9.1f %10.1f %9d %9.1f %10.1f%n", levelName(level), bytes,
+                    100.0 * bytes / uncompressedBytes, saveNanos / 1000000, megabytesPerSecond(uncompressedBytes,
+                            saveNanos), megabytesPerSecond(bytes, saveNanos), loadNanos / 1000000,
+                    megabytesPerSecond(uncompressedBytes, loadNanos), megabytesPerSecond(bytes, loadNanos));
+        }
+
+        usersFile.delete();
+        itemsFile.delete();
+    }
+
+    private static String levelName(int level) {
+        if (level == Serializer.UNCOMPRESSED) {
+            return "none";
+        } else if (level == Deflater.DEFAULT_COMPRESSION) {
+            return "default (6)";
+        }
+        return String.valueOf(level);
+    }
+
+    private static double megabytesPerSecond(long bytes, long nanos) {
+        return bytes / 1e6 / (nanos / 1e9);
+    }
+}
@@ -0,0 +1,102 @@
+package Initialization;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
+
+/**
+ * <h1>Initialization.DataLoader</h1>
+ * Reads the saved files in parallel on a pool of worker threads.
+ *
+ * <p>Each call to load starts reading one file and returns a CompletableFuture of its contents right away, so that the
+ * caller only waits for the files it needs at the moment it needs them. The time each file took to read and its size
+ * are recorded and can be printed with printReport once everything has been loaded.</p>
+ */
+public class DataLoader {
+    private final ExecutorService executor;
+    private final List<LoadReport> reports = new ArrayList<>();
+    private final long created = System.nanoTime();
+
+    /**
+     * Constructs a DataLoader that reads files using the given worker threads.
+     * @param executor the worker threads that read the files
+     */
+    public DataLoader(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Starts reading the file specified by path on a worker thread.
+     * @param path The filepath corresponding to the file being read.
+     * @param reader reads the contents of the file given its filepath
+     * @return a CompletableFuture of the contents of the file
+     */
+    public <T> CompletableFuture<T> load(String path, Function<String, T> reader) {
+        LoadReport report = new LoadReport(path);
+        synchronized (reports) {
+            reports.add(report);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            T contents = reader.apply(path);
+            report.finish(sizeOf(new File(path)), System.nanoTime() - start);
+            return contents;
+        }, executor);
+    }
+
+    /**
+     * Returns the size of a file, or the total size of the files in a directory.
+     */
+    private long sizeOf(File file) {
+        File[] files = file.listFiles();
+        if (files == null) {
+            return file.length();
+        }
+        long size = 0;
+        for (File f : files) {
+            size += sizeOf(f);
+        }
+        return size;
+    }
+
+    /**
+     * Prints how long each file took to read and how many bytes it holds, in the order the files were loaded, and
+     * how long it has been since this DataLoader was constructed.
+     */
+    public void printReport() {
+        long totalBytes = 0;
+        long totalNanos = 0;
+        System.out.println("Loaded saved data:");
+        synchronized (reports) {
+            for (LoadReport report : reports) {
+                System.out.printf("  %-22s %12d bytes %8.1f ms%n", report.path, report.bytes, report.nanos / 1e6);
+                totalBytes += report.bytes;
+                totalNanos += report.nanos;
+            }
+        }
+        System.out.printf("  %-22s %12d bytes %8.1f ms (summed over all files)%n", "total", totalBytes,
+                totalNanos / 1e6);
+        System.out.printf("  %-22s %12s       %8.1f ms%n", "elapsed", "", (System.nanoTime() - created) / 1e6);
+    }
+
+    /**
+     * The size of one file and how long it took to read.
+     */
+    private static class LoadReport {
+        private final String path;
+        private volatile long bytes;
+        private volatile long nanos;
+
+        private LoadReport(String path) {
+            this.path = path;
+        }
+
+        private void finish(long bytes, long nanos) {
+            this.bytes = bytes;
+            this.nanos = nanos;
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package Initialization;
+
+import Items.Item;
+import Transactions.Transaction;
+import Transactions.TransactionStore;
+import Users.TradingUser;
+
+import java.io.*;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+/**
+ * <h1>Initialization.DataMigrator</h1>
+ * Rewrites the saved files in a directory in the current version of the BinaryFormat, one record at a time.
+ *
+ * <p>Usage: DataMigrator [directory] [compression level]. The trading system should not be running at the same time.
+ * users.ser, items.ser and a transactions.ser saved by an older version, which is moved into the segments of the
+ * TransactionStore, are read and written record by record, so that a file saved in any version of the BinaryFormat,
+ * compressed or not, is migrated with only one record in memory at a time. The records are written to a .body file
+ * next to the file first, and the file is then replaced with the current header, the number of records and the
+ * records, as the Serializer would write it. The other files, including each segment of the TransactionStore, which
+ * saves the summaries of its transactions ahead of them, and each shard of the CityShardStore and its directory, are
+ * small enough to be read and written whole by the Serializer. Files that are already in the current version,
+ * compressed as requested, are skipped.</p>
+ *
+ * <p>Files saved with ObjectOutputStream are read by an ObjectInputStream that hands each record over as soon as it
+ * has been read and then lets go of it. ObjectInputStream still holds on to the smaller objects inside each record
+ * (such as UUIDs and lists) until the end of the file, so these files need more memory than the others.</p>
+ *
+ * <p>The number of records read so far is printed every second, and the size, time and throughput of each file once
+ * it has been migrated.</p>
+ */
+public class DataMigrator {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int TRANSACTIONS_PER_BATCH = 10000;
+    private static final long PROGRESS_INTERVAL_NANOS = 1000000000L;
+    private static final String BODY_EXTENSION = ".body";
+
+    private final Filepaths fp = new Filepaths();
+    private final Serializer serializer = new Serializer();
+    private final File directory;
+    private final int compressionLevel;
+
+    /**
+     * Writes one record in the BinaryFormat.
+     */
+    private interface RecordWriter<T> {
+        void write(DataOutput out, T record) throws IOException;
+    }
+
+    /**
+     * Receives each record as soon as it has been read.
+     */
+    private interface RecordSink<T> {
+        void accept(T record) throws IOException;
+    }
+
+    public static void main(String[] args) {
+        File directory = new File(args.length > 0 ? args[0] : ".");
+        int compressionLevel = args.length > 1 ? Integer.parseInt(args[1]) : Serializer.UNCOMPRESSED;
+        if (!new DataMigrator(directory, compressionLevel).migrate()) {
+            System.out.println("Some files could not be migrated; they were left as they were.");
+        }
+    }
+
+    /**
+     * Constructs a DataMigrator for the saved files in directory.
+     * @param directory the directory the trading system saves its files in
+     * @param compressionLevel a Deflater compression level for the migrated files, or Serializer.UNCOMPRESSED
+     */
+    public DataMigrator(File directory, int compressionLevel) {
+        this.directory = directory;
+        this.compressionLevel = compressionLevel;
+        serializer.setCompressionLevel(compressionLevel);
+    }
+
+    /**
+     * Migrates every saved file in the directory that is not in the current version yet.
+     * @return true iff every file was migrated
+     */
+    public boolean migrate() {
+        long start = System.nanoTime();
+        boolean migrated = migrateRecords(fp.USERS, TradingUser.class, TradingUser::new,
+                (out, tradingUser) -> tradingUser.writeTo(out));
+        migrated &= migrateRecords(fp.ITEMS, Item.class, Item::new, (out, item) -> item.writeTo(out));
+        migrated &= migrateTransactions();
+        migrated &= migrateShards();
+        migrated &= migrateWhole(fp.ADMINS, serializer::readAdminsFromFile, serializer::writeAdminsToFile);
+        migrated &= migrateWhole(fp.FLAGGEDACCOUNTS, serializer::readAccountsFromFile, serializer::writeAccountsToFile);
+        migrated &= migrateWhole(fp.FROZENACCOUNTS, serializer::readAccountsFromFile, serializer::writeAccountsToFile);
+        migrated &= migrateWhole(fp.UNFREEZEREQUESTS, serializer::readAccountsFromFile,
+                serializer::writeAccountsToFile);
+        migrated &= migrateWhole(fp.REQUESTEDITEMS, serializer::readItemsFromFile, serializer::writeItemsToFile);
+        migrated &= migrateWhole(fp.DEMOUSERS, serializer::readDemoUsersFromFile, serializer::writeDemoUsersToFile);
+        migrated &= migrateWhole(fp.ACTIONS, serializer::readActionsFromFile, serializer::writeActionsToFile);
+        migrated &= migrateWhole(fp.USERNAMES, serializer::readUsernamesFromFile, serializer::writeUsernamesToFile);
+        System.out.printf("Migrated %s in %.1f s%n", directory.getPath(), (System.nanoTime() - start) / 1e9);
+        return migrated;
+    }
+
+    /**
+     * Migrates a file made of the number of records followed by the records, one record at a time.
+     */
+    private <T> boolean migrateRecords(String name, Class<T> recordClass, Serializer.Reader<T> decoder,
+                                       RecordWriter<T> encoder) {
+        File file = new File(directory, name);
+        if (!needsMigration(file)) {
+            return true;
+        }
+        Progress progress = new Progress(name, file.length());
+        File body = new File(file.getPath() + BODY_EXTENSION);
+        long count;
+        try (DataOutputStream bodyOutput = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(body), BUFFER_SIZE))) {
+            count = readRecords(file, recordClass, decoder, record -> {
+                encoder.write(bodyOutput, record);
+                progress.record();
+            });
+        } catch (IOException e) {
+            System.out.println("IO Exception was caught.");
+            count = -1;
+        }
+        int numRecords = (int) count;
+        boolean written = count >= 0 && serializer.writeFile(file.getPath(), out -> {
+            out.writeInt(numRecords);
+            copy(body, out);
+        });
+        body.delete();
+        progress.finish(written, file.length());
+        return written;
+    }
+
+    /**
+     * Moves the transactions in transactions.ser, which is how an older version saved them, into the segments of the
+     * TransactionStore in batches, and migrates the segments that are already there.
+     */
+    private boolean migrateTransactions() {
+        File storeDirectory = new File(directory, fp.TRANSACTIONSTORE);
+        boolean migrated = true;
+        File[] segments = storeDirectory.listFiles((dir, name) -> name.endsWith(".ser"));
+        if (segments != null) {
+            for (File segment : segments) {
+                migrated &= migrateWhole(fp.TRANSACTIONSTORE + File.separator + segment.getName(),
+                        serializer::readTransactionMapFromFile, serializer::writeTransactionsToFile);
+            }
+        }
+
+        File legacyFile = new File(directory, fp.TRANSACTIONS);
+        if (!legacyFile.exists()) {
+            return migrated;
+        }
+        Progress progress = new Progress(fp.TRANSACTIONS, legacyFile.length());
+        TransactionStore store = new TransactionStore(storeDirectory.getPath(), 0);
+        store.setCompressionLevel(compressionLevel);
+        List<Transaction> batch = new ArrayList<>(TRANSACTIONS_PER_BATCH);
+        long count = readRecords(legacyFile, Transaction.class, Transaction::readFrom, transaction -> {
+            batch.add(transaction);
+            progress.record();
+            if (batch.size() == TRANSACTIONS_PER_BATCH) {
+                store.importTransactions(batch);
+                batch.clear();
+                if (!store.flush()) {
+                    throw new IOException("the transactions could not be written");
+                }
+            }
+        });
+        store.importTransactions(batch);
+        boolean written = count >= 0 && store.flush();
+        if (written) {
+            legacyFile.delete();
+        }
+        progress.finish(written, sizeOf(storeDirectory));
+        return migrated && written;
+    }
+
+    /**
+     * Migrates each shard of the CityShardStore, and its directory, by reading and writing them whole.
+     */
+    private boolean migrateShards() {
+        File storeDirectory = new File(directory, fp.CITYSHARDS);
+        boolean migrated = true;
+        File[] shards = storeDirectory.listFiles((dir, name) -> name.endsWith(".ser")
+                && !name.equals(CityShardStore.DIRECTORY_FILE));
+        if (shards != null) {
+            for (File shard : shards) {
+                migrated &= migrateWhole(fp.CITYSHARDS + File.separator + shard.getName(), path -> {
+                    Map<UUID, TradingUser> tradingUsers = new LinkedHashMap<>();
+                    Map<UUID, Item> items = new LinkedHashMap<>();
+                    return serializer.readShardFromFile(path, tradingUsers, items)
+                            ? new AbstractMap.SimpleEntry<>(tradingUsers, items) : null;
+                }, (path, contents) -> serializer.writeShardToFile(path, contents.getKey().values(),
+                        contents.getValue().values()));
+            }
+        }
+        migrated &= migrateWhole(fp.CITYSHARDS + File.separator + CityShardStore.DIRECTORY_FILE, path -> {
+            CityShardStore store = new CityShardStore(storeDirectory.getPath());
+            store.setCompressionLevel(compressionLevel);
+            return store;
+        }, (path, store) -> store.writeDirectory());
+        return migrated;
+    }
+
+    /**
+     * Migrates a small file by reading and writing it whole.
+     */
+    private <T> boolean migrateWhole(String name, Function<String, T> reader, BiPredicate<String, T> writer) {
+        File file = new File(directory, name);
+        if (!needsMigration(file)) {
+            return true;
+        }
+        Progress progress = new Progress(name, file.length());
+        T contents = reader.apply(file.getPath());
+        boolean written = contents != null && writer.test(file.getPath(), contents);
+        progress.finish(written, file.length());
+        return written;
+    }
+
+    /**
+     * Reads the records in a file one at a time and gives each of them to sink.
+     * @return the number of records, or -1 if the file could not be read
+     */
+    private <T> long readRecords(File file, Class<T> recordClass, Serializer.Reader<T> decoder, RecordSink<T> sink) {
+        if (serializer.isLegacyFile(file.getPath())) {
+            try (RecordObjectInputStream<T> input = new RecordObjectInputStream<>(
+                    new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE), recordClass, sink)) {
+                input.readObject();
+                return input.count;
+            } catch (IOException e) {
+                System.out.println("IO Exception was caught.");
+                return -1;
+            } catch (ClassNotFoundException e) {
+                System.out.println("ClassNotFoundException was caught.");
+                return -1;
+            }
+        }
+        Long count = serializer.read(file.getPath(), (in, version) -> {
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                sink.accept(decoder.read(in, version));
+            }
+            return (long) size;
+        });
+        return count == null ? -1 : count;
+    }
+
+    /**
+     * Returns whether a file exists and is not in the current version with the requested compression yet.
+     */
+    private boolean needsMigration(File file) {
+        if (!file.exists()) {
+            return false;
+        }
+        boolean compressed = compressionLevel != Serializer.UNCOMPRESSED;
+        if (serializer.isCurrentVersion(file.getPath()) && serializer.isCompressedFile(file.getPath()) == compressed) {
+            System.out.printf("  %-22s already up to date%n", file.getName());
+            return false;
+        }
+        return true;
+    }
+
+    private void copy(File file, DataOutput out) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream input = new FileInputStream(file)) {
+            int n;
+            while ((n = input.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+        }
+    }
+
+    private long sizeOf(File directory) {
+        long size = 0;
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                size += file.length();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * An ObjectInputStream that gives each record to a sink as soon as it has been read, and lets go of it instead of
+     * adding it to the collection it was saved in.
+     */
+    private static class RecordObjectInputStream<T> extends ObjectInputStream {
+        private final Class<T> recordClass;
+        private final RecordSink<T> sink;
+        private long count = 0;
+
+        private RecordObjectInputStream(InputStream in, Class<T> recordClass, RecordSink<T> sink) throws IOException {
+            super(in);
+            this.recordClass = recordClass;
+            this.sink = sink;
+            enableResolveObject(true);
+        }
+
+        @Override
+        protected Object resolveObject(Object obj) throws IOException {
+            if (recordClass.isInstance(obj)) {
+                sink.accept(recordClass.cast(obj));
+                count++;
+                return null;
+            }
+            return obj;
+        }
+    }
+
+    /**
+     * Prints how many records of one file have been migrated so far, and the throughput once it is done.
+     */
+    private static class Progress {
+        private final String name;
+        private final long bytesIn;
+        private final long start = System.nanoTime();
+        private long lastPrinted = start;
+        private long records = 0;
+
+        private Progress(String name, long bytesIn) {
+            this.name = name;
+            this.bytesIn = bytesIn;
+        }
+
+        private void record() {
+            records++;
+            long now = System.nanoTime();
+            if (now - lastPrinted >= PROGRESS_INTERVAL_NANOS) {
+                lastPrinted = now;
+                System.out.printf("  %-22s %,d records so far (%,.0f records/s)%n", name, records,
+                        records / ((now - start) / 1e9));
+            }
+        }
+
+        private void finish(boolean written, long bytesOut) {
+            double seconds = (System.nanoTime() - start) / 1e9;
+            if (!written) {
+                System.out.printf("  %-22s could not be migrated%n", name);
+                return;
+            }
+            if (records == 0) {
+                // a file that was read whole
+                System.out.printf("  %-22s %,d -> %,d bytes in %.2f s%n", name, bytesIn, bytesOut, seconds);
+                return;
+            }
+            System.out.printf("  %-22s %,d records, %,d -> %,d bytes in %.2f s (%,.0f records/s, %.1f MB/s)%n", name,
+                    records, bytesIn, bytesOut, seconds, records / seconds, bytesIn / 1e6 / seconds);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package Initialization;
+
+import Actions.ActionManager;
+import Admins.AdminManager;
+import Items.Item;
+import Transactions.TransactionStore;
+import Users.DemoUserManager;
+import Users.TradingUserManager;
+import Users.UsernameRegistry;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+
+/**
+ * <h1>Initialization.DataSaver</h1>
+ * Saves the state of the managers, for the CheckpointService.
+ *
+ * <p>Changes made by the managers are already appended to the Journal while the program runs, so saving normally only
+ * has to make sure the journal is on the disk. A full snapshot of every .ser file is only written once the journal
+ * has grown past its threshold, after which the records it contains are deleted from the journal. TradingUsers and
+ * Items are kept in a CityShardStore, of which a snapshot only writes the shards of the cities that changed.</p>
+ *
+ * <p>Each file is only written if the modification version of the managers that can change it has moved since the
+ * file was last written successfully. Files that are skipped are logged.</p>
+ */
+public class DataSaver {
+    private final Filepaths fp = new Filepaths();
+    private final AdminManager am;
+    private final TradingUserManager tum;
+    private final DemoUserManager dum;
+    private final TransactionStore transactions;
+    private final CityShardStore shards;
+    private final UsernameRegistry usernames;
+    private final ActionManager acm;
+    private final Map<Item, UUID> pendingItems;
+    private final Journal journal;
+    private final Map<String, Long> savedVersions = new HashMap<>();
+    private Map<Item, UUID> lastSeenPendingItems;
+    private long pendingItemsVersion = 0;
+    private volatile int compressionLevel = Serializer.UNCOMPRESSED;
+
+    /**
+     * Constructs a DataSaver for the given managers. Every file is assumed to be up to date with the managers.
+     * @param am manager of all AdminUsers
+     * @param tum manager of all TradingUsers
+     * @param dum manager of all DemoUsers
+     * @param transactions the store of all Transactions
+     * @param shards the store of all TradingUsers and Items
+     * @param usernames the registry of the usernames of all users
+     * @param acm manager of all Actions
+     * @param pendingItems map of all items that have been requested to be added to an inventory, to the id of the user
+     *                     who requested them
+     * @param journal the journal that the managers append their changes to
+     */
+    public DataSaver(AdminManager am, TradingUserManager tum, DemoUserManager dum, TransactionStore transactions,
+                     CityShardStore shards, UsernameRegistry usernames, ActionManager acm,
+                     Map<Item, UUID> pendingItems, Journal journal) {
+        this.am = am;
+        this.tum = tum;
+        this.dum = dum;
+        this.transactions = transactions;
+        this.shards = shards;
+        this.usernames = usernames;
+        this.acm = acm;
+        this.pendingItems = pendingItems;
+        this.journal = journal;
+        lastSeenPendingItems = new HashMap<>(pendingItems);
+        for (String filepath : new String[]{fp.ADMINS, fp.CITYSHARDS, fp.REQUESTEDITEMS, fp.FLAGGEDACCOUNTS,
+                fp.FROZENACCOUNTS, fp.UNFREEZEREQUESTS, fp.TRANSACTIONS, fp.DEMOUSERS, fp.ACTIONS, fp.USERNAMES}) {
+            savedVersions.put(filepath, versionOf(filepath));
+        }
+    }
+
+    /**
+     * Marks the file specified by filepath as out of date, for example because changes to it were replayed from the
+     * journal, so that it is written in the next snapshot.
+     * @param filepath the filepath of the file
+     */
+    public synchronized void markUnsaved(String filepath) {
+        savedVersions.remove(filepath);
+    }
+
+    /**
+     * Sets whether the files written from now on are compressed, and how much.
+     * @param compressionLevel a Deflater compression level, or Serializer.UNCOMPRESSED
+     */
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * Encodes every change made since the last save as it is now, and returns the task that writes it. This must be
+     * called on the thread that changes the managers in the GUI, but can be called on any thread by the TradingServer,
+     * whose managers guard themselves. The task can be run on any other thread. The tasks must be run one at a time,
+     * in the order they were returned.
+     * @return the task that writes the encoded files
+     */
+    public synchronized Runnable prepareSave() {
+        Serializer snapshot = Serializer.deferred();
+        snapshot.setCompressionLevel(compressionLevel);
+        Map<String, Long> encodedVersions = new HashMap<>();
+        // requested items and demo users are not journaled, so they are written whenever they change
+        encodeIfChanged(encodedVersions, fp.REQUESTEDITEMS,
+                () -> snapshot.writeItemsToFile(fp.REQUESTEDITEMS, pendingItems));
+        encodeIfChanged(encodedVersions, fp.DEMOUSERS,
+                () -> snapshot.writeDemoUsersToFile(fp.DEMOUSERS, dum.getAllDemoUsers()));
+        boolean snapshotDue = journal.snapshotDue();
+        TransactionStore.Flush flush = null;
+        CityShardStore.Flush shardsFlush = null;
+        if (snapshotDue) {
+            // the managers are not stopped while the snapshot is encoded, so the journal is rotated first: a change
+            // whose record is in the rotated journal was made before this, and is in the snapshot, and a change made
+            // while the snapshot is encoded has its record in the new journal, which is kept
+            journal.rotate();
+            encodeIfChanged(encodedVersions, fp.ADMINS, () -> snapshot.writeAdminsToFile(fp.ADMINS, am.getAllAdmins()));
+            if (encodeIfChanged(encodedVersions, fp.CITYSHARDS, () -> true)) {
+                // only the shards of the cities whose users or items changed are written, and they are encoded while
+                // no TradingUser is being changed
+                shardsFlush = tum.callWhileUnchanged(shards::startFlush);
+            }
+            encodeIfChanged(encodedVersions, fp.FLAGGEDACCOUNTS,
+                    () -> snapshot.writeAccountsToFile(fp.FLAGGEDACCOUNTS, tum.getFlaggedAccountIds()));
+            encodeIfChanged(encodedVersions, fp.FROZENACCOUNTS,
+                    () -> snapshot.writeAccountsToFile(fp.FROZENACCOUNTS, tum.getFrozenAccountIds()));
+            encodeIfChanged(encodedVersions, fp.UNFREEZEREQUESTS,
+                    () -> snapshot.writeAccountsToFile(fp.UNFREEZEREQUESTS, am.getUnfreezeRequests()));
+            encodeIfChanged(encodedVersions, fp.ACTIONS,
+                    () -> snapshot.writeActionsToFile(fp.ACTIONS, acm.getAllActions()));
+            // usernames that are not in the registry yet are registered again at startup from the other files
+            encodeIfChanged(encodedVersions, fp.USERNAMES, () -> snapshot.writeUsernamesToFile(fp.USERNAMES, usernames));
+            if (encodeIfChanged(encodedVersions, fp.TRANSACTIONS, () -> true)) {
+                flush = transactions.startFlush();
+            }
+        }
+        TransactionStore.Flush transactionsFlush = flush;
+        CityShardStore.Flush citiesFlush = shardsFlush;
+        return () -> write(snapshot, transactionsFlush, citiesFlush, encodedVersions, snapshotDue);
+    }
+
+    /**
+     * Writes the files encoded by prepareSave, and deletes the journal records that were rotated for a snapshot once
+     * every file in the snapshot has been written.
+     */
+    private void write(Serializer snapshot, TransactionStore.Flush flush, CityShardStore.Flush shardsFlush,
+                       Map<String, Long> encodedVersions, boolean snapshotDue) {
+        List<String> failed = snapshot.writePendingFiles();
+        if (flush != null && !flush.write()) {
+            failed.add(fp.TRANSACTIONS);
+        }
+        if (shardsFlush != null && !shardsFlush.write()) {
+            failed.add(fp.CITYSHARDS);
+        }
+        synchronized (this) {
+            for (Map.Entry<String, Long> entry : encodedVersions.entrySet()) {
+                if (!failed.contains(entry.getKey())) {
+                    savedVersions.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        if (snapshotDue && failed.isEmpty()) {
+            journal.deleteRotated();
+        }
+        journal.sync();
+    }
+
+    /**
+     * Encodes the file specified by filepath with encoder, unless it has not changed since it was last written.
+     * @return true iff the file had changed and was encoded
+     */
+    private boolean encodeIfChanged(Map<String, Long> encodedVersions, String filepath, BooleanSupplier encoder) {
+        long version = versionOf(filepath);
+        Long savedVersion = savedVersions.get(filepath);
+        if (savedVersion != null && savedVersion == version) {
+            System.out.println("Skipped " + filepath + ": unchanged since it was last written.");
+            return false;
+        }
+        if (encoder.getAsBoolean()) {
+            encodedVersions.put(filepath, version);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the modification version of the data saved in the file specified by filepath, which is the sum of the
+     * versions of every manager that can change it.
+     */
+    private long versionOf(String filepath) {
+        if (filepath.equals(fp.ADMINS)) {
+            return am.getVersion();
+        } else if (filepath.equals(fp.CITYSHARDS)) {
+            return shards.getVersion();
+        } else if (filepath.equals(fp.FLAGGEDACCOUNTS) || filepath.equals(fp.FROZENACCOUNTS)
+                || filepath.equals(fp.UNFREEZEREQUESTS)) {
+            return tum.getAccountStatuses().getVersion();
+        } else if (filepath.equals(fp.TRANSACTIONS)) {
+            return transactions.getVersion();
+        } else if (filepath.equals(fp.DEMOUSERS)) {
+            return dum.getVersion();
+        } else if (filepath.equals(fp.ACTIONS)) {
+            return acm.getVersion();
+        } else if (filepath.equals(fp.USERNAMES)) {
+            return usernames.getVersion();
+        } else if (filepath.equals(fp.REQUESTEDITEMS)) {
+            // requested items are kept by the controllers rather than a manager, so compare them with the last save
+            if (!pendingItems.equals(lastSeenPendingItems)) {
+                lastSeenPendingItems = new HashMap<>(pendingItems);
+                pendingItemsVersion++;
+            }
+            return pendingItemsVersion;
+        }
+        return 0;
+    }
+}
@@ -10,8 +10,13 @@ public class Filepaths {
     public final String REQUESTEDITEMS = "requestedItems.ser";
     public final String FLAGGEDACCOUNTS = "flaggedAccounts.ser";
     public final String FROZENACCOUNTS = "frozenAccounts.ser";
+    public final String UNFREEZEREQUESTS = "unfreezeRequests.ser";
     public final String TRANSACTIONS = "transactions.ser";
     public final String ITEMS = "items.ser";
     public final String DEMOUSERS = "demoUsers.ser";
     public final String ACTIONS = "actions.ser";
+    public final String USERNAMES = "usernames.ser";
+    public final String JOURNAL = "journal.ser";
+    public final String TRANSACTIONSTORE = "transactions";
+    public final String CITYSHARDS = "shards";
 }
@@ -0,0 +1,378 @@
+package Initialization;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <h1>Initialization.Journal</h1>
+ * An append-only write-ahead journal of changes made by the managers.
+ *
+ * <p>Instead of rewriting every .ser file whenever something changes, each change is appended to the journal as a
+ * small JournalRecord. Each record is stored as its length followed by the version of the BinaryFormat and the record,
+ * so a record that was only partly written (for example if the program crashed) can be detected and dropped when the
+ * journal is read. Records appended before the BinaryFormat were serialized with ObjectOutputStream, which begins
+ * with a stream header that no version has, and are still read.</p>
+ *
+ * <p>The full .ser files are only rewritten (a "snapshot") once the journal holds enough records. At startup the
+ * snapshot is read first and then the journal is replayed on top of it.</p>
+ *
+ * <p>While a snapshot is being written in the background, the records it contains are moved aside by rotate so that
+ * new records can keep being appended. The records moved aside are only deleted once the snapshot has been written;
+ * until then they are read back along with the journal.</p>
+ *
+ * <p>A Journal can be used by several threads. Each thread encodes its record on its own and adds it to a queue of
+ * pending records, and only writing to the file is done by one thread at a time: whichever thread holds the lock
+ * writes every pending record at once, so the threads that were waiting for it find that their records were written
+ * with it. A call to put or remove returns once its record was written, and throws an UncheckedIOException if the
+ * write that its record was part of failed, so that no change is taken to be in the journal when it is not.</p>
+ */
+public class Journal {
+    /**
+     * The number of records the journal can hold before a new snapshot should be taken.
+     */
+    public static final int DEFAULT_SNAPSHOT_THRESHOLD = 500;
+
+    private static final String ROTATED_EXTENSION = ".prev";
+    // the first two bytes of a record that was serialized with ObjectOutputStream
+    private static final short LEGACY_STREAM_MAGIC = (short) 0xACED;
+
+    private final String path;
+    private final String rotatedPath;
+    private final int snapshotThreshold;
+    private final Queue<PendingRecord> pending = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock fileLock = new ReentrantLock();
+    private final AtomicInteger numRecords = new AtomicInteger();
+    private FileOutputStream file;
+    private DataOutputStream output;
+
+    /**
+     * Constructs a Journal that appends to the file specified by path.
+     * @param path The filepath corresponding to the journal file.
+     */
+    public Journal(String path) {
+        this(path, DEFAULT_SNAPSHOT_THRESHOLD);
+    }
+
+    /**
+     * Constructs a Journal that appends to the file specified by path.
+     * @param path The filepath corresponding to the journal file.
+     * @param snapshotThreshold The number of records after which a new snapshot should be taken.
+     */
+    public Journal(String path, int snapshotThreshold) {
+        this.path = path;
+        this.rotatedPath = path + ROTATED_EXTENSION;
+        this.snapshotThreshold = snapshotThreshold;
+    }
+
+    /**
+     * Appends a record saying that the record with this key was added or changed in the data set.
+     * @param filepath The filepath of the data set that was changed.
+     * @param key The key of the record that was changed.
+     * @param value The new value of the record.
+     * @throws UncheckedIOException if the record could not be written
+     */
+    public void put(String filepath, Serializable key, Serializable value) {
+        append(new JournalRecord(filepath, JournalOperations.PUT, key, value));
+    }
+
+    /**
+     * Appends a record saying that the record with this key was removed from the data set.
+     * @param filepath The filepath of the data set that was changed.
+     * @param key The key of the record that was removed.
+     * @throws UncheckedIOException if the record could not be written
+     */
+    public void remove(String filepath, Serializable key) {
+        append(new JournalRecord(filepath, JournalOperations.REMOVE, key, null));
+    }
+
+    private void append(JournalRecord record) {
+        PendingRecord pendingRecord;
+        try {
+            // the record is encoded before the lock is taken, so that threads only wait for each other to write
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream recordOutput = new DataOutputStream(bytes);
+            recordOutput.writeShort(BinaryFormat.VERSION);
+            record.writeTo(recordOutput);
+            pendingRecord = new PendingRecord(bytes.toByteArray());
+        } catch (IOException e) {
+            System.out.println("IO Exception was caught.");
+            return;
+        }
+        pending.add(pendingRecord);
+        if (!pendingRecord.done) {
+            fileLock.lock();
+            try {
+                // another thread may have written the record while this one waited for the lock
+                if (!pendingRecord.done) {
+                    writePending();
+                }
+            } finally {
+                fileLock.unlock();
+            }
+        }
+        if (pendingRecord.failure != null) {
+            throw new UncheckedIOException("The journal record could not be written", pendingRecord.failure);
+        }
+    }
+
+    /* writes every pending record to the file, and returns how many there were; the file lock must be held. If the
+     * write fails, every record in it is marked as failed for the thread that appended it, and the file is closed
+     * so that the next write opens it again */
+    private int writePending() {
+        List<PendingRecord> records = new ArrayList<>();
+        PendingRecord record;
+        while ((record = pending.poll()) != null) {
+            records.add(record);
+        }
+        if (records.isEmpty()) {
+            return 0;
+        }
+        IOException failure = null;
+        try {
+            if (output == null) {
+                file = new FileOutputStream(path, true);
+                output = new DataOutputStream(new BufferedOutputStream(file));
+            }
+            for (PendingRecord pendingRecord : records) {
+                output.writeInt(pendingRecord.bytes.length);
+                output.write(pendingRecord.bytes);
+            }
+            output.flush();
+            numRecords.addAndGet(records.size());
+        } catch (IOException e) {
+            System.out.println("IO Exception was caught.");
+            failure = e;
+            closeQuietly();
+        }
+        for (PendingRecord pendingRecord : records) {
+            pendingRecord.failure = failure;
+            pendingRecord.done = true;
+        }
+        return records.size();
+    }
+
+    /* closes the file after a failed write, whose records may have been partly written; they are cut off when the
+     * journal is read */
+    private void closeQuietly() {
+        try {
+            if (file != null) {
+                file.close();
+            }
+        } catch (IOException e) {
+            System.out.println("IO Exception was caught.");
+        }
+        output = null;
+        file = null;
+    }
+
+    /**
+     * Reads every complete record in the journal, including those moved aside by rotate, in the order they were
+     * appended. If the end of the journal holds a record that was only partly written, it is cut off so that new
+     * records are appended after the last good one.
+     * @return A List of JournalRecord.
+     */
+    public List<JournalRecord> readRecords() {
+        fileLock.lock();
+        try {
+            writePending();
+            List<JournalRecord> records = new ArrayList<>();
+            readRecords(rotatedPath, records);
+            int numRotated = records.size();
+            readRecords(path, records);
+            numRecords.set(records.size() - numRotated);
+            return records;
+        } finally {
+            fileLock.unlock();
+        }
+    }
+
+    private void readRecords(String filePath, List<JournalRecord> records) {
+        File journalFile = new File(filePath);
+        if (!journalFile.exists()) {
+            return;
+        }
+        long goodLength = 0;
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile)))) {
+            while (true) {
+                int length = input.readInt();
+                if (length < 0 || length > journalFile.length() - goodLength - 4) {
+                    break; // the length itself was only partly written
+                }
+                byte[] bytes = new byte[length];
+                input.readFully(bytes);
+                records.add(readRecord(bytes));
+                goodLength += 4 + length;
+            }
+        } catch (EOFException e) {
+            // reached the end of the journal (or the end of the last complete record)
+        } catch (IOException e) {
+            System.out.println("IO Exception was caught.");
+        } catch (ClassNotFoundException e) {
+            System.out.println("ClassNotFoundException was caught.");
+        }
+        if (goodLength < journalFile.length()) {
+            truncate(filePath, goodLength);
+        }
+    }
+
+    private JournalRecord readRecord(byte[] bytes) throws IOException, ClassNotFoundException {
+        DataInputStream recordInput = new DataInputStream(new ByteArrayInputStream(bytes));
+        short version = recordInput.readShort();
+        if (version == LEGACY_STREAM_MAGIC) {
+            return (JournalRecord) new ObjectInputStream(new ByteArrayInputStream(bytes)).readObject();
+        }
+        if (version < 1 || version > BinaryFormat.VERSION) {
+            throw new IOException("Unsupported journal record version " + version);
+        }
+        return JournalRecord.readFrom(recordInput, version);
+    }
+
+    /**
+     * Forces every appended record onto the disk.
+     */
+    public void sync() {
+        fileLock.lock();
+        try {
+            writePending();
+            if (output != null) {
+                output.flush();
+                file.getFD().sync();
+            }
+        } catch (IOException e) {
+            System.out.println("IO Exception was caught.");
+        } finally {
+            fileLock.unlock();
+        }
+    }
+
+    /**
+     * Returns whether the journal holds enough records that a new snapshot should be taken.
+     * @return true iff the number of records is at least the snapshot threshold
+     */
+    public boolean snapshotDue() {
+        return numRecords.get() >= snapshotThreshold;
+    }
+
+    /**
+     * Getter for the number of records in the journal.
+     * @return the number of records as an int
+     */
+    public int size() {
+        return numRecords.get();
+    }
+
+    /**
+     * Empties the journal, including the records moved aside by rotate. This should only be called once a snapshot
+     * containing every change has been written. Records that other threads appended and are still waiting to write
+     * may not be in that snapshot, so if there are any they are written instead and the journal is not emptied.
+     * @return true iff the journal was emptied
+     */
+    public boolean clear() {
+        fileLock.lock();
+        try {
+            if (writePending() > 0) {
+                return false;
+            }
+            close();
+            truncate(path, 0);
+            new File(rotatedPath).delete();
+            numRecords.set(0);
+            return true;
+        } finally {
+            fileLock.unlock();
+        }
+    }
+
+    /**
+     * Moves every record appended so far aside, so that the journal is empty for the records appended while a
+     * snapshot containing them is written. If records moved aside earlier have not been deleted yet, because their
+     * snapshot could not be written, the records are added after them.
+     */
+    public void rotate() {
+        fileLock.lock();
+        try {
+            sync();
+            close();
+            File journalFile = new File(path);
+            if (!journalFile.exists()) {
+                return;
+            }
+            File rotatedFile = new File(rotatedPath);
+            if (!rotatedFile.exists() && journalFile.renameTo(rotatedFile)) {
+                numRecords.set(0);
+                return;
+            }
+            try (FileOutputStream rotated = new FileOutputStream(rotatedFile, true)) {
+                Files.copy(journalFile.toPath(), rotated);
+                rotated.getFD().sync();
+            } catch (IOException e) {
+                System.out.println("IO Exception was caught.");
+                return; // leave the records in the journal
+            }
+            truncate(path, 0);
+            numRecords.set(0);
+        } finally {
+            fileLock.unlock();
+        }
+    }
+
+    /**
+     * Deletes the records moved aside by rotate. This should only be called once the snapshot that was taken when
+     * they were rotated has been written.
+     */
+    public void deleteRotated() {
+        fileLock.lock();
+        try {
+            new File(rotatedPath).delete();
+        } finally {
+            fileLock.unlock();
+        }
+    }
+
+    /**
+     * Closes the journal file. The file is opened again the next time a record is appended.
+     */
+    public void close() {
+        fileLock.lock();
+        try {
+            writePending();
+            if (output != null) {
+                output.close();
+            }
+        } catch (IOException e) {
+            System.out.println("IO Exception was caught.");
+        } finally {
+            output = null;
+            file = null;
+            fileLock.unlock();
+        }
+    }
+
+    private void truncate(String filePath, long length) {
+        try (RandomAccessFile journalFile = new RandomAccessFile(filePath, "rw")) {
+            journalFile.setLength(length);
+        } catch (IOException e) {
+            System.out.println("IO Exception was caught.");
+        }
+    }
+
+    /**
+     * An encoded record waiting to be written to the file.
+     */
+    private static class PendingRecord {
+        private final byte[] bytes;
+        // the failure is set before done, so a thread that sees done also sees whether the record was written
+        private IOException failure;
+        private volatile boolean done = false;
+
+        private PendingRecord(byte[] bytes) {
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package Initialization;
+
+/**
+ * Operations that can be recorded in the Journal.
+ * PUT: "The record with this key was added or changed, and its new value is stored with it"
+ * REMOVE: "The record with this key was removed"
+ */
+public enum JournalOperations {
+    PUT, REMOVE;
+}
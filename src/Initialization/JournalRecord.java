@@ -0,0 +1,163 @@
+package Initialization;
+
+import Actions.Action;
+import Admins.AdminUser;
+import Items.Item;
+import Transactions.Transaction;
+import Users.TradingUser;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * <h1>JournalRecord</h1>
+ * Represents a single change that was appended to the Journal.
+ * <p>A record stores the file (data set) that the change belongs to, whether the record was put or removed, the key
+ * that identifies the record in that data set (a UUID), and the new value when the record was put.</p>
+ *
+ * <p>A record is written in the BinaryFormat, with the value written by its own writeTo after a byte saying what type
+ * it is. Records that were appended before then were serialized with ObjectOutputStream, and are still read.</p>
+ */
+public class JournalRecord implements Serializable {
+    private static final long serialVersionUID = 583142423598558944L;
+    // written in front of the value so that the right type is read back
+    private static final byte NO_VALUE = -1;
+    private static final byte ID = 0;
+    private static final byte TRADING_USER = 1;
+    private static final byte ITEM = 2;
+    private static final byte ADMIN = 3;
+    private static final byte TRANSACTION = 4;
+    private static final byte ACTIONS = 5;
+    private final String filepath;
+    private final JournalOperations operation;
+    private final Serializable key;
+    private final Serializable value;
+
+    /**
+     * Constructs a JournalRecord.
+     * @param filepath the filepath of the data set this change belongs to
+     * @param operation whether the record was put or removed
+     * @param key the key identifying the record within the data set
+     * @param value the new value of the record, or null if the record was removed
+     */
+    public JournalRecord(String filepath, JournalOperations operation, Serializable key, Serializable value) {
+        this.filepath = filepath;
+        this.operation = operation;
+        this.key = key;
+        this.value = value;
+    }
+
+    /**
+     * Reads a record that was written by writeTo.
+     * @param in where the record is read from
+     * @param version the version of the BinaryFormat the record was written with
+     * @return the record
+     * @throws IOException if the record could not be read
+     */
+    public static JournalRecord readFrom(DataInput in, int version) throws IOException {
+        String filepath = BinaryFormat.readString(in);
+        JournalOperations operation = BinaryFormat.readEnum(in, JournalOperations.values());
+        UUID key = BinaryFormat.readUUID(in);
+        Serializable value;
+        byte type = in.readByte();
+        if (type == NO_VALUE) {
+            value = null;
+        } else if (type == ID) {
+            value = BinaryFormat.readUUID(in);
+        } else if (type == TRADING_USER) {
+            value = new TradingUser(in, version);
+        } else if (type == ITEM) {
+            value = new Item(in, version);
+        } else if (type == ADMIN) {
+            value = new AdminUser(in, version);
+        } else if (type == TRANSACTION) {
+            value = Transaction.readFrom(in, version);
+        } else if (type == ACTIONS) {
+            int numActions = in.readInt();
+            ArrayList<Action> actions = new ArrayList<>(numActions);
+            for (int i = 0; i < numActions; i++) {
+                actions.add(Action.readFrom(in, version));
+            }
+            value = actions;
+        } else {
+            throw new IOException("Unknown value type " + type);
+        }
+        return new JournalRecord(filepath, operation, key, value);
+    }
+
+    /**
+     * Writes this record in the BinaryFormat.
+     * @param out where the record is written
+     * @throws IOException if the record could not be written, or its key or value is not of a type a record holds
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        if (!(key instanceof UUID)) {
+            throw new IOException("Cannot write a key of " + key.getClass());
+        }
+        BinaryFormat.writeString(out, filepath);
+        BinaryFormat.writeEnum(out, operation);
+        BinaryFormat.writeUUID(out, (UUID) key);
+        if (value == null) {
+            out.writeByte(NO_VALUE);
+        } else if (value instanceof UUID) {
+            out.writeByte(ID);
+            BinaryFormat.writeUUID(out, (UUID) value);
+        } else if (value instanceof TradingUser) {
+            out.writeByte(TRADING_USER);
+            ((TradingUser) value).writeTo(out);
+        } else if (value instanceof Item) {
+            out.writeByte(ITEM);
+            ((Item) value).writeTo(out);
+        } else if (value instanceof AdminUser) {
+            out.writeByte(ADMIN);
+            ((AdminUser) value).writeTo(out);
+        } else if (value instanceof Transaction) {
+            out.writeByte(TRANSACTION);
+            ((Transaction) value).writeTo(out);
+        } else if (value instanceof List) {
+            out.writeByte(ACTIONS);
+            List<?> actions = (List<?>) value;
+            out.writeInt(actions.size());
+            for (Object action : actions) {
+                ((Action) action).writeTo(out);
+            }
+        } else {
+            throw new IOException("Cannot write a value of " + value.getClass());
+        }
+    }
+
+    /**
+     * Getter for the filepath of the data set this change belongs to.
+     * @return filepath as a String
+     */
+    public String getFilepath() { return filepath; }
+
+    /**
+     * Getter for the operation of this record.
+     * @return either PUT or REMOVE
+     */
+    public JournalOperations getOperation() { return operation; }
+
+    /**
+     * Getter for the key of this record.
+     * @return the key identifying the record within the data set
+     */
+    public Serializable getKey() { return key; }
+
+    /**
+     * Getter for the value of this record.
+     * @return the new value, or null if the record was removed
+     */
+    public Serializable getValue() { return value; }
+
+    /**
+     * Returns whether this record was a PUT.
+     * @return true iff the operation of this record is PUT
+     */
+    public boolean isPut() { return operation.equals(JournalOperations.PUT); }
+}
@@ -5,6 +5,7 @@ import Exceptions.InvalidDemoUserException;
 import Exceptions.InvalidTradingUserException;
 import Users.DemoUserManager;
 import Users.TradingUserManager;
+import Users.UsernameRegistry;
 
 /**
  * Contains methods with logic related to checking whether a user's login credentials are valid.
@@ -13,11 +14,13 @@ public class LoginController {
     private final AdminManager am;
     private final TradingUserManager um;
     private final DemoUserManager dum;
+    private final UsernameRegistry usernames;
 
-    public LoginController(AdminManager am, TradingUserManager um, DemoUserManager dum) {
+    public LoginController(AdminManager am, TradingUserManager um, DemoUserManager dum, UsernameRegistry usernames) {
         this.am = am;
         this.um = um;
         this.dum = dum;
+        this.usernames = usernames;
     }
 
     /**
@@ -39,12 +42,12 @@ public class LoginController {
     public boolean validDemoUser(String username, String password) {return dum.validDemoUser(username, password);}
 
     /**
-     * Returns if a username is available
+     * Returns if a username is available, which is looked up once in the registry shared by every user manager
      * @param username desired username
      * @return boolean
      */
     public boolean availableUsername(String username) {
-        return am.checkAvailableUsername(username) && um.checkAvailableUsername(username) && dum.checkAvailableUsername(username);
+        return usernames.isAvailable(username);
     }
 
     /**
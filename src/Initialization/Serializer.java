@@ -4,64 +4,224 @@ import Actions.Action;
 import Admins.AdminUser;
 import Items.Item;
 import Transactions.Transaction;
+import Transactions.TransactionSegmentIndex;
+import Transactions.TransactionSummary;
 import Users.DemoUser;
 import Users.TradingUser;
+import Users.UsernameRegistry;
 
 import java.io.*;
-import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.UUID;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * <h1>Initialization.Serializer</h1>
  * This class is responsible for the serialization and deserialization of collections of objects.
  *
+ * <p>Collections are written in the BinaryFormat: the size of the collection followed by each element, which writes
+ * its own fields. Files are read and written through a buffered FileChannel. Files that were saved with
+ * ObjectOutputStream before the BinaryFormat was introduced can still be read, and are rewritten in the BinaryFormat
+ * the next time they are saved.</p>
+ *
+ * <p>Files can optionally be compressed in independent blocks (see setCompressionLevel), which are decompressed in
+ * parallel when the file is read. Compressed and uncompressed files are both read the same way.</p>
+ *
+ * <p>Each file is written to a temporary file first, which is forced onto the disk and then renamed over the old file,
+ * so a crash while saving leaves either the old or the new file behind, never a mix of both.</p>
+ *
  * <p>General ideas were taken from week 6 StudentManager.java example in ReadWriteEx</p>
  */
 public class Serializer {
+    /**
+     * The compression level of a Serializer that does not compress the files it writes.
+     */
+    public static final int UNCOMPRESSED = -2;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int READ_AHEAD_BLOCKS = Math.max(2, Runtime.getRuntime().availableProcessors());
+    // the first two bytes of a file written by ObjectOutputStream
+    private static final short LEGACY_MAGIC = (short) 0xACED;
+    private static final String TEMP_EXTENSION = ".tmp";
+    // the magic and version at the start of every file
+    private static final int HEADER_LENGTH = Integer.BYTES + Short.BYTES;
+    // the id and length of a transaction in the index of a file of transactions
+    private static final int INDEX_ENTRY_LENGTH = 2 * Long.BYTES + Integer.BYTES;
+
+    // the files encoded by a deferred Serializer that have not been written yet, or null if files are written at once
+    private final List<PendingFile> pendingFiles;
+    private volatile int compressionLevel = UNCOMPRESSED;
 
     /**
-     * Writes a List of TradingUser into a file specified by a filepath.
-     * @param path The filepath corresponding to the file it is written to.
-     * @param tradingUsers A List of TradingUser that is being written.
+     * Writes the contents of a file after its header.
      */
-    public void writeUsersToFile(String path, List<TradingUser> tradingUsers) {
-        try {
-            // create a connection to the file specified by path
-            OutputStream file = new FileOutputStream(path);
-            ObjectOutput output = new ObjectOutputStream(file);
+    interface Writer {
+        void write(DataOutput out) throws IOException;
+    }
 
-            // write user into the file
-            output.writeObject(tradingUsers);
+    /**
+     * Reads the contents of a file after its header.
+     */
+    interface Reader<T> {
+        T read(DataInput in, int version) throws IOException;
+    }
 
-            // close the file
-            output.close();
-        } catch (IOException e) {
-            System.out.println("IOException was caught.");
+    /**
+     * Constructs a Serializer that writes each file as soon as one of its write methods is called.
+     */
+    public Serializer() {
+        pendingFiles = null;
+    }
+
+    private Serializer(List<PendingFile> pendingFiles) {
+        this.pendingFiles = pendingFiles;
+    }
+
+    /**
+     * Returns a Serializer whose write methods only encode the contents of the file in memory, so that the contents
+     * are fixed at the time of the call. The files are written later, possibly on another thread, by writePendingFiles.
+     * @return a deferred Serializer
+     */
+    public static Serializer deferred() {
+        return new Serializer(new ArrayList<>());
+    }
+
+    /**
+     * Sets whether the files written from now on are compressed, and how much.
+     * @param compressionLevel a Deflater compression level from Deflater.BEST_SPEED to Deflater.BEST_COMPRESSION, or
+     *                         UNCOMPRESSED
+     */
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * Writes every file that was encoded by this deferred Serializer since the last call, in the order they were
+     * encoded.
+     * @return a List of the filepaths of the files that could not be written
+     */
+    public List<String> writePendingFiles() {
+        List<PendingFile> files;
+        synchronized (pendingFiles) {
+            files = new ArrayList<>(pendingFiles);
+            pendingFiles.clear();
         }
+        List<String> failed = new ArrayList<>();
+        for (PendingFile file : files) {
+            if (!writeFile(file.path, out -> out.write(file.contents))) {
+                failed.add(file.path);
+            }
+        }
+        return failed;
     }
 
     /**
-     * Reads a List of TradingUser from a file specified by a filepath.
-     * @param path The filepath corresponding to the file it is being read from.
-     * @return A List of TradingUser.
+     * Writes a file, or only encodes it if this Serializer is deferred.
      */
-    public List<TradingUser> readUsersFromFile(String path) {
-        try {
-            // create a connection to the file specified by path
-            InputStream file = new FileInputStream(path);
-            ObjectInput input = new ObjectInputStream(file);
+    boolean write(String path, Writer writer) {
+        if (pendingFiles != null) {
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                writer.write(new DataOutputStream(bytes));
+                synchronized (pendingFiles) {
+                    pendingFiles.add(new PendingFile(path, bytes.toByteArray()));
+                }
+                return true;
+            } catch (IOException e) {
+                System.out.println("IO Exception was caught.");
+                return false;
+            }
+        }
+        return writeFile(path, writer);
+    }
 
-            // deserialize the list
-            List<TradingUser> tradingUsers = (List<TradingUser>) input.readObject();
+    /**
+     * Writes a file right away, even if this Serializer is deferred.
+     */
+    boolean writeFile(String path, Writer writer) {
+        // write the whole file next to the old one first, so that a crash never leaves a partly written file behind
+        Path target = Paths.get(path);
+        Path temp = Paths.get(path + TEMP_EXTENSION);
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                DataOutputStream output = new DataOutputStream(
+                        new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+                int level = compressionLevel;
+                if (level == UNCOMPRESSED) {
+                    output.writeInt(BinaryFormat.MAGIC);
+                    output.writeShort(BinaryFormat.VERSION);
+                    writer.write(output);
+                } else {
+                    output.writeInt(BinaryFormat.COMPRESSED_MAGIC);
+                    output.writeShort(BinaryFormat.VERSION);
+                    BlockDeflaterOutputStream blocks = new BlockDeflaterOutputStream(output, level);
+                    DataOutputStream compressedOutput = new DataOutputStream(blocks);
+                    writer.write(compressedOutput);
+                    compressedOutput.flush();
+                    blocks.finish();
+                }
+                output.flush();
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            syncDirectory(target.toAbsolutePath().getParent());
+            return true;
+        } catch (IOException e) {
+            System.out.println("IO Exception was caught.");
+            return false;
+        }
+    }
 
-            // close the file
-            input.close();
+    /**
+     * Forces the rename of a file in this directory onto the disk. Not every platform allows a directory to be
+     * opened, in which case the rename is left to the operating system.
+     */
+    private void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // the rename itself has already happened
+        }
+    }
 
-            // return the list
-            return tradingUsers;
-        } catch(IOException e) {
+    /**
+     * Reads a file in the BinaryFormat with reader, after its header, or returns the object in a file saved with
+     * ObjectOutputStream.
+     */
+    @SuppressWarnings("unchecked")
+    <T> T read(String path, Reader<T> reader) {
+        try (FileChannel channel = FileChannel.open(Paths.get(path));
+             DataInputStream input = new DataInputStream(
+                     new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE))) {
+            input.mark(Integer.BYTES);
+            if (input.readShort() == LEGACY_MAGIC) {
+                // this file was saved with ObjectOutputStream
+                input.reset();
+                return (T) new ObjectInputStream(input).readObject();
+            }
+            input.reset();
+            int magic = input.readInt();
+            if (magic != BinaryFormat.MAGIC && magic != BinaryFormat.COMPRESSED_MAGIC) {
+                throw new IOException(path + " is not a saved file");
+            }
+            int version = input.readShort();
+            if (version > BinaryFormat.VERSION) {
+                throw new IOException(path + " was saved by a newer version");
+            }
+            if (magic == BinaryFormat.COMPRESSED_MAGIC) {
+                return reader.read(new DataInputStream(new BlockInflaterInputStream(input, ForkJoinPool.commonPool(),
+                        READ_AHEAD_BLOCKS)), version);
+            }
+            return reader.read(input, version);
+        } catch (IOException e) {
             System.out.println("IO Exception was caught.");
             return null;
         } catch(ClassNotFoundException e) {
@@ -70,20 +230,115 @@ public class Serializer {
         }
     }
 
+    private void writeTradingUsers(DataOutput out, List<TradingUser> tradingUsers) throws IOException {
+        out.writeInt(tradingUsers.size());
+        for (TradingUser tradingUser : tradingUsers) {
+            tradingUser.writeTo(out);
+        }
+    }
+
+    private List<TradingUser> readTradingUsers(DataInput in, int version) throws IOException {
+        int size = in.readInt();
+        List<TradingUser> tradingUsers = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            tradingUsers.add(new TradingUser(in, version));
+        }
+        return tradingUsers;
+    }
+
+    private void writeItemMap(DataOutput out, Map<UUID, Item> itemMap) throws IOException {
+        out.writeInt(itemMap.size());
+        for (Item item : itemMap.values()) {
+            item.writeTo(out);
+        }
+    }
+
+    private Map<UUID, Item> readItemMap(DataInput in, int version) throws IOException {
+        int size = in.readInt();
+        Map<UUID, Item> itemMap = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            Item item = new Item(in, version);
+            itemMap.put(item.getId(), item);
+        }
+        return itemMap;
+    }
+
+    /**
+     * Writes a List of TradingUser into a file specified by a filepath.
+     * @param path The filepath corresponding to the file it is written to.
+     * @param tradingUsers A List of TradingUser that is being written.
+     * @return true iff the file was written.
+     */
+    public boolean writeUsersToFile(String path, List<TradingUser> tradingUsers) {
+        return write(path, out -> writeTradingUsers(out, tradingUsers));
+    }
+
+    /**
+     * Reads a List of TradingUser from a file specified by a filepath.
+     * @param path The filepath corresponding to the file it is being read from.
+     * @return A List of TradingUser.
+     */
+    public List<TradingUser> readUsersFromFile(String path) {
+        return read(path, this::readTradingUsers);
+    }
+
+    /**
+     * Writes the TradingUsers and Items of one shard of a CityShardStore into a file specified by a filepath.
+     * @param path The filepath corresponding to the file it is written to.
+     * @param tradingUsers The TradingUsers in the shard.
+     * @param items The Items in the shard.
+     * @return true iff the file was written.
+     */
+    public boolean writeShardToFile(String path, Collection<TradingUser> tradingUsers, Collection<Item> items) {
+        return write(path, out -> {
+            out.writeInt(tradingUsers.size());
+            for (TradingUser tradingUser : tradingUsers) {
+                tradingUser.writeTo(out);
+            }
+            out.writeInt(items.size());
+            for (Item item : items) {
+                item.writeTo(out);
+            }
+        });
+    }
+
+    /**
+     * Reads the TradingUsers and Items of one shard of a CityShardStore from a file specified by a filepath.
+     * @param path The filepath corresponding to the file it is being read from.
+     * @param tradingUsers The Map of UUID to TradingUser that the TradingUsers are added to.
+     * @param items The Map of UUID to Item that the Items are added to.
+     * @return true iff the file was read.
+     */
+    public boolean readShardFromFile(String path, Map<UUID, TradingUser> tradingUsers, Map<UUID, Item> items) {
+        Boolean read = read(path, (in, version) -> {
+            int numUsers = in.readInt();
+            for (int i = 0; i < numUsers; i++) {
+                TradingUser tradingUser = new TradingUser(in, version);
+                tradingUsers.put(tradingUser.getUserId(), tradingUser);
+            }
+            int numItems = in.readInt();
+            for (int i = 0; i < numItems; i++) {
+                Item item = new Item(in, version);
+                items.put(item.getId(), item);
+            }
+            return true;
+        });
+        return read != null;
+    }
+
     /**
      * Writes a List of AdminUser into a file specified by a filepath.
      * @param path The filepath corresponding to the file it is written to.
      * @param admins A List of AdminUser that is being written.
+     * @return true iff the file was written.
      */
-    public void writeAdminsToFile(String path, List<AdminUser> admins) {
-        try {
-            OutputStream file = new FileOutputStream(path);
-            ObjectOutput output = new ObjectOutputStream(file);
-            output.writeObject(admins);
-            output.close();
-        } catch (IOException e) {
-            System.out.println("IO Exception was caught.");
-        }
+    public boolean writeAdminsToFile(String path, List<AdminUser> admins) {
+        return write(path, out -> {
+            out.writeInt(admins.size());
+            for (AdminUser admin : admins) {
+                admin.writeTo(out);
+            }
+        });
     }
 
     /**
@@ -92,147 +347,356 @@ public class Serializer {
      * @return A List of AdminUser.
      */
     public List<AdminUser> readAdminsFromFile(String path) {
-        try {
-            InputStream file = new FileInputStream(path);
-            ObjectInput input = new ObjectInputStream(file);
-            List<AdminUser> admins = (List<AdminUser>) input.readObject();
-            input.close();
+        return read(path, (in, version) -> {
+            int size = in.readInt();
+            List<AdminUser> admins = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                admins.add(new AdminUser(in, version));
+            }
             return admins;
-        } catch (IOException e) {
-            System.out.println("IO Exception was caught.");
-            return null;
-        } catch(ClassNotFoundException e) {
-            System.out.println("ClassNotFoundException was caught.");
-            return null;
-        }
+        });
     }
 
     /**
      * Writes a Map of UUID to Transaction into a file specified by a filepath.
      * @param path The filepath corresponding to the file it is written to.
      * @param transactionMap A Map of UUID to Transaction.
+     * @return true iff the file was written.
      */
-    public void writeTransactionsToFile(String path, Map<UUID, Transaction> transactionMap) {
-        try {
-            OutputStream file = new FileOutputStream(path);
-            ObjectOutput output = new ObjectOutputStream(file);
-            output.writeObject(transactionMap);
-            output.close();
-        } catch (IOException e) {
-            System.out.println("IO Exception was caught.");
-        }
+    public boolean writeTransactionsToFile(String path, Map<UUID, Transaction> transactionMap) {
+        // the stamp tells a TransactionSegmentIndex read before this write that the file has changed
+        long stamp = ThreadLocalRandom.current().nextLong();
+        return write(path, out -> {
+            ByteArrayOutputStream summaries = new ByteArrayOutputStream();
+            DataOutputStream summaryOutput = new DataOutputStream(summaries);
+            List<byte[]> records = new ArrayList<>(transactionMap.size());
+            for (Transaction transaction : transactionMap.values()) {
+                new TransactionSummary(transaction).writeTo(summaryOutput);
+                ByteArrayOutputStream record = new ByteArrayOutputStream();
+                transaction.writeTo(new DataOutputStream(record));
+                records.add(record.toByteArray());
+            }
+            out.writeInt(records.size());
+            out.writeLong(stamp);
+            out.writeInt(summaries.size());
+            out.write(summaries.toByteArray());
+            int i = 0;
+            for (UUID id : transactionMap.keySet()) {
+                BinaryFormat.writeUUID(out, id);
+                out.writeInt(records.get(i++).length);
+            }
+            for (byte[] record : records) {
+                out.write(record);
+            }
+        });
+    }
 
     /**
      * Reads a Map of UUID to Transaction from a file specified by a filepath.
      * @param path The filepath corresponding to the file it is being read from.
      * @return A Map of UUID to Transaction.
      */
-}
-
     public Map<UUID, Transaction> readTransactionMapFromFile(String path) {
-        try {
-            InputStream file = new FileInputStream(path);
-            ObjectInput input = new ObjectInputStream(file);
-            Map<UUID, Transaction> transactionMap = (Map<UUID, Transaction>) input.readObject();
-            input.close();
+        return read(path, (in, version) -> {
+            int size = in.readInt();
+            if (version >= 7) {
+                in.readLong();
+                skipFully(in, in.readInt() + (long) size * INDEX_ENTRY_LENGTH);
+            } else {
+                readTransactionSummaries(in, version, size);
+            }
+            Map<UUID, Transaction> transactionMap = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                Transaction transaction = Transaction.readFrom(in, version);
+                transactionMap.put(transaction.getId(), transaction);
+            }
             return transactionMap;
+        });
+    }
+
+    /**
+     * Reads only the TransactionSummary of each transaction in a file written by writeTransactionsToFile, without
+     * reading the transactions themselves. Files written before version 6 have no summaries, so their transactions are
+     * read and summarized.
+     * @param path The filepath corresponding to the file it is being read from.
+     * @return A List of TransactionSummary.
+     */
+    public List<TransactionSummary> readTransactionSummariesFromFile(String path) {
+        if (isLegacyFile(path)) {
+            Map<UUID, Transaction> transactionMap = readTransactionMapFromFile(path);
+            return transactionMap == null ? null : summarize(transactionMap.values());
+        }
+        return read(path, (in, version) -> {
+            int size = in.readInt();
+            if (version >= 7) {
+                in.readLong();
+                in.readInt();
+            }
+            if (version >= 6) {
+                return readTransactionSummaries(in, version, size);
+            }
+            List<Transaction> transactions = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                transactions.add(Transaction.readFrom(in, version));
+            }
+            return summarize(transactions);
+        });
+    }
+
+    /**
+     * Reads only where each transaction is in a file written by writeTransactionsToFile, so that the transactions can
+     * be read one at a time by readTransactionFromFile. Files written before version 7 have no such index.
+     * @param path The filepath corresponding to the file it is being read from.
+     * @return The TransactionSegmentIndex of the file, or null if it has none or could not be read.
+     */
+    public TransactionSegmentIndex readTransactionIndexFromFile(String path) {
+        if (isLegacyFile(path)) {
+            return null;
+        }
+        return read(path, (in, version) -> {
+            if (version < 7) {
+                return null;
+            }
+            int size = in.readInt();
+            long stamp = in.readLong();
+            int summariesLength = in.readInt();
+            skipFully(in, summariesLength);
+            UUID[] ids = new UUID[size];
+            long[] offsets = new long[size];
+            int[] lengths = new int[size];
+            long offset = Integer.BYTES + Long.BYTES + Integer.BYTES + summariesLength
+                    + (long) size * INDEX_ENTRY_LENGTH;
+            for (int i = 0; i < size; i++) {
+                ids[i] = BinaryFormat.readUUID(in);
+                lengths[i] = in.readInt();
+                offsets[i] = offset;
+                offset += lengths[i];
+            }
+            return new TransactionSegmentIndex(stamp, ids, offsets, lengths);
+        });
+    }
+
+    /**
+     * Reads one transaction from a file written by writeTransactionsToFile, without reading the others. An
+     * uncompressed file is read from the position of the transaction; a compressed one is decompressed up to it.
+     * @param path The filepath corresponding to the file it is being read from.
+     * @param index The TransactionSegmentIndex that was read from the file.
+     * @param i The position of the transaction in the index.
+     * @return The Transaction, or null if the file has been written again since the index was read, or could not be
+     * read.
+     */
+    public Transaction readTransactionFromFile(String path, TransactionSegmentIndex index, int i) {
+        try (FileChannel channel = FileChannel.open(Paths.get(path))) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH + Integer.BYTES + Long.BYTES);
+            readFully(channel, header, 0);
+            int magic = header.getInt();
+            int version = header.getShort();
+            if (magic == BinaryFormat.COMPRESSED_MAGIC) {
+                return readCompressedTransaction(path, index, i);
+            }
+            header.getInt();
+            if (magic != BinaryFormat.MAGIC || version < 7 || version > BinaryFormat.VERSION
+                    || header.getLong() != index.getStamp()) {
+                return null;
+            }
+            ByteBuffer record = ByteBuffer.allocate(index.getLength(i));
+            readFully(channel, record, HEADER_LENGTH + index.getOffset(i));
+            return Transaction.readFrom(new DataInputStream(new ByteArrayInputStream(record.array())), version);
         } catch (IOException e) {
             System.out.println("IO Exception was caught.");
             return null;
-        } catch(ClassNotFoundException e) {
-            System.out.println("ClassNotFoundException was caught.");
-            return null;
         }
     }
 
+    private Transaction readCompressedTransaction(String path, TransactionSegmentIndex index, int i) {
+        return read(path, (in, version) -> {
+            in.readInt();
+            if (version < 7 || in.readLong() != index.getStamp()) {
+                return null;
+            }
+            skipFully(in, index.getOffset(i) - Integer.BYTES - Long.BYTES);
+            return Transaction.readFrom(in, version);
+        });
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+        buffer.flip();
+    }
+
+    private static void skipFully(DataInput in, long length) throws IOException {
+        while (length > 0) {
+            int skipped = in.skipBytes((int) Math.min(length, Integer.MAX_VALUE));
+            if (skipped <= 0) {
+                throw new EOFException();
+            }
+            length -= skipped;
+        }
+    }
+
+    private List<TransactionSummary> readTransactionSummaries(DataInput in, int version, int size) throws IOException {
+        List<TransactionSummary> summaries = new ArrayList<>();
+        if (version >= 6) {
+            for (int i = 0; i < size; i++) {
+                summaries.add(new TransactionSummary(in, version));
+            }
+        }
+        return summaries;
+    }
+
+    private List<TransactionSummary> summarize(Collection<Transaction> transactions) {
+        List<TransactionSummary> summaries = new ArrayList<>(transactions.size());
+        for (Transaction transaction : transactions) {
+            summaries.add(new TransactionSummary(transaction));
+        }
+        return summaries;
+    }
+
     /**
-     * Writes a Map of Item to TradingUser into a file specified by a filepath.
-     * @param path The filepath corresponding to the file it is written to.
-     * @param pendingItems A Map of Item to TradingUser.
+     * Returns whether a file was saved with ObjectOutputStream, before the BinaryFormat was introduced.
      */
-    public void writeItemsToFile(String path, Map<Item, TradingUser> pendingItems) {
-        try {
-            OutputStream file = new FileOutputStream(path);
-            ObjectOutput output = new ObjectOutputStream(file);
-            output.writeObject(pendingItems);
-            output.close();
+    boolean isLegacyFile(String path) {
+        try (DataInputStream input = new DataInputStream(new FileInputStream(path))) {
+            return input.readShort() == LEGACY_MAGIC;
         } catch (IOException e) {
-            System.out.println("IO Exception was caught.");
+            return false;
         }
     }
 
     /**
-     * Reads a Map of Item to TradingUser from a file specified by a filepath.
-     * @param path The filepath corresponding to the file it is being read from.
-     * @return A Map of Item to TradingUser.
+     * Returns whether a file was written compressed in blocks.
      */
-    public Map<Item, TradingUser> readItemsFromFile(String path) {
-        try {
-            InputStream file = new FileInputStream(path);
-            ObjectInput input = new ObjectInputStream(file);
-            Map<Item, TradingUser> pendingItems = (Map<Item, TradingUser>) input.readObject();
-            input.close();
-            return pendingItems;
+    boolean isCompressedFile(String path) {
+        try (DataInputStream input = new DataInputStream(new FileInputStream(path))) {
+            return input.readInt() == BinaryFormat.COMPRESSED_MAGIC;
         } catch (IOException e) {
-            System.out.println("IO Exception was caught.");
-            return null;
-        } catch(ClassNotFoundException e) {
-            System.out.println("ClassNotFoundException was caught.");
-            return null;
+            return false;
         }
     }
 
     /**
-     * Writes a List of TradingUser into a file specified by a filepath.
-     * @param path The filepath corresponding to the file it is written to.
-     * @param Accounts A List of TradingUser.
+     * Returns whether a file was written in the current version of the BinaryFormat, so that files written by an older
+     * version can be rewritten in the current one.
+     * @param path The filepath corresponding to the file being checked.
+     * @return true iff the file starts with the header of the current version
      */
-    public void writeAccountsToFile(String path, List<TradingUser> Accounts) {
-        try {
-            OutputStream file = new FileOutputStream(path);
-            ObjectOutput output = new ObjectOutputStream(file);
-            output.writeObject(Accounts);
-            output.close();
+    public boolean isCurrentVersion(String path) {
+        try (DataInputStream input = new DataInputStream(new FileInputStream(path))) {
+            int magic = input.readInt();
+            return (magic == BinaryFormat.MAGIC || magic == BinaryFormat.COMPRESSED_MAGIC)
+                    && input.readShort() == BinaryFormat.VERSION;
         } catch (IOException e) {
-            System.out.println("IO Exception was caught.");
+            return false;
         }
     }
 
     /**
-     * Reads a List of TradingUser from a file specified by a filepath.
+     * Reads only the number of transactions in a file written by writeTransactionsToFile, without reading the
+     * transactions themselves.
      * @param path The filepath corresponding to the file it is being read from.
-     * @return A List of TradingUser
+     * @return The number of transactions in the file, or 0 if it could not be read.
      */
-    public List<TradingUser> readAccountsFromFile(String path) {
-        try {
-            InputStream file = new FileInputStream(path);
-            ObjectInput input = new ObjectInputStream(file);
-            List<TradingUser> Accounts = (List<TradingUser>) input.readObject();
-            input.close();
-            return Accounts;
-        } catch (IOException e) {
-            System.out.println("IO Exception was caught.");
+    public int readTransactionCountFromFile(String path) {
+        Integer count = read(path, (in, version) -> in.readInt());
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Writes a Map of Item to the id of the TradingUser who requested it into a file specified by a filepath.
+     * @param path The filepath corresponding to the file it is written to.
+     * @param pendingItems A Map of Item to UUID.
+     * @return true iff the file was written.
+     */
+    public boolean writeItemsToFile(String path, Map<Item, UUID> pendingItems) {
+        return write(path, out -> {
+            out.writeInt(pendingItems.size());
+            for (Map.Entry<Item, UUID> entry : pendingItems.entrySet()) {
+                entry.getKey().writeTo(out);
+                BinaryFormat.writeUUID(out, entry.getValue());
+            }
+        });
+    }
+
+    /**
+     * Reads a Map of Item to the id of the TradingUser who requested it from a file specified by a filepath. Files
+     * written before version 2 hold the whole TradingUser, which is replaced by its id.
+     * @param path The filepath corresponding to the file it is being read from.
+     * @return A Map of Item to UUID.
+     */
+    public Map<Item, UUID> readItemsFromFile(String path) {
+        Map<Item, ?> pendingItems = read(path, (in, version) -> {
+            int size = in.readInt();
+            Map<Item, Object> map = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                Item item = new Item(in, version);
+                map.put(item, version < 2 ? new TradingUser(in, version) : BinaryFormat.readUUID(in));
+            }
+            return map;
+        });
+        if (pendingItems == null) {
             return null;
-        } catch(ClassNotFoundException e) {
-            System.out.println("ClassNotFoundException was caught.");
+        }
+        Map<Item, UUID> ownerIds = new HashMap<>();
+        for (Map.Entry<Item, ?> entry : pendingItems.entrySet()) {
+            ownerIds.put(entry.getKey(), toUserId(entry.getValue()));
+        }
+        return ownerIds;
+    }
+
+    /**
+     * Writes a List of the ids of TradingUsers into a file specified by a filepath.
+     * @param path The filepath corresponding to the file it is written to.
+     * @param accounts A List of UUID.
+     * @return true iff the file was written.
+     */
+    public boolean writeAccountsToFile(String path, List<UUID> accounts) {
+        return write(path, out -> BinaryFormat.writeUUIDList(out, accounts));
+    }
+
+    /**
+     * Reads a List of the ids of TradingUsers from a file specified by a filepath. Files written before version 2
+     * hold the whole TradingUsers, which are replaced by their ids.
+     * @param path The filepath corresponding to the file it is being read from.
+     * @return A List of UUID
+     */
+    public List<UUID> readAccountsFromFile(String path) {
+        List<?> accounts = read(path, (in, version) -> {
+            if (version < 2) {
+                return readTradingUsers(in, version);
+            }
+            List<UUID> ids = new ArrayList<>();
+            BinaryFormat.readUUIDList(in, ids);
+            return ids;
+        });
+        if (accounts == null) {
             return null;
         }
+        List<UUID> ids = new ArrayList<>(accounts.size());
+        for (Object account : accounts) {
+            ids.add(toUserId(account));
+        }
+        return ids;
+    }
+
+    /**
+     * Returns the id of a user that was saved either as a TradingUser or, from version 2, as its id.
+     */
+    private UUID toUserId(Object user) {
+        return user instanceof TradingUser ? ((TradingUser) user).getUserId() : (UUID) user;
     }
 
     /**
      * Writes a Map of UUID to Item into a file specified by a filepath.
      * @param path The filepath corresponding to the file it is written to.
      * @param itemMap A Map of UUID to Item.
+     * @return true iff the file was written.
      */
-    public void writeItemsMapToFile(String path, Map<UUID, Item> itemMap) {
-        try {
-            OutputStream file = new FileOutputStream(path);
-            ObjectOutput output = new ObjectOutputStream(file);
-            output.writeObject(itemMap);
-            output.close();
-        } catch (IOException e) {
-            System.out.println("IO Exception was caught.");
-        }
+    public boolean writeItemsMapToFile(String path, Map<UUID, Item> itemMap) {
+        return write(path, out -> writeItemMap(out, itemMap));
     }
 
     /**
@@ -241,40 +705,22 @@ public class Serializer {
      * @return A Map of UUID to Item.
      */
     public Map<UUID, Item> readItemMapFromFile(String path) {
-        try {
-            InputStream file = new FileInputStream(path);
-            ObjectInput input = new ObjectInputStream(file);
-            Map<UUID, Item> itemMap = (Map<UUID, Item>) input.readObject();
-            input.close();
-            return itemMap;
-        } catch (IOException e) {
-            System.out.println("IO Exception was caught.");
-            return null;
-        } catch(ClassNotFoundException e) {
-            System.out.println("ClassNotFoundException was caught.");
-            return null;
-        }
+        return read(path, this::readItemMap);
     }
 
     /**
      * Writes a List of DemoUser into a file specified by a filepath.
      * @param path The filepath corresponding to the file it is written to.
      * @param demoUsers A List of DemoUser that is being written.
+     * @return true iff the file was written.
      */
-    public void writeDemoUsersToFile(String path, List<DemoUser> demoUsers) {
-        try {
-            // create a connection to the file specified by path
-            OutputStream file = new FileOutputStream(path);
-            ObjectOutput output = new ObjectOutputStream(file);
-
-            // write user into the file
-            output.writeObject(demoUsers);
-
-            // close the file
-            output.close();
-        } catch (IOException e) {
-            System.out.println("IOException was caught.");
-        }
+    public boolean writeDemoUsersToFile(String path, List<DemoUser> demoUsers) {
+        return write(path, out -> {
+            out.writeInt(demoUsers.size());
+            for (DemoUser demoUser : demoUsers) {
+                demoUser.writeTo(out);
+            }
+        });
     }
 
     /**
@@ -283,42 +729,33 @@ public class Serializer {
      * @return A List of DemoUser.
      */
     public List<DemoUser> readDemoUsersFromFile(String path) {
-        try {
-            // create a connection to the file specified by path
-            InputStream file = new FileInputStream(path);
-            ObjectInput input = new ObjectInputStream(file);
-
-            // deserialize the list
-            List<DemoUser> demoUsers = (List<DemoUser>) input.readObject();
-
-            // close the file
-            input.close();
-
-            // return the list
+        return read(path, (in, version) -> {
+            int size = in.readInt();
+            List<DemoUser> demoUsers = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                demoUsers.add(new DemoUser(in, version));
+            }
             return demoUsers;
-        } catch(IOException e) {
-            System.out.println("IO Exception was caught.");
-            return null;
-        } catch(ClassNotFoundException e) {
-            System.out.println("ClassNotFoundException was caught.");
-            return null;
-        }
+        });
     }
 
     /**
      * Writes a Map of UUID to a List of Action into a file specified by a filepath.
      * @param path The filepath corresponding to the file it is written to.
      * @param actionMap A Map of UUID to a List of Action.
+     * @return true iff the file was written.
      */
-    public void writeActionsToFile(String path, LinkedHashMap<UUID, List<Action>> actionMap) {
-        try {
-            OutputStream file = new FileOutputStream(path);
-            ObjectOutput output = new ObjectOutputStream(file);
-            output.writeObject(actionMap);
-            output.close();
-        } catch (IOException e) {
-            System.out.println("IO Exception was caught.");
-        }
+    public boolean writeActionsToFile(String path, LinkedHashMap<UUID, List<Action>> actionMap) {
+        return write(path, out -> {
+            out.writeInt(actionMap.size());
+            for (Map.Entry<UUID, List<Action>> entry : actionMap.entrySet()) {
+                BinaryFormat.writeUUID(out, entry.getKey());
+                out.writeInt(entry.getValue().size());
+                for (Action action : entry.getValue()) {
+                    action.writeTo(out);
+                }
+            }
+        });
     }
 
     /**
@@ -327,18 +764,51 @@ public class Serializer {
      * @return A Map of UUID to a List of Action.
      */
     public LinkedHashMap<UUID, List<Action>> readActionsFromFile(String path) {
-        try {
-            InputStream file = new FileInputStream(path);
-            ObjectInput input = new ObjectInputStream(file);
-            LinkedHashMap<UUID, List<Action>> actionMap = (LinkedHashMap<UUID, List<Action>>) input.readObject();
-            input.close();
+        return read(path, (in, version) -> {
+            int size = in.readInt();
+            LinkedHashMap<UUID, List<Action>> actionMap = new LinkedHashMap<>();
+            for (int i = 0; i < size; i++) {
+                UUID userId = BinaryFormat.readUUID(in);
+                int numActions = in.readInt();
+                List<Action> actions = new ArrayList<>(numActions);
+                for (int j = 0; j < numActions; j++) {
+                    actions.add(Action.readFrom(in, version));
+                }
+                actionMap.put(userId, actions);
+            }
             return actionMap;
-        } catch (IOException e) {
-            System.out.println("IO Exception was caught.");
-            return null;
-        } catch(ClassNotFoundException e) {
-            System.out.println("ClassNotFoundException was caught.");
-            return null;
+        });
+    }
+
+    /**
+     * Writes a UsernameRegistry into a file specified by a filepath.
+     * @param path The filepath corresponding to the file it is written to.
+     * @param usernames The UsernameRegistry that is being written.
+     * @return true iff the file was written.
+     */
+    public boolean writeUsernamesToFile(String path, UsernameRegistry usernames) {
+        return write(path, usernames::writeTo);
+    }
+
+    /**
+     * Reads a UsernameRegistry from a file specified by a filepath.
+     * @param path The filepath corresponding to the file it is being read from.
+     * @return A UsernameRegistry.
+     */
+    public UsernameRegistry readUsernamesFromFile(String path) {
+        return read(path, UsernameRegistry::new);
+    }
+
+    /**
+     * The encoded contents of a file that a deferred Serializer has not written yet.
+     */
+    private static class PendingFile {
+        private final String path;
+        private final byte[] contents;
+
+        private PendingFile(String path, byte[] contents) {
+            this.path = path;
+            this.contents = contents;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,87 @@
+package Initialization;
+
+import Users.TradingUser;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * <h1>Initialization.SerializerBenchmark</h1>
+ * Compares the size and the save/load time of users.ser in the BinaryFormat against the ObjectOutputStream format
+ * that was used before it.
+ *
+ * <p>Usage: SerializerBenchmark [number of users] [directory]. By default 1,000,000 TradingUsers are generated, each
+ * with a city, a few items in their inventory and wishlist, a current transaction and a short transaction history.
+ * Run with a large enough heap (for example -Xmx4g) for the default number of users.</p>
+ */
+public class SerializerBenchmark {
+    private static final String[] CITIES = {"Toronto", "Mississauga", "Brampton", "Markham", "Vaughan", "Oakville"};
+
+    public static void main(String[] args) throws IOException, ClassNotFoundException {
+        int numUsers = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        File directory = new File(args.length > 1 ? args[1] : System.getProperty("java.io.tmpdir"));
+        File legacyFile = new File(directory, "benchmark-legacy.ser");
+        File binaryFile = new File(directory, "benchmark-binary.ser");
+
+        List<TradingUser> tradingUsers = generateUsers(numUsers);
+        System.out.println("Generated " + numUsers + " TradingUsers");
+
+        // the format used before the BinaryFormat
+        long start = System.nanoTime();
+        try (ObjectOutputStream output = new ObjectOutputStream(
+                new BufferedOutputStream(new FileOutputStream(legacyFile)))) {
+            output.writeObject(tradingUsers);
+        }
+        long legacySave = System.nanoTime() - start;
+        start = System.nanoTime();
+        try (ObjectInputStream input = new ObjectInputStream(
+                new BufferedInputStream(new FileInputStream(legacyFile)))) {
+            input.readObject();
+        }
+        long legacyLoad = System.nanoTime() - start;
+
+        Serializer serializer = new Serializer();
+        start = System.nanoTime();
+        serializer.writeUsersToFile(binaryFile.getPath(), tradingUsers);
+        long binarySave = System.nanoTime() - start;
+        start = System.nanoTime();
+        List<TradingUser> loaded = serializer.readUsersFromFile(binaryFile.getPath());
+        long binaryLoad = System.nanoTime() - start;
+        if (loaded == null || loaded.size() != numUsers) {
+            System.out.println("The BinaryFormat file could not be read back.");
+        }
+
+        System.out.printf("%-18s %14s %10s %10s%n", "format", "bytes", "save ms", "load ms");
+        report("ObjectOutputStream", legacyFile.length(), legacySave, legacyLoad);
+        report("BinaryFormat", binaryFile.length(), binarySave, binaryLoad);
+        System.out.printf("The BinaryFormat is %.1f%% of the size%n", 100.0 * binaryFile.length() / legacyFile.length());
+
+        legacyFile.delete();
+        binaryFile.delete();
+    }
+
+    private static void report(String format, long bytes, long saveNanos, long loadNanos) {
+        System.out.printf("%-18s %14d %10d %10d%n", format, bytes, saveNanos / 1000000, loadNanos / 1000000);
+    }
+
+    static List<TradingUser> generateUsers(int numUsers) {
+        Random random = new Random(207);
+        List<TradingUser> tradingUsers = new ArrayList<>(numUsers);
+        for (int i = 0; i < numUsers; i++) {
+            TradingUser tradingUser = new TradingUser("user" + i, "password" + i);
+            tradingUser.setCity(CITIES[random.nextInt(CITIES.length)]);
+            for (int j = 0; j < 3; j++) {
+                tradingUser.getInventory().add(UUID.randomUUID());
+                tradingUser.getWishlist().add(UUID.randomUUID());
+            }
+            tradingUser.getCurrentTransactions().add(UUID.randomUUID());
+            tradingUser.getTransactionHistory().getTradingPartners().add(UUID.randomUUID(), 1);
+            tradingUser.getTransactionHistory().getTradingPartners().add(UUID.randomUUID(), 2);
+            tradingUsers.add(tradingUser);
+        }
+        return tradingUsers;
+    }
+}
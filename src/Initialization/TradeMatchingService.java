@@ -0,0 +1,67 @@
+package Initialization;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h1>Initialization.TradeMatchingService</h1>
+ * Runs the batch that matches trades in every city once a day, at an hour when few TradingUsers are trading, since the
+ * batch reads every TradingUser and keeps them from being changed until it is done.
+ */
+public class TradeMatchingService {
+    /**
+     * The default hour of the day, from 0 to 23, at which the batch runs.
+     */
+    public static final int DEFAULT_HOUR = 3;
+
+    private final Runnable batch;
+    private final int hour;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "trade-matching");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Constructs a TradeMatchingService that runs a batch every day.
+     * @param batch matches the trades and keeps the proposals it finds
+     * @param hour the hour of the day, from 0 to 23, at which the batch runs
+     */
+    public TradeMatchingService(Runnable batch, int hour) {
+        this.batch = batch;
+        this.hour = hour;
+    }
+
+    /**
+     * Starts running the batch every day at the hour.
+     */
+    public void start() {
+        timer.scheduleAtFixedRate(this::runBatch, millisUntilNextRun(LocalDateTime.now()), TimeUnit.DAYS.toMillis(1),
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns how long it is from now until the next time the batch runs.
+     * @param now the current date and time
+     * @return the number of milliseconds until the hour next comes round
+     */
+    private long millisUntilNextRun(LocalDateTime now) {
+        LocalDateTime next = now.toLocalDate().atTime(hour, 0);
+        if (!next.isAfter(now)) {
+            next = next.plusDays(1);
+        }
+        return Duration.between(now, next).toMillis();
+    }
+
+    private void runBatch() {
+        try {
+            batch.run();
+        } catch (RuntimeException e) {
+            // a periodic task that throws is never run again, so the next night tries again instead
+            System.out.println("The trades could not be matched.");
+        }
+    }
+}
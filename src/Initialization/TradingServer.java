@@ -0,0 +1,114 @@
+package Initialization;
+
+import Users.UserMenuController;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * <h1>Initialization.TradingServer</h1>
+ * <p>Contains the entry point of the headless server, which hosts the managers once and serves many TradingUsers at
+ * the same time, each in their own session over a socket on the loopback address.</p>
+ *
+ * <p>Each session runs on its own thread, a virtual thread when the Java version has them, and has its own
+ * UserMenuController, so the TradingUser logged in to one session is never seen by another. The sessions run their
+ * commands on their own threads, since the managers guard themselves, so sessions of different TradingUsers do not
+ * wait for each other. The TradingUsers can trade, edit meetings and confirm their transactions as in the GUI. See
+ * TradingSession for the commands.</p>
+ */
+public class TradingServer {
+    /**
+     * The port that is listened on when none is given.
+     */
+    public static final int DEFAULT_PORT = 7420;
+
+    private final int port;
+    private final LoginController lc;
+    private final Supplier<UserMenuController> controllers;
+    private final ExecutorService sessions = newSessionExecutor();
+    private ServerSocket serverSocket;
+
+    /**
+     * Creates a TradingServer.
+     * @param port the port on the loopback address to listen on
+     * @param lc the LoginController shared by every session
+     * @param controllers creates a new UserMenuController for each session
+     */
+    public TradingServer(int port, LoginController lc, Supplier<UserMenuController> controllers) {
+        this.port = port;
+        this.lc = lc;
+        this.controllers = controllers;
+    }
+
+    /**
+     * The server's main entry point. The port can be given as the first argument.
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        try {
+            new TradingSystem().runServer(port);
+        } catch (IOException e) {
+            System.out.println("IO Exception was caught.");
+        }
+    }
+
+    /**
+     * Accepts sessions until the server is stopped, starting each on its own thread.
+     * @throws IOException if the port could not be listened on
+     */
+    public void serve() throws IOException {
+        synchronized (this) {
+            serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        }
+        System.out.println("Serving trading sessions on port " + serverSocket.getLocalPort() + ".");
+        try {
+            while (!serverSocket.isClosed()) {
+                Socket socket;
+                try {
+                    socket = serverSocket.accept();
+                } catch (IOException e) {
+                    // the server socket was closed by stop
+                    break;
+                }
+                sessions.execute(new TradingSession(socket, lc, controllers));
+            }
+        } finally {
+            sessions.shutdown();
+        }
+    }
+
+    /**
+     * Stops accepting sessions. The sessions that are open run until their TradingUsers quit.
+     */
+    public synchronized void stop() {
+        if (serverSocket != null) {
+            try {
+                serverSocket.close();
+            } catch (IOException e) {
+                System.out.println("IO Exception was caught.");
+            }
+        }
+    }
+
+    /* returns an executor that starts a virtual thread for each session if this Java version has them, or otherwise
+     * a pool of platform threads that grows with the number of open sessions */
+    private static ExecutorService newSessionExecutor() {
+        try {
+            Method newVirtualThreadPerTaskExecutor = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) newVirtualThreadPerTaskExecutor.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "trading-session");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
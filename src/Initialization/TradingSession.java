@@ -0,0 +1,360 @@
+package Initialization;
+
+import Actions.EditAction;
+import Exceptions.InvalidItemException;
+import Exceptions.InvalidTransactionException;
+import Items.Item;
+import Transactions.Meeting;
+import Transactions.TradeProposal;
+import Transactions.Transaction;
+import Transactions.TransactionActions;
+import Transactions.TransactionBuilder;
+import Users.TradingUser;
+import Users.UserMenuController;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * <h1>Initialization.TradingSession</h1>
+ * <p>Serves one connection to the TradingServer, in a line-based text protocol.</p>
+ *
+ * <p>Each request is one line: a command followed by its arguments, separated by spaces, where the last argument may
+ * contain spaces. Each response starts with a line "OK n" followed by n lines, or is a single line "ERR reason". An
+ * item is listed as its id and its name separated by a tab, and a transaction as its id, its status and its
+ * description separated by tabs. Dates are written yyyy-MM-dd and times HH:mm. The commands are:</p>
+ * <ul>
+ *     <li>LOGIN username password</li>
+ *     <li>REGISTER username password city</li>
+ *     <li>INVENTORY, WISHLIST and AVAILABLE, which list the items of the TradingUser or available in their city</li>
+ *     <li>SEARCH query, which searches the items available in the TradingUser's city</li>
+ *     <li>PARTNERS, which lists the usernames of the TradingUser's top trading partners</li>
+ *     <li>TRANSACTIONS, which lists the TradingUser's current transactions</li>
+ *     <li>PROPOSALS, which lists the trade that the nightly batch found for the TradingUser, as one line for each
+ *     TradingUser in it: their username and the id and name of the item they receive, separated by tabs</li>
+ *     <li>TRADE itemId offeredItemId date time location, which proposes a permanent transaction for an available item,
+ *     offering an item of the TradingUser's inventory, or none if offeredItemId is "-"</li>
+ *     <li>BORROW itemId offeredItemId date time returnDate returnTime location, which proposes a temporary
+ *     transaction whose two meetings are at the same location</li>
+ *     <li>MEETING transactionId meetingNumber date time location, which edits the first or second meeting of a
+ *     transaction as one edit</li>
+ *     <li>ACCEPT date time location, which carries out the trade listed by PROPOSALS with every first meeting at the
+ *     same location, and responds with the ids of the transactions made</li>
+ *     <li>CONFIRM transactionId action, where action is one of CONFIRMMEETINGDETAILS, CANCEL, CONFIRMMEETUP,
+ *     MEETUPINCOMPLETE, ITEMRETURNED and ITEMNOTRETURNED, which responds with the new status of the transaction</li>
+ *     <li>LOGOUT, which saves a checkpoint, and QUIT, which also closes the connection</li>
+ * </ul>
+ *
+ * <p>Each session runs its commands on its own thread. The managers guard the TradingUsers, transactions and actions
+ * themselves, so sessions change them at the same time, and only wait for each other when they change the same
+ * TradingUsers.</p>
+ */
+class TradingSession implements Runnable {
+    private final Socket socket;
+    private final LoginController lc;
+    private final Supplier<UserMenuController> controllers;
+    private UserMenuController umc;
+    private boolean quit = false;
+
+    TradingSession(Socket socket, LoginController lc, Supplier<UserMenuController> controllers) {
+        this.socket = socket;
+        this.lc = lc;
+        this.controllers = controllers;
+        this.umc = controllers.get();
+    }
+
+    /**
+     * Reads requests and writes their responses until the connection is closed or the TradingUser quits.
+     */
+    @Override
+    public void run() {
+        try (Socket s = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(new BufferedWriter(
+                     new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8)))) {
+            String line;
+            while (!quit && (line = in.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                for (String responseLine : handle(line.trim())) {
+                    out.print(responseLine);
+                    out.print('\n');
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            System.out.println("IO Exception was caught.");
+        }
+    }
+
+    /* runs one request, returning the lines of its response */
+    private List<String> handle(String request) {
+        String[] words = request.split(" ", 2);
+        String command = words[0].toUpperCase();
+        String arguments = words.length > 1 ? words[1].trim() : "";
+        try {
+            switch (command) {
+                case "LOGIN":
+                    return login(arguments.split(" ", 2));
+                case "REGISTER":
+                    return register(arguments.split(" ", 3));
+                case "QUIT":
+                    quit = true;
+                    return logout();
+                case "LOGOUT":
+                    return logout();
+            }
+            TradingUser currentTradingUser = umc.getCurrentTradingUser();
+            if (currentTradingUser == null) {
+                return error("not logged in");
+            }
+            switch (command) {
+                case "INVENTORY":
+                    return items(umc.getIm().convertIdsToItems(currentTradingUser.getInventory()));
+                case "WISHLIST":
+                    return items(umc.getIm().convertIdsToItems(currentTradingUser.getWishlist()));
+                case "AVAILABLE":
+                    return items(new ArrayList<>(umc.getAvailableItems().keySet()));
+                case "SEARCH":
+                    return items(umc.searchItems(arguments, null, true));
+                case "PARTNERS":
+                    return ok(umc.getMostTradedWithUsers());
+                case "TRANSACTIONS":
+                    return transactions(umc.currentTransactionList());
+                case "PROPOSALS":
+                    return proposals(umc.getTradeProposals());
+            }
+            // a frozen TradingUser cannot trade until their account is unfrozen, as in the GUI
+            if (currentTradingUser.isFrozen() && (command.equals("TRADE") || command.equals("BORROW")
+                    || command.equals("MEETING") || command.equals("CONFIRM") || command.equals("ACCEPT"))) {
+                return error("account is frozen");
+            }
+            switch (command) {
+                case "TRADE":
+                    return trade(arguments.split(" ", 5), 1);
+                case "BORROW":
+                    return trade(arguments.split(" ", 7), 2);
+                case "MEETING":
+                    return editMeeting(arguments.split(" ", 5));
+                case "CONFIRM":
+                    return confirm(arguments.split(" ", 2));
+                case "ACCEPT":
+                    return accept(arguments.split(" ", 3));
+                default:
+                    return error("unknown command " + command);
+            }
+        } catch (ParseException e) {
+            return error("dates are written yyyy-MM-dd and times HH:mm");
+        } catch (InvalidItemException e) {
+            return error("no such item");
+        } catch (InvalidTransactionException e) {
+            return error("no such transaction");
+        } catch (IllegalArgumentException e) {
+            // an id, number or action that could not be read
+            return error("invalid argument");
+        } catch (RuntimeException e) {
+            // one bad request does not end the session, and what went wrong is only told to the server's log
+            System.out.println("A request could not be run: " + e);
+            return error("internal error");
+        }
+    }
+
+    private List<String> login(String[] arguments) {
+        if (arguments.length < 2 || !lc.validUser(arguments[0], arguments[1])) {
+            return error("invalid username or password");
+        }
+        umc = controllers.get();
+        umc.setCurrentTradingUser(arguments[0]);
+        return ok(new ArrayList<>());
+    }
+
+    private List<String> register(String[] arguments) {
+        if (arguments.length < 3) {
+            return error("usage: REGISTER username password city");
+        }
+        if (!lc.availableUsername(arguments[0])) {
+            return error("username is taken");
+        }
+        lc.addTradingUser(arguments[0], arguments[1], arguments[2]);
+        return ok(new ArrayList<>());
+    }
+
+    /* proposes a transaction with numMeetings meetings at the same location, for the item with the first argument's id */
+    private List<String> trade(String[] arguments, int numMeetings) throws ParseException, InvalidItemException {
+        if (arguments.length < 3 + 2 * numMeetings) {
+            return error(numMeetings == 1 ? "usage: TRADE itemId offeredItemId date time location"
+                    : "usage: BORROW itemId offeredItemId date time returnDate returnTime location");
+        }
+        UUID itemId = UUID.fromString(arguments[0]);
+        TradingUser owner = null;
+        for (Map.Entry<Item, TradingUser> entry : umc.getAvailableItems().entrySet()) {
+            if (entry.getKey().getId().equals(itemId)) {
+                owner = entry.getValue();
+            }
+        }
+        if (owner == null) {
+            return error("item is not available");
+        }
+        TransactionBuilder tb = umc.getTransBuilder();
+        tb.declareIntent(owner.getUserId(), itemId);
+        if (!arguments[1].equals("-")) {
+            UUID offeredItemId = UUID.fromString(arguments[1]);
+            if (!umc.getCurrentTradingUser().getInventory().contains(offeredItemId)) {
+                return error("offered item is not in your inventory");
+            }
+            tb.AddItemOffered(offeredItemId);
+        }
+        String location = arguments[2 + 2 * numMeetings];
+        tb.buildFirstMeeting(location, parseTime(arguments[3]), parseDate(arguments[2]));
+        if (numMeetings == 2) {
+            tb.buildSecondMeeting(location, parseTime(arguments[5]), parseDate(arguments[4]));
+        }
+        Transaction transaction = tb.getTransaction();
+        umc.transactionUpdate(transaction);
+        return ok(Collections.singletonList(transaction.getId().toString()));
+    }
+
+    /* carries out the trade that the nightly batch found for the TradingUser */
+    private List<String> accept(String[] arguments) throws ParseException, InvalidItemException {
+        if (arguments.length < 3) {
+            return error("usage: ACCEPT date time location");
+        }
+        List<TradeProposal> proposals = umc.getTradeProposals();
+        if (proposals.isEmpty()) {
+            return error("no trade proposal");
+        }
+        List<String> ids = new ArrayList<>();
+        for (Transaction transaction : umc.acceptTradeProposal(proposals.get(0), arguments[2], parseTime(arguments[1]),
+                parseDate(arguments[0]))) {
+            ids.add(transaction.getId().toString());
+        }
+        if (ids.isEmpty()) {
+            return error("the trade was already accepted or no longer holds");
+        }
+        return ok(ids);
+    }
+
+    /* edits the location, time and date of a meeting of one of the TradingUser's current transactions */
+    private List<String> editMeeting(String[] arguments) throws ParseException, InvalidTransactionException {
+        if (arguments.length < 5) {
+            return error("usage: MEETING transactionId meetingNumber date time location");
+        }
+        Transaction transaction = currentTransaction(arguments[0]);
+        int meetingNum = Integer.parseInt(arguments[1]) - 1;
+        if (transaction == null || meetingNum < 0 || meetingNum >= transaction.getTransactionMeetings().size()) {
+            return error("no such meeting");
+        }
+        Date date = parseDate(arguments[2]);
+        Date time = parseTime(arguments[3]);
+        UUID userId = umc.getCurrentTradingUser().getUserId();
+        // the meeting this edit replaced, which another edit made at the same time may have changed already
+        Meeting oldMeeting = umc.replaceMeetingFlow(userId, transaction.getId(), meetingNum, arguments[4], time, date);
+        if (oldMeeting == null) {
+            return error("the meeting can no longer be edited");
+        }
+        // the edit can be undone by an AdminUser, as an edit made in the GUI can
+        umc.getAcm().clearPreviousEditActions(umc.getCurrentTradingUser(), transaction);
+        umc.getAcm().addAction(new EditAction(userId, transaction, meetingNum, oldMeeting,
+                new Meeting(arguments[4], time, date)));
+        return ok(new ArrayList<>());
+    }
+
+    /* takes an action on one of the TradingUser's current transactions, and responds with its new status */
+    private List<String> confirm(String[] arguments) throws InvalidTransactionException {
+        if (arguments.length < 2) {
+            return error("usage: CONFIRM transactionId action");
+        }
+        Transaction transaction = currentTransaction(arguments[0]);
+        if (transaction == null) {
+            return error("no such transaction");
+        }
+        TransactionActions action = TransactionActions.valueOf(arguments[1].trim().toUpperCase());
+        if (action == TransactionActions.EDITED) {
+            return error("meetings are edited with MEETING");
+        }
+        umc.updateUsers(transaction.getId(), action);
+        return ok(Collections.singletonList(transaction.getStatus().toString()));
+    }
+
+    /* returns the current transaction of the TradingUser with this id, or null if they have none */
+    private Transaction currentTransaction(String id) {
+        UUID transactionId = UUID.fromString(id);
+        for (Transaction transaction : umc.currentTransactionList()) {
+            if (transaction.getId().equals(transactionId)) {
+                return transaction;
+            }
+        }
+        return null;
+    }
+
+    private static Date parseDate(String date) throws ParseException {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd");
+        format.setLenient(false);
+        return format.parse(date);
+    }
+
+    private static Date parseTime(String time) throws ParseException {
+        SimpleDateFormat format = new SimpleDateFormat("HH:mm");
+        format.setLenient(false);
+        return format.parse(time);
+    }
+
+    private List<String> transactions(List<Transaction> transactions) {
+        List<String> lines = new ArrayList<>(transactions.size());
+        for (Transaction transaction : transactions) {
+            lines.add(transaction.getId() + "\t" + transaction.getStatus() + "\t"
+                    + umc.getTransactionString(transaction, umc.getCurrentTradingUser()));
+        }
+        return ok(lines);
+    }
+
+    private List<String> proposals(List<TradeProposal> proposals) throws InvalidItemException {
+        List<String> lines = new ArrayList<>();
+        for (TradeProposal proposal : proposals) {
+            for (int i = 0; i < proposal.getUsers().size(); i++) {
+                TradingUser user = umc.getUm().getTradingUserById(proposal.getUsers().get(i));
+                Item item = umc.getIm().getItem(proposal.getItems().get(i));
+                lines.add(user.getUsername() + "\t" + item.getId() + "\t" + item.getName());
+            }
+        }
+        return ok(lines);
+    }
+
+    private List<String> logout() {
+        if (umc.getCurrentTradingUser() != null) {
+            umc.getCheckpointService().checkpoint();
+            umc = controllers.get();
+        }
+        return ok(new ArrayList<>());
+    }
+
+    private static List<String> items(List<Item> items) {
+        List<String> lines = new ArrayList<>(items.size());
+        for (Item item : items) {
+            lines.add(item.getId() + "\t" + item.getName());
+        }
+        return ok(lines);
+    }
+
+    private static List<String> ok(List<String> lines) {
+        List<String> response = new ArrayList<>(lines.size() + 1);
+        response.add("OK " + lines.size());
+        for (String line : lines) {
+            // a line break in a name would be read as the next line of the response
+            response.add(line.replace('\n', ' ').replace('\r', ' '));
+        }
+        return response;
+    }
+
+    private static List<String> error(String reason) {
+        List<String> response = new ArrayList<>();
+        response.add("ERR " + reason);
+        return response;
+    }
+}
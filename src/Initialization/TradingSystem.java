@@ -10,12 +10,22 @@ import Items.Item;
 import Items.ItemManager;
 import Presenters.MenuPresenter;
 import Transactions.PastTransactionManager;
+import Transactions.TradeProposalBoard;
 import Transactions.Transaction;
+import Transactions.TransactionIndex;
 import Transactions.CurrentTransactionManager;
+import Transactions.TransactionStore;
 import Users.*;
 
+import java.awt.EventQueue;
 import java.io.File;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
 
 /**
  * <h1>Initialization.TradingSystem</h1>
@@ -33,13 +43,20 @@ public class TradingSystem {
     private CurrentTransactionManager tm;
     private PastTransactionManager ptm;
     private ItemManager im;
-    private Map<Item, TradingUser> pendingItems;
+    private Map<Item, UUID> pendingItems;
     private LoginController lc;
     private AdminMenuController amc;
     private UserMenuController umc;
     private DemoMenuController dmc;
     private ActionManager acm;
     private MenuPresenter mp;
+    private UsernameRegistry usernames;
+    private AccountStatusRegistry accountStatuses;
+    private Journal journal;
+    private final TradeProposalBoard proposalBoard = new TradeProposalBoard();
+    private CheckpointService checkpointService;
+    private TradeMatchingService tradeMatchingService;
+    private Executor managerThread = EventQueue::invokeLater; // runs tasks where no one else changes the managers
 
     /**
      * Calls to different helper methods to read data from saved files, redirects user to
@@ -49,55 +66,307 @@ public class TradingSystem {
     public void run() {
         readData();
         checkFirstAdmin();
+        checkpointService.start();
+        tradeMatchingService.start();
         LoginWindow lw = new LoginWindow(lc, amc, umc, dmc, mp);
         lw.display();
     }
 
+    /**
+     * Reads the data from the saved files once, and serves it to many TradingUsers at the same time through a
+     * TradingServer instead of the GUI. The sessions run their commands, including trades, meeting edits and
+     * confirmations, on their own threads at the same time, since the managers guard the TradingUsers with UserLocks
+     * and the stores guard themselves, and checkpoints are encoded on the checkpoint timer's thread.
+     * @param port the port on the loopback address that sessions connect to
+     * @throws IOException if the port could not be listened on
+     */
+    public void runServer(int port) throws IOException {
+        // checkpoints are encoded on the checkpoint timer's thread
+        managerThread = Runnable::run;
+        readData();
+        checkFirstAdmin();
+        checkpointService.start();
+        tradeMatchingService.start();
+        TradingServer server = new TradingServer(port, lc,
+                () -> new UserMenuController(tum, am, tm, ptm, im, acm, pendingItems, checkpointService, proposalBoard));
+        server.serve();
+    }
+
     /**
      * Helper method to retrieve data from files.
      */
     private void readData() {
-        // make sure files exists so they can be read
-        checkFileExists(fp.ADMINS);
-        checkFileExists(fp.USERS);
-        checkFileExists(fp.REQUESTEDITEMS);
-        checkFileExists(fp.FLAGGEDACCOUNTS);
-        checkFileExists(fp.FROZENACCOUNTS);
-        checkFileExists(fp.TRANSACTIONS);
-        checkFileExists(fp.ITEMS);
-        checkFileExists(fp.DEMOUSERS);
-        checkFileExists(fp.ACTIONS);
-
-        // files exists so we can deserialize them
+        // read and decode the files on worker threads, and only wait for a file once a manager needs it
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+        DataLoader loader = new DataLoader(executor);
         Serializer serializer = new Serializer();
-        List<AdminUser> admins = serializer.readAdminsFromFile(fp.ADMINS);
-        List<TradingUser> tradingUsers = serializer.readUsersFromFile(fp.USERS);
-        pendingItems = serializer.readItemsFromFile(fp.REQUESTEDITEMS);
-        List<TradingUser> flaggedAccounts = serializer.readAccountsFromFile(fp.FLAGGEDACCOUNTS);
-        List<TradingUser> frozenAccounts = serializer.readAccountsFromFile(fp.FROZENACCOUNTS);
-        Map<UUID, Transaction> transactions = serializer.readTransactionMapFromFile(fp.TRANSACTIONS);
-        Map<UUID, Item> items = serializer.readItemMapFromFile(fp.ITEMS);
-        List<DemoUser> demoUsers = serializer.readDemoUsersFromFile(fp.DEMOUSERS);
-        LinkedHashMap<UUID, List<Action>> actions = serializer.readActionsFromFile(fp.ACTIONS);
-
-        // create new Managers
-        am = new AdminManager(admins, flaggedAccounts, frozenAccounts);
-        tum = new TradingUserManager(tradingUsers, flaggedAccounts, frozenAccounts);
-        tm = new CurrentTransactionManager(transactions, acm);
-        ptm = new PastTransactionManager(transactions);
-        im = new ItemManager(items);
-        dum = new DemoUserManager(demoUsers);
-        acm = new ActionManager(actions);
+
+        // the snapshot does not include changes made since it was written, so they are replayed from the journal
+        journal = new Journal(fp.JOURNAL);
+        CompletableFuture<Map<String, List<JournalRecord>>> records =
+                loader.load(fp.JOURNAL, path -> groupByFile(journal.readRecords()));
+
+        CompletableFuture<List<AdminUser>> admins = load(loader, fp.ADMINS, serializer::readAdminsFromFile)
+                .thenCombine(records, (list, r) -> replayUserRecords(list, r.get(fp.ADMINS)));
+        CompletableFuture<CityShardStore> cityShards =
+                loader.load(fp.CITYSHARDS, path -> openCityShardStore(path, serializer))
+                .thenCombine(records, (store, r) -> replayShardRecords(store, r.get(fp.ITEMS), r.get(fp.USERS)));
+        CompletableFuture<Map<Item, UUID>> requestedItems =
+                load(loader, fp.REQUESTEDITEMS, serializer::readItemsFromFile);
+        CompletableFuture<List<UUID>> flaggedAccounts =
+                load(loader, fp.FLAGGEDACCOUNTS, serializer::readAccountsFromFile)
+                .thenCombine(records, (list, r) -> replayIdRecords(list, r.get(fp.FLAGGEDACCOUNTS)));
+        CompletableFuture<List<UUID>> frozenAccounts =
+                load(loader, fp.FROZENACCOUNTS, serializer::readAccountsFromFile)
+                .thenCombine(records, (list, r) -> replayIdRecords(list, r.get(fp.FROZENACCOUNTS)));
+        CompletableFuture<List<UUID>> unfreezeRequests =
+                load(loader, fp.UNFREEZEREQUESTS, serializer::readAccountsFromFile)
+                .thenCombine(records, (list, r) -> replayIdRecords(list, r.get(fp.UNFREEZEREQUESTS)));
+        CompletableFuture<TransactionStore> transactions =
+                loader.load(fp.TRANSACTIONSTORE, path -> openTransactionStore(path, serializer))
+                .thenCombine(records, (store, r) -> replayMapRecords(store, r.get(fp.TRANSACTIONS)));
+        CompletableFuture<List<DemoUser>> demoUsers = load(loader, fp.DEMOUSERS, serializer::readDemoUsersFromFile);
+        CompletableFuture<UsernameRegistry> registry = load(loader, fp.USERNAMES, serializer::readUsernamesFromFile);
+        CompletableFuture<LinkedHashMap<UUID, List<Action>>> actions =
+                load(loader, fp.ACTIONS, serializer::readActionsFromFile)
+                .thenCombine(records, (map, r) -> replayMapRecords(map, r.get(fp.ACTIONS)));
+
+        // create new Managers, each waiting only for the files it is built from
+        try {
+            usernames = checkUsernames(registry.join(), admins.join(), cityShards.join(), demoUsers.join());
+            accountStatuses = new AccountStatusRegistry(flaggedAccounts.join(), frozenAccounts.join(),
+                    unfreezeRequests.join());
+            am = new AdminManager(admins.join(), accountStatuses, usernames);
+            tum = new TradingUserManager(cityShards.join(), accountStatuses, usernames);
+            acm = new ActionManager(actions.join());
+            // the current and past transaction managers share one index of the transactions by user and status
+            TransactionIndex transactionIndex = new TransactionIndex(transactions.join());
+            tm = new CurrentTransactionManager(transactions.join(), transactionIndex, acm);
+            ptm = new PastTransactionManager(transactions.join(), transactionIndex);
+            im = new ItemManager(cityShards.join());
+            dum = new DemoUserManager(demoUsers.join(), usernames);
+            pendingItems = requestedItems.join();
+        } finally {
+            executor.shutdown();
+        }
+        loader.printReport();
+
+        // from now on every change made by the managers is appended to the journal
+        am.setJournal(journal);
+        tum.setJournal(journal);
+        accountStatuses.setJournal(journal);
+        acm.setJournal(journal);
+        tm.setJournal(journal);
+        ptm.setJournal(journal);
+        im.setJournal(journal);
+        DataSaver dataSaver = new DataSaver(am, tum, dum, transactions.join(), cityShards.join(), usernames, acm,
+                pendingItems, journal);
+        // snapshots can be compressed with -DsnapshotCompression=<Deflater level from 1 to 9>
+        int compressionLevel = Integer.getInteger("snapshotCompression", Serializer.UNCOMPRESSED);
+        dataSaver.setCompressionLevel(compressionLevel);
+        transactions.join().setCompressionLevel(compressionLevel);
+        cityShards.join().setCompressionLevel(compressionLevel);
+        for (String filePath : records.join().keySet()) {
+            // these files are missing the changes that were replayed from the journal
+            boolean inShards = filePath.equals(fp.USERS) || filePath.equals(fp.ITEMS);
+            dataSaver.markUnsaved(inShards ? fp.CITYSHARDS : filePath);
+        }
+        if (usernames.getVersion() != 0) {
+            // the registry was missing usernames that were replayed from the journal or saved in the other files
+            dataSaver.markUnsaved(fp.USERNAMES);
+        }
+        for (String filePath : new String[]{fp.ADMINS, fp.REQUESTEDITEMS, fp.FLAGGEDACCOUNTS, fp.FROZENACCOUNTS,
+                fp.UNFREEZEREQUESTS, fp.DEMOUSERS, fp.ACTIONS}) {
+            if (!serializer.isCurrentVersion(filePath)) {
+                // files written by an older version are rewritten in the current one
+                dataSaver.markUnsaved(filePath);
+            }
+        }
+        // the number of seconds between checkpoints can be set with -DcheckpointInterval, or 0 to only save on log out
+        checkpointService = new CheckpointService(dataSaver,
+                Integer.getInteger("checkpointInterval", CheckpointService.DEFAULT_INTERVAL_SECONDS), managerThread);
 
         // create new controllers
-        lc = new LoginController(am, tum, dum);
-        amc = new AdminMenuController(am, tum, pendingItems, im, acm, ptm);
-        umc = new UserMenuController(tum, am, tm, ptm, im, acm, pendingItems);
+        lc = new LoginController(am, tum, dum, usernames);
+        amc = new AdminMenuController(am, tum, pendingItems, im, acm, ptm, checkpointService, proposalBoard);
+        umc = new UserMenuController(tum, am, tm, ptm, im, acm, pendingItems, checkpointService, proposalBoard);
         dmc = new DemoMenuController(dum, tum, im);
+        // the hour of the day at which trades are matched can be set with -DtradeMatchingHour
+        tradeMatchingService = new TradeMatchingService(amc::matchAllTrades,
+                Integer.getInteger("tradeMatchingHour", TradeMatchingService.DEFAULT_HOUR));
 
         mp = new MenuPresenter();
     }
 
+    /**
+     * A helper method to start loading the file specified by filePath, creating it first if it does not exist.
+     */
+    private <T> CompletableFuture<T> load(DataLoader loader, String filePath, Function<String, T> reader) {
+        return loader.load(filePath, path -> {
+            checkFileExists(path);
+            return reader.apply(path);
+        });
+    }
+
+    /**
+     * A helper method to open the TransactionStore kept in the directory specified by path. Transactions used to be
+     * kept in a single file, so if that file still exists its transactions are moved into the store.
+     */
+    private TransactionStore openTransactionStore(String path, Serializer serializer) {
+        TransactionStore store = new TransactionStore(path);
+        File legacyFile = new File(fp.TRANSACTIONS);
+        if (legacyFile.exists()) {
+            Map<UUID, Transaction> transactions = serializer.readTransactionMapFromFile(fp.TRANSACTIONS);
+            if (transactions != null) {
+                store.putAll(transactions);
+                store.flush();
+                legacyFile.delete();
+            }
+        }
+        return store;
+    }
+
+    /**
+     * A helper method to open the CityShardStore kept in the directory specified by path. TradingUsers and Items used
+     * to be kept in users.ser and items.ser, so if those files still exist their contents are moved into the store.
+     */
+    private CityShardStore openCityShardStore(String path, Serializer serializer) {
+        CityShardStore store = new CityShardStore(path);
+        File usersFile = new File(fp.USERS);
+        File itemsFile = new File(fp.ITEMS);
+        if (usersFile.exists() || itemsFile.exists()) {
+            Map<UUID, Item> items = itemsFile.exists() ? serializer.readItemMapFromFile(fp.ITEMS) : new HashMap<>();
+            List<TradingUser> tradingUsers =
+                    usersFile.exists() ? serializer.readUsersFromFile(fp.USERS) : new ArrayList<>();
+            if (items != null && tradingUsers != null) {
+                // items first, so that each item is moved into the shard of the user whose inventory it is in
+                for (Item item : items.values()) {
+                    store.putItem(item);
+                }
+                for (TradingUser tradingUser : tradingUsers) {
+                    store.putUser(tradingUser);
+                }
+                if (store.flush()) {
+                    usersFile.delete();
+                    itemsFile.delete();
+                }
+            }
+        }
+        return store;
+    }
+
+    /**
+     * A helper method to apply the journal records of Items and then of TradingUsers to the CityShardStore.
+     */
+    private CityShardStore replayShardRecords(CityShardStore store, List<JournalRecord> itemRecords,
+                                              List<JournalRecord> userRecords) {
+        if (itemRecords != null) {
+            for (JournalRecord record : itemRecords) {
+                if (record.isPut()) {
+                    store.putItem((Item) record.getValue());
+                }
+            }
+        }
+        if (userRecords != null) {
+            for (JournalRecord record : userRecords) {
+                if (record.isPut()) {
+                    store.putUser((TradingUser) record.getValue());
+                }
+            }
+        }
+        return store;
+    }
+
+    /**
+     * A helper method to check the saved UsernameRegistry against the users that were loaded, and register the usernames
+     * of any role whose users changed since the registry was saved again. The registry is only written with a
+     * snapshot, so this happens after users were added since the last one, or when there is no saved registry yet.
+     * TradingUsers are only added, never removed, so they are compared by number, without reading any shard.
+     */
+    private UsernameRegistry checkUsernames(UsernameRegistry registry, List<AdminUser> admins, CityShardStore store,
+                                            List<DemoUser> demoUsers) {
+        if (registry == null) {
+            registry = new UsernameRegistry();
+        }
+        Map<String, UUID> adminIds = new HashMap<>();
+        for (AdminUser admin : admins) {
+            adminIds.put(admin.getUsername(), admin.getUserId());
+        }
+        if (!registry.matches(UserRoles.ADMIN, adminIds)) {
+            registry.replaceAll(UserRoles.ADMIN, adminIds);
+        }
+        if (registry.count(UserRoles.TRADING) != store.numUsers()) {
+            registry.replaceAll(UserRoles.TRADING, store.getUserIdsByUsername());
+        }
+        Map<String, UUID> demoUserIds = new HashMap<>();
+        for (DemoUser demoUser : demoUsers) {
+            demoUserIds.put(demoUser.getUsername(), demoUser.getUserId());
+        }
+        if (!registry.matches(UserRoles.DEMO, demoUserIds)) {
+            registry.replaceAll(UserRoles.DEMO, demoUserIds);
+        }
+        return registry;
+    }
+
+    /**
+     * A helper method to group journal records by the file they belong to, keeping the order they were appended in.
+     */
+    private Map<String, List<JournalRecord>> groupByFile(List<JournalRecord> records) {
+        Map<String, List<JournalRecord>> recordsByFile = new HashMap<>();
+        for (JournalRecord record : records) {
+            recordsByFile.computeIfAbsent(record.getFilepath(), k -> new ArrayList<>()).add(record);
+        }
+        return recordsByFile;
+    }
+
+    /**
+     * A helper method to apply journal records to a list of users, where each record's key is the user's id.
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends User> List<T> replayUserRecords(List<T> users, List<JournalRecord> records) {
+        if (records != null) {
+            for (JournalRecord record : records) {
+                users.removeIf(user -> user.getUserId().equals(record.getKey()));
+                if (record.isPut()) {
+                    users.add((T) record.getValue());
+                }
+            }
+        }
+        return users;
+    }
+
+    /**
+     * A helper method to apply journal records to a list of user ids, where each record's key is the user's id.
+     */
+    private List<UUID> replayIdRecords(List<UUID> ids, List<JournalRecord> records) {
+        if (records != null) {
+            for (JournalRecord record : records) {
+                ids.removeIf(id -> id.equals(record.getKey()));
+                if (record.isPut()) {
+                    ids.add((UUID) record.getKey());
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * A helper method to apply journal records to a map keyed by each record's key.
+     */
+    @SuppressWarnings("unchecked")
+    private <K, V, M extends Map<K, V>> M replayMapRecords(M map, List<JournalRecord> records) {
+        if (records != null) {
+            for (JournalRecord record : records) {
+                if (record.isPut()) {
+                    map.put((K) record.getKey(), (V) record.getValue());
+                } else {
+                    map.remove((K) record.getKey());
+                }
+            }
+        }
+        return map;
+    }
+
     /**
      * A helper method to check if the file specified by filePath exists. If this file does
      * not exist, this method generates it.
@@ -112,27 +381,21 @@ public class TradingSystem {
             if (filePath.equals(fp.ADMINS)) {
                 List<AdminUser> list = new ArrayList<>();
                 serializer.writeAdminsToFile(filePath, list);
-            } else if (filePath.equals(fp.USERS)) {
-                List<TradingUser> list = new ArrayList<>();
-                serializer.writeUsersToFile(filePath, list);
             } else if (filePath.equals(fp.REQUESTEDITEMS)) {
-                HashMap<Item, TradingUser> map = new HashMap<>();
+                HashMap<Item, UUID> map = new HashMap<>();
                 serializer.writeItemsToFile(filePath, map);
-            } else if (filePath.equals(fp.FLAGGEDACCOUNTS) | filePath.equals(fp.FROZENACCOUNTS)) {
-                List<TradingUser> tradingUsers = new ArrayList<>();
-                serializer.writeAccountsToFile(filePath, tradingUsers);
-            } else if (filePath.equals(fp.TRANSACTIONS)) {
-                Map<UUID, Item> itemMap = new HashMap<>();
-                serializer.writeItemsMapToFile(filePath, itemMap);
+            } else if (filePath.equals(fp.FLAGGEDACCOUNTS) | filePath.equals(fp.FROZENACCOUNTS)
+                    | filePath.equals(fp.UNFREEZEREQUESTS)) {
+                List<UUID> ids = new ArrayList<>();
+                serializer.writeAccountsToFile(filePath, ids);
             } else if (filePath.equals(fp.DEMOUSERS)) {
                 List<DemoUser> demoUsers = new ArrayList<>();
                 serializer.writeDemoUsersToFile(filePath, demoUsers);
             } else if (filePath.equals(fp.ACTIONS)) {
                 LinkedHashMap<UUID, List<Action>> actions = new LinkedHashMap<>();
                 serializer.writeActionsToFile(filePath, actions);
-            } else if (filePath.equals(fp.ITEMS)) {
-                Map<UUID, Item> items = new HashMap<>();
-                serializer.writeItemsMapToFile(filePath, items);
+            } else if (filePath.equals(fp.USERNAMES)) {
+                serializer.writeUsernamesToFile(filePath, new UsernameRegistry());
             }
         }
     }
@@ -147,7 +410,7 @@ public class TradingSystem {
         } else {
             // the first admin does not exist yet, create it
             try {
-                am.addAdmin("admin", "password").setFirstAdmin(true);
+                am.setFirstAdmin(am.addAdmin("admin", "password"));
             } catch(InvalidAdminException e) {
                 // If this admin is the first to be added in the list then it will never
                 // conflict with another admin so an exception will never be thrown by addAdmin()
@@ -1,5 +1,10 @@
 package Items;
 
+import Initialization.BinaryFormat;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.Objects;
 import java.util.UUID;
@@ -10,6 +15,7 @@ import java.util.UUID;
  * Class variables include the item's ID, name, and description (which is optional).
  */
 public class Item implements Serializable {
+    private static final long serialVersionUID = -9111275277768717476L;
     private UUID id;
     private String name;
     private String description = "This is an item for trade.";
@@ -23,6 +29,29 @@ public class Item implements Serializable {
         this.id = UUID.randomUUID();
     }
 
+    /**
+     * Reads an item that was written by writeTo.
+     * @param in where the item is read from
+     * @param version the version of the BinaryFormat the item was written with
+     * @throws IOException if the item could not be read
+     */
+    public Item(DataInput in, int version) throws IOException {
+        this.id = BinaryFormat.readUUID(in);
+        this.name = BinaryFormat.readString(in);
+        this.description = BinaryFormat.readString(in);
+    }
+
+    /**
+     * Writes this item in the BinaryFormat.
+     * @param out where the item is written
+     * @throws IOException if the item could not be written
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        BinaryFormat.writeUUID(out, id);
+        BinaryFormat.writeString(out, name);
+        BinaryFormat.writeString(out, description);
+    }
+
     /**
      * Returns this item's name.
      * @return this item's name as a String.
@@ -1,38 +1,93 @@
 package Items;
 
 import Exceptions.InvalidItemException;
+import Initialization.CityShardStore;
+import Initialization.Filepaths;
+import Initialization.Journal;
 import Users.TradingUser;
 
 import java.util.*;
+import java.util.function.Predicate;
 
 /**
  * <h1>ItemManager</h1>
  * Manages all items in the system.
- * Contains a map of all Items in the system with a mapping to the item's UUID.
+ * Keeps all Items in the system in a CityShardStore, which only reads the Items of a city when they are needed.
+ * Every Item that is read or added is put in an ItemSearchIndex, so the Items of the cities that have been read can be
+ * searched by name and description. The name and description of an Item are set before it is added and are not
+ * changed afterwards, so the index only ever has Items added to it.
  */
 public class ItemManager {
-    public Map<UUID, Item> allItems;
+    private final CityShardStore store;
+    private final ItemSearchIndex searchIndex = new ItemSearchIndex();
+    private final Filepaths fp = new Filepaths();
+    private Journal journal;
+    private long version = 0;
 
     /**
-     * Constructs an instance of ItemManager with the inputted map of all items in the system.
-     * @param items map of all items with the UUID.
+     * Constructs an instance of ItemManager for the items in store.
+     * @param store the store of all items
      */
-    public ItemManager(Map<UUID, Item> items) {
-        this.allItems = items;
+    public ItemManager(CityShardStore store) {
+        this.store = store;
+        store.setItemListener(searchIndex::index);
     }
 
     /**
-     * Getter for this ItemManager's allItems.
+     * Sets the journal that changes to Items are appended to.
+     * @param journal the journal of the trading system
+     */
+    public void setJournal(Journal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Getter for the modification version of this manager, which goes up every time an Item is added.
+     * @return the modification version as a long
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Getter for all items. This reads the items of every city from the store, so it should be avoided.
      * @return map of all items to their UUIDs.
      */
-    public Map<UUID, Item> getAllItems() { return allItems; }
+    public Map<UUID, Item> getAllItems() { return store.getAllItems(); }
 
     /**
      * Adds an item to the list of all items.
      * @param item item to add to list of all items
      */
     public void addItem (Item item){
-         allItems.put(item.getId(), item);
+         store.putItem(item);
+         version++;
+         if (journal != null) {
+             journal.put(fp.ITEMS, item.getId(), item);
+         }
+    }
+
+    /**
+     * Searches the names and descriptions of the items that have been read so far, which include every item of a city
+     * once any of its users or items has been looked at.
+     * @param query the words to look for, the last of which may be unfinished
+     * @param filter which of the matching items to keep
+     * @param limit the largest number of items returned
+     * @return the matching items, best first
+     */
+    public List<Item> search(String query, Predicate<Item> filter, int limit) {
+        return searchIndex.search(query, filter, limit);
+    }
+
+    /**
+     * Returns whether an item is kept with the TradingUsers of a city, that is whether the last TradingUser whose
+     * inventory it was in lives there.
+     * @param id UUID of item
+     * @param city the name of a city, in any case
+     * @return true iff the item is in that city
+     */
+    public boolean isInCity(UUID id, String city) {
+        return store.isInCity(id, city);
     }
 
     /**
@@ -42,8 +97,9 @@ public class ItemManager {
      * @throws InvalidItemException item doesn't exist in this ItemManager's allItems
      */
     public Item getItem(UUID id) throws InvalidItemException {
-        if (allItems.containsKey(id)){
-            return allItems.get(id);
+        Item item = store.getItem(id);
+        if (item != null){
+            return item;
         } else {
             throw new InvalidItemException();
         }
@@ -57,25 +113,28 @@ public class ItemManager {
     public List<Item> convertIdsToItems(List<UUID> ids) {
         List<Item> items = new ArrayList<>();
         for (UUID id : ids) {
-            items.add(allItems.get(id));
+            items.add(store.getItem(id));
         }
         return items;
     }
 
     /**
      * Returns a list of suggested items, which are items that the currUser owns (in their inventory) that the otherUser has in their wishlist.
+     * The inventory and wishlist look ids up in constant time, so only the smaller of the two is walked.
      * @param currUser the current TradingUser who is logged in
      * @param otherUser the owner of the object that the current TradingUser is looking at
      * @return list of suggested items
      * @throws InvalidItemException item does not exist
      */
     public List<Item> itemSuggestions(TradingUser currUser, TradingUser otherUser) throws InvalidItemException {
+        List<UUID> inventory = currUser.getInventory();
+        List<UUID> wishlist = otherUser.getWishlist();
+        boolean walkInventory = inventory.size() <= wishlist.size();
         List<Item> return_list = new ArrayList<>();
-        for(UUID inventoryItemId: currUser.getInventory()){
-            for(UUID wishlistItemId: otherUser.getWishlist())
-                if(wishlistItemId.equals(inventoryItemId)){
-                    return_list.add(getItem(inventoryItemId));
-                }
+        for (UUID itemId : walkInventory ? inventory : wishlist) {
+            if ((walkInventory ? wishlist : inventory).contains(itemId)) {
+                return_list.add(getItem(itemId));
+            }
         }
         return return_list;
     }
@@ -0,0 +1,174 @@
+package Items;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * <h1>ItemSearchIndex</h1>
+ * An inverted index of the words in the names and descriptions of Items, which finds Items by a query in a few
+ * milliseconds however many Items there are.
+ *
+ * <p>Names and descriptions are split into lower case words of letters and digits. Each word maps to the ids of the
+ * Items it appears in, and the words are kept sorted so that a word of a query also matches every indexed word that
+ * starts with it. An Item matches a query if every word of the query matches one of its words. Matching Items are
+ * ranked by the sum, over the words of the query, of the weight of the best word they matched, where a word in the
+ * name weighs more than one in the description and a whole word counts twice as much as a prefix.</p>
+ */
+public class ItemSearchIndex {
+    private static final int NAME_WEIGHT = 3;
+    private static final int DESCRIPTION_WEIGHT = 1;
+    private static final Comparator<Map.Entry<Item, Integer>> RANKING =
+            Comparator.<Map.Entry<Item, Integer>>comparingInt(Map.Entry::getValue).reversed()
+                    .thenComparing(entry -> entry.getKey().getName(), String.CASE_INSENSITIVE_ORDER);
+
+    private final TreeMap<String, Set<UUID>> postings = new TreeMap<>();
+    private final Map<UUID, Map<String, Integer>> wordsOf = new HashMap<>();
+    private final Map<UUID, Item> items = new HashMap<>();
+
+    /**
+     * Adds an Item to the index, or indexes it again if its name or description changed.
+     * @param item the Item to index
+     */
+    public synchronized void index(Item item) {
+        remove(item.getId());
+        Map<String, Integer> words = new HashMap<>();
+        for (String word : words(item.getName())) {
+            words.merge(word, NAME_WEIGHT, Integer::sum);
+        }
+        for (String word : words(item.getDescription())) {
+            words.merge(word, DESCRIPTION_WEIGHT, Integer::sum);
+        }
+        for (String word : words.keySet()) {
+            postings.computeIfAbsent(word, k -> new HashSet<>()).add(item.getId());
+        }
+        wordsOf.put(item.getId(), words);
+        items.put(item.getId(), item);
+    }
+
+    /**
+     * Removes an Item from the index.
+     * @param id the id of the Item
+     */
+    public synchronized void remove(UUID id) {
+        Map<String, Integer> words = wordsOf.remove(id);
+        if (words == null) {
+            return;
+        }
+        for (String word : words.keySet()) {
+            Set<UUID> ids = postings.get(word);
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                postings.remove(word);
+            }
+        }
+        items.remove(id);
+    }
+
+    /**
+     * Returns the number of Items in the index.
+     * @return the number of Items
+     */
+    public synchronized int size() {
+        return items.size();
+    }
+
+    /**
+     * Finds the Items that match a query, best first.
+     * @param query the words to look for, the last of which may be unfinished
+     * @param filter which of the matching Items to keep, which is called without this index being locked
+     * @param limit the largest number of Items returned
+     * @return a List of at most limit Items that match the query and the filter
+     */
+    public List<Item> search(String query, Predicate<Item> filter, int limit) {
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(words(query)));
+        if (terms.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+        // the longest word is likely to match the fewest items, so the other words are only checked against those
+        terms.sort(Comparator.comparingInt(String::length).reversed());
+        List<Map.Entry<Item, Integer>> candidates = new ArrayList<>();
+        synchronized (this) {
+            Map<UUID, Integer> scores = matches(terms.get(0));
+            for (String term : terms.subList(1, terms.size())) {
+                Map<UUID, Integer> matched = new HashMap<>();
+                for (Map.Entry<UUID, Integer> entry : scores.entrySet()) {
+                    int score = score(wordsOf.get(entry.getKey()), term);
+                    if (score > 0) {
+                        matched.put(entry.getKey(), entry.getValue() + score);
+                    }
+                }
+                scores = matched;
+            }
+            for (Map.Entry<UUID, Integer> entry : scores.entrySet()) {
+                candidates.add(new AbstractMap.SimpleImmutableEntry<>(items.get(entry.getKey()), entry.getValue()));
+            }
+        }
+        // keeps the best limit candidates, with the worst of them at the head
+        PriorityQueue<Map.Entry<Item, Integer>> best = new PriorityQueue<>(RANKING.reversed());
+        for (Map.Entry<Item, Integer> candidate : candidates) {
+            if (best.size() < limit) {
+                if (filter.test(candidate.getKey())) {
+                    best.add(candidate);
+                }
+            } else if (RANKING.compare(candidate, best.peek()) < 0 && filter.test(candidate.getKey())) {
+                best.poll();
+                best.add(candidate);
+            }
+        }
+        List<Map.Entry<Item, Integer>> ranked = new ArrayList<>(best);
+        ranked.sort(RANKING);
+        List<Item> results = new ArrayList<>(ranked.size());
+        for (Map.Entry<Item, Integer> entry : ranked) {
+            results.add(entry.getKey());
+        }
+        return results;
+    }
+
+    /* scores every item with a word that starts with term */
+    private Map<UUID, Integer> matches(String term) {
+        Map<UUID, Integer> scores = new HashMap<>();
+        for (Map.Entry<String, Set<UUID>> posting
+                : postings.subMap(term, true, term + Character.MAX_VALUE, false).entrySet()) {
+            int factor = posting.getKey().equals(term) ? 2 : 1;
+            for (UUID id : posting.getValue()) {
+                scores.merge(id, wordsOf.get(id).get(posting.getKey()) * factor, Math::max);
+            }
+        }
+        return scores;
+    }
+
+    /* returns the weight of the best word of an item that starts with term, or 0 if there is none */
+    private static int score(Map<String, Integer> words, String term) {
+        int best = 0;
+        for (Map.Entry<String, Integer> word : words.entrySet()) {
+            if (word.getKey().startsWith(term)) {
+                best = Math.max(best, word.getValue() * (word.getKey().length() == term.length() ? 2 : 1));
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Splits text into lower case words of letters and digits.
+     * @param text the text to split, which may be null
+     * @return the words, in order
+     */
+    static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                words.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        return words;
+    }
+}
@@ -30,6 +30,7 @@ public class UserMenuPresenter extends MenuPresenter {
     public String emptyInventory = "Your inventory is empty!";
     public String emptyWishlist = "Your wishlist is empty!";
     public String selectToView = "Select Item to View";
+    public String searchItems = "Search";
 
     //meeting strings
     public String options = "Options";
@@ -48,8 +48,27 @@ public class AvailableItemsWindow {
             itemsList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
             itemsList.addListSelectionListener(e -> {
                 JList<String> itemList1 = (JList<String>) e.getSource();
-                selectedItem = itemList.get(itemList1.getSelectedIndex());
+                if (itemList1.getSelectedIndex() >= 0) {
+                    selectedItem = itemList.get(itemList1.getSelectedIndex());
+                }
+            });
+
+            // searching by name and description replaces the list with the best matches, or every item if empty
+            JTextField searchText = new JTextField(20);
+            JButton searchButton = new JButton(ump.searchItems);
+            searchButton.addActionListener(e -> {
+                String query = searchText.getText().trim();
+                List<Item> found = query.isEmpty() ? new ArrayList<>(availableItemsMap.keySet())
+                        : umc.searchItems(query, null, true);
+                selectedItem = null;
+                itemList.clear();
+                itemNames.clear();
+                for (Item item : found) {
+                    itemList.add(item);
+                    itemNames.addElement(item.toString());
+                }
             });
+            searchText.addActionListener(e -> searchButton.doClick());
 
             itemButton.setText(ump.selectToView);
             itemButton.setBounds(100, 200, 100, 50);
@@ -67,6 +86,8 @@ public class AvailableItemsWindow {
                 }
             });
 
+            panel.add(searchText);
+            panel.add(searchButton);
             panel.add(itemsList);
             panel.add(itemButton);
             frame.setContentPane(panel);
@@ -1,12 +1,9 @@
 package TradingUserGUI;
 
-import Initialization.Filepaths;
-import Initialization.Serializer;
 import Presenters.UserMenuPresenter;
 import Popups.ChangePasswordWindow;
 import Users.TradingUser;
 import Users.UserMenuController;
-import Users.UserStatuses;
 
 import javax.swing.*;
 import java.awt.*;
@@ -18,7 +15,6 @@ import java.awt.event.KeyEvent;
 public class TradingUserMenu {
     private final UserMenuController umc;
     private final UserMenuPresenter ump = new UserMenuPresenter();
-    private final Filepaths fp = new Filepaths();
     private final JFrame frame = new JFrame(ump.tradingUserMenuTitle);
     private final JButton button1 = new JButton();
     private final JButton button2 = new JButton();
@@ -141,7 +137,7 @@ public class TradingUserMenu {
             String newCity = JOptionPane.showInputDialog(null,
                     "Enter new city", "Change City");
             if (newCity != null) {
-                umc.getCurrentTradingUser().setCity(newCity);
+                umc.getUm().changeCity(umc.getCurrentTradingUser(), newCity);
             }
         });
         menu.add(changeCity);
@@ -200,21 +196,14 @@ public class TradingUserMenu {
     }
 
     private void writeData() {
-        Serializer serializer = new Serializer();
-        serializer.writeUsersToFile(fp.USERS, umc.getUm().getAllTradingUsers());
-        serializer.writeItemsToFile(fp.REQUESTEDITEMS, umc.getAllPendingItems());
-        serializer.writeAccountsToFile(fp.FLAGGEDACCOUNTS, umc.getUm().getFlaggedAccounts());
-        serializer.writeAccountsToFile(fp.FROZENACCOUNTS, umc.getUm().getFrozenAccounts());
-        serializer.writeTransactionsToFile(fp.TRANSACTIONS, umc.getTm().getAllTransactions());
-        serializer.writeItemsMapToFile(fp.ITEMS, umc.getIm().getAllItems());
-        serializer.writeActionsToFile(fp.ACTIONS, umc.getAcm().getAllActions());
+        umc.getCheckpointService().checkpoint();
     }
 
     private void changeVacationStatus(boolean b, TradingUser user) {
         if (b && !user.isFrozen()) {
-            user.setStatus(UserStatuses.VACATION);
+            umc.getUm().onVacation(user);
         } else if (!b && !user.isFrozen()) {
-            user.setStatus(UserStatuses.ACTIVE);
+            umc.getUm().offVacation(user);
         }
     }
 }
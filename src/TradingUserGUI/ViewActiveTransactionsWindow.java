@@ -250,7 +250,7 @@ public class ViewActiveTransactionsWindow {
             EditAction action = new EditAction(userId, selectedTransaction, whichMeetingSelected, oldMeeting, newMeeting);
 
             // log this action in the manager
-            umc.getAcm().addAction(userId, action);
+            umc.getAcm().addAction(action);
 
             // display msg telling user meeting was edited
             PopUpWindow edited = new PopUpWindow(ump.successfully("Edited meeting"));
@@ -130,7 +130,7 @@ public class ViewTransactionHistoryWindow {
         frame.setLocationRelativeTo(null);
         frame.setVisible(true);
         StringBuilder text = new StringBuilder(" ");
-        List<String> usernames = umc.getCurrentTradingUser().getTransactionHistory().mostTradedWithUsers();
+        List<String> usernames = umc.getMostTradedWithUsers();
         for (String u: usernames){
             text.append(u).append("\n");
         }
@@ -7,6 +7,7 @@ import Users.TradingUser;
 
 import java.sql.Time;
 import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * <h1>CurrentTransactionManager</h1>
@@ -20,7 +21,17 @@ public class CurrentTransactionManager extends TransactionManager {
      * @param transactions a map of all transactions to their UUID
      */
     public CurrentTransactionManager(Map<UUID, Transaction> transactions, ActionManager actionManager) {
-        super(transactions);
+        this(transactions, new TransactionIndex(transactions), actionManager);
+    }
+
+    /**
+     * Constructs an instance of the CurrentTransactionManager that shares a TransactionIndex with other managers.
+     * @param transactions a map of all transactions to their UUID
+     * @param index the index of transactions, which must have been created for the same map
+     */
+    public CurrentTransactionManager(Map<UUID, Transaction> transactions, TransactionIndex index,
+                                     ActionManager actionManager) {
+        super(transactions, index);
         this.acm = actionManager;
         this.ss = new TransactionStatusStrategy();
     }
@@ -44,16 +55,7 @@ public class CurrentTransactionManager extends TransactionManager {
      * @return True if the meeting was successfully edited
      */
     public boolean editMeeting(int meetingNum, UUID transactionId, UUID userId, String newLocation) throws InvalidTransactionException {
-        Transaction transaction = getTransactionFromId(transactionId);
-        int userNum = findUserNum(transaction, userId);
-        List<Meeting> list = transaction.getTransactionMeetings();
-        Meeting meeting = list.get(meetingNum);
-        if (canEdit(meeting, userNum) && transaction.getStatus().equals(TransactionStatuses.PENDING)) {
-            meeting.setLocation(newLocation);
-            return true;
-        } else {
-            return false;
-        }
+        return editMeeting(meetingNum, transactionId, userId, meeting -> meeting.setLocation(newLocation)) != null;
     }
 
     /**
@@ -65,63 +67,111 @@ public class CurrentTransactionManager extends TransactionManager {
      * @return boolean whether the meeting was successfully edited or not
      */
     public boolean editMeeting(int meetingNum, UUID transactionId, UUID userId, Date date, boolean ifDate) throws InvalidTransactionException {
-        Transaction transaction = getTransactionFromId(transactionId);
-        int userNum = findUserNum(transaction, userId);
-        Meeting meeting = transaction.getTransactionMeetings().get(meetingNum);
-        if (canEdit(meeting, userNum) && transaction.getStatus().equals(TransactionStatuses.PENDING)) {
-            meeting.setDate(date);
-            return true;
-        } else {
-            return false;
-        }
+        return editMeeting(meetingNum, transactionId, userId, meeting -> meeting.setDate(date)) != null;
     }
 
     public boolean editMeeting(int meetingNum, UUID transactionId, UUID userId, Date time) throws InvalidTransactionException {
-        Transaction transaction = getTransactionFromId(transactionId);
-        int userNum = findUserNum(transaction, userId);
-        Meeting meeting = transaction.getTransactionMeetings().get(meetingNum);
-        if (canEdit(meeting, userNum) && transaction.getStatus().equals(TransactionStatuses.PENDING)) {
+        return editMeeting(meetingNum, transactionId, userId, meeting -> meeting.setTime(time)) != null;
+    }
+
+    /**
+     * Edits both the time and the date of a meeting, which counts as one edit
+     * @param meetingNum the meeting number that the user wants to edit
+     * @param transactionId the transaction to which the meeting belongs to
+     * @param userId the UUID of the TradingUser who want to edit the transaction
+     * @param time the new time of the meeting
+     * @param date the new date of the meeting
+     * @return boolean whether the meeting was successfully edited or not
+     */
+    public boolean editMeeting(int meetingNum, UUID transactionId, UUID userId, Date time, Date date) throws InvalidTransactionException {
+        return editMeeting(meetingNum, transactionId, userId, meeting -> {
             meeting.setTime(time);
-            return true;
-        } else {
-            return false;
-        }
+            meeting.setDate(date);
+        }) != null;
     }
 
-    public void updateEdits(int meetingNum, UUID transactionId, UUID userId) throws InvalidTransactionException {
+    /**
+     * Edits the location, the time and the date of a meeting, which counts as one edit
+     * @param meetingNum the meeting number that the user wants to edit
+     * @param transactionId the transaction to which the meeting belongs to
+     * @param userId the UUID of the TradingUser who want to edit the transaction
+     * @param newLocation the new location of the meeting
+     * @param time the new time of the meeting
+     * @param date the new date of the meeting
+     * @return boolean whether the meeting was successfully edited or not
+     */
+    public boolean editMeeting(int meetingNum, UUID transactionId, UUID userId, String newLocation, Date time, Date date) throws InvalidTransactionException {
+        return replaceMeeting(meetingNum, transactionId, userId, newLocation, time, date) != null;
+    }
+
+    /**
+     * Edits the location, the time and the date of a meeting, which counts as one edit, and returns the meeting as it
+     * was right before this edit, so that the edit can be undone even if another edit was made just before it
+     * @param meetingNum the meeting number that the user wants to edit
+     * @param transactionId the transaction to which the meeting belongs to
+     * @param userId the UUID of the TradingUser who want to edit the transaction
+     * @param newLocation the new location of the meeting
+     * @param time the new time of the meeting
+     * @param date the new date of the meeting
+     * @return a copy of the meeting before the edit, or null if the meeting was not edited
+     */
+    public Meeting replaceMeeting(int meetingNum, UUID transactionId, UUID userId, String newLocation, Date time, Date date) throws InvalidTransactionException {
+        return editMeeting(meetingNum, transactionId, userId, meeting -> {
+            meeting.setLocation(newLocation);
+            meeting.setTime(time);
+            meeting.setDate(date);
+        });
+    }
+
+    /* the edit and the count of the user's edits are made in one update, so two edits at once cannot both use the
+     * user's last edit, and the meeting before the edit is copied in the same update, so it is the one that was
+     * replaced; returns that copy, or null if the meeting was not edited */
+    private Meeting editMeeting(int meetingNum, UUID transactionId, UUID userId, Consumer<Meeting> edit) throws InvalidTransactionException {
         Transaction transaction = getTransactionFromId(transactionId);
         int userNum = findUserNum(transaction, userId);
-        Meeting meeting = transaction.getTransactionMeetings().get(meetingNum);
-        meeting.userEdits(userNum);
+        Meeting[] previous = new Meeting[1];
+        boolean edited = transaction.update(draft -> {
+            if (!canEdit(draft, meetingNum, userNum)) {
+                return false;
+            }
+            previous[0] = new Meeting(draft.getMeetings().get(meetingNum));
+            Meeting meeting = draft.editMeeting(meetingNum);
+            edit.accept(meeting);
+            meeting.userEdits(userNum);
+            return true;
+        });
+        if (edited) {
+            recordTransaction(transaction);
+            return previous[0];
+        }
+        return null;
     }
 
     protected boolean canEdit(Meeting meeting, int userNum) {
         return meeting.getNumEditsUser(userNum) < meeting.getMaxNumEdits();
     }
 
-    /**
-     * This method is ONLY allowed to be used in the createTransactionMenu
-     *
-     * DO NOT USE THIS METHOD. THERE ARE NO EXCEPTIONS WRITTEN AND THIS METHOD IS OUT OF PLACE
-     * THIS WILL HAVE TO BE MOVED SOMEWHERE ELSE
-     * @param user1 one of the users in transaction.
-     * @param user2 one of the users in transaction.
-     * @param newTransaction the actual transaction object. (for which method will get ids for)
-     */
-    public void updateUsersCurrentTransactions(TradingUser user1,TradingUser user2,Transaction newTransaction){
-        user1.getCurrentTransactions().add(newTransaction.getId());
-        user2.getCurrentTransactions().add(newTransaction.getId());
+    /* a meeting can be edited while the transaction is pending and the user has edits left */
+    private boolean canEdit(Transaction.Draft draft, int meetingNum, int userNum) {
+        return canEdit(draft.getMeetings().get(meetingNum), userNum) &&
+                draft.getStatus().equals(TransactionStatuses.PENDING);
     }
 
     /**
+     * The new status is worked out from the user statuses and set in one step, so that a user status changed at the
+     * same time is not missed.
      * @param transaction the transaction who's status is being updated
      * @return true if the status of the transaction has been updated, the transaction status will we updated based on
      * user input by changing their status user
      */
     public boolean updateStatus(Transaction transaction){
-        return (ss.noMeetingComplete(transaction) | ss.pendingToCancelled(transaction) | ss.pendingToConfirmed(transaction) | ss.confirmedToTraded(transaction) |
-                ss.confirmedToIncomplete(transaction) | ss.confirmedToComplete(transaction) | ss.tradedToComplete(transaction) |
-                ss.tradedToNeverReturned(transaction));
+        boolean updated = transaction.update(draft -> ss.noMeetingComplete(draft) | ss.pendingToCancelled(draft) |
+                ss.pendingToConfirmed(draft) | ss.confirmedToTraded(draft) | ss.confirmedToIncomplete(draft) |
+                ss.confirmedToComplete(draft) | ss.tradedToComplete(draft) | ss.tradedToNeverReturned(draft));
+        if (updated) {
+            recordTransaction(transaction);
+        }
+        return updated;
     }
 
     /**
@@ -162,6 +212,7 @@ public class CurrentTransactionManager extends TransactionManager {
         if (optionChosen.equals(TransactionActions.EDITED)){
             transaction.setStatusUserID(TransactionStatuses.PENDING, userId);
         }
+        recordTransaction(transaction);
     }
 
 }
\ No newline at end of file
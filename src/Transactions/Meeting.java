@@ -1,11 +1,17 @@
 package Transactions;
 
+import Initialization.BinaryFormat;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
 import java.sql.Time;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Map;
 
 public class Meeting implements Serializable {
     /**
@@ -33,6 +39,7 @@ public class Meeting implements Serializable {
      * Time, Date, Location. (will be stored in the hashmap)
      * NOTE: getters and setters for certain information still remain camel-case.
      */
+    private static final long serialVersionUID = -3612543272798715589L;
     private HashMap<Integer, Integer> numUserEdits = new HashMap<>();
     private int maxNumEdits = 3;
     private String location;
@@ -53,6 +60,52 @@ public class Meeting implements Serializable {
         numUserEdits.put(2, 0);
     }
 
+    /**
+     * Constructs a copy of a meeting, which can be changed without changing the meeting it was copied from.
+     * @param meeting the meeting being copied
+     */
+    public Meeting(Meeting meeting) {
+        numUserEdits = new HashMap<>(meeting.numUserEdits);
+        maxNumEdits = meeting.maxNumEdits;
+        location = meeting.location;
+        meetingDate = meeting.meetingDate;
+        meetingTime = meeting.meetingTime;
+    }
+
+    /**
+     * Reads a meeting that was written by writeTo.
+     * @param in where the meeting is read from
+     * @param version the version of the BinaryFormat the meeting was written with
+     * @throws IOException if the meeting could not be read
+     */
+    public Meeting(DataInput in, int version) throws IOException {
+        int numUsers = in.readInt();
+        for (int i = 0; i < numUsers; i++) {
+            numUserEdits.put(in.readInt(), in.readInt());
+        }
+        maxNumEdits = in.readInt();
+        location = BinaryFormat.readString(in);
+        meetingDate = BinaryFormat.readDate(in);
+        meetingTime = BinaryFormat.readDate(in);
+    }
+
+    /**
+     * Writes this meeting in the BinaryFormat.
+     * @param out where the meeting is written
+     * @throws IOException if the meeting could not be written
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(numUserEdits.size());
+        for (Map.Entry<Integer, Integer> entry : numUserEdits.entrySet()) {
+            out.writeInt(entry.getKey());
+            out.writeInt(entry.getValue());
+        }
+        out.writeInt(maxNumEdits);
+        BinaryFormat.writeString(out, location);
+        BinaryFormat.writeDate(out, meetingDate);
+        BinaryFormat.writeDate(out, meetingTime);
+    }
+
     /**
      * Getter for number of edits for this particular meeting by User1.
      * @return returns the number of times when user1 has edited a meeting.
@@ -1,8 +1,10 @@
 package Transactions;
 
 import java.time.LocalDate;
+import java.time.temporal.WeekFields;
 import java.util.*;
 import java.util.UUID;
+import Users.ActivityCounter;
 import Users.TradingUser;
 import Users.TransactionHistory;
 
@@ -11,6 +13,7 @@ import Users.TransactionHistory;
  * Manages methods regarding TransactionHistory of a User, extends TransactionManager.
  */
 public class PastTransactionManager extends TransactionManager{
+    private boolean rollingWeek = false;
 
     /**
      * Constructs an instance of a PastTransactionManager.
@@ -20,45 +23,52 @@ public class PastTransactionManager extends TransactionManager{
         super(transactions);
     }
 
+    /**
+     * Constructs an instance of a PastTransactionManager that shares a TransactionIndex with other managers.
+     * @param transactions hashmap of all transactions and their UUID
+     * @param index the index of transactions, which must have been created for the same map
+     */
+    public PastTransactionManager(Map<UUID, Transaction> transactions, TransactionIndex index){
+        super(transactions, index);
+    }
+
+    /**
+     * Counts past transactions by day, to rebuild the ActivityCounter of a history that was saved before it had one.
+     * @param pastTransactionIds the ids of every transaction in the history
+     * @return a new ActivityCounter of the transactions
+     */
+    public ActivityCounter countWeeklyActivity(List<UUID> pastTransactionIds) {
+        ActivityCounter weeklyActivity = new ActivityCounter();
+        for (Transaction transaction : getTransactionsFromIdList(pastTransactionIds)) {
+            TransactionHistory.countActivity(weeklyActivity, transaction);
+        }
+        return weeklyActivity;
+    }
+
     /** A helper method for weeklyThresholdExceeded */
     private int numTransactionsInWeek(TradingUser tradingUser){
-        // get transaction history
         TransactionHistory transactionHistory = tradingUser.getTransactionHistory();
-        List<UUID> transactionHistoryId = transactionHistory.getAllPastTransactions();
-
-        // number of transactions in a week
-        int numTransactions = 0;
-
-        //  create a list of transactions from the UUIDs of transaction history lists
-        List<Transaction> allTransactions = getTransactionsFromIdList(transactionHistoryId);
-
-        // instance of calendar
-        Calendar currentCal = Calendar.getInstance();
-        int week = currentCal.get(Calendar.WEEK_OF_YEAR);
-        int year = currentCal.get(Calendar.YEAR);
-        Calendar targetCal = Calendar.getInstance();
-
-        int targetWeek;
-        int targetYear;
-        // for each transaction in the list, look at the date of the transaction (the date of the last meeting) and compare it to the current dates above
-
-        for (Transaction transaction: allTransactions){
-            Date date;
-            if (!transaction.isVirtual()) {
-                date = transaction.getTransactionMeetings().get(transaction.getTransactionMeetings().size() - 1).getDate();
-                targetCal.setTime(date);
-                targetWeek = targetCal.get(Calendar.WEEK_OF_YEAR);
-                targetYear = targetCal.get(Calendar.YEAR);
-
-                // if the week number of the date of the transaction matches the current calendar, increment numTransactions
-                if(targetWeek == week && targetYear == year){
-                    numTransactions ++;
-                }
-            }
+        ActivityCounter weeklyActivity = transactionHistory.getWeeklyActivity();
+        if (weeklyActivity == null) {
+            // the TradingUserManager saves the rebuilt counter (see rebuildWeeklyActivity); until then it is counted
+            weeklyActivity = countWeeklyActivity(transactionHistory.getAllPastTransactions());
         }
-        // main idea of this code from: https://stackoverflow.com/questions/10313797/how-to-check-a-day-is-in-the-current-week-in-java
-        // answer by Benjamin Cox
-        return numTransactions;
+        LocalDate today = LocalDate.now();
+        if (rollingWeek) {
+            return weeklyActivity.count(today.minusDays(6).toEpochDay(), today.toEpochDay());
+        }
+        // the calendar week starts on the first day of the week of the default locale, as Calendar's weeks do
+        LocalDate weekStart = today.with(WeekFields.of(Locale.getDefault()).dayOfWeek(), 1);
+        return weeklyActivity.count(weekStart.toEpochDay(), weekStart.plusDays(6).toEpochDay());
+    }
+
+    /**
+     * Sets whether the weekly threshold counts the transactions of the last seven days instead of the current calendar
+     * week.
+     * @param rollingWeek true to count the last seven days, false to count the calendar week
+     */
+    public void setRollingWeek(boolean rollingWeek) {
+        this.rollingWeek = rollingWeek;
     }
 
     /**
@@ -74,21 +84,19 @@ public class PastTransactionManager extends TransactionManager{
 
 
     public int getNumCancelledTransactions(TradingUser user){
-        int count = 0;
-        ArrayList<Transaction> transactions = getTransactionsFromIdList(user.getTransactionHistory().getAllPastTransactions());
-        for (Transaction transaction: transactions){
-            if (transaction.getStatus().equals(TransactionStatuses.CANCELLED)){
-                count ++;
-            }
-        }
-        return count;
+        return countPastTransactions(user, TransactionStatuses.CANCELLED);
     }
 
     public int getNumCompletedTransactions(TradingUser user){
+        return countPastTransactions(user, TransactionStatuses.COMPLETED);
+    }
+
+    /* counts the transactions in user's history with a status, using the index instead of reading the transactions */
+    private int countPastTransactions(TradingUser user, TransactionStatuses status){
         int count = 0;
-        ArrayList<Transaction> transactions = getTransactionsFromIdList(user.getTransactionHistory().getAllPastTransactions());
-        for (Transaction transaction: transactions){
-            if (transaction.getStatus().equals(TransactionStatuses.COMPLETED)){
+        Set<UUID> ids = index.getIds(user.getUserId(), status);
+        for (UUID id : user.getTransactionHistory().getAllPastTransactions()){
+            if (ids.contains(id)){
                 count ++;
             }
         }
@@ -0,0 +1,268 @@
+package Transactions;
+
+import Users.TradingUser;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * <h1>TradeMatcher</h1>
+ * Finds trades in which every TradingUser receives an item on their wishlist, as a batch over whole cities.
+ *
+ * <p>Each city is matched on its own, in parallel on a ForkJoinPool. The TradingUsers of a city are the nodes of a
+ * graph with an edge from each TradingUser to every other TradingUser with an item in their inventory that the first
+ * one wants. A cycle of at most MAX_CYCLE_LENGTH TradingUsers in that graph is a trade: a cycle of two is a two-way
+ * swap, and a longer one is a trade cycle. Cycles are found from every TradingUser in parallel, each cycle only from
+ * its TradingUser with the lowest index so it is found once, and at most MAX_CYCLES_PER_USER from each. A TradingUser
+ * who wants items from w others has about w^3 paths of MAX_CYCLE_LENGTH to look at, most of which do not close in a
+ * dense city, so at most MAX_PATHS_PER_USER paths are explored from each TradingUser, shorter ones first.</p>
+ *
+ * <p>The cycles are ranked shorter first, since those need fewer TradingUsers to agree, and are then picked in that
+ * order so that no TradingUser is in more than one TradeProposal.</p>
+ */
+public class TradeMatcher {
+    /**
+     * The most TradingUsers in one trade cycle.
+     */
+    public static final int MAX_CYCLE_LENGTH = 4;
+
+    private static final int MAX_CYCLES_PER_USER = 16;
+    private static final int MAX_PATHS_PER_USER = 8192;
+    private static final int USERS_PER_TASK = 4096;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a TradeMatcher that runs on the common ForkJoinPool.
+     */
+    public TradeMatcher() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a TradeMatcher that runs on a given ForkJoinPool.
+     * @param pool the pool the cities are matched on
+     */
+    public TradeMatcher(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Finds trades among the TradingUsers of each city. The TradingUsers should not be changed while they are matched.
+     * @param usersByCity the TradingUsers who can trade, by city
+     * @return the TradeProposals of every city, shorter cycles first, with each TradingUser in at most one
+     */
+    public List<TradeProposal> match(Map<String, ? extends Collection<TradingUser>> usersByCity) {
+        return pool.invoke(new RecursiveTask<List<TradeProposal>>() {
+            @Override
+            protected List<TradeProposal> compute() {
+                List<CityMatch> cities = new ArrayList<>();
+                for (Collection<TradingUser> tradingUsers : new TreeMap<>(usersByCity).values()) {
+                    cities.add(new CityMatch(tradingUsers));
+                }
+                ForkJoinTask.invokeAll(cities);
+                List<TradeProposal> proposals = new ArrayList<>();
+                for (CityMatch city : cities) {
+                    proposals.addAll(city.join());
+                }
+                proposals.sort(Comparator.comparingInt(proposal -> proposal.getUsers().size()));
+                return proposals;
+            }
+        });
+    }
+
+    /**
+     * Matches the TradingUsers of one city.
+     */
+    private static class CityMatch extends RecursiveTask<List<TradeProposal>> {
+        private static final long serialVersionUID = 3184927740562208151L;
+        private final Collection<TradingUser> tradingUsers;
+
+        private CityMatch(Collection<TradingUser> tradingUsers) {
+            this.tradingUsers = tradingUsers;
+        }
+
+        @Override
+        protected List<TradeProposal> compute() {
+            WantGraph graph = new WantGraph(tradingUsers);
+            List<List<int[]>> cyclesByUser = new ArrayList<>(Collections.nCopies(graph.size(), null));
+            new FindCycles(graph, cyclesByUser, 0, graph.size()).invoke();
+            return graph.pick(cyclesByUser);
+        }
+    }
+
+    /**
+     * Finds the cycles that start from the TradingUsers with an index from start to end, splitting the range in two
+     * while it is large.
+     */
+    private static class FindCycles extends RecursiveAction {
+        private static final long serialVersionUID = -7420156983361175246L;
+        private final WantGraph graph;
+        private final List<List<int[]>> cyclesByUser;
+        private final int start;
+        private final int end;
+
+        private FindCycles(WantGraph graph, List<List<int[]>> cyclesByUser, int start, int end) {
+            this.graph = graph;
+            this.cyclesByUser = cyclesByUser;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start > USERS_PER_TASK) {
+                int middle = (start + end) >>> 1;
+                invokeAll(new FindCycles(graph, cyclesByUser, start, middle),
+                        new FindCycles(graph, cyclesByUser, middle, end));
+            } else {
+                for (int user = start; user < end; user++) {
+                    List<int[]> cycles = graph.cyclesFrom(user);
+                    if (!cycles.isEmpty()) {
+                        cyclesByUser.set(user, cycles);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The graph of which TradingUsers of a city want an item from which others, by the index of each TradingUser.
+     */
+    private static class WantGraph {
+        private final TradingUser[] users;
+        private final int[][] wants; // the TradingUsers each one wants an item from, sorted
+        private final UUID[][] wantedItems; // the first item wanted from each of them
+
+        private WantGraph(Collection<TradingUser> tradingUsers) {
+            users = tradingUsers.toArray(new TradingUser[0]);
+            Map<UUID, Integer> owners = new HashMap<>();
+            for (int i = 0; i < users.length; i++) {
+                for (UUID itemId : users[i].getInventory()) {
+                    owners.put(itemId, i);
+                }
+            }
+            wants = new int[users.length][];
+            wantedItems = new UUID[users.length][];
+            for (int i = 0; i < users.length; i++) {
+                TreeMap<Integer, UUID> wanted = new TreeMap<>();
+                for (UUID itemId : users[i].getWishlist()) {
+                    Integer owner = owners.get(itemId);
+                    if (owner != null && owner != i) {
+                        wanted.putIfAbsent(owner, itemId);
+                    }
+                }
+                wants[i] = new int[wanted.size()];
+                wantedItems[i] = new UUID[wanted.size()];
+                int j = 0;
+                for (Map.Entry<Integer, UUID> entry : wanted.entrySet()) {
+                    wants[i][j] = entry.getKey();
+                    wantedItems[i][j] = entry.getValue();
+                    j++;
+                }
+            }
+        }
+
+        private int size() {
+            return users.length;
+        }
+
+        /* returns the cycles through start whose other TradingUsers all have a higher index, shortest first */
+        private List<int[]> cyclesFrom(int start) {
+            List<int[]> cycles = new ArrayList<>();
+            int[] path = new int[MAX_CYCLE_LENGTH];
+            path[0] = start;
+            // the number of paths that may still be explored from start
+            int[] budget = {MAX_PATHS_PER_USER};
+            for (int length = 2; length <= MAX_CYCLE_LENGTH && cycles.size() < MAX_CYCLES_PER_USER && budget[0] > 0;
+                 length++) {
+                extend(path, 1, length, cycles, budget);
+            }
+            return cycles;
+        }
+
+        /* adds the cycles of the given length that continue path, which has depth TradingUsers so far, using up one of
+         * the budget for every path explored */
+        private void extend(int[] path, int depth, int length, List<int[]> cycles, int[] budget) {
+            int last = path[depth - 1];
+            int[] next = wants[last];
+            for (int k = firstAbove(next, path[0]);
+                 k < next.length && cycles.size() < MAX_CYCLES_PER_USER && budget[0] > 0; k++) {
+                int user = next[k];
+                if (onPath(path, depth, user)) {
+                    continue;
+                }
+                budget[0]--;
+                path[depth] = user;
+                if (depth + 1 == length) {
+                    if (Arrays.binarySearch(wants[user], path[0]) >= 0) {
+                        cycles.add(Arrays.copyOf(path, length));
+                    }
+                } else {
+                    extend(path, depth + 1, length, cycles, budget);
+                }
+            }
+        }
+
+        private static boolean onPath(int[] path, int depth, int user) {
+            for (int i = 1; i < depth; i++) {
+                if (path[i] == user) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /* returns the position of the first index in sorted that is above index */
+        private static int firstAbove(int[] sorted, int index) {
+            int position = Arrays.binarySearch(sorted, index + 1);
+            return position >= 0 ? position : -position - 1;
+        }
+
+        /* picks cycles shortest first, and then by their first TradingUser, so no TradingUser is in two of them */
+        private List<TradeProposal> pick(List<List<int[]>> cyclesByUser) {
+            List<TradeProposal> proposals = new ArrayList<>();
+            boolean[] taken = new boolean[users.length];
+            for (int length = 2; length <= MAX_CYCLE_LENGTH; length++) {
+                for (List<int[]> cycles : cyclesByUser) {
+                    if (cycles == null) {
+                        continue;
+                    }
+                    for (int[] cycle : cycles) {
+                        if (cycle.length == length && isFree(cycle, taken)) {
+                            for (int user : cycle) {
+                                taken[user] = true;
+                            }
+                            proposals.add(toProposal(cycle));
+                        }
+                    }
+                }
+            }
+            return proposals;
+        }
+
+        private static boolean isFree(int[] cycle, boolean[] taken) {
+            for (int user : cycle) {
+                if (taken[user]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private TradeProposal toProposal(int[] cycle) {
+            List<UUID> userIds = new ArrayList<>(cycle.length);
+            List<UUID> itemIds = new ArrayList<>(cycle.length);
+            for (int i = 0; i < cycle.length; i++) {
+                int user = cycle[i];
+                int giver = cycle[(i + 1) % cycle.length];
+                userIds.add(users[user].getUserId());
+                itemIds.add(wantedItems[user][Arrays.binarySearch(wants[user], giver)]);
+            }
+            return new TradeProposal(userIds, itemIds);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package Transactions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * <h1>TradeProposal</h1>
+ * A trade found by the TradeMatcher, in which every TradingUser receives an item on their wishlist.
+ *
+ * <p>The TradingUsers form a cycle: each user receives the item at the same position in the items from the next user,
+ * and the last user receives from the first. A proposal of two users is a two-way swap.</p>
+ */
+public class TradeProposal {
+    private final List<UUID> users;
+    private final List<UUID> items;
+
+    /**
+     * Creates a TradeProposal.
+     * @param users the ids of the TradingUsers in the cycle, in order
+     * @param items the id of the item each TradingUser receives from the next one
+     */
+    public TradeProposal(List<UUID> users, List<UUID> items) {
+        this.users = Collections.unmodifiableList(new ArrayList<>(users));
+        this.items = Collections.unmodifiableList(new ArrayList<>(items));
+    }
+
+    /**
+     * Getter for the TradingUsers in this proposal, in the order of the cycle.
+     * @return the ids of the TradingUsers
+     */
+    public List<UUID> getUsers() {
+        return users;
+    }
+
+    /**
+     * Getter for the item that each TradingUser receives from the next one in the cycle.
+     * @return the ids of the items
+     */
+    public List<UUID> getItems() {
+        return items;
+    }
+
+    /**
+     * Returns whether this proposal is a two-way swap between two TradingUsers.
+     * @return true iff there are two TradingUsers in this proposal
+     */
+    public boolean isSwap() {
+        return users.size() == 2;
+    }
+
+    /**
+     * Returns the TransactionBuilders that carry out this proposal once their meetings are built. A swap is one two-way
+     * transaction; a longer cycle is one one-way transaction for each TradingUser, in which they receive their item from
+     * the next TradingUser.
+     * @param transFact the TransactionFactory the transactions are made by
+     * @return a list of TransactionBuilders, each built from the side of the TradingUser receiving the item
+     */
+    public List<TransactionBuilder> toTransactionBuilders(TransactionFactory transFact) {
+        List<TransactionBuilder> builders = new ArrayList<>();
+        if (isSwap()) {
+            TransactionBuilder builder = new TransactionBuilder(users.get(0), transFact);
+            builder.declareIntent(users.get(1), items.get(0));
+            builder.AddItemOffered(items.get(1));
+            builders.add(builder);
+        } else {
+            for (int i = 0; i < users.size(); i++) {
+                TransactionBuilder builder = new TransactionBuilder(users.get(i), transFact);
+                builder.declareIntent(users.get((i + 1) % users.size()), items.get(i));
+                builders.add(builder);
+            }
+        }
+        return builders;
+    }
+
+    /**
+     * Represents this proposal by its TradingUsers and items.
+     * @return the users and items of the cycle
+     */
+    @Override
+    public String toString() {
+        return "TradeProposal{users=" + users + ", items=" + items + "}";
+    }
+}
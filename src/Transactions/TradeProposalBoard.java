@@ -0,0 +1,65 @@
+package Transactions;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <h1>TradeProposalBoard</h1>
+ * The TradeProposals found by the latest batch of the TradeMatcher, which TradingUsers are served from until the next
+ * batch, so that no city is matched when a TradingUser asks for their proposals.
+ *
+ * <p>Each batch replaces the proposals of the one before. A TradingUser is in at most one proposal of a batch, so the
+ * proposals are kept by the id of each TradingUser in them. A proposal is taken off the board once it has been turned
+ * into transactions.</p>
+ */
+public class TradeProposalBoard {
+    private volatile Map<UUID, TradeProposal> proposalsByUser = new ConcurrentHashMap<>();
+    private volatile Date matchedAt = null;
+
+    /**
+     * Replaces the proposals on the board with those of a new batch.
+     * @param proposals the TradeProposals of the batch, with each TradingUser in at most one
+     */
+    public void publish(List<TradeProposal> proposals) {
+        Map<UUID, TradeProposal> byUser = new ConcurrentHashMap<>();
+        for (TradeProposal proposal : proposals) {
+            for (UUID userId : proposal.getUsers()) {
+                byUser.put(userId, proposal);
+            }
+        }
+        proposalsByUser = byUser;
+        matchedAt = new Date();
+    }
+
+    /**
+     * Returns the proposal of the latest batch that a TradingUser is in.
+     * @param userId the id of a TradingUser
+     * @return the TradeProposal, or null if the TradingUser is in none
+     */
+    public TradeProposal getProposal(UUID userId) {
+        return proposalsByUser.get(userId);
+    }
+
+    /**
+     * Takes a proposal off the board, for every TradingUser in it, so that it is carried out at most once.
+     * @param proposal a TradeProposal
+     * @return true iff the proposal was on the board and this call took it off
+     */
+    public boolean remove(TradeProposal proposal) {
+        Map<UUID, TradeProposal> byUser = proposalsByUser;
+        // whoever removes the first TradingUser's entry has taken the proposal, even if another takes the rest
+        boolean removed = byUser.remove(proposal.getUsers().get(0), proposal);
+        for (UUID userId : proposal.getUsers()) {
+            byUser.remove(userId, proposal);
+        }
+        return removed;
+    }
+
+    /**
+     * Getter for when the proposals on the board were found.
+     * @return the time the latest batch finished, or null if no batch has run yet
+     */
+    public Date getMatchedAt() {
+        return matchedAt;
+    }
+}
@@ -1,7 +1,13 @@
 package Transactions;
 
-import java.io.Serializable;
+import Initialization.BinaryFormat;
+
+import java.io.*;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
 
 /**
  *<h1>Transaction</h1>
@@ -27,13 +33,31 @@ import java.util.*;
  * -- "Never Returned" -- A user did not show up at meeting 2 and/or items were not returned.(only used for temporary transactions). <br>
  * userStatuses: a list of all user statuses with the position in the list corresponding to the position in the list of
  * users.
+ *
+ * <p>The status, user statuses and meetings are kept together in one State with a version stamp, which is never
+ * changed once it has been set. A change is made to a Draft of the current State and then set by compare-and-set,
+ * and if another change was set in the meantime the change is made again on the newer State. Both users can change
+ * the same transaction at once without either change being lost, and without locking the transaction. The number of
+ * changes that had to be made again is counted in getRetries. getTransactionMeetings hands out copies of the meetings,
+ * which are changed through Draft.editMeeting.</p>
  */
 public abstract class Transaction implements Serializable {
-    private UUID id = UUID.randomUUID();
-    private TransactionStatuses status;
+    private static final long serialVersionUID = 6653589761616288812L;
+    // written in front of a transaction so that the right subclass is read back
+    private static final byte PERM = 0;
+    private static final byte TEMP = 1;
+    private static final byte VIRTUAL = 2;
+    // the fields that were saved before the State existed, which are still how a transaction is serialized
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("id", UUID.class),
+            new ObjectStreamField("status", TransactionStatuses.class),
+            new ObjectStreamField("userToItems", TreeMap.class),
+            new ObjectStreamField("userToStatus", TreeMap.class),
+            new ObjectStreamField("meetings", List.class)};
+    private static final LongAdder retries = new LongAdder();
+    private UUID id;
     private TreeMap<UUID,List<UUID>> userToItems;
-    private TreeMap<UUID, TransactionStatuses> userToStatus;
-    private List<Meeting> meetings;
+    private transient AtomicReference<State> state;
 
     /**
      * This method takes in the parameters and constructs an instance of the abstract class transaction.
@@ -42,14 +66,126 @@ public abstract class Transaction implements Serializable {
      *                    null values depending if the user doesn't have these items with the properties stated.
      */
     public Transaction(TreeMap<UUID,List<UUID>> userToItems){
-        status = TransactionStatuses.PENDING;
+        id = newId();
         this.userToItems =userToItems;
         TreeMap<UUID, TransactionStatuses> userToStatus = new TreeMap<>();
         for(UUID id:userToItems.keySet()){
             userToStatus.put(id, TransactionStatuses.PENDING);
         }
-        this.userToStatus = userToStatus;
-        this.meetings = new ArrayList<>();
+        state = new AtomicReference<>(new State(0, TransactionStatuses.PENDING, userToStatus, new ArrayList<>()));
+    }
+
+    /**
+     * Creates a time-ordered id in the layout of a version 7 UUID: the time the transaction was created in
+     * milliseconds, followed by random bits. TransactionStore uses this time to keep transactions that were created
+     * around the same time in the same segment.
+     * @return a new UUID
+     */
+    private static UUID newId() {
+        Random random = ThreadLocalRandom.current();
+        long mostSigBits = (System.currentTimeMillis() << 16) | 0x7000L | (random.nextInt() & 0xFFFL);
+        long leastSigBits = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(mostSigBits, leastSigBits);
+    }
+
+    /**
+     * Reads the fields of a transaction that was written by writeTo.
+     * @param in where the transaction is read from
+     * @param version the version of the BinaryFormat the transaction was written with
+     * @throws IOException if the transaction could not be read
+     */
+    protected Transaction(DataInput in, int version) throws IOException {
+        id = BinaryFormat.readUUID(in);
+        TransactionStatuses status = BinaryFormat.readEnum(in, TransactionStatuses.values());
+        userToItems = new TreeMap<>();
+        int numUsers = in.readInt();
+        for (int i = 0; i < numUsers; i++) {
+            userToItems.put(BinaryFormat.readUUID(in), BinaryFormat.readNullableUUIDList(in));
+        }
+        TreeMap<UUID, TransactionStatuses> userToStatus = new TreeMap<>();
+        numUsers = in.readInt();
+        for (int i = 0; i < numUsers; i++) {
+            userToStatus.put(BinaryFormat.readUUID(in), BinaryFormat.readEnum(in, TransactionStatuses.values()));
+        }
+        int numMeetings = in.readInt();
+        List<Meeting> meetings = new ArrayList<>(numMeetings);
+        for (int i = 0; i < numMeetings; i++) {
+            meetings.add(new Meeting(in, version));
+        }
+        state = new AtomicReference<>(new State(0, status, userToStatus, meetings));
+    }
+
+    /* transactions are serialized with the fields they had before the State, so that older files can still be read */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        State current = state.get();
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("id", id);
+        fields.put("status", current.status);
+        fields.put("userToItems", userToItems);
+        fields.put("userToStatus", current.userToStatus);
+        fields.put("meetings", current.meetings);
+        out.writeFields();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        id = (UUID) fields.get("id", null);
+        userToItems = (TreeMap<UUID, List<UUID>>) fields.get("userToItems", null);
+        state = new AtomicReference<>(new State(0, (TransactionStatuses) fields.get("status", null),
+                (TreeMap<UUID, TransactionStatuses>) fields.get("userToStatus", null),
+                new ArrayList<>((List<Meeting>) fields.get("meetings", null))));
+    }
+
+    /**
+     * Reads a transaction that was written by writeTo, as the same subclass it was written as.
+     * @param in where the transaction is read from
+     * @param version the version of the BinaryFormat the transaction was written with
+     * @return the transaction
+     * @throws IOException if the transaction could not be read
+     */
+    public static Transaction readFrom(DataInput in, int version) throws IOException {
+        byte type = in.readByte();
+        if (type == PERM) {
+            return new TransactionPerm(in, version);
+        } else if (type == TEMP) {
+            return new TransactionTemp(in, version);
+        } else if (type == VIRTUAL) {
+            return new TransactionVirtual(in, version);
+        }
+        throw new IOException("Unknown transaction type " + type);
+    }
+
+    /**
+     * Writes this transaction in the BinaryFormat.
+     * @param out where the transaction is written
+     * @throws IOException if the transaction could not be written
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        if (isVirtual()) {
+            out.writeByte(VIRTUAL);
+        } else if (isPerm()) {
+            out.writeByte(PERM);
+        } else {
+            out.writeByte(TEMP);
+        }
+        State current = state.get();
+        BinaryFormat.writeUUID(out, id);
+        BinaryFormat.writeEnum(out, current.status);
+        out.writeInt(userToItems.size());
+        for (Map.Entry<UUID, List<UUID>> entry : userToItems.entrySet()) {
+            BinaryFormat.writeUUID(out, entry.getKey());
+            BinaryFormat.writeNullableUUIDList(out, entry.getValue());
+        }
+        out.writeInt(current.userToStatus.size());
+        for (Map.Entry<UUID, TransactionStatuses> entry : current.userToStatus.entrySet()) {
+            BinaryFormat.writeUUID(out, entry.getKey());
+            BinaryFormat.writeEnum(out, entry.getValue());
+        }
+        out.writeInt(current.meetings.size());
+        for (Meeting meeting : current.meetings) {
+            meeting.writeTo(out);
+        }
     }
 
     /**
@@ -60,19 +196,65 @@ public abstract class Transaction implements Serializable {
         return id;
     }
 
+    /**
+     * Getter for the version stamp of the status, user statuses and meetings, which goes up by one with every change
+     * to them. It starts again from 0 when the transaction is read back.
+     * @return the version as a long
+     */
+    public long getVersion() {
+        return state.get().version;
+    }
+
+    /**
+     * Getter for the number of changes to any transaction that had to be made again, because another change to the
+     * same transaction was set while they were being made.
+     * @return the number of retries since the program started
+     */
+    public static long getRetries() {
+        return retries.sum();
+    }
+
+    /**
+     * Changes the status, user statuses or meetings of this transaction as one step. The change is made to a Draft of
+     * the current State, which is set only if no other change was set in the meantime; otherwise the change is made
+     * again on a new Draft, so it must not do anything but change the Draft.
+     * @param change makes the change to the Draft, and returns false if there is nothing to change
+     * @return true if the change was set, false if change returned false
+     */
+    public boolean update(Predicate<Draft> change) {
+        while (true) {
+            State current = state.get();
+            Draft draft = new Draft(current);
+            if (!change.test(draft)) {
+                return false;
+            }
+            if (state.compareAndSet(current, draft.toState())) {
+                return true;
+            }
+            retries.increment();
+        }
+    }
+
     /**
      * This method adds to the meetings list
      * @param meeting the meeting you want to add.
      */
     public void addMeeting(Meeting meeting){
-        this.meetings.add(meeting);
+        Meeting copy = new Meeting(meeting);
+        update(draft -> {
+            draft.addMeeting(copy);
+            return true;
+        });
     }
     /**
      * Setter for status. This will be called by use case classes.
      * @param newStatus the new status.
      */
     public void setStatus(TransactionStatuses newStatus){
-        status = newStatus;
+        update(draft -> {
+            draft.setStatus(newStatus);
+            return true;
+        });
     }
 
     /**
@@ -80,7 +262,7 @@ public abstract class Transaction implements Serializable {
      * @return returns the status of the transaction which can take on values specified in class documentation.
      */
     public TransactionStatuses getStatus(){
-        return status;
+        return state.get().status;
     }
 
     /**
@@ -160,17 +342,22 @@ public abstract class Transaction implements Serializable {
      */
 
     public boolean isTemp(){
-        return this.getTransactionMeetings().size() == 2;
+        return state.get().meetings.size() == 2;
     }
 
     /**
      * This is an method that get's all of the meetings involved in the transaction. Size of list returned
      * will depend directly on the type of transaction taking place.
-     * @return returns a list of
+     * @return returns a list of copies of the
      *         meetings in the order of them happening in the transaction. (A list of either 1 or 2 meetings.)
+     *         Changing a copy does not change the transaction; meetings are changed through Draft.editMeeting.
      */
     public List<Meeting> getTransactionMeetings(){
-        return this.meetings;
+        List<Meeting> meetings = new ArrayList<>();
+        for (Meeting meeting : state.get().meetings) {
+            meetings.add(new Meeting(meeting));
+        }
+        return meetings;
     }
 
     /**
@@ -196,7 +383,7 @@ public abstract class Transaction implements Serializable {
      * @return returns the transaction status for the user id that was passed in to the method.
      */
     public TransactionStatuses getUserStatus(UUID user){
-        return this.userToStatus.get(user);
+        return state.get().userToStatus.get(user);
     }
 
 
@@ -207,7 +394,10 @@ public abstract class Transaction implements Serializable {
      * @param newStatus the new status you would like the user id to be mapped to.
      */
     public void setUserStatus(UUID user, TransactionStatuses newStatus){
-        this.userToStatus.replace(user,newStatus);
+        update(draft -> {
+            draft.setUserStatus(user, newStatus);
+            return true;
+        });
     }
 
     /**
@@ -230,7 +420,7 @@ public abstract class Transaction implements Serializable {
      * @return statusUser2
      */
     public TransactionStatuses getStatusUser2() {
-        return this.getUserStatus(this.getUser1());
+        return this.getUserStatus(this.getUser2());
     }
 
     /**
@@ -248,7 +438,7 @@ public abstract class Transaction implements Serializable {
      * @param userId the User's UUID
      */
     public void setStatusUserID(TransactionStatuses newStatus, UUID userId){
-        userToStatus.replace(userId, newStatus);
+        setUserStatus(userId, newStatus);
     }
 
     /**
@@ -297,8 +487,189 @@ public abstract class Transaction implements Serializable {
     }
 
     public void setMeetings(List<Meeting> meetings) {
-        this.meetings = meetings;
+        List<Meeting> copies = new ArrayList<>();
+        for (Meeting meeting : meetings) {
+            copies.add(new Meeting(meeting));
+        }
+        update(draft -> {
+            draft.setMeetings(copies);
+            return true;
+        });
     }
 
+    /**
+     * The status, user statuses and meetings of a transaction at one version, which are never changed once set.
+     */
+    private static class State {
+        private final long version;
+        private final TransactionStatuses status;
+        private final TreeMap<UUID, TransactionStatuses> userToStatus;
+        private final List<Meeting> meetings;
+
+        private State(long version, TransactionStatuses status, TreeMap<UUID, TransactionStatuses> userToStatus,
+                      List<Meeting> meetings) {
+            this.version = version;
+            this.status = status;
+            this.userToStatus = userToStatus;
+            this.meetings = meetings;
+        }
+    }
+
+    /**
+     * A change to the status, user statuses and meetings of a transaction that has not been set yet. The user
+     * statuses and meetings are copied the first time they are changed, so the State it was made from is unchanged.
+     */
+    public class Draft {
+        private final State base;
+        private TransactionStatuses status;
+        private TreeMap<UUID, TransactionStatuses> userToStatus;
+        private List<Meeting> meetings;
+        private Set<Integer> editedMeetings;
+
+        private Draft(State base) {
+            this.base = base;
+            this.status = base.status;
+            this.userToStatus = base.userToStatus;
+            this.meetings = base.meetings;
+        }
+
+        /**
+         * @return the status of the transaction in this Draft
+         */
+        public TransactionStatuses getStatus() {
+            return status;
+        }
+
+        /**
+         * @param newStatus the new status of the transaction
+         */
+        public void setStatus(TransactionStatuses newStatus) {
+            status = newStatus;
+        }
 
+        /**
+         * @param user the id of a user in the transaction
+         * @return the status of the user in this Draft
+         */
+        public TransactionStatuses getUserStatus(UUID user) {
+            return userToStatus.get(user);
+        }
+
+        /**
+         * @param user the id of a user in the transaction
+         * @param newStatus the new status of the user
+         */
+        public void setUserStatus(UUID user, TransactionStatuses newStatus) {
+            if (userToStatus == base.userToStatus) {
+                userToStatus = new TreeMap<>(userToStatus);
+            }
+            userToStatus.replace(user, newStatus);
+        }
+
+        /**
+         * @return the status of user1 in this Draft
+         */
+        public TransactionStatuses getStatusUser1() {
+            return getUserStatus(getUser1());
+        }
+
+        /**
+         * @return the status of user2 in this Draft
+         */
+        public TransactionStatuses getStatusUser2() {
+            return getUserStatus(getUser2());
+        }
+
+        /**
+         * @return the meetings in this Draft, which must be changed through editMeeting
+         */
+        public List<Meeting> getMeetings() {
+            return Collections.unmodifiableList(meetings);
+        }
+
+        /**
+         * Returns a meeting that can be changed, which is a copy of the meeting the Draft was made with.
+         * @param meetingNum the index of the meeting
+         * @return the meeting
+         */
+        public Meeting editMeeting(int meetingNum) {
+            copyMeetings();
+            if (editedMeetings.add(meetingNum)) {
+                meetings.set(meetingNum, new Meeting(meetings.get(meetingNum)));
+            }
+            return meetings.get(meetingNum);
+        }
+
+        /**
+         * @param meetingNum the index of the meeting being replaced
+         * @param meeting the meeting that replaces it, which must not be changed afterwards
+         */
+        public void setMeeting(int meetingNum, Meeting meeting) {
+            copyMeetings();
+            meetings.set(meetingNum, meeting);
+            editedMeetings.remove(meetingNum);
+        }
+
+        /**
+         * @param meeting the meeting added after the others, which must not be changed afterwards
+         */
+        public void addMeeting(Meeting meeting) {
+            copyMeetings();
+            meetings.add(meeting);
+        }
+
+        /**
+         * @param newMeetings the meetings that replace all the meetings, which must not be changed afterwards
+         */
+        public void setMeetings(List<Meeting> newMeetings) {
+            meetings = new ArrayList<>(newMeetings);
+            editedMeetings = new HashSet<>();
+        }
+
+        /**
+         * @return the ids of the users in the transaction
+         */
+        public List<UUID> getUsers() {
+            return Transaction.this.getUsers();
+        }
+
+        /**
+         * @return the id of user1
+         */
+        public UUID getUser1() {
+            return Transaction.this.getUser1();
+        }
+
+        /**
+         * @return the id of user2
+         */
+        public UUID getUser2() {
+            return Transaction.this.getUser2();
+        }
+
+        /**
+         * @return true iff the transaction is permanent
+         */
+        public boolean isPerm() {
+            return Transaction.this.isPerm();
+        }
+
+        /**
+         * @return true iff the transaction is virtual
+         */
+        public boolean isVirtual() {
+            return Transaction.this.isVirtual();
+        }
+
+        private void copyMeetings() {
+            if (meetings == base.meetings) {
+                meetings = new ArrayList<>(meetings);
+                editedMeetings = new HashSet<>();
+            }
+        }
+
+        private State toState() {
+            return new State(base.version + 1, status, userToStatus, meetings);
+        }
+    }
 }
\ No newline at end of file
@@ -30,20 +30,17 @@ public class TransactionFactory {
     public Transaction createTransaction(TreeMap<UUID,List<UUID>> userToItems, List<Meeting> meetings){
         if(meetings.size() ==0){
             Transaction transaction = new TransactionVirtual(userToItems);
-            UUID id = transaction.getId();
-            tm.getAllTransactions().put(id, transaction);
+            tm.addTransaction(transaction);
             return transaction;
         }
         if(meetings.size() == 1){
             Transaction transaction = new TransactionPerm(userToItems, meetings.get(0));
-            UUID id = transaction.getId();
-            tm.getAllTransactions().put(id, transaction);
+            tm.addTransaction(transaction);
             return transaction;
         }
         if(meetings.size() == 2){
             Transaction transaction = new TransactionTemp(userToItems, meetings.get(0), meetings.get(1));
-            UUID id = transaction.getId();
-            tm.getAllTransactions().put(id, transaction);
+            tm.addTransaction(transaction);
             return transaction;
         }
         return null;
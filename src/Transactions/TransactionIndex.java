@@ -0,0 +1,138 @@
+package Transactions;
+
+import java.util.*;
+
+/**
+ * <h1>TransactionIndex</h1>
+ * An index of the ids of all transactions by the TradingUsers in them and by their status.
+ *
+ * <p>The CurrentTransactionManager and PastTransactionManager share one index, which they update every time they
+ * record a transaction, so that the transactions of a user with a given status, or the number of transactions with a
+ * status in the whole system, are found without reading any transaction. The index only holds the users and status of
+ * each transaction. It is built the first time it is queried; until then, updates are left for that first build to pick
+ * up. When the map of all transactions is a TransactionStore, the index is built from the TransactionSummary saved
+ * ahead of the transactions in each segment, so no transaction is read. Any other map is read in full.</p>
+ */
+public class TransactionIndex {
+    private final Map<UUID, Transaction> allTransactions;
+    private final Map<UUID, TransactionSummary> entries = new HashMap<>();
+    private final Map<UUID, Map<TransactionStatuses, Set<UUID>>> byUser = new HashMap<>();
+    private final Map<TransactionStatuses, Integer> counts = new EnumMap<>(TransactionStatuses.class);
+    private boolean built = false;
+
+    /**
+     * Creates an index of the transactions in allTransactions, which is built when it is first queried.
+     * @param allTransactions the map of all transactions, which the index is kept up to date with
+     */
+    public TransactionIndex(Map<UUID, Transaction> allTransactions) {
+        this.allTransactions = allTransactions;
+    }
+
+    /**
+     * Updates the users and status of a transaction that was added or changed.
+     * @param transaction the transaction
+     */
+    public synchronized void update(Transaction transaction) {
+        if (built) {
+            add(new TransactionSummary(transaction));
+        }
+    }
+
+    /**
+     * Removes a transaction that was removed from the map of all transactions.
+     * @param id the UUID of the transaction
+     */
+    public synchronized void remove(UUID id) {
+        if (!built) {
+            return;
+        }
+        TransactionSummary summary = entries.remove(id);
+        if (summary != null) {
+            unindex(summary);
+        }
+    }
+
+    /**
+     * Returns the ids of the transactions of a TradingUser that have a status.
+     * @param userId the UUID of the TradingUser
+     * @param status the status of the transactions
+     * @return a new Set of the ids of the transactions
+     */
+    public synchronized Set<UUID> getIds(UUID userId, TransactionStatuses status) {
+        build();
+        Map<TransactionStatuses, Set<UUID>> statuses = byUser.get(userId);
+        Set<UUID> ids = statuses == null ? null : statuses.get(status);
+        return ids == null ? new LinkedHashSet<>() : new LinkedHashSet<>(ids);
+    }
+
+    /**
+     * Returns the number of transactions of a TradingUser that have a status.
+     * @param userId the UUID of the TradingUser
+     * @param status the status of the transactions
+     * @return the number of transactions
+     */
+    public synchronized int count(UUID userId, TransactionStatuses status) {
+        build();
+        Map<TransactionStatuses, Set<UUID>> statuses = byUser.get(userId);
+        Set<UUID> ids = statuses == null ? null : statuses.get(status);
+        return ids == null ? 0 : ids.size();
+    }
+
+    /**
+     * Returns the number of transactions in the whole system that have a status.
+     * @param status the status of the transactions
+     * @return the number of transactions
+     */
+    public synchronized int count(TransactionStatuses status) {
+        build();
+        return counts.getOrDefault(status, 0);
+    }
+
+    private void build() {
+        if (built) {
+            return;
+        }
+        if (allTransactions instanceof TransactionStore) {
+            for (TransactionSummary summary : ((TransactionStore) allTransactions).getSummaries().values()) {
+                add(summary);
+            }
+        } else {
+            for (Transaction transaction : allTransactions.values()) {
+                add(new TransactionSummary(transaction));
+            }
+        }
+        built = true;
+    }
+
+    /* indexes a transaction under its current status, moving it out of the status it was indexed under */
+    private void add(TransactionSummary summary) {
+        TransactionSummary previous = entries.get(summary.getId());
+        if (previous != null) {
+            if (previous.getStatus() == summary.getStatus()) {
+                return;
+            }
+            unindex(previous);
+        }
+        entries.put(summary.getId(), summary);
+        for (UUID userId : summary.getUsers()) {
+            byUser.computeIfAbsent(userId, k -> new EnumMap<>(TransactionStatuses.class))
+                    .computeIfAbsent(summary.getStatus(), k -> new LinkedHashSet<>()).add(summary.getId());
+        }
+        counts.merge(summary.getStatus(), 1, Integer::sum);
+    }
+
+    private void unindex(TransactionSummary summary) {
+        for (UUID userId : summary.getUsers()) {
+            Map<TransactionStatuses, Set<UUID>> statuses = byUser.get(userId);
+            Set<UUID> ids = statuses.get(summary.getStatus());
+            ids.remove(summary.getId());
+            if (ids.isEmpty()) {
+                statuses.remove(summary.getStatus());
+                if (statuses.isEmpty()) {
+                    byUser.remove(userId);
+                }
+            }
+        }
+        counts.merge(summary.getStatus(), -1, Integer::sum);
+    }
+}
@@ -1,17 +1,96 @@
 package Transactions;
 
 import Exceptions.InvalidTransactionException;
+import Initialization.Filepaths;
+import Initialization.Journal;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * <h1>TransactionManager</h1>
  * Manages all transactions in the system.
+ * Every transaction that is recorded or removed is also updated in a TransactionIndex, which finds the transactions
+ * of a user with a given status without reading the transactions.
  */
 public class TransactionManager {
     private Map<UUID, Transaction> allTransactions;
+    protected final TransactionIndex index;
+    protected final Filepaths fp = new Filepaths();
+    protected Journal journal;
+    protected final AtomicLong version = new AtomicLong();
+
     public TransactionManager(Map<UUID, Transaction> transactions) {
+        this(transactions, new TransactionIndex(transactions));
+    }
+
+    /**
+     * Creates a TransactionManager that shares a TransactionIndex of transactions with other managers.
+     * @param transactions map of all transactions
+     * @param index the index of transactions, which must have been created for the same map
+     */
+    public TransactionManager(Map<UUID, Transaction> transactions, TransactionIndex index) {
         allTransactions = transactions;
+        this.index = index;
+    }
+
+    /**
+     * Sets the journal that changes to Transactions are appended to.
+     * @param journal the journal of the trading system
+     */
+    public void setJournal(Journal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Getter for the modification version of this manager, which goes up every time a Transaction, or a TradingUser's
+     * current transactions, are changed.
+     * @return the modification version as a long
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Appends the current state of transaction to the journal, and puts it back into the map of all transactions so
+     * that a TransactionStore writes the change on its next flush.
+     * @param transaction the transaction that was changed
+     */
+    protected void recordTransaction(Transaction transaction) {
+        allTransactions.put(transaction.getId(), transaction);
+        index.update(transaction);
+        version.incrementAndGet();
+        if (journal != null) {
+            journal.put(fp.TRANSACTIONS, transaction.getId(), transaction);
+        }
+    }
+
+    /**
+     * Adds a newly created transaction to the map of all transactions.
+     * @param transaction the new transaction
+     */
+    public void addTransaction(Transaction transaction) {
+        if (allTransactions instanceof TransactionStore) {
+            // a new transaction cannot be on disk yet, so its segment is not read
+            ((TransactionStore) allTransactions).add(transaction);
+        }
+        recordTransaction(transaction);
+    }
+
+    /**
+     * Replaces one of the meetings of a transaction, for example when an edit to the meeting is undone.
+     * @param transactionId the UUID of the transaction
+     * @param meetingNum the index of the meeting being replaced
+     * @param meeting the meeting that replaces it
+     * @throws InvalidTransactionException the id does not map to a transaction
+     */
+    public void setMeeting(UUID transactionId, int meetingNum, Meeting meeting) throws InvalidTransactionException {
+        Transaction transaction = getTransactionFromId(transactionId);
+        transaction.update(draft -> {
+            draft.setMeeting(meetingNum, meeting);
+            return true;
+        });
+        recordTransaction(transaction);
     }
 
 
@@ -25,11 +104,46 @@ public class TransactionManager {
 
     public void removeTransactionFromAllTransactions(UUID id) throws InvalidTransactionException {
         if (allTransactions.containsKey(id)){
-            allTransactions.remove(id);}
+            allTransactions.remove(id);
+            index.remove(id);
+            version.incrementAndGet();
+            if (journal != null) {
+                journal.remove(fp.TRANSACTIONS, id);
+            }
+        }
         else {
             throw new InvalidTransactionException();}
     }
 
+    /**
+     * Returns the transactions of a TradingUser that have a status, from the index of transactions.
+     * @param userId the UUID of the TradingUser
+     * @param status the status of the transactions
+     * @return a list of the transactions
+     */
+    public ArrayList<Transaction> getTransactionsByStatus(UUID userId, TransactionStatuses status) {
+        return getTransactionsFromIdList(new ArrayList<>(index.getIds(userId, status)));
+    }
+
+    /**
+     * Returns the number of transactions of a TradingUser that have a status, without reading any transaction.
+     * @param userId the UUID of the TradingUser
+     * @param status the status of the transactions
+     * @return the number of transactions
+     */
+    public int countTransactions(UUID userId, TransactionStatuses status) {
+        return index.count(userId, status);
+    }
+
+    /**
+     * Returns the number of transactions in the whole system that have a status, without reading any transaction.
+     * @param status the status of the transactions
+     * @return the number of transactions
+     */
+    public int countTransactions(TransactionStatuses status) {
+        return index.count(status);
+    }
+
     /**
      * get the transaction from the list of all of the transactions by calling the id
      * @param id the UUID of the transaction
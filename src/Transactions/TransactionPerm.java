@@ -1,5 +1,7 @@
 package Transactions;
 
+import java.io.DataInput;
+import java.io.IOException;
 import java.util.*;
 
 /**
@@ -9,7 +11,7 @@ import java.util.*;
  */
 
 public class TransactionPerm extends Transaction {
-
+    private static final long serialVersionUID = -582344735155711393L;
 
     private Meeting firstMeeting;
     /**
@@ -25,6 +27,16 @@ public class TransactionPerm extends Transaction {
         this.addMeeting(FirstMeeting);
     }
 
+    /**
+     * Reads a TransactionPerm that was written by writeTo.
+     * @param in where the transaction is read from
+     * @param version the version of the BinaryFormat the transaction was written with
+     * @throws IOException if the transaction could not be read
+     */
+    TransactionPerm(DataInput in, int version) throws IOException {
+        super(in, version);
+    }
+
     /**
      * Returns if a Transaction is permanent
      * @return boolean
@@ -0,0 +1,106 @@
+package Transactions;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.UUID;
+
+/**
+ * <h1>TransactionSegmentIndex</h1>
+ * Where each transaction is in a segment file of the TransactionStore, so that one transaction can be read without
+ * reading the others.
+ *
+ * <p>A segment file saves the id and the length of each of its transactions ahead of them, and a stamp that is
+ * different every time the file is written. The index holds the position and length of each transaction, sorted by
+ * id in arrays rather than in a Map so that it stays small, along with the stamp, which tells whether the file has
+ * been written again since the index was read.</p>
+ */
+public class TransactionSegmentIndex {
+    private final long stamp;
+    private final long[] mostSignificantBits;
+    private final long[] leastSignificantBits;
+    private final long[] offsets;
+    private final int[] lengths;
+
+    /**
+     * Creates the index of a segment file.
+     * @param stamp the stamp of the file
+     * @param ids the id of each transaction in the file
+     * @param offsets the position of each transaction, after the header of the file
+     * @param lengths the length of each transaction in bytes
+     */
+    public TransactionSegmentIndex(long stamp, UUID[] ids, long[] offsets, int[] lengths) {
+        this.stamp = stamp;
+        Integer[] order = new Integer[ids.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparing((Integer i) -> ids[i].getMostSignificantBits())
+                .thenComparing(i -> ids[i].getLeastSignificantBits()));
+        mostSignificantBits = new long[ids.length];
+        leastSignificantBits = new long[ids.length];
+        this.offsets = new long[ids.length];
+        this.lengths = new int[ids.length];
+        for (int i = 0; i < order.length; i++) {
+            mostSignificantBits[i] = ids[order[i]].getMostSignificantBits();
+            leastSignificantBits[i] = ids[order[i]].getLeastSignificantBits();
+            this.offsets[i] = offsets[order[i]];
+            this.lengths[i] = lengths[order[i]];
+        }
+    }
+
+    /**
+     * @return the stamp of the file this index was read from
+     */
+    public long getStamp() {
+        return stamp;
+    }
+
+    /**
+     * @return the number of transactions in the file
+     */
+    public int size() {
+        return offsets.length;
+    }
+
+    /**
+     * Finds a transaction in the index.
+     * @param id the id of the transaction
+     * @return the position of the transaction in this index, or -1 if it is not in the file
+     */
+    public int find(UUID id) {
+        long most = id.getMostSignificantBits();
+        long least = id.getLeastSignificantBits();
+        int low = 0;
+        int high = offsets.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = mostSignificantBits[middle] != most
+                    ? Long.compare(mostSignificantBits[middle], most)
+                    : Long.compare(leastSignificantBits[middle], least);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param i a position in this index
+     * @return where the transaction starts in the file, after its header
+     */
+    public long getOffset(int i) {
+        return offsets[i];
+    }
+
+    /**
+     * @param i a position in this index
+     * @return the length of the transaction in bytes
+     */
+    public int getLength(int i) {
+        return lengths[i];
+    }
+}
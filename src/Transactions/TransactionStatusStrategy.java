@@ -4,7 +4,7 @@ import java.util.UUID;
 
 public class TransactionStatusStrategy {
 
-    protected boolean noMeetingComplete(Transaction transaction){
+    protected boolean noMeetingComplete(Transaction.Draft transaction){
         if(!transaction.isVirtual()){
             return false;
         }
@@ -20,7 +20,7 @@ public class TransactionStatusStrategy {
     }
 
 
-    protected boolean pendingToConfirmed(Transaction transaction){
+    protected boolean pendingToConfirmed(Transaction.Draft transaction){
         if (!transaction.getStatus().equals(TransactionStatuses.PENDING)){
             return false;
         }
@@ -35,7 +35,7 @@ public class TransactionStatusStrategy {
         }
     }
 
-    protected boolean pendingToCancelled(Transaction transaction){
+    protected boolean pendingToCancelled(Transaction.Draft transaction){
         if (transaction.getStatus().equals(TransactionStatuses.PENDING) & (transaction.getStatusUser1().equals(TransactionStatuses.CANCELLED) || transaction.getStatusUser2().equals(TransactionStatuses.CANCELLED))){
             transaction.setStatus(TransactionStatuses.CANCELLED);
             return true;
@@ -57,7 +57,7 @@ public class TransactionStatusStrategy {
         }
     }
 
-    protected boolean confirmedToTraded(Transaction transaction){
+    protected boolean confirmedToTraded(Transaction.Draft transaction){
         if (!transaction.getStatus().equals(TransactionStatuses.CONFIRMED)){
             return false;
         }
@@ -75,7 +75,7 @@ public class TransactionStatusStrategy {
         }
     }
 
-    protected boolean confirmedToIncomplete(Transaction transaction){
+    protected boolean confirmedToIncomplete(Transaction.Draft transaction){
         if (!transaction.getStatus().equals(TransactionStatuses.CONFIRMED)){
             return false;
         }
@@ -94,7 +94,7 @@ public class TransactionStatusStrategy {
         }
     }
 
-    protected boolean confirmedToComplete(Transaction transaction){
+    protected boolean confirmedToComplete(Transaction.Draft transaction){
         if (!transaction.getStatus().equals(TransactionStatuses.CONFIRMED)){
             return false;
         }
@@ -112,7 +112,7 @@ public class TransactionStatusStrategy {
         }
     }
 
-    protected boolean tradedToComplete(Transaction transaction){
+    protected boolean tradedToComplete(Transaction.Draft transaction){
         if (!transaction.getStatus().equals(TransactionStatuses.TRADED)){
             return false;
         }
@@ -130,7 +130,7 @@ public class TransactionStatusStrategy {
         }
     }
 
-    protected boolean tradedToNeverReturned(Transaction transaction){
+    protected boolean tradedToNeverReturned(Transaction.Draft transaction){
         if (!transaction.getStatus().equals(TransactionStatuses.TRADED)){
             return false;
         }
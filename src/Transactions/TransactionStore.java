@@ -0,0 +1,551 @@
+package Transactions;
+
+import Initialization.BinaryFormat;
+import Initialization.Serializer;
+
+import java.io.*;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.*;
+
+/**
+ * <h1>TransactionStore</h1>
+ * A Map of UUID to Transaction that keeps its transactions on disk in segments and only holds some of them in memory.
+ *
+ * <p>Each transaction belongs to one segment file in the store's directory. Transactions with a time-ordered id (see
+ * Transaction) are grouped by the week they were created in, and transactions with an older random id are grouped by
+ * the first two hex digits of their id. Looking up a transaction reads the TransactionSegmentIndex of its segment, the
+ * last INDEXED_SEGMENTS of which are kept in memory, and then only the transaction itself. The transactions read are
+ * kept in a least recently used cache of at most cacheSize transactions. Transactions that were put or removed since
+ * the last flush are kept in memory until flush writes the segments they belong to.</p>
+ *
+ * <p>A segment written before version 7 of the BinaryFormat has no index, so it is read whole when one of its
+ * transactions is looked up, and written again with an index on the next flush. Segments written when old ids were
+ * grouped by the first hex digit only are split into the smaller segments when the store is opened.</p>
+ *
+ * <p>A transaction that is changed after being looked up must be put again so that the change is written on the next
+ * flush; TransactionManager does this whenever it records a change. Iterating over the store reads every segment, so
+ * it should be avoided.</p>
+ *
+ * <p>There is only ever one instance of each transaction, since Transaction.update relies on every change going through
+ * the same instance. A transaction that was evicted from the cache but is still referenced elsewhere is handed out
+ * again when its segment is read again, instead of the copy that was read.</p>
+ *
+ * <p>A flush can also be split in two so that the segments are written on another thread: startFlush encodes the
+ * changed transactions as they are at that moment, and Flush.write writes them. Transactions put or removed in between
+ * are kept for the next flush.</p>
+ */
+public class TransactionStore extends AbstractMap<UUID, Transaction> {
+    /**
+     * The default number of unchanged transactions that are kept in memory.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 10000;
+    private static final long WEEK_MILLIS = 7L * 24 * 60 * 60 * 1000;
+    private static final String EXTENSION = ".ser";
+    private static final int INDEXED_SEGMENTS = 64;
+
+    private final File directory;
+    private final Serializer serializer = new Serializer();
+    private final Map<UUID, Transaction> cache;
+    private final Map<UUID, Transaction> changed = new HashMap<>();
+    private final Set<UUID> removed = new HashSet<>();
+    // the latest Flush that is writing each transaction, whose changes are older than those in changed and removed
+    private final Map<UUID, Flush> flushing = new HashMap<>();
+    // every transaction that has been handed out and may still be referenced elsewhere
+    private final Map<UUID, LiveReference> live = new HashMap<>();
+    private final ReferenceQueue<Transaction> collected = new ReferenceQueue<>();
+    private final Map<String, TransactionSegmentIndex> indexes =
+            new LinkedHashMap<String, TransactionSegmentIndex>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, TransactionSegmentIndex> eldest) {
+                    return size() > INDEXED_SEGMENTS;
+                }
+            };
+    // segments without an index, which the next flush writes again
+    private final Set<String> unindexed = new HashSet<>();
+    private int size = 0;
+    private long version = 0;
+
+    /**
+     * Opens the store kept in the directory specified by path, creating the directory if it does not exist.
+     * @param path the filepath of the directory the segments are kept in
+     */
+    public TransactionStore(String path) {
+        this(path, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Opens the store kept in the directory specified by path, creating the directory if it does not exist.
+     * @param path the filepath of the directory the segments are kept in
+     * @param cacheSize the number of unchanged transactions that are kept in memory
+     */
+    public TransactionStore(String path, int cacheSize) {
+        directory = new File(path);
+        directory.mkdirs();
+        cache = new LinkedHashMap<UUID, Transaction>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, Transaction> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        splitOldSegments();
+        // only the number of transactions in each segment is read here; the transactions are read when needed
+        for (File segment : segmentFiles()) {
+            size += serializer.readTransactionCountFromFile(segment.getPath());
+        }
+    }
+
+    /**
+     * Sets whether the segments written from now on are compressed, and how much.
+     * @param compressionLevel a Deflater compression level, or Serializer.UNCOMPRESSED
+     */
+    public void setCompressionLevel(int compressionLevel) {
+        serializer.setCompressionLevel(compressionLevel);
+    }
+
+    /**
+     * Returns the name of the segment that the transaction with this id belongs to.
+     * @param id the id of a transaction
+     * @return the segment's name
+     */
+    static String segmentOf(UUID id) {
+        if (id.version() == 7) {
+            long createdMillis = id.getMostSignificantBits() >>> 16;
+            return "week-" + createdMillis / WEEK_MILLIS;
+        }
+        return String.format("id-%02x", id.getMostSignificantBits() >>> 56);
+    }
+
+    /**
+     * Returns the name of the segment that the transaction with this random id belonged to before the segments of
+     * random ids were split.
+     */
+    private static String oldSegmentOf(UUID id) {
+        return "id-" + Long.toHexString(id.getMostSignificantBits() >>> 60);
+    }
+
+    @Override
+    public synchronized Transaction get(Object key) {
+        if (!(key instanceof UUID) || removed.contains(key)) {
+            return null;
+        }
+        Transaction transaction = changed.get(key);
+        if (transaction == null && flushing.containsKey(key)) {
+            // null if the flush is removing the transaction
+            return flushing.get(key).transactions.get(key);
+        }
+        if (transaction == null) {
+            transaction = cache.get(key);
+        }
+        if (transaction == null) {
+            transaction = load((UUID) key);
+        }
+        return transaction;
+    }
+
+    @Override
+    public synchronized boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public synchronized Transaction put(UUID id, Transaction transaction) {
+        Transaction previous = get(id);
+        if (previous == null) {
+            size++;
+        }
+        removed.remove(id);
+        cache.remove(id);
+        changed.put(id, transaction);
+        if (previous != transaction) {
+            live.put(id, new LiveReference(id, transaction, collected));
+        }
+        version++;
+        return previous;
+    }
+
+    /**
+     * Adds a transaction that was just created, without looking for it in its segment first.
+     * @param transaction a transaction whose id is not in the store
+     */
+    public synchronized void add(Transaction transaction) {
+        importTransactions(Collections.singletonList(transaction));
+    }
+
+    /**
+     * Adds transactions that are not in the store yet, without looking for them in their segments first. This is used
+     * to move transactions saved by an older version into the store.
+     * @param transactions transactions whose ids are not in the store
+     */
+    public synchronized void importTransactions(Collection<Transaction> transactions) {
+        for (Transaction transaction : transactions) {
+            removed.remove(transaction.getId());
+            cache.remove(transaction.getId());
+            changed.put(transaction.getId(), transaction);
+            live.put(transaction.getId(), new LiveReference(transaction.getId(), transaction, collected));
+            size++;
+        }
+        version++;
+    }
+
+    @Override
+    public synchronized Transaction remove(Object key) {
+        Transaction previous = get(key);
+        if (previous != null) {
+            size--;
+            UUID id = (UUID) key;
+            cache.remove(id);
+            changed.remove(id);
+            live.remove(id);
+            removed.add(id);
+            version++;
+        }
+        return previous;
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Getter for the modification version of this store, which goes up every time a transaction is put or removed.
+     * @return the modification version as a long
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns every transaction in the store. This reads every segment, so it should be avoided.
+     * @return a Set of every entry in the store, which cannot be modified
+     */
+    @Override
+    public synchronized Set<Map.Entry<UUID, Transaction>> entrySet() {
+        Map<UUID, Transaction> all = new HashMap<>();
+        for (File segment : segmentFiles()) {
+            Map<UUID, Transaction> transactions = serializer.readTransactionMapFromFile(segment.getPath());
+            if (transactions != null) {
+                all.putAll(intern(transactions));
+            }
+        }
+        for (Map.Entry<UUID, Flush> entry : flushing.entrySet()) {
+            Transaction transaction = entry.getValue().transactions.get(entry.getKey());
+            if (transaction == null) {
+                all.remove(entry.getKey());
+            } else {
+                all.put(entry.getKey(), transaction);
+            }
+        }
+        all.keySet().removeAll(removed);
+        all.putAll(changed);
+        return Collections.unmodifiableSet(all.entrySet());
+    }
+
+    /**
+     * Returns the TransactionSummary of every transaction in the store. Only the summaries saved ahead of the
+     * transactions in each segment are read, so no transaction is read except from segments saved before version 6.
+     * @return a new Map of the summary of every transaction, by its id
+     */
+    public synchronized Map<UUID, TransactionSummary> getSummaries() {
+        Map<UUID, TransactionSummary> all = new HashMap<>();
+        for (File segment : segmentFiles()) {
+            List<TransactionSummary> summaries = serializer.readTransactionSummariesFromFile(segment.getPath());
+            if (summaries != null) {
+                for (TransactionSummary summary : summaries) {
+                    all.put(summary.getId(), summary);
+                }
+            }
+        }
+        for (Map.Entry<UUID, Flush> entry : flushing.entrySet()) {
+            Transaction transaction = entry.getValue().transactions.get(entry.getKey());
+            if (transaction == null) {
+                all.remove(entry.getKey());
+            } else {
+                all.put(entry.getKey(), new TransactionSummary(transaction));
+            }
+        }
+        all.keySet().removeAll(removed);
+        for (Transaction transaction : changed.values()) {
+            all.put(transaction.getId(), new TransactionSummary(transaction));
+        }
+        return all;
+    }
+
+    /**
+     * Writes every segment that has transactions which were put or removed since the last flush.
+     * @return true iff every segment was written
+     */
+    public boolean flush() {
+        return startFlush().write();
+    }
+
+    /**
+     * Encodes every transaction that was put since the last flush as it is now, and returns the Flush that writes them
+     * and the transactions removed since the last flush to their segments.
+     * @return the Flush, which can be written on any thread
+     */
+    public synchronized Flush startFlush() {
+        Map<UUID, byte[]> encoded = new HashMap<>();
+        try {
+            for (Map.Entry<UUID, Transaction> entry : changed.entrySet()) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                entry.getValue().writeTo(new DataOutputStream(bytes));
+                encoded.put(entry.getKey(), bytes.toByteArray());
+            }
+        } catch (IOException e) {
+            System.out.println("IO Exception was caught.");
+            return new Flush(new HashMap<>(), new HashSet<>(), new HashMap<>(), new HashSet<>());
+        }
+        Flush flush = new Flush(new HashMap<>(changed), new HashSet<>(removed), encoded, new HashSet<>(unindexed));
+        unindexed.clear();
+        for (UUID id : changed.keySet()) {
+            flushing.put(id, flush);
+        }
+        for (UUID id : removed) {
+            flushing.put(id, flush);
+        }
+        changed.clear();
+        removed.clear();
+        return flush;
+    }
+
+    /**
+     * Called once a Flush has been written, or has failed to be written.
+     */
+    private synchronized void finishFlush(Flush flush, boolean written, Set<String> segments) {
+        // the positions in the segments have changed, and the transactions written are not in the old indexes
+        indexes.keySet().removeAll(segments);
+        if (!written) {
+            unindexed.addAll(flush.unindexed);
+        }
+        Set<UUID> ids = new HashSet<>(flush.transactions.keySet());
+        ids.addAll(flush.removed);
+        for (UUID id : ids) {
+            if (written) {
+                if (flushing.get(id) == flush) {
+                    flushing.remove(id);
+                    Transaction transaction = flush.transactions.get(id);
+                    if (transaction != null && !changed.containsKey(id) && !removed.contains(id)) {
+                        // the transaction is now on disk, so it can be evicted like any other transaction
+                        cache.put(id, transaction);
+                    }
+                }
+            } else {
+                if (flushing.get(id) != flush) {
+                    continue; // a later flush writes this transaction anyway
+                }
+                flushing.remove(id);
+                if (changed.containsKey(id) || removed.contains(id)) {
+                    continue; // changed again since the flush started, so the next flush writes it anyway
+                }
+                // keep the change in memory so the next flush tries again
+                Transaction transaction = flush.transactions.get(id);
+                if (transaction != null) {
+                    changed.put(id, transaction);
+                } else {
+                    removed.add(id);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads one transaction and keeps it in the cache, unless it was put or removed since the last flush.
+     */
+    private Transaction load(UUID id) {
+        Transaction transaction = readTransaction(segmentOf(id), id);
+        if (transaction == null && id.version() != 7) {
+            // the segment of the transaction may not have been split yet
+            transaction = readTransaction(oldSegmentOf(id), id);
+        }
+        if (transaction == null) {
+            return null;
+        }
+        transaction = intern(id, transaction);
+        cache.put(id, transaction);
+        return transaction;
+    }
+
+    /**
+     * Reads one transaction from a segment, using the index of the segment if it has one.
+     */
+    private Transaction readTransaction(String segment, UUID id) {
+        File file = segmentFile(segment);
+        // the index is read again once if the segment has been written since it was read
+        for (int attempt = 0; attempt < 2 && file.exists(); attempt++) {
+            TransactionSegmentIndex index = indexes.get(segment);
+            if (index == null) {
+                index = serializer.readTransactionIndexFromFile(file.getPath());
+                if (index == null) {
+                    if (!serializer.isCurrentVersion(file.getPath())) {
+                        // written before segments had an index, so the next flush writes it again with one
+                        unindexed.add(segment);
+                    }
+                    return readSegment(segment).get(id);
+                }
+                indexes.put(segment, index);
+            }
+            int i = index.find(id);
+            if (i < 0) {
+                return null;
+            }
+            Transaction transaction = serializer.readTransactionFromFile(file.getPath(), index, i);
+            if (transaction != null) {
+                return transaction;
+            }
+            indexes.remove(segment);
+        }
+        return null;
+    }
+
+    /**
+     * Replaces the transactions that were just read with the instances of them that are still referenced, and keeps
+     * track of the others from now on.
+     */
+    private Map<UUID, Transaction> intern(Map<UUID, Transaction> transactions) {
+        for (Map.Entry<UUID, Transaction> entry : transactions.entrySet()) {
+            entry.setValue(intern(entry.getKey(), entry.getValue()));
+        }
+        return transactions;
+    }
+
+    private Transaction intern(UUID id, Transaction transaction) {
+        for (LiveReference reference; (reference = (LiveReference) collected.poll()) != null; ) {
+            live.remove(reference.id, reference);
+        }
+        LiveReference reference = live.get(id);
+        Transaction instance = reference == null ? null : reference.get();
+        if (instance != null) {
+            return instance;
+        }
+        live.put(id, new LiveReference(id, transaction, collected));
+        return transaction;
+    }
+
+    /**
+     * Moves the transactions of each segment that grouped old ids by their first hex digit into the segments that
+     * group them by their first two. A segment is deleted once all of its transactions have been written again, and a
+     * transaction that is already in one of the new segments is kept as it is there.
+     */
+    private void splitOldSegments() {
+        for (File file : segmentFiles()) {
+            String segment = file.getName().substring(0, file.getName().length() - EXTENSION.length());
+            if (!segment.matches("id-[0-9a-f]")) {
+                continue;
+            }
+            Map<UUID, Transaction> transactions = serializer.readTransactionMapFromFile(file.getPath());
+            if (transactions == null) {
+                continue;
+            }
+            Map<String, Map<UUID, Transaction>> split = new HashMap<>();
+            for (Transaction transaction : transactions.values()) {
+                split.computeIfAbsent(segmentOf(transaction.getId()), this::readSegment)
+                        .putIfAbsent(transaction.getId(), transaction);
+            }
+            boolean written = true;
+            for (Map.Entry<String, Map<UUID, Transaction>> entry : split.entrySet()) {
+                written &= serializer.writeTransactionsToFile(segmentFile(entry.getKey()).getPath(), entry.getValue());
+            }
+            if (written) {
+                file.delete();
+            }
+        }
+    }
+
+    private Map<UUID, Transaction> readSegment(String segment) {
+        File file = segmentFile(segment);
+        if (!file.exists()) {
+            return new HashMap<>();
+        }
+        Map<UUID, Transaction> transactions = serializer.readTransactionMapFromFile(file.getPath());
+        return transactions == null ? new HashMap<>() : transactions;
+    }
+
+    private File segmentFile(String segment) {
+        return new File(directory, segment + EXTENSION);
+    }
+
+    private File[] segmentFiles() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(EXTENSION));
+        return files == null ? new File[0] : files;
+    }
+
+    /**
+     * A transaction that has been handed out, which is forgotten once nothing else references it.
+     */
+    private static class LiveReference extends WeakReference<Transaction> {
+        private final UUID id;
+
+        private LiveReference(UUID id, Transaction transaction, ReferenceQueue<Transaction> queue) {
+            super(transaction, queue);
+            this.id = id;
+        }
+    }
+
+    /**
+     * <h1>TransactionStore.Flush</h1>
+     * The transactions put and removed since the previous flush, encoded when the flush was started, which are written
+     * to their segments by write.
+     */
+    public class Flush {
+        private final Map<UUID, Transaction> transactions;
+        private final Set<UUID> removed;
+        private final Map<UUID, byte[]> encoded;
+        private final Set<String> unindexed;
+
+        private Flush(Map<UUID, Transaction> transactions, Set<UUID> removed, Map<UUID, byte[]> encoded,
+                      Set<String> unindexed) {
+            this.transactions = transactions;
+            this.removed = removed;
+            this.encoded = encoded;
+            this.unindexed = unindexed;
+        }
+
+        /**
+         * Writes every segment that has transactions which were put or removed in this flush, and every segment that
+         * was found without an index since the previous flush. Flushes of the same store
+         * must be written one at a time, in the order they were started.
+         * @return true iff every segment was written
+         */
+        public boolean write() {
+            boolean written = true;
+            Set<String> segments = new HashSet<>(unindexed);
+            for (UUID id : encoded.keySet()) {
+                segments.add(segmentOf(id));
+            }
+            for (UUID id : removed) {
+                segments.add(segmentOf(id));
+            }
+            try {
+                for (String segment : segments) {
+                    Map<UUID, Transaction> segmentTransactions = readSegment(segment);
+                    for (UUID id : removed) {
+                        if (segmentOf(id).equals(segment)) {
+                            segmentTransactions.remove(id);
+                        }
+                    }
+                    for (Map.Entry<UUID, byte[]> entry : encoded.entrySet()) {
+                        if (segmentOf(entry.getKey()).equals(segment)) {
+                            // decode a copy so that changes made after the flush started are not written
+                            segmentTransactions.put(entry.getKey(), Transaction.readFrom(
+                                    new DataInputStream(new ByteArrayInputStream(entry.getValue())),
+                                    BinaryFormat.VERSION));
+                        }
+                    }
+                    File file = segmentFile(segment);
+                    if (segmentTransactions.isEmpty()) {
+                        written &= !file.exists() || file.delete();
+                    } else {
+                        written &= serializer.writeTransactionsToFile(file.getPath(), segmentTransactions);
+                    }
+                }
+            } catch (IOException e) {
+                System.out.println("IO Exception was caught.");
+                written = false;
+            }
+            finishFlush(this, written, segments);
+            return written;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package Transactions;
+
+import Initialization.BinaryFormat;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * <h1>TransactionSummary</h1>
+ * The id, users and status of a transaction, which is all that the TransactionIndex needs to know about it.
+ *
+ * <p>Each segment of the TransactionStore saves the summaries of its transactions ahead of the transactions, so that
+ * the index can be built by reading only the summaries.</p>
+ */
+public class TransactionSummary {
+    private final UUID id;
+    private final UUID user1;
+    private final UUID user2;
+    private final TransactionStatuses status;
+
+    /**
+     * Summarizes a transaction as it is now.
+     * @param transaction the transaction
+     */
+    public TransactionSummary(Transaction transaction) {
+        id = transaction.getId();
+        user1 = transaction.getUser1();
+        user2 = transaction.getUser2();
+        status = transaction.getStatus();
+    }
+
+    /**
+     * Reads a summary that was written by writeTo.
+     * @param in where the summary is read from
+     * @param version the version of the BinaryFormat the summary was written with
+     * @throws IOException if the summary could not be read
+     */
+    public TransactionSummary(DataInput in, int version) throws IOException {
+        id = BinaryFormat.readUUID(in);
+        user1 = BinaryFormat.readUUID(in);
+        user2 = BinaryFormat.readUUID(in);
+        status = BinaryFormat.readEnum(in, TransactionStatuses.values());
+    }
+
+    /**
+     * Writes this summary in the BinaryFormat.
+     * @param out where the summary is written
+     * @throws IOException if the summary could not be written
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        BinaryFormat.writeUUID(out, id);
+        BinaryFormat.writeUUID(out, user1);
+        BinaryFormat.writeUUID(out, user2);
+        BinaryFormat.writeEnum(out, status);
+    }
+
+    /**
+     * @return the id of the transaction
+     */
+    public UUID getId() {
+        return id;
+    }
+
+    /**
+     * @return the ids of the users in the transaction, once each
+     */
+    public List<UUID> getUsers() {
+        return user1.equals(user2) ? Collections.singletonList(user1) : Arrays.asList(user1, user2);
+    }
+
+    /**
+     * @return the status of the transaction
+     */
+    public TransactionStatuses getStatus() {
+        return status;
+    }
+}
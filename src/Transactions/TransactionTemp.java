@@ -1,5 +1,7 @@
 package Transactions;
 
+import java.io.DataInput;
+import java.io.IOException;
 import java.util.*;
 
 /**
@@ -8,6 +10,7 @@ import java.util.*;
  * Note: user 1 originally had item 1 and user 2 originally had item 2.
  */
 public class TransactionTemp extends Transaction {
+    private static final long serialVersionUID = -7480266751835838844L;
 
     /**
      * Constructor for Transactions.TransactionTwoWayPerm class. This constructor initializes a 2 way permanent transaction with
@@ -23,6 +26,16 @@ public class TransactionTemp extends Transaction {
         this.addMeeting(secondMeeting);
     }
 
+    /**
+     * Reads a TransactionTemp that was written by writeTo.
+     * @param in where the transaction is read from
+     * @param version the version of the BinaryFormat the transaction was written with
+     * @throws IOException if the transaction could not be read
+     */
+    TransactionTemp(DataInput in, int version) throws IOException {
+        super(in, version);
+    }
+
     /**
      * Getter for the second meeting.
      * @return returns the second meeting of the transaction.
@@ -1,8 +1,11 @@
 package Transactions;
 
+import java.io.DataInput;
+import java.io.IOException;
 import java.util.*;
 
 public class TransactionVirtual extends Transaction{
+    private static final long serialVersionUID = 3934111887914276356L;
 
     /**
      * Constructor for Transactions.TransactionTwoWayPerm class. This constructor initializes a 2 way permanent transaction with
@@ -13,6 +16,16 @@ public class TransactionVirtual extends Transaction{
         super(userToItems);
     }
 
+    /**
+     * Reads a TransactionVirtual that was written by writeTo.
+     * @param in where the transaction is read from
+     * @param version the version of the BinaryFormat the transaction was written with
+     * @throws IOException if the transaction could not be read
+     */
+    TransactionVirtual(DataInput in, int version) throws IOException {
+        super(in, version);
+    }
+
     @Override
     public boolean isPerm() {
         return false;
@@ -0,0 +1,5 @@
+package Users;
+
+public enum AccountStates {
+    FLAGGED, FROZEN, UNFREEZE_REQUESTED, VACATION;
+}
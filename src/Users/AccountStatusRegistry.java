@@ -0,0 +1,177 @@
+package Users;
+
+import Initialization.Filepaths;
+import Initialization.Journal;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * <h1>AccountStatusRegistry</h1>
+ * Keeps the ids of the TradingUsers whose accounts are flagged, frozen, or have requested to be unfrozen, and publishes
+ * every change of the state of an account to its listeners.
+ *
+ * <p>AdminManager and TradingUserManager share one registry, so a state is checked, added or removed by the id of the
+ * TradingUser without going through a list, and an id is in each state at most once. The ids in each of the three
+ * saved states are kept in the order they were added, and saved in their own file. Whether a TradingUser is on
+ * VACATION is their status, so the registry keeps no ids for it and only publishes when it changes.</p>
+ */
+public class AccountStatusRegistry {
+    private final Map<AccountStates, LinkedHashSet<UUID>> accounts = new EnumMap<>(AccountStates.class);
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final Filepaths fp = new Filepaths();
+    private Journal journal;
+    private long version = 0;
+
+    /**
+     * Listens to the changes of the states of accounts.
+     */
+    public interface Listener {
+        /**
+         * Called after an account enters or leaves a state.
+         * @param userId the id of the TradingUser
+         * @param state the state
+         * @param entered true if the account entered the state, false if it left it
+         */
+        void statusChanged(UUID userId, AccountStates state, boolean entered);
+    }
+
+    /**
+     * Creates a registry of the accounts that were loaded. Ids that are in a list more than once are kept once.
+     * @param flaggedAccounts the ids of the flagged TradingUsers
+     * @param frozenAccounts the ids of the frozen TradingUsers
+     * @param unfreezeRequests the ids of the TradingUsers who requested to be unfrozen
+     */
+    public AccountStatusRegistry(List<UUID> flaggedAccounts, List<UUID> frozenAccounts, List<UUID> unfreezeRequests) {
+        accounts.put(AccountStates.FLAGGED, new LinkedHashSet<>(flaggedAccounts));
+        accounts.put(AccountStates.FROZEN, new LinkedHashSet<>(frozenAccounts));
+        accounts.put(AccountStates.UNFREEZE_REQUESTED, new LinkedHashSet<>(unfreezeRequests));
+    }
+
+    /**
+     * Sets the journal that changes to the saved states are appended to.
+     * @param journal the journal of the trading system
+     */
+    public void setJournal(Journal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Getter for the modification version of this registry, which goes up every time an id is added to or removed from
+     * a saved state.
+     * @return the modification version as a long
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the filepath of the file the ids in a state are saved in.
+     * @param state a saved state
+     * @return the filepath, or null for VACATION
+     */
+    public String filepathOf(AccountStates state) {
+        switch (state) {
+            case FLAGGED:
+                return fp.FLAGGEDACCOUNTS;
+            case FROZEN:
+                return fp.FROZENACCOUNTS;
+            case UNFREEZE_REQUESTED:
+                return fp.UNFREEZEREQUESTS;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Subscribes a listener to every change of state.
+     * @param listener the listener
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unsubscribes a listener.
+     * @param listener the listener
+     */
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Returns whether an account is in a saved state.
+     * @param userId the id of the TradingUser
+     * @param state a saved state
+     * @return true iff the account is in the state
+     */
+    public synchronized boolean contains(UUID userId, AccountStates state) {
+        Set<UUID> ids = accounts.get(state);
+        return ids != null && ids.contains(userId);
+    }
+
+    /**
+     * Returns the ids of the accounts in a saved state, in the order they were added.
+     * @param state a saved state
+     * @return a new List of the ids
+     */
+    public synchronized List<UUID> getIds(AccountStates state) {
+        Set<UUID> ids = accounts.get(state);
+        return ids == null ? new ArrayList<>() : new ArrayList<>(ids);
+    }
+
+    /**
+     * Adds an account to a state, publishing the change if it was not in it. An account that goes on VACATION is only
+     * published.
+     * @param userId the id of the TradingUser
+     * @param state the state
+     * @return true iff the account was not in the state
+     */
+    public boolean add(UUID userId, AccountStates state) {
+        synchronized (this) {
+            Set<UUID> ids = accounts.get(state);
+            if (ids != null) {
+                if (!ids.add(userId)) {
+                    return false;
+                }
+                version++;
+                if (journal != null) {
+                    journal.put(filepathOf(state), userId, userId);
+                }
+            }
+        }
+        publish(userId, state, true);
+        return true;
+    }
+
+    /**
+     * Removes an account from a state, publishing the change if it was in it. An account that comes back from VACATION
+     * is only published.
+     * @param userId the id of the TradingUser
+     * @param state the state
+     * @return true iff the account was in the state
+     */
+    public boolean remove(UUID userId, AccountStates state) {
+        synchronized (this) {
+            Set<UUID> ids = accounts.get(state);
+            if (ids != null) {
+                if (!ids.remove(userId)) {
+                    return false;
+                }
+                version++;
+                if (journal != null) {
+                    journal.remove(filepathOf(state), userId);
+                }
+            }
+        }
+        publish(userId, state, false);
+        return true;
+    }
+
+    /* tells every listener about a change, outside the lock so that listeners can read the registry */
+    private void publish(UUID userId, AccountStates state, boolean entered) {
+        for (Listener listener : listeners) {
+            listener.statusChanged(userId, state, entered);
+        }
+    }
+}
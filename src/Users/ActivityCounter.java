@@ -0,0 +1,127 @@
+package Users;
+
+import java.io.*;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * <h1>ActivityCounter</h1>
+ * Counts the transactions of a TradingUser by day.
+ *
+ * <p>Each day with transactions has its own count, identified by its epoch day (see LocalDate.toEpochDay), so two days
+ * never share a count. The counts of days more than DAYS days before today are dropped whenever a transaction is
+ * counted, so the counter only holds the DAYS most recent days and the days after today, such as the days of meetings
+ * that have not happened yet. A count over any week around today reads at most seven days, however many transactions
+ * were counted.</p>
+ */
+public class ActivityCounter implements Serializable {
+    private static final long serialVersionUID = 2940871253349716825L;
+    // the fields this class was serialized with when it kept its counts in a ring buffer
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("days", long[].class),
+            new ObjectStreamField("counts", int[].class)};
+
+    /**
+     * The number of days before today that are kept, which is enough for any calendar week or rolling seven days
+     * around today.
+     */
+    public static final int DAYS = 16;
+
+    private transient TreeMap<Long, Integer> counts = new TreeMap<>();
+
+    /**
+     * Constructs an ActivityCounter with no transactions counted.
+     */
+    public ActivityCounter() {}
+
+    /**
+     * Reads an ActivityCounter that was written by writeTo.
+     * @param in where the counter is read from
+     * @throws IOException if the counter could not be read
+     */
+    public ActivityCounter(DataInput in) throws IOException {
+        int numDays = in.readInt();
+        for (int i = 0; i < numDays; i++) {
+            long day = in.readLong();
+            counts.merge(day, in.readInt(), Integer::sum);
+        }
+    }
+
+    /**
+     * Writes this ActivityCounter in the BinaryFormat.
+     * @param out where the counter is written
+     * @throws IOException if the counter could not be written
+     */
+    public synchronized void writeTo(DataOutput out) throws IOException {
+        out.writeInt(counts.size());
+        for (Map.Entry<Long, Integer> entry : counts.entrySet()) {
+            out.writeLong(entry.getKey());
+            out.writeInt(entry.getValue());
+        }
+    }
+
+    /**
+     * Counts one transaction on a day.
+     * @param epochDay the epoch day of the transaction
+     */
+    public void record(long epochDay) {
+        record(epochDay, LocalDate.now().toEpochDay());
+    }
+
+    /**
+     * Counts one transaction on a day, and drops the counts of the days more than DAYS days before today. A day that
+     * is itself that old is too old to be in any week that is counted, and is left out.
+     * @param epochDay the epoch day of the transaction
+     * @param todayEpochDay the epoch day of today
+     */
+    public synchronized void record(long epochDay, long todayEpochDay) {
+        long oldestDay = todayEpochDay - DAYS + 1;
+        counts.headMap(oldestDay).clear();
+        if (epochDay >= oldestDay) {
+            counts.merge(epochDay, 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Returns the number of transactions counted from one day to another. Days more than DAYS days before today may
+     * have been dropped.
+     * @param fromEpochDay the epoch day of the first day counted
+     * @param toEpochDay the epoch day of the last day counted
+     * @return the number of transactions on those days
+     */
+    public synchronized int count(long fromEpochDay, long toEpochDay) {
+        int total = 0;
+        for (int count : counts.subMap(fromEpochDay, true, toEpochDay, true).values()) {
+            total += count;
+        }
+        return total;
+    }
+
+    private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+        long[] days = new long[counts.size()];
+        int[] dayCounts = new int[counts.size()];
+        int i = 0;
+        for (Map.Entry<Long, Integer> entry : counts.entrySet()) {
+            days[i] = entry.getKey();
+            dayCounts[i] = entry.getValue();
+            i++;
+        }
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("days", days);
+        fields.put("counts", dayCounts);
+        out.writeFields();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        long[] days = (long[]) fields.get("days", new long[0]);
+        int[] dayCounts = (int[]) fields.get("counts", new int[0]);
+        counts = new TreeMap<>();
+        for (int i = 0; i < days.length; i++) {
+            if (dayCounts[i] > 0) {
+                counts.merge(days[i], dayCounts[i], Integer::sum);
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package Users;
+
+import Items.Item;
+
+import java.util.*;
+
+/**
+ * <h1>AvailableItemsView</h1>
+ * A read-only view of the available items of a city, and their owners, that leaves out the items of one TradingUser.
+ *
+ * <p>The view is backed by the catalog of the city kept by TradingUserManager, so it stays up to date without being
+ * built again.</p>
+ */
+class AvailableItemsView extends AbstractMap<Item, TradingUser> {
+    private final Map<Item, TradingUser> catalog;
+    private final TradingUser viewer;
+
+    /**
+     * Creates a view of catalog without the items owned by viewer.
+     * @param catalog the available items of a city, mapped to their owners
+     * @param viewer the TradingUser whose own items are left out
+     */
+    AvailableItemsView(Map<Item, TradingUser> catalog, TradingUser viewer) {
+        this.catalog = catalog;
+        this.viewer = viewer;
+    }
+
+    @Override
+    public TradingUser get(Object item) {
+        TradingUser owner = catalog.get(item);
+        return owner == null || owner.equals(viewer) ? null : owner;
+    }
+
+    @Override
+    public boolean containsKey(Object item) {
+        return get(item) != null;
+    }
+
+    @Override
+    public Set<Entry<Item, TradingUser>> entrySet() {
+        return new AbstractSet<Entry<Item, TradingUser>>() {
+            @Override
+            public Iterator<Entry<Item, TradingUser>> iterator() {
+                return new Iterator<Entry<Item, TradingUser>>() {
+                    private final Iterator<Entry<Item, TradingUser>> entries = catalog.entrySet().iterator();
+                    private Entry<Item, TradingUser> next = advance();
+
+                    /* returns the next entry that is not owned by the viewer, or null if there are none left */
+                    private Entry<Item, TradingUser> advance() {
+                        while (entries.hasNext()) {
+                            Entry<Item, TradingUser> entry = entries.next();
+                            if (!entry.getValue().equals(viewer)) {
+                                return new SimpleImmutableEntry<>(entry);
+                            }
+                        }
+                        return null;
+                    }
+
+                    @Override
+                    public boolean hasNext() {
+                        return next != null;
+                    }
+
+                    @Override
+                    public Entry<Item, TradingUser> next() {
+                        if (next == null) {
+                            throw new NoSuchElementException();
+                        }
+                        Entry<Item, TradingUser> entry = next;
+                        next = advance();
+                        return entry;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                int size = 0;
+                for (TradingUser owner : catalog.values()) {
+                    if (!owner.equals(viewer)) size++;
+                }
+                return size;
+            }
+
+            @Override
+            public boolean isEmpty() {
+                return !iterator().hasNext();
+            }
+        };
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return entrySet().isEmpty();
+    }
+}
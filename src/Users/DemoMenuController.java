@@ -46,11 +46,7 @@ public class DemoMenuController {
      */
     public void addItem(Item item, String list){
         im.addItem(item);
-        if (list.equals("wishlist")){
-            currentDemoUser.getWishlist().add(item.getId());
-        } else if (list.equals("inventory")) {
-            currentDemoUser.getInventory().add(item.getId());
-        }
+        dum.addItem(currentDemoUser, item.getId(), list);
     }
 
     /**
@@ -71,7 +67,7 @@ public class DemoMenuController {
      * @param itemID id of the item that needs to be removed
      */
     public void removeFromInventory(UUID itemID){
-        currentDemoUser.getInventory().remove(itemID);
+        dum.removeItem(currentDemoUser, itemID, "inventory");
     }
 
     /**
@@ -80,7 +76,7 @@ public class DemoMenuController {
      */
 
     public void removeFromWishlist(UUID itemID){
-        currentDemoUser.getWishlist().remove(itemID);
+        dum.removeItem(currentDemoUser, itemID, "wishlist");
     }
 
     /**
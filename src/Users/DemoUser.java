@@ -1,6 +1,10 @@
 package Users;
 
+import Initialization.BinaryFormat;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
@@ -13,6 +17,7 @@ import java.util.UUID;
  */
 
 public class DemoUser extends User implements Serializable {
+    private static final long serialVersionUID = -6487177926730783975L;
     private final List<UUID> wishList;
     private final List<UUID> inventory;
     public DemoUser(String username, String password) {
@@ -21,6 +26,32 @@ public class DemoUser extends User implements Serializable {
         inventory = new ArrayList<>();
     }
 
+    /**
+     * Reads a DemoUser that was written by writeTo.
+     * @param in where the DemoUser is read from
+     * @param version the version of the BinaryFormat the DemoUser was written with
+     * @throws IOException if the DemoUser could not be read
+     */
+    public DemoUser(DataInput in, int version) throws IOException {
+        super(in, version);
+        wishList = new ArrayList<>();
+        BinaryFormat.readUUIDList(in, wishList);
+        inventory = new ArrayList<>();
+        BinaryFormat.readUUIDList(in, inventory);
+    }
+
+    /**
+     * Writes this DemoUser in the BinaryFormat.
+     * @param out where the DemoUser is written
+     * @throws IOException if the DemoUser could not be written
+     */
+    @Override
+    public void writeTo(DataOutput out) throws IOException {
+        super.writeTo(out);
+        BinaryFormat.writeUUIDList(out, wishList);
+        BinaryFormat.writeUUIDList(out, inventory);
+    }
+
     /**
      * Returns the inventory of a DemoUser
      * @return DemoUser Inventory
@@ -13,20 +13,25 @@ import java.util.UUID;
  * Manages all the DemoUsers in the System
  *
  * <p>
- *     Stores a list of all DemoUsers and a HashMap mapping between the DemoUser and their UUID
+ *     Stores a list of all DemoUsers and a HashMap mapping between the DemoUser and their UUID, and looks DemoUsers up by
+ *     username in the UsernameRegistry shared with the other user managers
  * </p>
  */
 
 public class DemoUserManager {
     private final List<DemoUser> allDemoUsers;
     private Map<UUID, DemoUser> idToDemoUser;
+    private final UsernameRegistry usernames;
+    private long version = 0;
 
     /**
      * Creates a list of DemoUsers
      * @param demoUsers list of DemoUsers
+     * @param usernames the registry of the usernames of all users, shared with the other user managers
      */
-    public DemoUserManager(List<DemoUser> demoUsers){
+    public DemoUserManager(List<DemoUser> demoUsers, UsernameRegistry usernames){
         allDemoUsers = demoUsers;
+        this.usernames = usernames;
         userListToMap();
     }
 
@@ -39,14 +44,10 @@ public class DemoUserManager {
      */
     public DemoUser addDemoUser (String username, String password) throws InvalidDemoUserException {
         DemoUser newDemoUser = new DemoUser(username, password);
-        if (allDemoUsers.size() == 0) {
-            allDemoUsers.add(newDemoUser);
-            idToDemoUser.put(newDemoUser.getUserId(),newDemoUser);
-            return newDemoUser;
-        }
-        if (checkAvailableUsername(username)) {
+        if (usernames.register(username, UserRoles.DEMO, newDemoUser.getUserId())) {
             allDemoUsers.add(newDemoUser);
             idToDemoUser.put(newDemoUser.getUserId(), newDemoUser);
+            version++;
             return newDemoUser;
         } else {
             throw new InvalidDemoUserException();
@@ -54,19 +55,13 @@ public class DemoUserManager {
     }
 
     /**
-     * Checks to see if a username for a DemoUser is taken
+     * Checks to see if a username for a DemoUser is taken by any user, whatever their role
      * @param username username of DemoUser
      * @return false if it is taken, true if it is not taken
      */
 
     public boolean checkAvailableUsername(String username) {
-        for (DemoUser user : allDemoUsers) {
-            if (user.getUsername().equals(username)) {
-                return false;
-            }
-        }
-        return true;
-        // original code written by Tingting
+        return usernames.isAvailable(username);
     }
 
     /**
@@ -83,13 +78,12 @@ public class DemoUserManager {
      * @throws InvalidDemoUserException when no such DemoUser with the username exits
      */
     public DemoUser getDemoUser(String username) throws InvalidDemoUserException{
-        for (DemoUser demoUser : allDemoUsers) {
-            if ((demoUser.getUsername().equals(username))) {
-                return demoUser;
-            }
+        UUID id = usernames.getId(username, UserRoles.DEMO);
+        DemoUser demoUser = id == null ? null : idToDemoUser.get(id);
+        if (demoUser == null) {
+            throw new InvalidDemoUserException();
         }
-        throw new InvalidDemoUserException();
-        // original code written by Tingting
+        return demoUser;
     }
 
     /**
@@ -115,6 +109,48 @@ public class DemoUserManager {
         DemoUser removed = getDemoUserById(id);
         idToDemoUser.remove(id);
         allDemoUsers.remove(removed);
+        if (removed != null) {
+            usernames.unregister(removed.getUsername(), id);
+        }
+        version++;
+    }
+
+    /**
+     * Adds an item to a DemoUser's wishlist or inventory.
+     * @param demoUser the DemoUser
+     * @param itemId the UUID of the item
+     * @param listType either "wishlist" or "inventory"
+     */
+    public void addItem(DemoUser demoUser, UUID itemId, String listType) {
+        if (listType.equals("wishlist")) {
+            demoUser.getWishlist().add(itemId);
+        } else if (listType.equals("inventory")) {
+            demoUser.getInventory().add(itemId);
+        }
+        version++;
+    }
+
+    /**
+     * Removes an item from a DemoUser's wishlist or inventory.
+     * @param demoUser the DemoUser
+     * @param itemId the UUID of the item
+     * @param listType either "wishlist" or "inventory"
+     */
+    public void removeItem(DemoUser demoUser, UUID itemId, String listType) {
+        if (listType.equals("wishlist")) {
+            demoUser.getWishlist().remove(itemId);
+        } else if (listType.equals("inventory")) {
+            demoUser.getInventory().remove(itemId);
+        }
+        version++;
+    }
+
+    /**
+     * Getter for the modification version of this manager, which goes up every time a DemoUser is changed.
+     * @return the modification version as a long
+     */
+    public long getVersion() {
+        return version;
     }
 
     /**
@@ -124,11 +160,8 @@ public class DemoUserManager {
      * @return boolean
      */
     public boolean validDemoUser(String username, String password){
-        for(DemoUser user: allDemoUsers){
-            if(user.getUsername().equals(username) && user.getPassword().equals(password)) {
-                return true;
-            }
-        }
-        return false;
+        UUID id = usernames.getId(username, UserRoles.DEMO);
+        DemoUser demoUser = id == null ? null : idToDemoUser.get(id);
+        return demoUser != null && demoUser.getPassword().equals(password);
     }
 }
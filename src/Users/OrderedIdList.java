@@ -0,0 +1,299 @@
+package Users;
+
+import java.io.*;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * <h1>OrderedIdList</h1>
+ * A List of UUIDs without duplicates, kept in the order they were added, that looks ids up in constant time.
+ *
+ * <p>TradingUser keeps its inventory, wishlist and current transactions in OrderedIdLists. The ids are kept in an
+ * ArrayList of slots, and the slot of each id in a HashMap, so that contains, indexOf, add and remove of an id do not
+ * have to walk the list. Removing an id only empties its slot; the empty slots are dropped, and the slots after them
+ * moved up, once they make up half of the list, or when an id is next looked up by its index. Removing many ids one
+ * after another therefore takes constant time for each on average, however large the list.</p>
+ *
+ * <p>An id that is already in the list is not added again: add returns false for it, as Collection.add does for a
+ * collection that does not permit duplicates, and add at an index throws IllegalArgumentException for it. set does
+ * not check for duplicates, since Collections.sort, swap and reverse put an id in two places for a moment. The list
+ * cannot hold null.</p>
+ */
+public class OrderedIdList extends AbstractList<UUID> implements RandomAccess, Serializable {
+    private static final long serialVersionUID = 4807390553148233710L;
+    // the field this class was serialized with when it was backed by a LinkedHashSet
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("ids", LinkedHashSet.class)};
+
+    // the ids in order, with null in the slots of ids that were removed
+    private transient ArrayList<UUID> slots;
+    private transient HashMap<UUID, Integer> positions;
+    private transient int numEmpty;
+
+    /**
+     * Constructs an empty OrderedIdList.
+     */
+    public OrderedIdList() {
+        slots = new ArrayList<>();
+        positions = new HashMap<>();
+    }
+
+    /**
+     * Constructs an OrderedIdList with the ids of another collection, in its order and without duplicates.
+     * @param ids the ids to start with
+     */
+    public OrderedIdList(Collection<UUID> ids) {
+        this();
+        addAll(ids);
+    }
+
+    @Override
+    public int size() {
+        return slots.size() - numEmpty;
+    }
+
+    @Override
+    public boolean contains(Object id) {
+        return positions.containsKey(id);
+    }
+
+    @Override
+    public int indexOf(Object id) {
+        if (!positions.containsKey(id)) {
+            return -1;
+        }
+        compact();
+        return positions.get(id);
+    }
+
+    @Override
+    public int lastIndexOf(Object id) {
+        return indexOf(id);
+    }
+
+    @Override
+    public UUID get(int i) {
+        compact();
+        return slots.get(i);
+    }
+
+    /**
+     * Adds an id to the end of this list if it is not already in it.
+     * @param id the id to add
+     * @return true iff the id was added
+     */
+    @Override
+    public boolean add(UUID id) {
+        Objects.requireNonNull(id);
+        if (positions.putIfAbsent(id, slots.size()) != null) {
+            return false;
+        }
+        slots.add(id);
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Inserts an id at an index.
+     * @param i the index the id is inserted at
+     * @param id the id to insert
+     * @throws IllegalArgumentException if the id is already in this list
+     */
+    @Override
+    public void add(int i, UUID id) {
+        Objects.requireNonNull(id);
+        compact();
+        if (i < 0 || i > slots.size()) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + slots.size());
+        }
+        if (positions.containsKey(id)) {
+            throw new IllegalArgumentException(id + " is already in the list");
+        }
+        slots.add(i, id);
+        for (int slot = i; slot < slots.size(); slot++) {
+            positions.put(slots.get(slot), slot);
+        }
+        modCount++;
+    }
+
+    /**
+     * Replaces the id at an index, without checking whether the id is anywhere else in the list.
+     * @param i the index of the id being replaced
+     * @param id the id that replaces it
+     * @return the id that was replaced
+     */
+    @Override
+    public UUID set(int i, UUID id) {
+        Objects.requireNonNull(id);
+        compact();
+        UUID previous = slots.set(i, id);
+        // the id that was replaced may have been set somewhere else too, which is where it is now
+        positions.remove(previous, i);
+        positions.put(id, i);
+        return previous;
+    }
+
+    @Override
+    public boolean remove(Object id) {
+        Integer slot = positions.remove(id);
+        if (slot == null) {
+            return false;
+        }
+        empty(slot);
+        return true;
+    }
+
+    @Override
+    public UUID remove(int i) {
+        compact();
+        UUID id = slots.get(i);
+        positions.remove(id, i);
+        empty(i);
+        return id;
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super UUID> filter) {
+        boolean removed = false;
+        for (int slot = 0; slot < slots.size(); slot++) {
+            UUID id = slots.get(slot);
+            if (id != null && filter.test(id)) {
+                positions.remove(id, slot);
+                clearSlot(slot);
+                removed = true;
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public void clear() {
+        slots.clear();
+        positions.clear();
+        numEmpty = 0;
+        modCount++;
+    }
+
+    /**
+     * Returns an Iterator over the ids that skips the empty slots, so that removing ids while iterating does not move
+     * the ids after them.
+     */
+    @Override
+    public Iterator<UUID> iterator() {
+        return new Iterator<UUID>() {
+            private int next = nextSlot(0);
+            private int last = -1;
+            private int expectedModCount = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return next < slots.size();
+            }
+
+            @Override
+            public UUID next() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (next >= slots.size()) {
+                    throw new NoSuchElementException();
+                }
+                last = next;
+                next = nextSlot(next + 1);
+                return slots.get(last);
+            }
+
+            @Override
+            public void remove() {
+                if (last < 0) {
+                    throw new IllegalStateException();
+                }
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                positions.remove(slots.get(last), last);
+                clearSlot(last);
+                expectedModCount = modCount;
+                last = -1;
+            }
+        };
+    }
+
+    private int nextSlot(int slot) {
+        while (slot < slots.size() && slots.get(slot) == null) {
+            slot++;
+        }
+        return slot;
+    }
+
+    /*
+     * Empties a slot, and drops the empty slots once they make up half of the list.
+     */
+    private void empty(int slot) {
+        if (slot == slots.size() - 1) {
+            slots.remove(slot);
+            modCount++;
+        } else {
+            clearSlot(slot);
+        }
+        if (numEmpty > slots.size() / 2) {
+            compact();
+        }
+    }
+
+    /*
+     * Empties a slot without moving any id, for removing ids while going through the slots.
+     */
+    private void clearSlot(int slot) {
+        slots.set(slot, null);
+        numEmpty++;
+        modCount++;
+    }
+
+    /*
+     * Drops the empty slots, so that the slot of each id is its index again.
+     */
+    private void compact() {
+        if (numEmpty == 0) {
+            return;
+        }
+        int to = 0;
+        for (int from = 0; from < slots.size(); from++) {
+            UUID id = slots.get(from);
+            if (id != null) {
+                slots.set(to, id);
+                positions.put(id, to);
+                to++;
+            }
+        }
+        slots.subList(to, slots.size()).clear();
+        numEmpty = 0;
+    }
+
+    @Override
+    public Object[] toArray() {
+        compact();
+        return slots.toArray();
+    }
+
+    @Override
+    public <T> T[] toArray(T[] array) {
+        compact();
+        return slots.toArray(array);
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.putFields().put("ids", new LinkedHashSet<>(this));
+        out.writeFields();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        LinkedHashSet<UUID> saved = (LinkedHashSet<UUID>) in.readFields().get("ids", null);
+        slots = new ArrayList<>(saved);
+        positions = new HashMap<>();
+        for (UUID id : saved) {
+            positions.put(id, positions.size());
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package Users;
+
+import Initialization.BinaryFormat;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * <h1>PartnerCounter</h1>
+ * Counts how many times a TradingUser has traded with each other TradingUser, by their ids, and keeps the TOP partners
+ * they traded with most.
+ *
+ * <p>Counts only ever go up, so a partner can only enter the top when its own count goes up, and the top is kept up to
+ * date on each add by comparing that one partner with the last of the top. Reading the top takes TOP steps however many
+ * partners there are. Partners with the same count stay in the order they reached it.</p>
+ */
+public class PartnerCounter implements Serializable {
+    private static final long serialVersionUID = -6129474406829870542L;
+
+    /**
+     * The number of partners kept in the top.
+     */
+    public static final int TOP = 3;
+
+    private final Map<UUID, Integer> counts = new HashMap<>();
+    private final List<UUID> top = new ArrayList<>(TOP + 1);
+
+    /**
+     * Constructs a PartnerCounter with no trades counted.
+     */
+    public PartnerCounter() {}
+
+    /**
+     * Reads a PartnerCounter that was written by writeTo.
+     * @param in where the counter is read from
+     * @throws IOException if the counter could not be read
+     */
+    public PartnerCounter(DataInput in) throws IOException {
+        int numPartners = in.readInt();
+        for (int i = 0; i < numPartners; i++) {
+            add(BinaryFormat.readUUID(in), in.readInt());
+        }
+    }
+
+    /**
+     * Writes this PartnerCounter in the BinaryFormat. The top partners are written first, most first, so that partners
+     * with the same count are read back into the top in the same order.
+     * @param out where the counter is written
+     * @throws IOException if the counter could not be written
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(counts.size());
+        for (UUID partnerId : top) {
+            BinaryFormat.writeUUID(out, partnerId);
+            out.writeInt(counts.get(partnerId));
+        }
+        for (Map.Entry<UUID, Integer> entry : counts.entrySet()) {
+            if (!top.contains(entry.getKey())) {
+                BinaryFormat.writeUUID(out, entry.getKey());
+                out.writeInt(entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Counts trades with a partner.
+     * @param partnerId the id of the TradingUser traded with
+     * @param times the number of trades, which must be positive
+     */
+    public void add(UUID partnerId, int times) {
+        int count = counts.merge(partnerId, times, Integer::sum);
+        int position = top.indexOf(partnerId);
+        if (position < 0) {
+            if (top.size() == TOP && count <= counts.get(top.get(TOP - 1))) {
+                return;
+            }
+            if (top.size() == TOP) {
+                top.remove(TOP - 1);
+            }
+            top.add(partnerId);
+            position = top.size() - 1;
+        }
+        // moves the partner ahead of the partners with a lower count
+        while (position > 0 && counts.get(top.get(position - 1)) < count) {
+            Collections.swap(top, position, position - 1);
+            position--;
+        }
+    }
+
+    /**
+     * Returns the number of trades with a partner.
+     * @param partnerId the id of the TradingUser
+     * @return the number of trades, or 0 if they never traded
+     */
+    public int getCount(UUID partnerId) {
+        return counts.getOrDefault(partnerId, 0);
+    }
+
+    /**
+     * Returns the ids of the partners traded with most, most first.
+     * @return a list of at most TOP ids
+     */
+    public List<UUID> getTop() {
+        return new ArrayList<>(top);
+    }
+
+    /**
+     * Returns the number of trades with every partner.
+     * @return an unmodifiable map of the id of each partner to the number of trades
+     */
+    public Map<UUID, Integer> getCounts() {
+        return Collections.unmodifiableMap(counts);
+    }
+}
@@ -0,0 +1,150 @@
+package Users;
+
+import Initialization.CityShardStore;
+import Items.Item;
+import Transactions.Meeting;
+import Transactions.Transaction;
+import Transactions.TransactionPerm;
+import Transactions.TransactionStatuses;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <h1>TradeStressBenchmark</h1>
+ * Measures how the number of trades the TradingUserManager carries out per second grows with the number of threads,
+ * with the striped UserLocks against a single lock for every TradingUser.
+ *
+ * <p>Usage: TradeStressBenchmark [number of pairs] [trades per thread]. By default 10,000 pairs of TradingUsers in one
+ * city each own an item that the other wants. Each thread trades the items of its own pairs back and forth as
+ * permanent two-way transactions, so no two threads trade with the same TradingUser, from one thread up to the number
+ * of processors. With a single lock the trades run one at a time however many threads there are, and with the striped
+ * locks they should scale with the number of processors. The items are checked to still be with one TradingUser of
+ * each pair at the end.</p>
+ *
+ * <p>Alongside the trades per second, the number of times a thread had to wait for a lock or monitor held by another
+ * thread is reported per thousand trades. It shows how much the threads get in each other's way even on a machine
+ * with too few processors for the throughput to grow.</p>
+ */
+public class TradeStressBenchmark {
+    private static final String CITY = "Toronto";
+
+    public static void main(String[] args) throws InterruptedException {
+        int numPairs = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int tradesPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 200000;
+        int processors = Runtime.getRuntime().availableProcessors();
+        System.out.println(processors + " processors, " + numPairs + " pairs, " + tradesPerThread + " trades per thread");
+        // warms up the JIT so that the first run measured is not slower than the rest
+        run(numPairs, 1, tradesPerThread, true, new AtomicLong());
+        System.out.printf("%-8s %8s %16s %16s %16s%n", "locks", "threads", "trades/s", "speedup", "waits/1k trades");
+        for (boolean striped : new boolean[]{false, true}) {
+            double single = 0;
+            for (int threads = 1; threads <= processors; threads *= 2) {
+                AtomicLong waits = new AtomicLong();
+                double throughput = run(numPairs, threads, tradesPerThread, striped, waits);
+                if (threads == 1) {
+                    single = throughput;
+                }
+                System.out.printf("%-8s %8d %16.0f %15.2fx %16.2f%n", striped ? "striped" : "single", threads,
+                        throughput, throughput / single, waits.get() * 1000.0 / threads / tradesPerThread);
+            }
+        }
+    }
+
+    /* returns the number of trades per second of threads threads trading between disjoint pairs, adding the number
+     of times they waited for each other to waits */
+    private static double run(int numPairs, int threads, int tradesPerThread, boolean striped, AtomicLong waits)
+            throws InterruptedException {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        File directory = new File(System.getProperty("java.io.tmpdir"), "trade-benchmark-" + UUID.randomUUID());
+        CityShardStore store = new CityShardStore(directory.getPath());
+        TradingUserManager tum = new TradingUserManager(store, new AccountStatusRegistry(new ArrayList<>(),
+                new ArrayList<>(), new ArrayList<>()), new UsernameRegistry(), striped ? new UserLocks() : new UserLocks(1));
+        Transaction[][] trades = new Transaction[numPairs][];
+        for (int i = 0; i < numPairs; i++) {
+            trades[i] = createPair(store, tum, i);
+        }
+        // the catalog of the city is kept up to date by every trade once it has been built
+        tum.getAvailableItems(store.getUser(trades[0][0].getUser1()));
+
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int first = numPairs * t / threads;
+            int last = numPairs * (t + 1) / threads;
+            workers[t] = new Thread(() -> {
+                for (int n = 0; n < tradesPerThread; n++) {
+                    Transaction[] pair = trades[first + (n / 2) % (last - first)];
+                    tum.handlePermTransactionItems(pair[n % 2]);
+                }
+                ThreadInfo info = threadBean.getThreadInfo(Thread.currentThread().getId());
+                waits.addAndGet(info.getBlockedCount() + info.getWaitedCount());
+            });
+        }
+        long start = System.nanoTime();
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        for (Transaction[] pair : trades) {
+            TradingUser user1 = store.getUser(pair[0].getUser1());
+            TradingUser user2 = store.getUser(pair[0].getUser2());
+            if (user1.getInventory().size() + user2.getInventory().size() != 2) {
+                System.out.println("A trade between " + user1 + " and " + user2 + " lost or duplicated an item.");
+            }
+        }
+        deleteDirectory(directory);
+        return (double) threads * tradesPerThread / elapsed * 1e9;
+    }
+
+    /* creates two TradingUsers who each own an item the other wants, and the trades that swap them and back */
+    private static Transaction[] createPair(CityShardStore store, TradingUserManager tum, int i) {
+        TradingUser user1 = new TradingUser("a" + i, "password");
+        TradingUser user2 = new TradingUser("b" + i, "password");
+        Item item1 = new Item("item a" + i);
+        Item item2 = new Item("item b" + i);
+        for (TradingUser tradingUser : Arrays.asList(user1, user2)) {
+            tradingUser.setCity(CITY);
+        }
+        store.putItem(item1);
+        store.putItem(item2);
+        user1.getInventory().add(item1.getId());
+        user1.getWishlist().add(item2.getId());
+        user2.getInventory().add(item2.getId());
+        user2.getWishlist().add(item1.getId());
+        store.putUser(user1);
+        store.putUser(user2);
+        return new Transaction[]{swap(user1, item1.getId(), user2, item2.getId()),
+                swap(user1, item2.getId(), user2, item1.getId())};
+    }
+
+    private static Transaction swap(TradingUser user1, UUID owned1, TradingUser user2, UUID owned2) {
+        TreeMap<UUID, List<UUID>> userToItems = new TreeMap<>();
+        userToItems.put(user1.getUserId(), Arrays.asList(owned1, owned2));
+        userToItems.put(user2.getUserId(), Arrays.asList(owned2, owned1));
+        Transaction transaction = new TransactionPerm(userToItems, new Meeting(CITY, new Date(), new Date()));
+        transaction.setStatus(TransactionStatuses.COMPLETED);
+        return transaction;
+    }
+
+    private static void deleteDirectory(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    deleteDirectory(file);
+                } else {
+                    file.delete();
+                }
+            }
+        }
+        directory.delete();
+    }
+}
@@ -1,23 +1,32 @@
 package Users;
 
+import Initialization.BinaryFormat;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
 /**
  * <h1>TradingUser</h1>
  * Represents a TradingUser in the trading system
+ *
+ * <p>The inventory, wishlist and current transactions are OrderedIdLists, which keep their order but look ids up in
+ * constant time.</p>
  */
 public class TradingUser extends User implements Serializable {
+    private static final long serialVersionUID = -3136183391815955304L;
 
     private final TransactionHistory transactionHistory;
-    private final List<UUID> currentTransactions;
-    private final List<UUID> inventory;
+    private List<UUID> currentTransactions;
+    private List<UUID> inventory;
     private int borrowThreshold = 1;
     private int weeklyThreshold = 3;
     private int incompleteThreshold = 2;
-    private final List<UUID> wishlist;
+    private List<UUID> wishlist;
     private UserStatuses status = UserStatuses.ACTIVE;
     private String city;
 
@@ -28,12 +37,61 @@ public class TradingUser extends User implements Serializable {
      */
      public TradingUser(String username, String password) {
          super(username,password);
-         currentTransactions = new ArrayList<>();
-         inventory = new ArrayList<>();
-         wishlist = new ArrayList<>();
+         currentTransactions = new OrderedIdList();
+         inventory = new OrderedIdList();
+         wishlist = new OrderedIdList();
          transactionHistory = new TransactionHistory();
      }
 
+    /**
+     * Reads a TradingUser that was written by writeTo.
+     * @param in where the TradingUser is read from
+     * @param version the version of the BinaryFormat the TradingUser was written with
+     * @throws IOException if the TradingUser could not be read
+     */
+    public TradingUser(DataInput in, int version) throws IOException {
+        super(in, version);
+        transactionHistory = new TransactionHistory(in, version);
+        currentTransactions = new OrderedIdList();
+        BinaryFormat.readUUIDList(in, currentTransactions);
+        inventory = new OrderedIdList();
+        BinaryFormat.readUUIDList(in, inventory);
+        wishlist = new OrderedIdList();
+        BinaryFormat.readUUIDList(in, wishlist);
+        borrowThreshold = in.readInt();
+        weeklyThreshold = in.readInt();
+        incompleteThreshold = in.readInt();
+        status = BinaryFormat.readEnum(in, UserStatuses.values());
+        city = BinaryFormat.readString(in);
+    }
+
+    /* TradingUsers saved before OrderedIdList have their ids read as ArrayLists, so they are copied into OrderedIdLists */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        currentTransactions = new OrderedIdList(currentTransactions);
+        inventory = new OrderedIdList(inventory);
+        wishlist = new OrderedIdList(wishlist);
+    }
+
+    /**
+     * Writes this TradingUser in the BinaryFormat.
+     * @param out where the TradingUser is written
+     * @throws IOException if the TradingUser could not be written
+     */
+    @Override
+    public void writeTo(DataOutput out) throws IOException {
+        super.writeTo(out);
+        transactionHistory.writeTo(out);
+        BinaryFormat.writeUUIDList(out, currentTransactions);
+        BinaryFormat.writeUUIDList(out, inventory);
+        BinaryFormat.writeUUIDList(out, wishlist);
+        out.writeInt(borrowThreshold);
+        out.writeInt(weeklyThreshold);
+        out.writeInt(incompleteThreshold);
+        BinaryFormat.writeEnum(out, status);
+        BinaryFormat.writeString(out, city);
+    }
+
     /**
      * Getter for this TradingUser's transactionHistory as list of Transactions they have previously been involved with.
      * @return list of Transactions.Transaction objects
@@ -80,13 +138,7 @@ public class TradingUser extends User implements Serializable {
      * @return returns true iff it found the item and it removed.
      */
     public boolean removeFromWishlist(UUID itemId){
-        if(wishlist.contains(itemId)){
-            wishlist.remove(itemId);
-            return(true);
-        }
-        else{
-            return(false);
-        }
+        return wishlist.remove(itemId);
     }
 
 
@@ -96,13 +148,7 @@ public class TradingUser extends User implements Serializable {
      * @return returns true iff it found the item and it removed.
      */
     public boolean addToWishlist(UUID itemId){
-        if(!wishlist.contains(itemId)){
-            wishlist.add(itemId);
-            return(true);
-        }
-        else{
-            return(false);
-        }
+        return wishlist.add(itemId);
     }
 
     /**
@@ -1,35 +1,102 @@
 package Users;
 
 import Exceptions.InvalidTradingUserException;
+import Initialization.CityShardStore;
+import Initialization.Filepaths;
+import Initialization.Journal;
 import Items.Item;
 import Transactions.TransactionStatuses;
 import Transactions.Transaction;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * <h1>TradingUserManager</h1>
  *
  * Manages all TradingUsers in the system.
  * <p>
- * Stores a list of all TradingUsers in the system, all flagged TradingUsers, all frozen Users, and a HashMap mapping between
- *  * TradingUsers and their UUID.
+ * Keeps all TradingUsers in the system in a CityShardStore, which only reads the TradingUsers of a city when they are
+ * needed, and stores the ids of all flagged TradingUsers and all frozen Users.
+ * </p>
+ * <p>
+ * The TradingUsers of each city who are not on vacation are kept in an index by normalized city name, which is built
+ * the first time a city is looked up and then kept up to date whenever a TradingUser is added, changes city, or has
+ * their status changed. Each indexed city also has a catalog of the items in the inventories of those TradingUsers,
+ * which is kept up to date whenever an inventory changes.
+ * </p>
+ * <p>
+ * The TradingUsers are changed while holding their UserLocks: a change to one TradingUser holds their lock, and a
+ * change to two, such as a trade, holds both, so trades between different TradingUsers run in parallel. The city
+ * indexes are concurrent maps: each city's users and catalog are built while the entry of that city is locked, so a
+ * change made meanwhile waits for the build, and are then concurrent maps themselves, so changes in the same city or
+ * in different ones do not wait for each other, and the views of the indexes that are returned can be read on any
+ * thread.
  * </p>
  */
 public class TradingUserManager {
-    private final List<TradingUser> allTradingUsers;
-    private final List<TradingUser> flaggedAccounts;
-    private final List<TradingUser> frozenAccounts;
-    private Map<UUID, TradingUser> idToUser;
+    private final CityShardStore store;
+    private final UsernameRegistry usernames;
+    private final ConcurrentHashMap<String, Map<UUID, TradingUser>> activeUsersByCity = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Map<Item, TradingUser>> availableItemsByCity = new ConcurrentHashMap<>();
+    private final AccountStatusRegistry accountStatuses;
+    private final UserLocks locks;
+    private final Filepaths fp = new Filepaths();
+    private Journal journal;
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * Creates a TradingUserManager for the TradingUsers in store.
+     * @param store the store of all TradingUsers
+     * @param accountStatuses the registry of the flagged and frozen accounts, shared with the AdminManager
+     * @param usernames the registry of the usernames of all users, shared with the other user managers
+     */
+    public TradingUserManager(CityShardStore store, AccountStatusRegistry accountStatuses, UsernameRegistry usernames) {
+        this(store, accountStatuses, usernames, new UserLocks());
+    }
+
+    /**
+     * Creates a TradingUserManager for the TradingUsers in store, whose changes hold the given locks.
+     * @param store the store of all TradingUsers
+     * @param accountStatuses the registry of the flagged and frozen accounts, shared with the AdminManager
+     * @param usernames the registry of the usernames of all users, shared with the other user managers
+     * @param locks the locks of the TradingUsers
+     */
+    public TradingUserManager(CityShardStore store, AccountStatusRegistry accountStatuses, UsernameRegistry usernames,
+                              UserLocks locks) {
+        this.store = store;
+        this.usernames = usernames;
+        this.accountStatuses = accountStatuses;
+        this.locks = locks;
+    }
 
     /**
-     * Creates a list of tradingUsers.
+     * Sets the journal that changes to TradingUsers are appended to.
+     * @param journal the journal of the trading system
      */
-    public TradingUserManager(List<TradingUser> tradingUsers, List<TradingUser> flaggedAccounts, List<TradingUser> frozenAccounts) {
-        allTradingUsers = tradingUsers;
-        this.flaggedAccounts = flaggedAccounts;
-        this.frozenAccounts = frozenAccounts;
-        userListToMap();
+    public void setJournal(Journal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Getter for the modification version of this manager, which goes up every time a TradingUser is changed.
+     * @return the modification version as a long
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /* puts the current state of tradingUser in the store and appends it to the journal */
+    private void recordUser(TradingUser tradingUser) {
+        version.incrementAndGet();
+        store.putUser(tradingUser);
+        if (journal != null) {
+            journal.put(fp.USERS, tradingUser.getUserId(), tradingUser);
+        }
     }
 
     /**
@@ -41,11 +108,9 @@ public class TradingUserManager {
     public void addTradingUser(String username, String password, String city) throws InvalidTradingUserException {
         TradingUser newTradingUser = new TradingUser(username, password);
         newTradingUser.setCity(city);
-        if (allTradingUsers.size() == 0) {
-            allTradingUsers.add(newTradingUser);
-        }
-        if (checkAvailableUsername(username)) {
-            allTradingUsers.add(newTradingUser);
+        if (usernames.register(username, UserRoles.TRADING, newTradingUser.getUserId())) {
+            recordUser(newTradingUser);
+            updateCityIndex(newTradingUser, null);
         } else {
             throw new InvalidTradingUserException();
         }
@@ -58,12 +123,12 @@ public class TradingUserManager {
      * @return username and userId as string separated by comma
      */
     public TradingUser getTradingUser(String username) throws InvalidTradingUserException {
-        for (TradingUser tradingUser : allTradingUsers) {
-            if ((tradingUser.getUsername().equals(username))) {
-                return tradingUser;
-            }
+        UUID id = usernames.getId(username, UserRoles.TRADING);
+        TradingUser tradingUser = id == null ? null : store.getUser(id);
+        if (tradingUser == null) {
+            throw new InvalidTradingUserException();// TradingUser does not exist
         }
-        throw new InvalidTradingUserException();// TradingUser does not exist
+        return tradingUser;
     }
 
     /**
@@ -85,25 +150,182 @@ public class TradingUserManager {
         }
     }
     /**
-     * Retrieves a list of TradingUsers by city.
-     * @param city = desired city
-     * @return list of TradingUsers in that city
+     * Retrieves the TradingUsers in a city who are not on vacation, from the index of each city's TradingUsers.
+     * @param city = desired city, in any case
+     * @return an unmodifiable view of the TradingUsers in that city, which stays up to date
+     */
+    public Collection<TradingUser> getTradingUserByCity(String city) {
+        Map<UUID, TradingUser> activeUsers = activeUsersIn(CityShardStore.normalizeCity(city));
+        if (activeUsers.isEmpty()) return null; // if there are no TradingUser's in this city
+        else { return Collections.unmodifiableCollection(activeUsers.values()); }
+    }
+
+    /* returns the TradingUsers of a city who are not on vacation, reading them from the store the first time */
+    private Map<UUID, TradingUser> activeUsersIn(String normalizedCity) {
+        return activeUsersByCity.computeIfAbsent(normalizedCity, city -> {
+            Map<UUID, TradingUser> activeUsers = new ConcurrentHashMap<>();
+            for (TradingUser tradingUser : store.getUsersInCity(city)) {
+                if (!tradingUser.isOnVacation()) {
+                    activeUsers.put(tradingUser.getUserId(), tradingUser);
+                }
+            }
+            return activeUsers;
+        });
+    }
+
+    /**
+     * Retrieves the items in the inventories of the other TradingUsers in tradingUser's city who are not on vacation.
+     * @param tradingUser the TradingUser looking for items
+     * @return a read-only view mapping each available item to its owner, which stays up to date
+     */
+    public Map<Item, TradingUser> getAvailableItems(TradingUser tradingUser) {
+        return getAvailableItems(tradingUser, tradingUser.getCity());
+    }
+
+    /**
+     * Retrieves the items in the inventories of the TradingUsers other than tradingUser in a city who are not on
+     * vacation.
+     * @param tradingUser the TradingUser looking for items
+     * @param city the city to look in, in any case
+     * @return a read-only view mapping each available item to its owner, which stays up to date
+     */
+    public Map<Item, TradingUser> getAvailableItems(TradingUser tradingUser, String city) {
+        return new AvailableItemsView(availableItemsIn(CityShardStore.normalizeCity(city)), tradingUser);
+    }
+
+    /**
+     * Retrieves the TradingUsers of a city who can trade, that is who are neither on vacation nor frozen.
+     * @param city the city, in any case
+     * @return a list of the TradingUsers who can trade in that city
+     */
+    public List<TradingUser> getTradableUsers(String city) {
+        List<TradingUser> tradableUsers = new ArrayList<>();
+        for (TradingUser tradingUser : activeUsersIn(CityShardStore.normalizeCity(city)).values()) {
+            if (!tradingUser.isFrozen()) {
+                tradableUsers.add(tradingUser);
+            }
+        }
+        return tradableUsers;
+    }
+
+    /**
+     * Retrieves the TradingUsers who can trade in every city. This reads every shard, so it is meant for batch jobs.
+     * @return a map from each normalized city to the TradingUsers who can trade there
+     */
+    public Map<String, List<TradingUser>> getTradableUsersByCity() {
+        Map<String, List<TradingUser>> usersByCity = new HashMap<>();
+        for (TradingUser tradingUser : store.getAllUsers()) {
+            if (!tradingUser.isOnVacation() && !tradingUser.isFrozen()) {
+                usersByCity.computeIfAbsent(CityShardStore.normalizeCity(tradingUser.getCity()),
+                        k -> new ArrayList<>()).add(tradingUser);
+            }
+        }
+        return usersByCity;
+    }
+
+    /**
+     * Retrieves the TradingUsers of tradingUser's city who have an item in tradingUser's inventory in their wishlist.
+     * Only the shard of that city is read.
+     * @param tradingUser the TradingUser whose items are wanted
+     * @return a map from each of tradingUser's items that someone wants to the TradingUsers who want it
      */
-    public List<TradingUser> getTradingUserByCity(String city) {
-        List<TradingUser> userList = new ArrayList<>();
-        for (TradingUser tradingUser : allTradingUsers)
-            //check TradingUser is in the desired city and not on vacation status
-            if (sameCity(tradingUser.getCity(),city)&&(!tradingUser.isOnVacation())) {
-                userList.add(tradingUser);
+    public Map<UUID, List<TradingUser>> getUsersWhoWant(TradingUser tradingUser) {
+        Map<UUID, List<TradingUser>> wantedItems = new LinkedHashMap<>();
+        for (UUID itemId : tradingUser.getInventory()) {
+            List<TradingUser> wishers = new ArrayList<>();
+            for (UUID wisherId : store.getWishers(itemId, tradingUser.getCity())) {
+                if (!wisherId.equals(tradingUser.getUserId())) {
+                    wishers.add(store.getUser(wisherId));
+                }
             }
-        if (userList.size() == 0) return null; // if there are no TradingUser's in this city
-        else { return userList; }
+            if (!wishers.isEmpty()) {
+                wantedItems.put(itemId, wishers);
+            }
+        }
+        return wantedItems;
+    }
+
+    /* returns the catalog of the items of a city's active TradingUsers, building it from their inventories the first time */
+    private Map<Item, TradingUser> availableItemsIn(String normalizedCity) {
+        return availableItemsByCity.computeIfAbsent(normalizedCity, city -> {
+            Map<Item, TradingUser> availableItems = new ConcurrentHashMap<>();
+            for (TradingUser tradingUser : activeUsersIn(city).values()) {
+                for (UUID itemId : tradingUser.getInventory()) {
+                    Item item = store.getItem(itemId);
+                    if (item != null) {
+                        availableItems.put(item, tradingUser);
+                    }
+                }
+            }
+            return availableItems;
+        });
+    }
+
+    /* moves tradingUser out of previousCity, if it changed, and into or out of its city depending on its status; a
+     * city whose index is being built waits for it, so the change is not lost */
+    private void updateCityIndex(TradingUser tradingUser, String previousCity) {
+        UUID id = tradingUser.getUserId();
+        if (previousCity != null) {
+            String previous = CityShardStore.normalizeCity(previousCity);
+            updateIndex(activeUsersByCity, previous, previousUsers -> previousUsers.remove(id));
+            for (UUID itemId : tradingUser.getInventory()) {
+                updateCatalog(previous, tradingUser, itemId, false);
+            }
+        }
+        // a city that has not been looked up yet is read from the store, with this change, when it is
+        String city = CityShardStore.normalizeCity(tradingUser.getCity());
+        updateIndex(activeUsersByCity, city, activeUsers -> {
+            if (tradingUser.isOnVacation()) {
+                activeUsers.remove(id);
+            } else {
+                activeUsers.put(id, tradingUser);
+            }
+        });
+        for (UUID itemId : tradingUser.getInventory()) {
+            updateCatalog(city, tradingUser, itemId, !tradingUser.isOnVacation());
+        }
+    }
+
+    /* adds or removes an item of owner in the catalog of a city, if that catalog has been built */
+    private void updateCatalog(String normalizedCity, TradingUser owner, UUID itemId, boolean available) {
+        updateIndex(availableItemsByCity, normalizedCity, availableItems -> {
+            Item item = store.getItem(itemId);
+            if (item != null) {
+                if (available) {
+                    availableItems.put(item, owner);
+                } else {
+                    availableItems.remove(item, owner);
+                }
+            }
+        });
+    }
+
+    /* updates the index of a city if it has been built; an index that is being built is only updated once it has
+     * been, since its entry is locked until then, and one that has been built is a concurrent map that is updated
+     * without locking the entry, so changes in the same city do not wait for each other */
+    private static <V> void updateIndex(ConcurrentHashMap<String, V> index, String normalizedCity, Consumer<V> update) {
+        V built = index.get(normalizedCity);
+        if (built != null) {
+            update.accept(built);
+            return;
+        }
+        index.computeIfPresent(normalizedCity, (k, building) -> {
+            update.accept(building);
+            return building;
+        });
+    }
+
+    /* adds an item to tradingUser's inventory, and to the catalog of their city if they are not on vacation */
+    private void addToInventory(TradingUser tradingUser, UUID itemId) {
+        tradingUser.getInventory().add(itemId);
+        updateCatalog(CityShardStore.normalizeCity(tradingUser.getCity()), tradingUser, itemId,
+                !tradingUser.isOnVacation());
     }
 
-    private Boolean sameCity(String city1, String city2){
-        String All_upper_city1 = city1.toUpperCase();
-        String All_upper_city2 = city2.toUpperCase();
-        return All_upper_city1.equals(All_upper_city2);
+    /* removes an item from tradingUser's inventory and from the catalog of their city */
+    private void removeFromInventory(TradingUser tradingUser, UUID itemId) {
+        tradingUser.getInventory().remove(itemId);
+        updateCatalog(CityShardStore.normalizeCity(tradingUser.getCity()), tradingUser, itemId, false);
     }
 
     /**
@@ -114,19 +336,23 @@ public class TradingUserManager {
      * @param listType either "wishlist" or "inventory" as a String
      */
     public boolean addItem(UUID tradingUserId, Item item, String listType) {
-        TradingUser tradingUser = idToUser.get(tradingUserId);
-        if (listType.equals("wishlist")) {
-            if (!tradingUser.getWishlist().contains(item.getId())) {
-                tradingUser.getWishlist().add(item.getId());
-                return true;
-            }
-        } else if (listType.equals("inventory")) {
-            if (!tradingUser.getInventory().contains(item.getId())) {
-                tradingUser.getInventory().add(item.getId());
-                return true;
+        return locks.call(tradingUserId, () -> {
+            TradingUser tradingUser = store.getUser(tradingUserId);
+            if (listType.equals("wishlist")) {
+                if (!tradingUser.getWishlist().contains(item.getId())) {
+                    tradingUser.getWishlist().add(item.getId());
+                    recordUser(tradingUser);
+                    return true;
+                }
+            } else if (listType.equals("inventory")) {
+                if (!tradingUser.getInventory().contains(item.getId())) {
+                    addToInventory(tradingUser, item.getId());
+                    recordUser(tradingUser);
+                    return true;
+                }
             }
-        }
-        return false;
+            return false;
+        });
     }
 
     /**
@@ -137,12 +363,26 @@ public class TradingUserManager {
      * @param listType either "wishlist" or "inventory" as a String
      */
     public void removeItem(UUID tradingUserId, Item item, String listType) {
-        TradingUser tradingUser = idToUser.get(tradingUserId);
-        if (listType.equals("wishlist")) {
-            tradingUser.getWishlist().remove(item.getId());
-        } else if (listType.equals("inventory")) {
-            tradingUser.getInventory().remove(item.getId());
-        }
+        removeItem(tradingUserId, item.getId(), listType);
+    }
+
+    /**
+     * Removes a item from tradingUser's specified list, which is either the Users.TradingUser's wishlist or inventory.
+     *
+     * @param tradingUserId a tradingUser's UUID
+     * @param itemId the UUID of an item in the trading system.
+     * @param listType either "wishlist" or "inventory" as a String
+     */
+    public void removeItem(UUID tradingUserId, UUID itemId, String listType) {
+        locks.run(tradingUserId, () -> {
+            TradingUser tradingUser = store.getUser(tradingUserId);
+            if (listType.equals("wishlist")) {
+                tradingUser.getWishlist().remove(itemId);
+            } else if (listType.equals("inventory")) {
+                removeFromInventory(tradingUser, itemId);
+            }
+            recordUser(tradingUser);
+        });
     }
 
     /**
@@ -153,18 +393,21 @@ public class TradingUserManager {
      * @param thresholdType  either "borrow", "weekly", or "incomplete" as a String
      */
     public void changeThreshold(UUID tradingUserId, int thresholdValue, String thresholdType) {
-        TradingUser tradingUser = idToUser.get(tradingUserId);
-        switch (thresholdType) {
-            case "Borrow":
-                tradingUser.setBorrowThreshold(thresholdValue);
-                break;
-            case "Weekly":
-                tradingUser.setWeeklyThreshold(thresholdValue);
-                break;
-            case "Incomplete":
-                tradingUser.setIncompleteThreshold(thresholdValue);
-                break;
-        }
+        locks.run(tradingUserId, () -> {
+            TradingUser tradingUser = store.getUser(tradingUserId);
+            switch (thresholdType) {
+                case "Borrow":
+                    tradingUser.setBorrowThreshold(thresholdValue);
+                    break;
+                case "Weekly":
+                    tradingUser.setWeeklyThreshold(thresholdValue);
+                    break;
+                case "Incomplete":
+                    tradingUser.setIncompleteThreshold(thresholdValue);
+                    break;
+            }
+            recordUser(tradingUser);
+        });
     }
 
     /**
@@ -173,9 +416,13 @@ public class TradingUserManager {
      * @param tradingUser a tradingUser in the trading system.
      */
     public void freezeAccount(TradingUser tradingUser) {
-        tradingUser.setStatus(UserStatuses.FROZEN);
-        idToUser.get(tradingUser.getUserId()).setStatus(UserStatuses.FROZEN);
-        frozenAccounts.add(tradingUser);
+        locks.run(tradingUser.getUserId(), () -> {
+            tradingUser.setStatus(UserStatuses.FROZEN);
+            store.getUser(tradingUser.getUserId()).setStatus(UserStatuses.FROZEN);
+            recordUser(tradingUser);
+            updateCityIndex(tradingUser, null);
+            accountStatuses.add(tradingUser.getUserId(), AccountStates.FROZEN);
+        });
     }
 
     /**
@@ -184,9 +431,14 @@ public class TradingUserManager {
      * @param tradingUser a tradingUser in the trading system.
      */
     public void unfreezeAccount(TradingUser tradingUser) {
-        tradingUser.setStatus(UserStatuses.ACTIVE);
-        idToUser.get(tradingUser.getUserId()).setStatus(UserStatuses.ACTIVE);
-        removeFrozenUsername(tradingUser.getUsername());
+        locks.run(tradingUser.getUserId(), () -> {
+            tradingUser.setStatus(UserStatuses.ACTIVE);
+            store.getUser(tradingUser.getUserId()).setStatus(UserStatuses.ACTIVE);
+            recordUser(tradingUser);
+            updateCityIndex(tradingUser, null);
+            accountStatuses.remove(tradingUser.getUserId(), AccountStates.FROZEN);
+            accountStatuses.remove(tradingUser.getUserId(), AccountStates.UNFREEZE_REQUESTED);
+        });
     }
 
     /**
@@ -195,8 +447,49 @@ public class TradingUserManager {
      * @param tradingUser a tradingUser in the trading system.
      */
     public void onVacation(TradingUser tradingUser){
-        tradingUser.setStatus(UserStatuses.VACATION);
-        idToUser.get(tradingUser.getUserId()).setStatus(UserStatuses.VACATION);
+        locks.run(tradingUser.getUserId(), () -> {
+            boolean wasOnVacation = tradingUser.isOnVacation();
+            tradingUser.setStatus(UserStatuses.VACATION);
+            store.getUser(tradingUser.getUserId()).setStatus(UserStatuses.VACATION);
+            recordUser(tradingUser);
+            updateCityIndex(tradingUser, null);
+            if (!wasOnVacation) {
+                accountStatuses.add(tradingUser.getUserId(), AccountStates.VACATION);
+            }
+        });
+    }
+
+    /**
+     * Changes the status of a tradingUser's account from vacation back to active.
+     *
+     * @param tradingUser a tradingUser in the trading system.
+     */
+    public void offVacation(TradingUser tradingUser){
+        locks.run(tradingUser.getUserId(), () -> {
+            boolean wasOnVacation = tradingUser.isOnVacation();
+            tradingUser.setStatus(UserStatuses.ACTIVE);
+            store.getUser(tradingUser.getUserId()).setStatus(UserStatuses.ACTIVE);
+            recordUser(tradingUser);
+            updateCityIndex(tradingUser, null);
+            if (wasOnVacation) {
+                accountStatuses.remove(tradingUser.getUserId(), AccountStates.VACATION);
+            }
+        });
+    }
+
+    /**
+     * Changes the city of a tradingUser.
+     *
+     * @param tradingUser a tradingUser in the trading system.
+     * @param city the tradingUser's new city
+     */
+    public void changeCity(TradingUser tradingUser, String city) {
+        locks.run(tradingUser.getUserId(), () -> {
+            String previousCity = tradingUser.getCity();
+            tradingUser.setCity(city);
+            recordUser(tradingUser);
+            updateCityIndex(tradingUser, previousCity);
+        });
     }
 
     /**
@@ -206,69 +499,103 @@ public class TradingUserManager {
      * @param transaction a meetup between 2 users.
      */
     public void addToTransactionHistory(TradingUser tradingUser, Transaction transaction) {
-        TransactionHistory tH = tradingUser.getTransactionHistory();
-        tH.setTransactionHistory(transaction);
-        updateTransactionHistoryValues(tradingUser, transaction);
+        locks.run(tradingUser.getUserId(), () -> {
+            TransactionHistory tH = tradingUser.getTransactionHistory();
+            tH.setTransactionHistory(transaction);
+            updateTransactionHistoryValues(tradingUser, transaction);
+            recordUser(tradingUser);
+        });
+    }
+
+    /**
+     * Gives a TradingUser whose transaction history was saved before it counted its transactions by day a rebuilt
+     * ActivityCounter, and saves the TradingUser. Nothing is done if the history already has a counter.
+     *
+     * @param tradingUser a tradingUser in the trading system.
+     * @param counter counts the transactions with the given ids by day
+     */
+    public void rebuildWeeklyActivity(TradingUser tradingUser, Function<List<UUID>, ActivityCounter> counter) {
+        locks.run(tradingUser.getUserId(), () -> {
+            TransactionHistory tH = tradingUser.getTransactionHistory();
+            if (tH.getWeeklyActivity() == null) {
+                tH.setWeeklyActivity(counter.apply(tH.getAllPastTransactions()));
+                recordUser(tradingUser);
+            }
+        });
     }
 
     /**
-     * A private helper method for addToTransactionHistory that updates UserNumTradeTimes, NumItemsBorrowed, and NumItemsLended
+     * A private helper method for addToTransactionHistory that updates the trading partners, NumItemsBorrowed, and
+     * NumItemsLended
      *
      * @param tradingUser a tradingUser in a trading system
      * @param transaction a transaction between two Users
      */
     private void updateTransactionHistoryValues(TradingUser tradingUser, Transaction transaction) {
         TransactionHistory tH = tradingUser.getTransactionHistory();
+        convertTradingPartners(tH);
         // if the user is the person giving away the object (user1) in transaction
         if (tradingUser.getUserId().equals(transaction.getUser1())){
-            // increment the numLended
-            tradingUser.getTransactionHistory().setNumItemsLended();
-
-            // get the username of user2 and see if it's in the idToUser and update it; otherwise, add the username
-            String u2 = idToUser.get(transaction.getUser2()).getUsername();
-            if (tH.getUsersNumTradeTimes().containsKey(u2)) {
-                tH.getUsersNumTradeTimes().put(u2, tH.getUsersNumTradeTimes().get(u2) + 1);
-            } else {
-                tH.getUsersNumTradeTimes().put(u2, 1);
-            }
+            tH.setNumItemsLended();
+            tH.getTradingPartners().add(transaction.getUser2(), 1);
             if (!transaction.isOneWay()) {
                 // if the transaction is a twoway, increment borrowed
-                tradingUser.getTransactionHistory().setNumItemsBorrowed();
+                tH.setNumItemsBorrowed();
             }
         } else { // if the user is the person receiving the object (user2) in transaction
-            // increment the numBorrowed
-            tradingUser.getTransactionHistory().setNumItemsBorrowed();
-            // check to see if the other user is in the first user's usersNumTradeTimes list, increment or otherwise add the new user
-            String u1 = idToUser.get(transaction.getUser1()).getUsername();
-            if (tH.getUsersNumTradeTimes().containsKey(u1)) {
-                tH.getUsersNumTradeTimes().put(u1, tH.getUsersNumTradeTimes().get(u1) + 1);
-            } else {
-                tH.getUsersNumTradeTimes().put(u1, 1);
-
+            tH.setNumItemsBorrowed();
+            tH.getTradingPartners().add(transaction.getUser1(), 1);
+            if (!transaction.isOneWay()) {
                 // if the transaction is twoway, increment lent
-                if (!transaction.isOneWay()) {
-                    tradingUser.getTransactionHistory().setNumItemsLended();
-                }
+                tH.setNumItemsLended();
+            }
+        }
+    }
+
+    /* moves the trading partners of a history saved by username into its PartnerCounter, by their ids */
+    private void convertTradingPartners(TransactionHistory tH) {
+        if (tH.getUsersNumTradeTimes().isEmpty()) {
+            return;
+        }
+        for (Map.Entry<String, Integer> entry : tH.getUsersNumTradeTimes().entrySet()) {
+            UUID id = usernames.getId(entry.getKey(), UserRoles.TRADING);
+            if (id != null) {
+                tH.getTradingPartners().add(id, entry.getValue());
             }
         }
+        tH.getUsersNumTradeTimes().clear();
+    }
+
+    /**
+     * Returns the usernames of the top three trading partners of a TradingUser, most traded with first. They are found
+     * by id, so they are the current usernames of the partners.
+     *
+     * @param tradingUser a tradingUser in the trading system.
+     * @return a list of at most three usernames.
+     */
+    public List<String> getMostTradedWithUsers(TradingUser tradingUser) {
+        return locks.call(tradingUser.getUserId(), () -> {
+            TransactionHistory tH = tradingUser.getTransactionHistory();
+            if (!tH.getUsersNumTradeTimes().isEmpty()) {
+                convertTradingPartners(tH);
+                recordUser(tradingUser);
+            }
+            return getUsernameListByID(tH.mostTradedWithUsers());
+        });
     }
 
     /**
-     * Returns a list of all TradingUsers in the Trading System.
+     * Returns a list of all TradingUsers in the Trading System. This reads the TradingUsers of every city from the
+     * store, so it should only be used where every TradingUser is needed.
      *
      * @return all tradingUsers in the system.
      */
     public List<TradingUser> getAllTradingUsers() {
-        return allTradingUsers;
+        return store.getAllUsers();
     }
 
     public List<String> getAllTradingUsersUsernames(){
-        List<String> userList = new ArrayList<>();
-        for(User user : allTradingUsers){
-            String username = user.getUsername();
-            userList.add(username);
-        }
-        return userList;
+        return store.getUsernames();
     }
 
     /**
@@ -279,12 +606,9 @@ public class TradingUserManager {
      * @return boolean if this user account is already in the system or not.
      */
     public boolean validUser(String username, String password) {
-        for (TradingUser tradingUser : allTradingUsers) {
-            if (tradingUser.getUsername().equals(username) && tradingUser.getPassword().equals(password)) {
-                return true;
-            }
-        }
-        return false;
+        UUID id = usernames.getId(username, UserRoles.TRADING);
+        TradingUser tradingUser = id == null ? null : store.getUser(id);
+        return tradingUser != null && tradingUser.getPassword().equals(password);
     }
 
     /**
@@ -293,7 +617,16 @@ public class TradingUserManager {
      * @return list of flagged to be frozen TradingUsers
      */
     public List<TradingUser> getFlaggedAccounts() {
-        return flaggedAccounts;
+        return getTradingUsersById(accountStatuses.getIds(AccountStates.FLAGGED));
+    }
+
+    /**
+     * Retrieves the ids of TradingUsers that have had their account flagged to be frozen automatically by the system
+     *
+     * @return list of the ids of flagged to be frozen TradingUsers
+     */
+    public List<UUID> getFlaggedAccountIds() {
+        return accountStatuses.getIds(AccountStates.FLAGGED);
     }
 
     /**
@@ -301,7 +634,7 @@ public class TradingUserManager {
      * @param username the String username of the user you want to remove
      */
     public void removeFlaggedUsername(String username){
-        flaggedAccounts.removeIf(currUser -> currUser.getUsername().equals(username));
+        removeAccount(AccountStates.FLAGGED, username);
     }
 
     /**
@@ -309,7 +642,32 @@ public class TradingUserManager {
      * @param username the String username of the user you want to remove
      */
     public void removeFrozenUsername(String username){
-        frozenAccounts.removeIf(currUser -> currUser.getUsername().equals(username));
+        removeAccount(AccountStates.FROZEN, username);
+    }
+
+    /* removes the TradingUser with username from the accounts in state */
+    private void removeAccount(AccountStates state, String username) {
+        UUID id = usernames.getId(username, UserRoles.TRADING);
+        if (id != null) {
+            accountStatuses.remove(id, state);
+        }
+    }
+
+    /**
+     * Adds a user to flaggedAccounts if they are not already flagged.
+     * @param tradingUser the TradingUser that has been flagged by the system
+     */
+    public void flagAccount(TradingUser tradingUser) {
+        accountStatuses.add(tradingUser.getUserId(), AccountStates.FLAGGED);
+    }
+
+    /**
+     * Returns whether a TradingUser is flagged to be frozen.
+     * @param tradingUser a tradingUser in the trading system
+     * @return true iff the TradingUser is in flaggedAccounts
+     */
+    public boolean isFlagged(TradingUser tradingUser) {
+        return accountStatuses.contains(tradingUser.getUserId(), AccountStates.FLAGGED);
     }
     /**
      * Retrieves a list of TradingUsers that have had their account frozen after approval by Admin.
@@ -317,7 +675,48 @@ public class TradingUserManager {
      * @return list of frozen TradingUsers
      */
     public List<TradingUser> getFrozenAccounts() {
-        return frozenAccounts;
+        return getTradingUsersById(accountStatuses.getIds(AccountStates.FROZEN));
+    }
+
+    /**
+     * Retrieves the ids of TradingUsers that have had their account frozen after approval by Admin.
+     *
+     * @return list of the ids of frozen TradingUsers
+     */
+    public List<UUID> getFrozenAccountIds() {
+        return accountStatuses.getIds(AccountStates.FROZEN);
+    }
+
+    /**
+     * Runs an operation while no TradingUser is being changed, waiting for the changes in progress to finish first. This
+     * is how a snapshot of the TradingUsers is taken without the rest of the program stopping for it.
+     *
+     * @param operation the operation, which must not wait for another thread that changes TradingUsers
+     * @return the result of the operation
+     */
+    public <T> T callWhileUnchanged(Supplier<T> operation) {
+        return locks.callAll(operation);
+    }
+
+    /**
+     * Getter for the registry of the flagged and frozen accounts, which admin windows can listen to.
+     *
+     * @return the AccountStatusRegistry
+     */
+    public AccountStatusRegistry getAccountStatuses() {
+        return accountStatuses;
+    }
+
+    /* returns the TradingUser with each id, skipping ids of users that no longer exist */
+    private List<TradingUser> getTradingUsersById(List<UUID> ids) {
+        List<TradingUser> tradingUsers = new ArrayList<>(ids.size());
+        for (UUID id : ids) {
+            TradingUser tradingUser = store.getUser(id);
+            if (tradingUser != null) {
+                tradingUsers.add(tradingUser);
+            }
+        }
+        return tradingUsers;
     }
 
     /**
@@ -336,40 +735,59 @@ public class TradingUserManager {
      * @param transaction the Transaction being moved.
      */
     public boolean moveTransactionToTransactionHistory(Transaction transaction) {
-        TransactionStatuses status = transaction.getStatus();
-        TradingUser user1 = getTradingUserById(transaction.getUser1());
-        TradingUser user2 = getTradingUserById(transaction.getUser2());
-        if (status.equals(TransactionStatuses.INCOMPLETE) || status.equals(TransactionStatuses.COMPLETED) || status.equals(TransactionStatuses.NEVERRETURNED)) {
-            UUID id = transaction.getId();
-            user1.getCurrentTransactions().remove(id);
-            user2.getCurrentTransactions().remove(id);
-            addToTransactionHistory(user1, transaction);
-            addToTransactionHistory(user2, transaction);
-            return true;
-        }
-        return false;
+        return locks.call(transaction.getUser1(), transaction.getUser2(), () -> {
+            TransactionStatuses status = transaction.getStatus();
+            TradingUser user1 = getTradingUserById(transaction.getUser1());
+            TradingUser user2 = getTradingUserById(transaction.getUser2());
+            if (status.equals(TransactionStatuses.INCOMPLETE) || status.equals(TransactionStatuses.COMPLETED) || status.equals(TransactionStatuses.NEVERRETURNED)) {
+                UUID id = transaction.getId();
+                user1.getCurrentTransactions().remove(id);
+                user2.getCurrentTransactions().remove(id);
+                addToTransactionHistory(user1, transaction);
+                addToTransactionHistory(user2, transaction);
+                return true;
+            }
+            return false;
+        });
     }
 
     /**
-     * Checks whether the input username is valid.
+     * Adds a new Transaction to the current transactions of both of the TradingUsers in it.
+     *
+     * @param user1 one of the users in transaction.
+     * @param user2 the other user in transaction.
+     * @param transactionId the UUID of the new Transaction.
+     */
+    public void addCurrentTransaction(TradingUser user1, TradingUser user2, UUID transactionId) {
+        locks.run(user1.getUserId(), user2.getUserId(), () -> {
+            user1.getCurrentTransactions().add(transactionId);
+            user2.getCurrentTransactions().add(transactionId);
+            recordUser(user1);
+            recordUser(user2);
+        });
+    }
+
+    /**
+     * Removes a Transaction from a TradingUser's current transactions without adding it to their history.
+     *
+     * @param tradingUser a tradingUser in the trading system.
+     * @param transactionId the UUID of the Transaction being removed.
+     */
+    public void removeCurrentTransaction(TradingUser tradingUser, UUID transactionId) {
+        locks.run(tradingUser.getUserId(), () -> {
+            tradingUser.getCurrentTransactions().remove(transactionId);
+            recordUser(tradingUser);
+        });
+    }
+
+    /**
+     * Checks whether the input username is not used by any user, whatever their role.
      *
      * @param username online identifier of a Users.TradingUser
      * @return True or False as boolean
      */
     public boolean checkAvailableUsername(String username) {
-        for (TradingUser user : allTradingUsers) {
-            if (user.getUsername().equals(username)) {
-                return false;
-            }
-        }
-        return true;
-    }
-
-    private void userListToMap() {
-        idToUser = new HashMap<>();
-        for (TradingUser user : allTradingUsers) {
-            idToUser.put(user.getUserId(), user);
-        }
+        return usernames.isAvailable(username);
     }
 
     /**
@@ -379,7 +797,7 @@ public class TradingUserManager {
      * @return a tradingUser
      */
     public TradingUser getTradingUserById(UUID id) {
-        return idToUser.get(id);
+        return store.getUser(id);
     }
 
     /**
@@ -391,7 +809,7 @@ public class TradingUserManager {
     public List<String> getUsernameListByID(List<UUID> ids){
         List<String> usernames = new ArrayList<>();
         for (UUID id : ids){
-            usernames.add(getTradingUserById(id).getUsername());
+            usernames.add(store.getUsername(id));
         }
         return usernames;
     }
@@ -404,23 +822,27 @@ public class TradingUserManager {
      * @param transaction the transaction involved.
      */
     protected void handlePermTransactionItems(Transaction transaction) { // if permanent transaction
-        if (transaction.getStatus().equals(TransactionStatuses.COMPLETED)) {
-            List<UUID> itemidlist = transaction.getTransactionItems();
-            TradingUser user1 = this.getTradingUserById(transaction.getUser1());
-            TradingUser user2 = this.getTradingUserById(transaction.getUser2());
-            if (itemidlist.size() == 2) {
-                user1.removeFromWishlist(transaction.getItemIdDesired(user1.getUserId()));
-                user2.removeFromWishlist(transaction.getItemIdDesired(user2.getUserId()));
-                user1.getInventory().remove(transaction.getItemIdOwned(user1.getUserId()));
-                user2.getInventory().remove(transaction.getItemIdOwned(user2.getUserId()));
-                user2.getInventory().add(transaction.getItemIdDesired(user2.getUserId()));
-                user1.getInventory().add(transaction.getItemIdDesired(user1.getUserId()));
-            } else if (itemidlist.size() == 1) { // user 1 giving to user 2
-                user2.removeFromWishlist(transaction.getItemIdDesired(user2.getUserId()));
-                user1.getInventory().remove(transaction.getItemIdOwned(user1.getUserId()));
-                user2.getInventory().add(transaction.getItemIdDesired(user2.getUserId()));
+        locks.run(transaction.getUser1(), transaction.getUser2(), () -> {
+            if (transaction.getStatus().equals(TransactionStatuses.COMPLETED)) {
+                List<UUID> itemidlist = transaction.getTransactionItems();
+                TradingUser user1 = this.getTradingUserById(transaction.getUser1());
+                TradingUser user2 = this.getTradingUserById(transaction.getUser2());
+                if (itemidlist.size() == 2) {
+                    user1.removeFromWishlist(transaction.getItemIdDesired(user1.getUserId()));
+                    user2.removeFromWishlist(transaction.getItemIdDesired(user2.getUserId()));
+                    removeFromInventory(user1, transaction.getItemIdOwned(user1.getUserId()));
+                    removeFromInventory(user2, transaction.getItemIdOwned(user2.getUserId()));
+                    addToInventory(user2, transaction.getItemIdDesired(user2.getUserId()));
+                    addToInventory(user1, transaction.getItemIdDesired(user1.getUserId()));
+                } else if (itemidlist.size() == 1) { // user 1 giving to user 2
+                    user2.removeFromWishlist(transaction.getItemIdDesired(user2.getUserId()));
+                    removeFromInventory(user1, transaction.getItemIdOwned(user1.getUserId()));
+                    addToInventory(user2, transaction.getItemIdDesired(user2.getUserId()));
+                }
+                recordUser(user1);
+                recordUser(user2);
             }
-        }
+        });
     }
 
     /**
@@ -431,31 +853,37 @@ public class TradingUserManager {
      * @param transaction the transaction involved.
      */
     protected void handleTempTransactionItems(Transaction transaction) { // if temporary transaction
-        if (transaction.getStatus().equals(TransactionStatuses.TRADED)) { // after first meeting
-            List<UUID> itemidlist = transaction.getTransactionItems();
-            TradingUser user1 = this.getTradingUserById(transaction.getUser1());
-            TradingUser user2 = this.getTradingUserById(transaction.getUser2());
-            if (itemidlist.size() == 2) {
-                user1.removeFromWishlist(transaction.getItemIdDesired(user1.getUserId()));
-                user2.removeFromWishlist(transaction.getItemIdDesired(user2.getUserId()));
-                user1.getInventory().remove(transaction.getItemIdOwned(user1.getUserId()));
-                user2.getInventory().remove(transaction.getItemIdOwned(user2.getUserId()));
-            } else if (itemidlist.size() == 1) { // user 1 giving to user 2
-                user2.removeFromWishlist(transaction.getItemIdDesired(user2.getUserId()));
-                user1.getInventory().remove(itemidlist.get(0));
+        locks.run(transaction.getUser1(), transaction.getUser2(), () -> {
+            if (transaction.getStatus().equals(TransactionStatuses.TRADED)) { // after first meeting
+                List<UUID> itemidlist = transaction.getTransactionItems();
+                TradingUser user1 = this.getTradingUserById(transaction.getUser1());
+                TradingUser user2 = this.getTradingUserById(transaction.getUser2());
+                if (itemidlist.size() == 2) {
+                    user1.removeFromWishlist(transaction.getItemIdDesired(user1.getUserId()));
+                    user2.removeFromWishlist(transaction.getItemIdDesired(user2.getUserId()));
+                    removeFromInventory(user1, transaction.getItemIdOwned(user1.getUserId()));
+                    removeFromInventory(user2, transaction.getItemIdOwned(user2.getUserId()));
+                } else if (itemidlist.size() == 1) { // user 1 giving to user 2
+                    user2.removeFromWishlist(transaction.getItemIdDesired(user2.getUserId()));
+                    removeFromInventory(user1, itemidlist.get(0));
+                }
+                recordUser(user1);
+                recordUser(user2);
             }
-        }
-        if (transaction.getStatus().equals(TransactionStatuses.COMPLETED)) { // after second meeting
-            List<UUID> itemidlist = transaction.getTransactionItems();
-            TradingUser user1 = this.getTradingUserById(transaction.getUser1());
-            TradingUser user2 = this.getTradingUserById(transaction.getUser2());
-            if (itemidlist.size() == 2) {
-                user1.getInventory().add(transaction.getItemIdOwned(user1.getUserId()));
-                user2.getInventory().add(transaction.getItemIdOwned(user2.getUserId()));
-            } else if (itemidlist.size() == 1) { // user 1 giving to user 2
-                user1.getInventory().add(transaction.getItemIdOwned(user1.getUserId()));
+            if (transaction.getStatus().equals(TransactionStatuses.COMPLETED)) { // after second meeting
+                List<UUID> itemidlist = transaction.getTransactionItems();
+                TradingUser user1 = this.getTradingUserById(transaction.getUser1());
+                TradingUser user2 = this.getTradingUserById(transaction.getUser2());
+                if (itemidlist.size() == 2) {
+                    addToInventory(user1, transaction.getItemIdOwned(user1.getUserId()));
+                    addToInventory(user2, transaction.getItemIdOwned(user2.getUserId()));
+                } else if (itemidlist.size() == 1) { // user 1 giving to user 2
+                    addToInventory(user1, transaction.getItemIdOwned(user1.getUserId()));
+                }
+                recordUser(user1);
+                recordUser(user2);
             }
-        }
+        });
     }
 
     /**
@@ -467,23 +895,27 @@ public class TradingUserManager {
      */
 
     public void handleVirtTransactionItems(Transaction transaction) {
-        if (transaction.getStatus().equals(TransactionStatuses.COMPLETED)){
-            List<UUID> itemidlist = transaction.getTransactionItems();
-            TradingUser user1 = this.getTradingUserById(transaction.getUser1());
-            TradingUser user2 = this.getTradingUserById(transaction.getUser2());
-            if (itemidlist.size() == 2) {
-                user1.removeFromWishlist(transaction.getItemIdDesired(user1.getUserId()));
-                user2.removeFromWishlist(transaction.getItemIdDesired(user2.getUserId()));
-                user1.getInventory().remove(transaction.getItemIdOwned(user1.getUserId()));
-                user2.getInventory().remove(transaction.getItemIdOwned(user2.getUserId()));
-                user2.getInventory().add(transaction.getItemIdDesired(user2.getUserId()));
-                user1.getInventory().add(transaction.getItemIdDesired(user1.getUserId()));
-            } if (itemidlist.size() == 1) { // user 1 giving to user 2
-                user2.removeFromWishlist(transaction.getItemIdDesired(user2.getUserId()));
-                user1.getInventory().remove(transaction.getItemIdOwned(user1.getUserId()));
-                user2.getInventory().add(transaction.getItemIdDesired(user2.getUserId()));
+        locks.run(transaction.getUser1(), transaction.getUser2(), () -> {
+            if (transaction.getStatus().equals(TransactionStatuses.COMPLETED)){
+                List<UUID> itemidlist = transaction.getTransactionItems();
+                TradingUser user1 = this.getTradingUserById(transaction.getUser1());
+                TradingUser user2 = this.getTradingUserById(transaction.getUser2());
+                if (itemidlist.size() == 2) {
+                    user1.removeFromWishlist(transaction.getItemIdDesired(user1.getUserId()));
+                    user2.removeFromWishlist(transaction.getItemIdDesired(user2.getUserId()));
+                    removeFromInventory(user1, transaction.getItemIdOwned(user1.getUserId()));
+                    removeFromInventory(user2, transaction.getItemIdOwned(user2.getUserId()));
+                    addToInventory(user2, transaction.getItemIdDesired(user2.getUserId()));
+                    addToInventory(user1, transaction.getItemIdDesired(user1.getUserId()));
+                } if (itemidlist.size() == 1) { // user 1 giving to user 2
+                    user2.removeFromWishlist(transaction.getItemIdDesired(user2.getUserId()));
+                    removeFromInventory(user1, transaction.getItemIdOwned(user1.getUserId()));
+                    addToInventory(user2, transaction.getItemIdDesired(user2.getUserId()));
+                }
+                recordUser(user1);
+                recordUser(user2);
             }
-        }
+        });
     }
 
     /**
@@ -505,7 +937,7 @@ public class TradingUserManager {
      */
     public List<String> convertFlaggedUsersToUsernames() {
         List<String> usernames = new ArrayList<>();
-        for (TradingUser user : flaggedAccounts) {
+        for (TradingUser user : getFlaggedAccounts()) {
             usernames.add(user.getUsername());
         }
         return usernames;
@@ -517,7 +949,7 @@ public class TradingUserManager {
      */
     public List<String> convertFrozenUsersToUsernames() {
         List<String> usernames = new ArrayList<>();
-        for (TradingUser user : frozenAccounts) {
+        for (TradingUser user : getFrozenAccounts()) {
             usernames.add(user.getUsername());
         }
         return usernames;
@@ -529,6 +961,9 @@ public class TradingUserManager {
      * @param password new password
      */
     public void changePassword(TradingUser user, String password) {
-        user.setPassword(password);
+        locks.run(user.getUserId(), () -> {
+            user.setPassword(password);
+            recordUser(user);
+        });
     }
 }
@@ -1,20 +1,37 @@
 package Users;
 
+import Initialization.BinaryFormat;
 import Transactions.Transaction;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
+import java.time.Instant;
+import java.time.ZoneId;
 import java.util.*;
 
 /**
  * <h1>TransactionHistory</h1>
  * Represents the Transactions.Transaction History of Users.TradingUser by storing information about completed transactions
+ *
+ * <p>The transactions in the history are also counted by the day of their last meeting in an ActivityCounter, so that
+ * the transactions in a week are counted without reading them. A history saved before the counter existed has none,
+ * and TradingUserManager.rebuildWeeklyActivity counts its transactions once, when it is first needed, and saves it.</p>
+ *
+ * <p>The trading partners are counted by their ids in a PartnerCounter, so that a change of username does not split
+ * their count. A history saved before that keeps its counts by username in usersNumTradeTimes, until
+ * TradingUserManager moves them to the PartnerCounter.</p>
  */
 public class TransactionHistory implements Serializable {
+    private static final long serialVersionUID = -4286993672406591153L;
     private final List<UUID> oneWayTransactions;
     private final List<UUID> twoWayTransactions;
     private final HashMap<String, Integer> usersNumTradeTimes;
     private int numItemsLended = 0;
     private int numItemsBorrowed = 0;
+    private ActivityCounter weeklyActivity;
+    private PartnerCounter tradingPartners;
 
     /**
      * Constructs an instance of Users.TransactionHistory with an empty ArrayList transactions and an empty Hashtable usersNumTradeTimes
@@ -24,6 +41,48 @@ public class TransactionHistory implements Serializable {
         oneWayTransactions = new ArrayList<>();
         twoWayTransactions = new ArrayList<>();
         usersNumTradeTimes = new HashMap<>();
+        weeklyActivity = new ActivityCounter();
+        tradingPartners = new PartnerCounter();
+    }
+
+    /**
+     * Reads a TransactionHistory that was written by writeTo.
+     * @param in where the TransactionHistory is read from
+     * @param version the version of the BinaryFormat the TransactionHistory was written with
+     * @throws IOException if the TransactionHistory could not be read
+     */
+    public TransactionHistory(DataInput in, int version) throws IOException {
+        this();
+        BinaryFormat.readUUIDList(in, oneWayTransactions);
+        BinaryFormat.readUUIDList(in, twoWayTransactions);
+        if (version >= 5) {
+            tradingPartners = new PartnerCounter(in);
+        } else {
+            int numUsers = in.readInt();
+            for (int i = 0; i < numUsers; i++) {
+                usersNumTradeTimes.put(BinaryFormat.readString(in), in.readInt());
+            }
+        }
+        numItemsLended = in.readInt();
+        numItemsBorrowed = in.readInt();
+        weeklyActivity = version >= 4 && in.readBoolean() ? new ActivityCounter(in) : null;
+    }
+
+    /**
+     * Writes this TransactionHistory in the BinaryFormat.
+     * @param out where the TransactionHistory is written
+     * @throws IOException if the TransactionHistory could not be written
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        BinaryFormat.writeUUIDList(out, oneWayTransactions);
+        BinaryFormat.writeUUIDList(out, twoWayTransactions);
+        getTradingPartners().writeTo(out);
+        out.writeInt(numItemsLended);
+        out.writeInt(numItemsBorrowed);
+        out.writeBoolean(weeklyActivity != null);
+        if (weeklyActivity != null) {
+            weeklyActivity.writeTo(out);
+        }
     }
 
     /**
@@ -50,31 +109,10 @@ public class TransactionHistory implements Serializable {
     }
 
     /**
-     * @return the usernames of the Users.TradingUser's top three trading partners
-     */
-    public List<String> mostTradedWithUsers()  {
-        // list for the mostTradedWith usernames
-        List<String> mostTradedWithUsernames = new ArrayList<>();
-
-        // if usersNumTradTimes size is less than or less than 3
-        if(usersNumTradeTimes.size() <= 3){
-            Set<String> users = usersNumTradeTimes.keySet();
-            mostTradedWithUsernames.addAll(users);
-            return mostTradedWithUsernames; }
-        int j = 0;
-        // if userNumTradeTimes size is greater than 3
-        while(j < 3){
-            Map.Entry<String, Integer> maxUser = null;
-            for (Map.Entry<String, Integer> entry : usersNumTradeTimes.entrySet()) {
-                if (maxUser == null || entry.getValue() >= maxUser.getValue()) {
-                    maxUser = entry;
-                    if(!mostTradedWithUsernames.contains(maxUser.getKey())){
-                        mostTradedWithUsernames.add(maxUser.getKey());
-                    }
-                }
-                j++;
-            }
-        }return mostTradedWithUsernames;
+     * @return the ids of the Users.TradingUser's top three trading partners, most traded with first
+     */
+    public List<UUID> mostTradedWithUsers() {
+        return getTradingPartners().getTop();
     }
 
     /**
@@ -89,12 +127,24 @@ public class TransactionHistory implements Serializable {
     }
 
     /**
-     * @return all of users and the times they have been traded with
+     * @return the usernames and times traded with of a history saved before the PartnerCounter, which are empty once
+     * they have been moved to it
      */
     public HashMap<String, Integer> getUsersNumTradeTimes(){
         return usersNumTradeTimes;
     }
 
+    /**
+     * Getter for the number of trades with each trading partner, by their ids.
+     * @return the PartnerCounter
+     */
+    public PartnerCounter getTradingPartners() {
+        if (tradingPartners == null) {
+            tradingPartners = new PartnerCounter();
+        }
+        return tradingPartners;
+    }
+
     /**
      * Setter for numItemsLended, increases by 1 every time it is called
      */
@@ -116,7 +166,35 @@ public class TransactionHistory implements Serializable {
         } else {
             twoWayTransactions.add(transaction.getId());
         }
+        if (weeklyActivity != null) {
+            countActivity(weeklyActivity, transaction);
+        }
     }
+
+    /**
+     * Counts a transaction in an ActivityCounter on the day of its last meeting. Virtual transactions have no meetings
+     * and are not counted.
+     * @param counter the counter
+     * @param transaction the transaction being counted
+     */
+    public static void countActivity(ActivityCounter counter, Transaction transaction) {
+        if (!transaction.isVirtual()) {
+            Date date = transaction.getTransactionMeetings().get(transaction.getTransactionMeetings().size() - 1).getDate();
+            counter.record(Instant.ofEpochMilli(date.getTime()).atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay());
+        }
+    }
+
+    /**
+     * Getter for the counter of the transactions in this history by day.
+     * @return the ActivityCounter, or null if this history was saved before it existed
+     */
+    public ActivityCounter getWeeklyActivity() { return weeklyActivity; }
+
+    /**
+     * Setter for the counter of the transactions in this history by day, once it has been rebuilt.
+     * @param weeklyActivity the ActivityCounter of every transaction in this history
+     */
+    public void setWeeklyActivity(ActivityCounter weeklyActivity) { this.weeklyActivity = weeklyActivity; }
     /**
      * Getter for numItemsLended as an int
      * @return numItemsLended as an integer
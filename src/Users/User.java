@@ -1,5 +1,10 @@
 package Users;
 
+import Initialization.BinaryFormat;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.UUID;
 
@@ -8,13 +13,38 @@ import java.util.UUID;
  * Represents the parent class of TradingUser, AdminUser, and DemoUser
  */
 public abstract class User implements Serializable {
+    private static final long serialVersionUID = 2797537489646961764L;
     private String username;
     private String password;
-    private final UUID userId = UUID.randomUUID();
+    private final UUID userId;
 
     public User(String username, String password) {
         this.username = username;
         this.password = password;
+        this.userId = UUID.randomUUID();
+    }
+
+    /**
+     * Reads a User that was written by writeTo.
+     * @param in where the User is read from
+     * @param version the version of the BinaryFormat the User was written with
+     * @throws IOException if the User could not be read
+     */
+    protected User(DataInput in, int version) throws IOException {
+        this.userId = BinaryFormat.readUUID(in);
+        this.username = BinaryFormat.readString(in);
+        this.password = BinaryFormat.readString(in);
+    }
+
+    /**
+     * Writes this User in the BinaryFormat.
+     * @param out where the User is written
+     * @throws IOException if the User could not be written
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        BinaryFormat.writeUUID(out, userId);
+        BinaryFormat.writeString(out, username);
+        BinaryFormat.writeString(out, password);
     }
 
     /**
@@ -0,0 +1,138 @@
+package Users;
+
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * <h1>UserLocks</h1>
+ * A fixed set of locks that guard the TradingUsers, each user being guarded by the lock picked by the hash of their id.
+ *
+ * <p>Changes to one TradingUser run while holding their lock, and changes to two TradingUsers, such as the items they
+ * trade, while holding both of their locks. Two locks are always taken in the order of their index, whichever user is
+ * first, so two threads trading between the same users cannot each wait on the lock the other holds. Operations on
+ * TradingUsers whose locks are different run in parallel; two users that share a lock only share it because their
+ * ids hash to it, and the more locks there are the rarer that is. The locks are reentrant, so an operation can call
+ * another on the same users.</p>
+ */
+public class UserLocks {
+    private final ReentrantLock[] locks;
+    private final int mask;
+
+    /**
+     * Creates UserLocks with a number of locks that grows with the number of processors.
+     */
+    public UserLocks() {
+        this(Runtime.getRuntime().availableProcessors() * 16);
+    }
+
+    /**
+     * Creates UserLocks with at least numLocks locks.
+     * @param numLocks the least number of locks, which is rounded up to a power of two
+     */
+    public UserLocks(int numLocks) {
+        int size = Integer.highestOneBit(Math.max(1, numLocks - 1)) << 1;
+        locks = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        mask = size - 1;
+    }
+
+    private int indexOf(UUID userId) {
+        int hash = userId.hashCode();
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    /**
+     * Runs an operation on one TradingUser while holding their lock.
+     * @param userId the id of the TradingUser
+     * @param operation the operation
+     */
+    public void run(UUID userId, Runnable operation) {
+        call(userId, () -> {
+            operation.run();
+            return null;
+        });
+    }
+
+    /**
+     * Runs an operation on one TradingUser while holding their lock, and returns its result.
+     * @param userId the id of the TradingUser
+     * @param operation the operation
+     * @return the result of the operation
+     */
+    public <T> T call(UUID userId, Supplier<T> operation) {
+        ReentrantLock lock = locks[indexOf(userId)];
+        lock.lock();
+        try {
+            return operation.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Runs an operation on two TradingUsers while holding both of their locks, which are taken in the order of their
+     * index.
+     * @param userId1 the id of one TradingUser
+     * @param userId2 the id of the other TradingUser, which may be the same
+     * @param operation the operation
+     */
+    public void run(UUID userId1, UUID userId2, Runnable operation) {
+        call(userId1, userId2, () -> {
+            operation.run();
+            return null;
+        });
+    }
+
+    /**
+     * Runs an operation on two TradingUsers while holding both of their locks, which are taken in the order of their
+     * index, and returns its result.
+     * @param userId1 the id of one TradingUser
+     * @param userId2 the id of the other TradingUser, which may be the same
+     * @param operation the operation
+     * @return the result of the operation
+     */
+    public <T> T call(UUID userId1, UUID userId2, Supplier<T> operation) {
+        int index1 = indexOf(userId1);
+        int index2 = indexOf(userId2);
+        if (index1 == index2) {
+            return call(userId1, operation);
+        }
+        ReentrantLock first = locks[Math.min(index1, index2)];
+        ReentrantLock second = locks[Math.max(index1, index2)];
+        first.lock();
+        try {
+            second.lock();
+            try {
+                return operation.get();
+            } finally {
+                second.unlock();
+            }
+        } finally {
+            first.unlock();
+        }
+    }
+
+    /**
+     * Runs an operation while holding every lock, which are taken in the order of their index, so that no TradingUser
+     * is changed meanwhile. This waits for every change in progress, so it is only meant for taking a snapshot.
+     * @param operation the operation
+     * @return the result of the operation
+     */
+    public <T> T callAll(Supplier<T> operation) {
+        int locked = 0;
+        try {
+            for (ReentrantLock lock : locks) {
+                lock.lock();
+                locked++;
+            }
+            return operation.get();
+        } finally {
+            for (int i = locked - 1; i >= 0; i--) {
+                locks[i].unlock();
+            }
+        }
+    }
+}
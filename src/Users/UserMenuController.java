@@ -6,6 +6,7 @@ import Admins.AdminManager;
 import Exceptions.InvalidItemException;
 import Exceptions.InvalidTradingUserException;
 import Exceptions.InvalidTransactionException;
+import Initialization.CheckpointService;
 import Items.Item;
 import Items.ItemManager;
 import Transactions.*;
@@ -22,6 +23,7 @@ import java.util.*;
  * TradingUser to be added to their inventory). <p/>
  */
 public class UserMenuController {
+    private static final int SEARCH_LIMIT = 50; // the most items a search returns
     private TradingUser currentTradingUser = null; // user that's logged in
     private final AdminManager am;
     private final TradingUserManager um;
@@ -29,13 +31,18 @@ public class UserMenuController {
     private final PastTransactionManager ptm;
     private final ItemManager im;
     private final ActionManager acm;
-    private final Map<Item, TradingUser> allPendingItems;
+    private final Map<Item, UUID> allPendingItems;
+    private final CheckpointService checkpointService;
+    private final TradeProposalBoard proposalBoard;
 
     public UserMenuController(TradingUserManager tradingUserManager, AdminManager adminManager,
                               CurrentTransactionManager currentTransactionManager,
                               PastTransactionManager pastTransactionManager, ItemManager itemManager, ActionManager actionManager,
-                              Map<Item, TradingUser> pendingItems) {
+                              Map<Item, UUID> pendingItems, CheckpointService checkpointService,
+                              TradeProposalBoard proposalBoard) {
         allPendingItems = pendingItems;
+        this.checkpointService = checkpointService;
+        this.proposalBoard = proposalBoard;
         this.am = adminManager;
         this.um = tradingUserManager;
         this.tm = currentTransactionManager;
@@ -54,7 +61,7 @@ public class UserMenuController {
      * Method that adds pending items to the current trading user's pending items
      */
     public void addToPendingItems(Item requestedItem) {
-        allPendingItems.put(requestedItem, currentTradingUser);
+        allPendingItems.put(requestedItem, currentTradingUser.getUserId());
     }
 
     /**
@@ -64,29 +71,115 @@ public class UserMenuController {
         AddOrDeleteAction action = new AddOrDeleteAction(currentTradingUser.getUserId());
         action.setIsWishlist();
         action.setAdded(item);
-        acm.addAction(currentTradingUser.getUserId(), action);
+        acm.addAction(action);
         return um.addItem(currentTradingUser.getUserId(), item, "wishlist");
     }
 
     /**
-     * Creates a HashMap of all the available items in other user's inventory.
-     * @return HashMap of items that are available in other user's inventory.
+     * Returns the items that are available in other user's inventories in the current TradingUser's city.
+     * @return a read-only view of the available items and their owners, which stays up to date.
      */
     public Map<Item, TradingUser> getAvailableItems(){
-        try {
-            List<TradingUser> allTradingUsersInCity = um.getTradingUserByCity(currentTradingUser.getCity());
-            HashMap<Item, TradingUser> availableItems = new HashMap<>();
-            for (TradingUser tradingUser : allTradingUsersInCity) {
-                if(!tradingUser.equals(currentTradingUser)) {
-                    for (Item item : im.convertIdsToItems(tradingUser.getInventory())) {
-                        availableItems.put(item, tradingUser);
-                    }
-                }
+        return um.getAvailableItems(currentTradingUser);
+    }
+
+    /**
+     * Searches the names and descriptions of the items in a city for a query.
+     * @param query the words to look for, the last of which may be unfinished
+     * @param city the city to search in, or null for the current TradingUser's city
+     * @param availableOnly whether to only return items that are in the inventories of other users who are not on vacation
+     * @return at most SEARCH_LIMIT matching items, best first
+     */
+    public List<Item> searchItems(String query, String city, boolean availableOnly){
+        String searchCity = city == null ? currentTradingUser.getCity() : city;
+        // this reads the items of the city, if they have not been read yet, so that they are searched
+        Map<Item, TradingUser> availableItems = um.getAvailableItems(currentTradingUser, searchCity);
+        if (availableOnly) {
+            return im.search(query, availableItems::containsKey, SEARCH_LIMIT);
+        }
+        return im.search(query, item -> im.isInCity(item.getId(), searchCity), SEARCH_LIMIT);
+    }
+
+    /**
+     * Returns the trade that the latest nightly batch found for the current TradingUser, in which every user receives
+     * an item on their wishlist. A trade is left out once one of its users no longer wants or owns its item.
+     * @return the TradeProposals for the current TradingUser, which are at most one
+     */
+    public List<TradeProposal> getTradeProposals(){
+        TradeProposal proposal = proposalBoard.getProposal(currentTradingUser.getUserId());
+        if (proposal == null || !isStillWanted(proposal)) {
+            return new ArrayList<>();
+        }
+        return Collections.singletonList(proposal);
+    }
+
+    /**
+     * Carries out a TradeProposal of the current TradingUser, by making the transactions of the proposal with their
+     * first meeting at the same location, time and date.
+     * @param proposal a TradeProposal returned by getTradeProposals
+     * @param location the location of the meetings
+     * @param meetingTime the time of the meetings
+     * @param meetingDate the date of the meetings
+     * @return the transactions made, or an empty list if the proposal was already carried out or no longer holds
+     */
+    public List<Transaction> acceptTradeProposal(TradeProposal proposal, String location, Date meetingTime,
+                                                 Date meetingDate) throws InvalidItemException {
+        if (!proposal.getUsers().contains(currentTradingUser.getUserId()) || !isStillWanted(proposal)
+                || !proposalBoard.remove(proposal)) {
+            return new ArrayList<>();
+        }
+        List<Transaction> transactions = new ArrayList<>();
+        for (TransactionBuilder builder : getTransBuilders(proposal)) {
+            builder.buildFirstMeeting(location, meetingTime, meetingDate);
+            Transaction transaction = builder.getTransaction();
+            TradingUser user1 = um.getTradingUserById(transaction.getUser1());
+            TradingUser user2 = um.getTradingUserById(transaction.getUser2());
+            um.addCurrentTransaction(user1, user2, transaction.getId());
+            flagAccountIfAboveThreshold(user1);
+            flagAccountIfAboveThreshold(user2);
+            transactions.add(transaction);
+        }
+        return transactions;
+    }
+
+    /* whether every TradingUser of a proposal still wants their item, and the next TradingUser still owns it */
+    private boolean isStillWanted(TradeProposal proposal) {
+        List<UUID> users = proposal.getUsers();
+        for (int i = 0; i < users.size(); i++) {
+            TradingUser receiver = um.getTradingUserById(users.get(i));
+            TradingUser giver = um.getTradingUserById(users.get((i + 1) % users.size()));
+            UUID itemId = proposal.getItems().get(i);
+            if (receiver == null || giver == null || !receiver.getWishlist().contains(itemId)
+                    || !giver.getInventory().contains(itemId)) {
+                return false;
             }
-            return availableItems;
-        } catch (NullPointerException e) {
-            return null;
         }
+        return true;
+    }
+
+    /**
+     * Returns the TransactionBuilders that carry out a TradeProposal, whose meetings still have to be built.
+     * @param proposal a TradeProposal
+     * @return the TransactionBuilders of the proposal
+     */
+    public List<TransactionBuilder> getTransBuilders(TradeProposal proposal){
+        return proposal.toTransactionBuilders(new TransactionFactory(tm));
+    }
+
+    /**
+     * Returns the users of the current TradingUser's city who want the items in its inventory.
+     * @return a map from the id of each wanted item to the TradingUsers who have it in their wishlist.
+     */
+    public Map<UUID, List<TradingUser>> getUsersWhoWantMyItems(){
+        return um.getUsersWhoWant(currentTradingUser);
+    }
+
+    /**
+     * Returns the current TradingUser's top three trading partners.
+     * @return a list of the usernames of at most three TradingUsers, most traded with first.
+     */
+    public List<String> getMostTradedWithUsers(){
+        return um.getMostTradedWithUsers(currentTradingUser);
     }
 
     /**
@@ -95,14 +188,9 @@ public class UserMenuController {
      */
     public void transactionUpdate(Transaction newTransaction) throws InvalidItemException {
         TradingUser otherUser = um.getTradingUserById(newTransaction.getOtherUser(currentTradingUser.getUserId()));
-        tm.updateUsersCurrentTransactions(otherUser,currentTradingUser,newTransaction);
-        List<UUID> items  = newTransaction.getTransactionItems();
+        um.addCurrentTransaction(otherUser, currentTradingUser, newTransaction.getId());
         flagAccountIfAboveThreshold(otherUser);
         flagAccountIfAboveThreshold(currentTradingUser);
-        for (UUID id : items) {
-            Item item = im.getItem(id);
-            getAvailableItems().remove(item);
-        }
     }
 
     /**
@@ -120,11 +208,7 @@ public class UserMenuController {
 
     public boolean editMeetingFlow(UUID user, UUID transactionId, int meetingNum, Date newTime, Date newDate) throws InvalidTransactionException {
         updateUsers(transactionId, TransactionActions.EDITED);
-        if (tm.editMeeting(meetingNum, transactionId, user, newTime) | tm.editMeeting(meetingNum, transactionId, user, newDate, true)) {
-            tm.updateEdits(meetingNum, transactionId, user);
-            return true;
-        }
-        return false;
+        return tm.editMeeting(meetingNum, transactionId, user, newTime, newDate);
     }
 
     public boolean editMeetingFlow(UUID user, UUID transactionId, int meetingNum, String newLocation) throws InvalidTransactionException {
@@ -134,17 +218,25 @@ public class UserMenuController {
         //    return false;
         //}
         // else {
-            if (tm.editMeeting(meetingNum, transactionId, user, newLocation)) {
-                tm.updateEdits(meetingNum, transactionId, user);
-                return true;
-            }
-        return false;
+        return tm.editMeeting(meetingNum, transactionId, user, newLocation);
+    }
+
+    public boolean editMeetingFlow(UUID user, UUID transactionId, int meetingNum, String newLocation, Date newTime, Date newDate) throws InvalidTransactionException {
+        return replaceMeetingFlow(user, transactionId, meetingNum, newLocation, newTime, newDate) != null;
+    }
+
+    /**
+     * Edits the location, time and date of a meeting as one edit, and returns the meeting that the edit replaced.
+     * @return a copy of the meeting before the edit, or null if the meeting was not edited
+     */
+    public Meeting replaceMeetingFlow(UUID user, UUID transactionId, int meetingNum, String newLocation, Date newTime, Date newDate) throws InvalidTransactionException {
+        updateUsers(transactionId, TransactionActions.EDITED);
+        return tm.replaceMeeting(meetingNum, transactionId, user, newLocation, newTime, newDate);
     }
 
     public void updateUsers(UUID transactionId, TransactionActions optionChosen) throws InvalidTransactionException {
         Transaction transaction = tm.getTransactionFromId(transactionId);
         tm.updateStatusUser(currentTradingUser, transaction, optionChosen);
-        List<UUID> currentTransactionsIds = currentTradingUser.getCurrentTransactions();
         tm.updateStatus(transaction); //update status of transaction
         if (transaction.isPerm()) { // if transaction is permanent (only one meeting)
             um.handlePermTransactionItems(transaction); // remove items from both users inventories and wishlists
@@ -157,7 +249,7 @@ public class UserMenuController {
         if (transaction.getStatus().equals(TransactionStatuses.CANCELLED)) {
             try {
                 tm.removeTransactionFromAllTransactions(transaction.getId()); // if cancelled, the transaction is deleted forever
-                currentTransactionsIds.remove(transaction.getId()); // remove from current/active transactions
+                um.removeCurrentTransaction(currentTradingUser, transaction.getId()); // remove from current/active transactions
             }
             catch (InvalidTransactionException e) {
                 //
@@ -166,17 +258,14 @@ public class UserMenuController {
         /* if transaction is over (incomplete, complete, never returned) then move to transaction history
         * and remove from current transactions */
         if (um.moveTransactionToTransactionHistory(transaction)) {
-            currentTransactionsIds.remove(transaction.getId()); // remove from the list of active transaction's the logged in user sees
+            um.removeCurrentTransaction(currentTradingUser, transaction.getId()); // remove from the list of active transaction's the logged in user sees
         }
     }
 
     /* set a TradingUser to be flagged for admin approval if either the borrow, weekly, or incomplete thresholds have been reached */
     private void flagAccountIfAboveThreshold(TradingUser user) {
         if (userFlaggable(user)) {
-            List<String> flaggedUsernames = um.convertFlaggedUsersToUsernames();
-            if (!flaggedUsernames.contains(user.getUsername())) {
-                um.getFlaggedAccounts().add(user);
-            }
+            um.flagAccount(user);
         }
     }
 
@@ -186,6 +275,9 @@ public class UserMenuController {
      * @return booleen
      */
     public boolean userFlaggable(TradingUser user){
+        if (user.getTransactionHistory().getWeeklyActivity() == null) {
+            um.rebuildWeeklyActivity(user, ptm::countWeeklyActivity);
+        }
         boolean weeklyThreshold = ptm.weeklyThresholdExceeded(user);
         boolean TransactionsExceeded = um.incompleteTransactionExceeded(user);
         boolean borrowThreshold = um.borrowThresholdExceeded(user);
@@ -255,7 +347,7 @@ public class UserMenuController {
      *  */
     public void requestUnfreezeAccount() {
         if (currentTradingUser.isFrozen()) {
-            am.getFrozenAccounts().add(currentTradingUser);
+            am.requestUnfreeze(currentTradingUser);
         }
     }
 
@@ -289,7 +381,7 @@ public class UserMenuController {
      * Return all the pending items
      * @return allPendingItems
      */
-    public Map<Item, TradingUser> getAllPendingItems() {
+    public Map<Item, UUID> getAllPendingItems() {
         return allPendingItems;
     }
 
@@ -320,12 +412,20 @@ public class UserMenuController {
         return acm;
     }
 
+    /**
+     * Returns the CheckpointService
+     * @return CheckpointService
+     */
+    public CheckpointService getCheckpointService() {
+        return checkpointService;
+    }
+
     /**
      * Removes from the Wishlist
      * @param id id of the item to be removed
      */
     public void removeFromWishlist(UUID id){
-        currentTradingUser.getWishlist().remove(id);
+        um.removeItem(currentTradingUser.getUserId(), id, "wishlist");
     }
 
     /**
@@ -333,6 +433,6 @@ public class UserMenuController {
      * @param id id of the item to be removed
      */
     public void removeFromInventory(UUID id){
-        currentTradingUser.getInventory().remove(id);
+        um.removeItem(currentTradingUser.getUserId(), id, "inventory");
     }
 }
\ No newline at end of file
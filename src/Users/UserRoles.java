@@ -0,0 +1,5 @@
+package Users;
+
+public enum UserRoles {
+    ADMIN, TRADING, DEMO;
+}
@@ -0,0 +1,193 @@
+package Users;
+
+import Initialization.BinaryFormat;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * <h1>UsernameRegistry</h1>
+ * Maps the username of every AdminUser, TradingUser and DemoUser to its role and id.
+ *
+ * <p>A username can only be registered once, whatever the role, so AdminManager, TradingUserManager, DemoUserManager
+ * and LoginController share one registry and look usernames up in it instead of going through their users. The
+ * registry is saved with the other files, and is checked against the managers at startup (see matches) so that it
+ * only has to be rebuilt for a role whose users changed without it being saved.</p>
+ */
+public class UsernameRegistry {
+    private final Map<String, Registration> registrations;
+    private final Map<UserRoles, Integer> counts = new EnumMap<>(UserRoles.class);
+    private long version = 0;
+
+    /**
+     * Constructs an empty UsernameRegistry.
+     */
+    public UsernameRegistry() {
+        registrations = new HashMap<>();
+    }
+
+    /**
+     * Reads a UsernameRegistry that was written by writeTo.
+     * @param in where the registry is read from
+     * @param version the version of the BinaryFormat the registry was written with
+     * @throws IOException if the registry could not be read
+     */
+    public UsernameRegistry(DataInput in, int version) throws IOException {
+        int size = in.readInt();
+        registrations = new HashMap<>(size * 4 / 3 + 1);
+        for (int i = 0; i < size; i++) {
+            String username = BinaryFormat.readString(in);
+            UserRoles role = BinaryFormat.readEnum(in, UserRoles.values());
+            add(username, new Registration(role, BinaryFormat.readUUID(in)));
+        }
+    }
+
+    /**
+     * Writes this UsernameRegistry in the BinaryFormat.
+     * @param out where the registry is written
+     * @throws IOException if the registry could not be written
+     */
+    public synchronized void writeTo(DataOutput out) throws IOException {
+        out.writeInt(registrations.size());
+        for (Map.Entry<String, Registration> entry : registrations.entrySet()) {
+            BinaryFormat.writeString(out, entry.getKey());
+            BinaryFormat.writeEnum(out, entry.getValue().role);
+            BinaryFormat.writeUUID(out, entry.getValue().id);
+        }
+    }
+
+    /**
+     * Getter for the modification version of this registry, which goes up every time a username is registered or
+     * unregistered.
+     * @return the modification version as a long
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns whether no user of any role has this username.
+     * @param username a username
+     * @return true iff the username is available
+     */
+    public synchronized boolean isAvailable(String username) {
+        return !registrations.containsKey(username);
+    }
+
+    /**
+     * Returns the role of the user with this username.
+     * @param username a username
+     * @return the user's role, or null if no user has this username
+     */
+    public synchronized UserRoles getRole(String username) {
+        Registration registration = registrations.get(username);
+        return registration == null ? null : registration.role;
+    }
+
+    /**
+     * Returns the id of the user with this username, if the user has this role.
+     * @param username a username
+     * @param role the role the user must have
+     * @return the user's id, or null if no user with this role has this username
+     */
+    public synchronized UUID getId(String username, UserRoles role) {
+        Registration registration = registrations.get(username);
+        return registration == null || registration.role != role ? null : registration.id;
+    }
+
+    /**
+     * Registers a username for a user, unless the username is already taken.
+     * @param username the user's username
+     * @param role the user's role
+     * @param id the user's id
+     * @return true iff the username was available and is now registered
+     */
+    public synchronized boolean register(String username, UserRoles role, UUID id) {
+        if (registrations.containsKey(username)) {
+            return false;
+        }
+        add(username, new Registration(role, id));
+        version++;
+        return true;
+    }
+
+    /**
+     * Makes a username available again, if it belongs to the user with this id.
+     * @param username the user's username
+     * @param id the user's id
+     */
+    public synchronized void unregister(String username, UUID id) {
+        Registration registration = registrations.get(username);
+        if (registration != null && registration.id.equals(id)) {
+            registrations.remove(username);
+            counts.merge(registration.role, -1, Integer::sum);
+            version++;
+        }
+    }
+
+    /**
+     * Returns the number of usernames registered with a role.
+     * @param role a role
+     * @return the number of users with this role
+     */
+    public synchronized int count(UserRoles role) {
+        return counts.getOrDefault(role, 0);
+    }
+
+    /**
+     * Returns whether the usernames registered with a role are exactly those of users.
+     * @param role a role
+     * @param users a Map of the username to the id of every user with this role
+     * @return true iff the registry matches users
+     */
+    public synchronized boolean matches(UserRoles role, Map<String, UUID> users) {
+        if (count(role) != users.size()) {
+            return false;
+        }
+        for (Map.Entry<String, UUID> entry : users.entrySet()) {
+            if (!entry.getValue().equals(getId(entry.getKey(), role))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Replaces every username registered with a role by those of users. A username that is already registered with
+     * another role is left to that user.
+     * @param role a role
+     * @param users a Map of the username to the id of every user with this role
+     */
+    public synchronized void replaceAll(UserRoles role, Map<String, UUID> users) {
+        registrations.values().removeIf(registration -> registration.role == role);
+        counts.remove(role);
+        for (Map.Entry<String, UUID> entry : users.entrySet()) {
+            if (registrations.containsKey(entry.getKey())) {
+                System.out.println("The username " + entry.getKey() + " is used by more than one user.");
+            } else {
+                add(entry.getKey(), new Registration(role, entry.getValue()));
+            }
+        }
+        version++;
+    }
+
+    private void add(String username, Registration registration) {
+        registrations.put(username, registration);
+        counts.merge(registration.role, 1, Integer::sum);
+    }
+
+    /**
+     * The role and id of the user a username is registered to.
+     */
+    private static class Registration {
+        private final UserRoles role;
+        private final UUID id;
+
+        private Registration(UserRoles role, UUID id) {
+            this.role = role;
+            this.id = id;
+        }
+    }
+}